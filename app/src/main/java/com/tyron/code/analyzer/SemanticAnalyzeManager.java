@@ -1,7 +1,11 @@
 package com.tyron.code.analyzer;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
 import com.tyron.code.analyzer.semantic.SemanticToken;
-import com.tyron.code.language.HighlightUtil;
+import com.tyron.code.analyzer.semantic.TokenType;
+import com.tyron.completion.progress.ProgressManager;
 import com.tyron.editor.CharPosition;
 import com.tyron.editor.Content;
 import com.tyron.editor.Editor;
@@ -9,21 +13,52 @@ import com.tyron.editor.Editor;
 import java.io.InputStream;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
 
-import io.github.rosemoe.sora.lang.styling.MappedSpans;
+import io.github.rosemoe.sora.lang.analysis.StyleReceiver;
 import io.github.rosemoe.sora.lang.styling.Span;
-import io.github.rosemoe.sora.lang.styling.Spans;
 import io.github.rosemoe.sora.lang.styling.Styles;
 import io.github.rosemoe.sora.lang.styling.TextStyle;
-import io.github.rosemoe.sora.textmate.core.grammar.StackElement;
 import io.github.rosemoe.sora.textmate.core.theme.FontStyle;
 import io.github.rosemoe.sora.textmate.core.theme.IRawTheme;
 import io.github.rosemoe.sora.textmate.core.theme.ThemeTrieElementRule;
 
+/**
+ * Applies semantic tokens on top of the textmate styles.
+ *
+ * <p>The style of each token type is resolved against the theme once and kept in a table until
+ * the theme changes. Tokens are sorted by offset so they are applied line by line, with one
+ * read and one write of the spans of each line, and a line is only restyled again if its spans
+ * have been replaced since the last pass.
+ *
+ * <p>Edits move the tokens after them so they stay on their text until the next analysis
+ * publishes new ones, the tokens an edit touches are dropped.
+ */
 public abstract class SemanticAnalyzeManager extends DiagnosticTextmateAnalyzer {
 
-    private List<SemanticToken> mSemanticTokens;
+    /**
+     * The semantic tokens sorted by offset.
+     */
+    private volatile List<SemanticToken> mSemanticTokens;
+
+    private final Map<TokenType, Long> mStyleTable = new IdentityHashMap<>();
+
+    /**
+     * The first span of each line the tokens have been applied to. The spans of a line that
+     * has been tokenized again are new objects, which is how touched lines are found. Spans
+     * move along with their line when lines are inserted or deleted above it, so the lines are
+     * found regardless of their index.
+     */
+    private final Set<Span> mAppliedSpans = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private volatile Styles mStyles;
+    private volatile StyleReceiver mReceiver;
 
     public SemanticAnalyzeManager(Editor editor,
                                   String grammarName,
@@ -35,38 +70,241 @@ public abstract class SemanticAnalyzeManager extends DiagnosticTextmateAnalyzer
 
     public abstract List<SemanticToken> analyzeSpansAsync(CharSequence contents);
 
+    /**
+     * Replaces the semantic tokens and restyles the editor with them.
+     *
+     * @param tokens The tokens, with offsets in the current contents of the editor
+     */
+    public void setSemanticTokens(@Nullable List<SemanticToken> tokens) {
+        List<SemanticToken> sorted = null;
+        if (tokens != null) {
+            sorted = new ArrayList<>(tokens);
+            sorted.sort(Comparator.comparingInt(SemanticToken::getOffset));
+        }
+        synchronized (mAppliedSpans) {
+            mAppliedSpans.clear();
+            mSemanticTokens = sorted;
+        }
+
+        Styles styles = mStyles;
+        StyleReceiver receiver = mReceiver;
+        if (styles != null && receiver != null) {
+            modifyStyles(styles);
+            receiver.setStyles(this, styles);
+        }
+    }
+
+    @Override
+    public void setReceiver(@Nullable StyleReceiver receiver) {
+        super.setReceiver(receiver);
+        mReceiver = receiver;
+    }
+
+    @Override
+    public void updateTheme(IRawTheme theme) {
+        super.updateTheme(theme);
+        synchronized (mStyleTable) {
+            mStyleTable.clear();
+        }
+        synchronized (mAppliedSpans) {
+            mAppliedSpans.clear();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        mReceiver = null;
+        mStyles = null;
+        super.destroy();
+    }
+
     @Override
     public void insert(io.github.rosemoe.sora.text.CharPosition start,
                        io.github.rosemoe.sora.text.CharPosition end,
                        CharSequence insertedText) {
+        // the tokens are moved before the new styles can be sent
+        shiftTokens(start.index, start.index, end.index - start.index);
         super.insert(start, end, insertedText);
     }
 
+    @Override
+    public void delete(io.github.rosemoe.sora.text.CharPosition start,
+                       io.github.rosemoe.sora.text.CharPosition end,
+                       CharSequence deletedText) {
+        shiftTokens(start.index, end.index, start.index - end.index);
+        super.delete(start, end, deletedText);
+    }
+
+    /**
+     * Moves the tokens after the edited range by the change in length, the tokens inside it
+     * are dropped.
+     */
+    private void shiftTokens(int start, int end, int delta) {
+        synchronized (mAppliedSpans) {
+            mSemanticTokens = shiftTokens(mSemanticTokens, start, end, delta);
+        }
+    }
+
+    @VisibleForTesting
+    static List<SemanticToken> shiftTokens(@Nullable List<SemanticToken> tokens,
+                                           int start, int end, int delta) {
+        if (tokens == null) {
+            return null;
+        }
+        List<SemanticToken> shifted = new ArrayList<>(tokens.size());
+        for (SemanticToken token : tokens) {
+            if (token.getOffset() + token.getLength() <= start) {
+                shifted.add(token);
+            } else if (token.getOffset() >= end) {
+                shifted.add(new SemanticToken(token.getOffset() + delta, token.getLength(),
+                        token.getTokenType(), token.getTokenModifiers()));
+            }
+        }
+        return shifted;
+    }
+
     @Override
     protected void modifyStyles(Styles styles) {
         super.modifyStyles(styles);
 
+        if (styles == null) {
+            return;
+        }
+        mStyles = styles;
+
+        List<SemanticToken> tokens = mSemanticTokens;
+        if (tokens == null || tokens.isEmpty()) {
+            return;
+        }
+
         Content content = mEditor.getContent();
+        int length = content.length();
+        int lineCount = content.getLineCount();
+        if (styles.getSpans().getLineCount() != lineCount) {
+            // the lines of an edit have not been tokenized yet
+            return;
+        }
 
-        if (mSemanticTokens != null) {
-            for (int i = mSemanticTokens.size() - 1; i >= 0; i--) {
-                SemanticToken token = mSemanticTokens.get(i);
-                if (token.getOffset() > content.length()) {
-                    continue;
+        synchronized (mAppliedSpans) {
+            if (mAppliedSpans.size() > lineCount * 2) {
+                // the spans of lines that have since been replaced
+                mAppliedSpans.clear();
+            }
+            int index = 0;
+            while (index < tokens.size()) {
+                SemanticToken first = tokens.get(index);
+                if (first.getOffset() + first.getLength() > length) {
+                    // the rest of the tokens are past the end of the file
+                    break;
                 }
-                CharPosition start = mEditor.getCharPosition(token.getOffset());
-                CharPosition end =
-                        mEditor.getCharPosition(token.getOffset() + token.getLength());
+                CharPosition position = mEditor.getCharPosition(first.getOffset());
+                int line = position.getLine();
+                int lineStart = first.getOffset() - position.getColumn();
+                int nextLineStart = line + 1 < lineCount
+                        ? mEditor.getCharIndex(line + 1, 0)
+                        : Integer.MAX_VALUE;
 
-                Span span = Span.obtain(0, getStyle(token));
-                HighlightUtil.replaceSpan(styles, span, start.getLine(), start.getColumn(),
-                                          end.getLine(), end.getColumn());
+                int end = index;
+                while (end < tokens.size() && tokens.get(end).getOffset() < nextLineStart) {
+                    end++;
+                }
+                applyTokens(styles, line, lineStart, tokens.subList(index, end));
+                index = end;
             }
         }
     }
 
-    private long getStyle(SemanticToken token) {
-        List<ThemeTrieElementRule> match = getTheme().match(token.getTokenType().toString());
+    private void applyTokens(Styles styles, int line, int lineStart, List<SemanticToken> tokens) {
+        ProgressManager.checkCanceled();
+        List<Span> spans = styles.getSpans().read().getSpansOnLine(line);
+        if (spans.isEmpty()) {
+            return;
+        }
+        if (mAppliedSpans.contains(spans.get(0))) {
+            return;
+        }
+
+        List<Span> result = mergeTokens(spans, lineStart, tokens, this::getStyle);
+        styles.getSpans().modify().setSpansOnLine(line, result);
+        mAppliedSpans.add(result.get(0));
+    }
+
+    /**
+     * Replaces the spans of a line covered by its tokens with spans of the token styles.
+     *
+     * @param spans     The spans of the line, which are not modified
+     * @param lineStart The offset of the start of the line
+     * @param tokens    The tokens on the line, sorted by offset
+     * @return the new spans of the line
+     */
+    @VisibleForTesting
+    static List<Span> mergeTokens(List<Span> spans, int lineStart, List<SemanticToken> tokens,
+                                  ToLongFunction<TokenType> styleOf) {
+        List<Span> result = new ArrayList<>(spans.size() + tokens.size() * 2);
+        int next = 0;
+        int lastEnd = 0;
+        for (SemanticToken token : tokens) {
+            int start = Math.max(token.getOffset() - lineStart, lastEnd);
+            int end = token.getOffset() + token.getLength() - lineStart;
+            if (end <= start) {
+                continue;
+            }
+            lastEnd = end;
+
+            // the spans before the token are kept as is
+            while (next < spans.size() && spans.get(next).column < start) {
+                result.add(spans.get(next));
+                next++;
+            }
+            Span covering = next < spans.size() && spans.get(next).column == start
+                    ? spans.get(next)
+                    : spans.get(Math.max(next - 1, 0));
+            if (!result.isEmpty() && result.get(result.size() - 1).column == start) {
+                result.remove(result.size() - 1);
+            }
+            Span tokenSpan = covering.copy();
+            tokenSpan.column = start;
+            tokenSpan.style = styleOf.applyAsLong(token.getTokenType());
+            result.add(tokenSpan);
+
+            // the spans inside the token are replaced, the one covering its end is restored
+            while (next < spans.size() && spans.get(next).column < end) {
+                next++;
+            }
+            if (next == spans.size() || spans.get(next).column > end) {
+                Span rest = spans.get(next - 1).copy();
+                rest.column = end;
+                result.add(rest);
+            }
+        }
+        while (next < spans.size()) {
+            result.add(spans.get(next));
+            next++;
+        }
+        return result;
+    }
+
+    private long getStyle(TokenType tokenType) {
+        synchronized (mStyleTable) {
+            Long style = mStyleTable.get(tokenType);
+            if (style == null) {
+                style = resolveStyle(tokenType);
+                mStyleTable.put(tokenType, style);
+            }
+            return style;
+        }
+    }
+
+    private long resolveStyle(TokenType tokenType) {
+        List<ThemeTrieElementRule> match = getTheme().match(tokenType.getScope());
+        if (match.isEmpty() && tokenType.getFallbackScopes() != null) {
+            for (String scope : tokenType.getFallbackScopes()) {
+                match = getTheme().match(scope);
+                if (!match.isEmpty()) {
+                    break;
+                }
+            }
+        }
         if (!match.isEmpty()) {
             ThemeTrieElementRule next = match.iterator().next();
             int foreground = next.foreground;
@@ -128,12 +128,14 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
         SourceFileObject object = new SourceFileObject(currentFile.toPath(), contents.toString(), Instant.now());
         CompilerContainer container = compiler.compile(Collections.singletonList(object));
 
-        return container.get(task -> {
-            JavaSemanticHighlighter highlighter = new JavaSemanticHighlighter(task.task);
-            CompilationUnitTree root = task.root(currentFile);
-            highlighter.scan(root, true);
-            return highlighter.getTokens();
-        });
+        return container.get(task -> getSemanticTokens(task, currentFile));
+    }
+
+    private static List<SemanticToken> getSemanticTokens(CompileTask task, File file) {
+        JavaSemanticHighlighter highlighter = new JavaSemanticHighlighter(task.task);
+        CompilationUnitTree root = task.root(file);
+        highlighter.scan(root, true);
+        return highlighter.getTokens();
     }
 
     @Override
@@ -207,6 +209,13 @@ public class JavaAnalyzer extends SemanticAnalyzeManager {
                                             .collect(Collectors.toList());
                             editor.setDiagnostics(collect);
 
+                            // the offsets of the tokens are only valid for the analyzed contents
+                            List<SemanticToken> tokens = getSemanticTokens(task, currentFile);
+                            if (!cancel.invoke() &&
+                                contents.toString().contentEquals(editor.getContent())) {
+                                setSemanticTokens(tokens);
+                            }
+
                             ProgressManager.getInstance()
                                     .runLater(() -> editor.setAnalyzing(false), 300);
                         }
@@ -283,14 +283,16 @@ public abstract class BaseIncrementalAnalyzeManager<S, T> implements Incremental
                                             line++;
                                         }
                                         // line = end.line + 1, check whether the state equals
+                                        // the spans of the line depend on the state it starts
+                                        // with, so they are updated even if its end state is unchanged
                                         while (line < shadowed.getLineCount()) {
                                             Result<S, T> res = tokenizeLine(shadowed.getLine(line), state);
-                                            if (stateEquals(res.state, states.get(line).state)) {
+                                            spans.setSpansOnLine(line, res.spans != null ? res.spans : generateSpansForLine(res));
+                                            Result<S, T> old = states.set(line, res.clearSpans());
+                                            if (stateEquals(old.state, res.state)) {
                                                 break;
-                                            } else {
-                                                spans.setSpansOnLine(line, res.spans != null ? res.spans : generateSpansForLine(res));
-                                                states.set(line, res.clearSpans());
                                             }
+                                            state = res.state;
                                             line ++;
                                         }
                                     }
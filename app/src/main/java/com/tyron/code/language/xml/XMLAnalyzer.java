@@ -25,6 +25,7 @@ import com.tyron.completion.progress.ProgressManager;
 import com.tyron.completion.xml.task.InjectResourcesTask;
 import com.tyron.editor.Editor;
 import com.tyron.viewbinding.task.InjectViewBindingTask;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 
 import org.apache.commons.io.FileUtils;
 
@@ -77,6 +78,13 @@ public class XMLAnalyzer extends DiagnosticTextmateAnalyzer {
             return;
         }
 
+        // parse the new version here so completion, the tag auto close and the
+        // selection expansion find it already in the cache
+        File file = editor.getCurrentFile();
+        if (file != null) {
+            XmlDocumentCache.getInstance().getDocument(file, contents);
+        }
+
         if (!mAnalyzerEnabled) {
             Project project = editor.getProject();
             if (project == null) {
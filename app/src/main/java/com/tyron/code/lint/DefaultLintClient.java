@@ -5,8 +5,10 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.JavaModule;
-import com.tyron.completion.index.CompilerService;
+import com.tyron.builder.project.api.Module;
+import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.completion.java.JavaCompilerProvider;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.lint.api.Context;
@@ -19,17 +21,18 @@ import com.tyron.lint.client.LintClient;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class DefaultLintClient extends LintClient {
 
-    private final List<LintIssue> mIssues = new ArrayList<>();
+    private final List<LintIssue> mIssues = Collections.synchronizedList(new ArrayList<>());
     private final Lint mLint;
     private final JavaCompilerService mCompiler;
 
     public DefaultLintClient(JavaModule project) {
-        mCompiler = CompilerService.getInstance()
-                .getIndex(JavaCompilerProvider.KEY);
+        mCompiler = JavaCompilerProvider.get(ProjectManager.getInstance().getCurrentProject(),
+                project);
         mLint = new Lint(mCompiler, project, this);
     }
 
@@ -38,6 +41,24 @@ public class DefaultLintClient extends LintClient {
         mLint.scanFile(file);
     }
 
+    /**
+     * Scans every java module of the project. The modules are scanned in parallel, each
+     * with a compiler of its own so they do not replace the compiler used by the editor,
+     * and the files of a module are compiled together once.
+     */
+    public void scanProject(@NonNull Project project) {
+        mIssues.clear();
+        List<Lint> modules = new ArrayList<>();
+        for (Module module : project.getModules()) {
+            if (module instanceof JavaModule) {
+                JavaModule javaModule = (JavaModule) module;
+                modules.add(new Lint(JavaCompilerProvider.createCompiler(project, javaModule),
+                        javaModule, this));
+            }
+        }
+        Lint.scanModules(modules);
+    }
+
     @Override
     public void report(@NonNull Context context, @NonNull Issue issue, @NonNull Severity severity, @Nullable Location location, @NonNull String message, @NonNull TextFormat format) {
         if (location != null) {
@@ -47,6 +68,8 @@ public class DefaultLintClient extends LintClient {
     }
 
     public List<LintIssue> getReportedIssues() {
-        return mIssues;
+        synchronized (mIssues) {
+            return new ArrayList<>(mIssues);
+        }
     }
 }
@@ -36,8 +36,10 @@ import com.tyron.builder.log.LogViewModel;
 import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.api.DocumentSnapshot;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.api.TextDelta;
 import com.tyron.builder.project.listener.FileListener;
 import com.tyron.code.ApplicationLoader;
 import com.tyron.code.R;
@@ -68,6 +70,7 @@ import com.tyron.completion.java.util.JavaDataContextUtil;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.editor.CharPosition;
 import com.tyron.kotlin_completion.CompletionEngine;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.kotlin.backend.common.psi.PsiSourceManager;
@@ -382,7 +385,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
             if (event.getAction() == ContentChangeEvent.ACTION_SET_NEW_TEXT) {
                 return;
             }
-            updateFile(event.getEditor().getText());
+            updateFile(event);
         });
 
         LogViewModel logViewModel =
@@ -486,6 +489,9 @@ public class CodeEditorFragment extends Fragment implements Savable,
                     () -> ProjectManager.getInstance().getCurrentProject().getModule(mCurrentFile)
                             .getFileManager().closeFileForSnapshot(mCurrentFile));
         }
+        if (mCurrentFile != null) {
+            XmlDocumentCache.getInstance().invalidate(mCurrentFile);
+        }
         ApplicationLoader.getDefaultPreferences().unregisterOnSharedPreferenceChangeListener(this);
     }
 
@@ -614,11 +620,15 @@ public class CodeEditorFragment extends Fragment implements Savable,
                 mEditor.setBackgroundAnalysisEnabled(true);
                 mEditor.setEditable(true);
                 fileManager.openFileForSnapshot(mCurrentFile, result);
+                // the file manager may have recovered unsaved contents of the file
+                String contents = fileManager.getFileContent(mCurrentFile)
+                        .map(CharSequence::toString)
+                        .orElse(result);
 
                 Bundle bundle = new Bundle();
                 bundle.putBoolean("loaded", true);
                 bundle.putBoolean("bg", true);
-                mEditor.setText(result, bundle);
+                mEditor.setText(contents, bundle);
 
                 if (savedInstanceState != null) {
                     restoreState(savedInstanceState);
@@ -690,6 +700,49 @@ public class CodeEditorFragment extends Fragment implements Savable,
         }
     }
 
+    /**
+     * Applies the edit of the event to the snapshot of the file, so the cost of an edit
+     * does not grow with the size of the file. If the edit would not give the length of the
+     * editor text, the snapshot has gone out of sync and only the whole content is sent, so
+     * listeners are never notified of an edit that is replaced right after.
+     */
+    private void updateFile(ContentChangeEvent event) {
+        Project project = ProjectManager.getInstance().getCurrentProject();
+        if (project == null) {
+            return;
+        }
+        Module module = project.getModule(mCurrentFile);
+        if (module == null) {
+            return;
+        }
+        FileManager fileManager = module.getFileManager();
+        if (!fileManager.isOpened(mCurrentFile)) {
+            return;
+        }
+
+        int start = event.getChangeStart().index;
+        TextDelta delta;
+        if (event.getAction() == ContentChangeEvent.ACTION_INSERT) {
+            delta = TextDelta.insert(start, event.getChangedText().toString());
+        } else {
+            delta = TextDelta.delete(start, event.getChangeEnd().index);
+        }
+
+        Content text = event.getEditor().getText();
+        Optional<DocumentSnapshot> snapshot = fileManager.getSnapshot(mCurrentFile);
+        if (!snapshot.isPresent() || !canApply(snapshot.get(), delta, text.length())) {
+            fileManager.setSnapshotContent(mCurrentFile, text.toString(), this);
+            return;
+        }
+        fileManager.applySnapshotEdit(mCurrentFile, delta, this);
+    }
+
+    private static boolean canApply(DocumentSnapshot snapshot, TextDelta delta, int length) {
+        int snapshotLength = snapshot.getText().length();
+        return delta.getEnd() <= snapshotLength &&
+               snapshotLength + delta.getLengthDelta() == length;
+    }
+
     public CodeEditorView getEditor() {
         return mEditor;
     }
@@ -24,6 +24,7 @@ import com.tyron.code.ui.project.ProjectManager;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.completion.xml.model.XmlCompletionType;
 import com.tyron.xml.completion.util.DOMUtils;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 import com.tyron.completion.xml.util.XmlUtils;
 import com.tyron.editor.Caret;
 import com.tyron.editor.CharPosition;
@@ -245,7 +246,13 @@ public class CodeEditorView extends CodeEditor implements Editor {
             }
             boolean full = c == '>';
 
-            DOMDocument document = DOMParser.getInstance().parse(getText().toString(), "", null);
+            DOMDocument document;
+            if (mCurrentFile != null) {
+                document = XmlDocumentCache.getInstance()
+                        .getDocument(mCurrentFile, getText().toString());
+            } else {
+                document = DOMParser.getInstance().parse(getText().toString(), "", null);
+            }
             DOMNode nodeAt = document.findNodeAt(getCursor().getLeft());
             if (!DOMUtils.isClosed(nodeAt) && nodeAt.getNodeName() != null) {
                 if (XmlUtils.getCompletionType(document, getCursor().getLeft()) ==
@@ -94,6 +94,7 @@ public class TreeFileManagerFragment extends Fragment {
 
         treeView = new TreeView<>(
                 requireContext(), TreeNode.root(Collections.emptyList()));
+        treeView.setChildrenLoader(TreeUtil::loadChildren);
 
         HorizontalScrollView horizontalScrollView = view.findViewById(R.id.horizontalScrollView);
         horizontalScrollView.addView(treeView.getView(), new ViewGroup.LayoutParams(
@@ -148,8 +149,8 @@ public class TreeFileManagerFragment extends Fragment {
 
     private void partialRefresh(Runnable callback) {
         ProgressManager.getInstance().runNonCancelableAsync(() -> {
-            if (!treeView.getAllNodes().isEmpty()) {
-                TreeNode<TreeFile> node = treeView.getAllNodes().get(0);
+            TreeNode<TreeFile> node = treeView.getRoot();
+            if (node != null) {
                 TreeUtil.updateNode(node);
                 ProgressManager.getInstance().runLater(() -> {
                     if (getActivity() == null) {
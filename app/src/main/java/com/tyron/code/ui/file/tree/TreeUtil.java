@@ -1,16 +1,21 @@
 package com.tyron.code.ui.file.tree;
 
 import com.tyron.ui.treeview.TreeNode;
+import com.tyron.ui.treeview.helper.TreeHelper;
 import com.tyron.code.ui.file.tree.model.TreeFile;
+import com.tyron.code.ui.file.tree.model.TreeFolder;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 
+/**
+ * Creates the nodes of the file tree. Directories are listed lazily, a directory node only
+ * gets its children when it is first expanded through {@link #loadChildren(TreeNode)}, so
+ * large generated directories such as {@code build} cost nothing until they are opened.
+ */
 public class TreeUtil {
 
     public static final Comparator<File> FILE_FIRST_ORDER = (file1, file2) -> {
@@ -23,6 +28,27 @@ public class TreeUtil {
         }
     };
 
+    /**
+     * Same order as {@link #FILE_FIRST_ORDER}, using the type of the node instead of checking
+     * the file system on every comparison.
+     */
+    private static final Comparator<TreeNode<TreeFile>> NODE_ORDER = (node1, node2) -> {
+        boolean directory1 = node1.getValue() instanceof TreeFolder;
+        boolean directory2 = node2.getValue() instanceof TreeFolder;
+        if (directory1 != directory2) {
+            return directory1 ? -1 : 1;
+        }
+        return String.CASE_INSENSITIVE_ORDER.compare(node1.getValue().getFile().getName(),
+                node2.getValue().getFile().getName());
+    };
+
+    /**
+     * A file that has been replaced by a directory of the same name, or the other way around,
+     * gets a new node.
+     */
+    private static final TreeHelper.NodeKey<TreeFile> FILE_KEY = node ->
+            Arrays.asList(node.getValue().getClass(), node.getValue().getFile());
+
     public static TreeNode<TreeFile> getRootNode(TreeNode<TreeFile> node) {
         TreeNode<TreeFile> parent = node.getParent();
         TreeNode<TreeFile> root = node;
@@ -33,35 +59,28 @@ public class TreeUtil {
         return root;
     }
 
+    /**
+     * Lists the directory of the node again, keeping the nodes of the files that still exist
+     * along with their expanded state. Only the directories that have been loaded are listed
+     * again, the others are loaded when they are expanded.
+     */
     public static void updateNode(TreeNode<TreeFile> node) {
-        Set<File> expandedNodes = TreeUtil.getExpandedNodes(node);
-        List<TreeNode<TreeFile>> newChildren = getNodes(node.getValue().getFile(), node.getLevel())
-                .get(0).getChildren();
-        setExpandedNodes(newChildren, expandedNodes);
-        node.setChildren(newChildren);
-    }
-
-    private static void setExpandedNodes(List<TreeNode<TreeFile>> nodeList, Set<File> expandedNodes) {
-        for (TreeNode<TreeFile> treeFileTreeNode : nodeList) {
-            if (expandedNodes.contains(treeFileTreeNode.getValue().getFile())) {
-                treeFileTreeNode.setExpanded(true);
-            }
+        if (node == null || node.getValue() == null || !node.isChildrenLoaded()) {
+            return;
+        }
 
-            setExpandedNodes(treeFileTreeNode.getChildren(), expandedNodes);
+        List<TreeNode<TreeFile>> newChildren = listChildren(node.getValue().getFile(),
+                node.getLevel() + 1);
+        for (TreeNode<TreeFile> child : TreeHelper.updateChildren(node, newChildren, FILE_KEY)) {
+            updateNode(child);
         }
     }
 
-    private static Set<File> getExpandedNodes(TreeNode<TreeFile> node) {
-        Set<File> expandedNodes = new HashSet<>();
-        if (node.isExpanded()) {
-            expandedNodes.add(node.getValue().getFile());
-        }
-        for (TreeNode<TreeFile> child : node.getChildren()) {
-            if (child.getValue().getFile().isDirectory()) {
-                expandedNodes.addAll(getExpandedNodes(child));
-            }
-        }
-        return expandedNodes;
+    /**
+     * Used as the {@link TreeNode.ChildrenLoader} of the file tree.
+     */
+    public static List<TreeNode<TreeFile>> loadChildren(TreeNode<TreeFile> node) {
+        return listChildren(node.getValue().getFile(), node.getLevel() + 1);
     }
 
     public static List<TreeNode<TreeFile>> getNodes(File rootFile) {
@@ -69,7 +88,8 @@ public class TreeUtil {
     }
 
     /**
-     * Get all the tree note at the given root
+     * Get the tree node of the given root with its direct children, the children of other
+     * directories are loaded when they are expanded.
      */
     public static List<TreeNode<TreeFile>> getNodes(File rootFile, int initialLevel) {
         List<TreeNode<TreeFile>> nodes = new ArrayList<>();
@@ -81,33 +101,26 @@ public class TreeUtil {
                 TreeFile.fromFile(rootFile), initialLevel
         );
         root.setExpanded(true);
-
-        File[] children = rootFile.listFiles();
-        if (children != null) {
-            Arrays.sort(children, FILE_FIRST_ORDER);
-            for (File file : children) {
-                addNode(root, file, initialLevel + 1);
-            }
-        }
+        root.setChildren(listChildren(rootFile, initialLevel + 1));
         nodes.add(root);
         return nodes;
     }
 
-    private static void addNode(TreeNode<TreeFile> node, File file, int level) {
-        TreeNode<TreeFile> childNode = new TreeNode<>(
-                TreeFile.fromFile(file), level
-        );
+    private static List<TreeNode<TreeFile>> listChildren(File directory, int level) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new ArrayList<>();
+        }
 
-        if (file.isDirectory()) {
-            File[] children = file.listFiles();
-            if (children != null) {
-                Arrays.sort(children, FILE_FIRST_ORDER);
-                for (File child : children) {
-                    addNode(childNode, child, level + 1);
-                }
+        List<TreeNode<TreeFile>> children = new ArrayList<>(files.length);
+        for (File file : files) {
+            TreeNode<TreeFile> child = new TreeNode<>(TreeFile.fromFile(file), level);
+            if (child.getValue() instanceof TreeFolder) {
+                child.setChildrenLoaded(false);
             }
+            children.add(child);
         }
-
-        node.addChild(childNode);
+        children.sort(NODE_ORDER);
+        return children;
     }
 }
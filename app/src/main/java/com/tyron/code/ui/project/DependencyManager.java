@@ -17,12 +17,12 @@ import com.tyron.code.util.DependencyUtils;
 import com.tyron.common.util.Decompress;
 import com.tyron.resolver.DependencyResolver;
 import com.tyron.resolver.RepositoryModel;
+import com.tyron.resolver.download.DownloadStatistics;
 import com.tyron.resolver.model.Dependency;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.repository.LocalRepository;
 import com.tyron.resolver.repository.RemoteRepository;
 import com.tyron.resolver.repository.Repository;
-import com.tyron.resolver.repository.RepositoryManager;
 import com.tyron.resolver.repository.RepositoryManagerImpl;
 
 import org.apache.commons.io.FileUtils;
@@ -38,6 +38,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
 
@@ -45,7 +47,7 @@ public class DependencyManager {
 
     private static final String REPOSITORIES_JSON = "repositories.json";
 
-    private final RepositoryManager mRepository;
+    private final RepositoryManagerImpl mRepository;
     private final DependencyResolver mResolver;
 
     public DependencyManager(JavaModule module, File cacheDir) throws IOException {
@@ -245,19 +247,30 @@ public class DependencyManager {
     public List<Library> getFiles(List<Pom> resolvedPoms,
                                   ILogger logger) {
         List<Library> files = new ArrayList<>();
-        for (Pom resolvedPom : resolvedPoms) {
+        DownloadStatistics statistics = mRepository.getDownloader().getStatistics();
+        DownloadStatistics.Snapshot start = statistics.snapshot();
+        Map<Pom, Future<File>> futures = mRepository.getLibraries(resolvedPoms);
+        for (Map.Entry<Pom, Future<File>> entry : futures.entrySet()) {
+            Pom resolvedPom = entry.getKey();
             try {
-                File file = mRepository.getLibrary(resolvedPom);
+                File file = entry.getValue().get();
                 if (file != null) {
                     Library library = new Library();
                     library.setSourceFile(file);
                     library.setDeclaration(resolvedPom.getDeclarationString());
                     files.add(library);
                 }
-            } catch (IOException e) {
-                logger.error("Unable to download " + resolvedPom + ": " + e.getMessage());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.error("Unable to download " + resolvedPom + ": " + cause.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while downloading " + resolvedPom);
+                break;
             }
         }
+        mRepository.saveState();
+        logger.debug("Downloaded dependencies: " + statistics.snapshot().minus(start));
         return files;
     }
 }
@@ -0,0 +1,157 @@
+package com.tyron.code.analyzer;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.code.analyzer.semantic.SemanticToken;
+import com.tyron.code.analyzer.semantic.TokenType;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+import io.github.rosemoe.sora.lang.styling.Span;
+
+public class SemanticAnalyzeManagerTest {
+
+    private static final TokenType FIELD = TokenType.create("variable.other.field");
+    private static final TokenType METHOD = TokenType.create("entity.name.function");
+
+    private static final long TEXT = 1;
+    private static final long KEYWORD = 2;
+    private static final long FIELD_STYLE = 10;
+    private static final long METHOD_STYLE = 11;
+
+    private static final ToLongFunction<TokenType> STYLES =
+            type -> type == FIELD ? FIELD_STYLE : METHOD_STYLE;
+
+    private static SemanticToken token(int offset, int length, TokenType type) {
+        return new SemanticToken(offset, length, type, 0);
+    }
+
+    private static List<Integer> offsets(List<SemanticToken> tokens) {
+        List<Integer> offsets = new ArrayList<>();
+        for (SemanticToken token : tokens) {
+            offsets.add(token.getOffset());
+        }
+        return offsets;
+    }
+
+    private static List<String> describe(List<Span> spans) {
+        List<String> result = new ArrayList<>();
+        for (Span span : spans) {
+            result.add(span.column + ":" + span.style);
+        }
+        return result;
+    }
+
+    @Test
+    public void testInsertBeforeTokenShiftsIt() {
+        List<SemanticToken> tokens = Arrays.asList(token(10, 3, FIELD), token(20, 4, METHOD));
+
+        List<SemanticToken> shifted = SemanticAnalyzeManager.shiftTokens(tokens, 5, 5, 2);
+
+        assertThat(offsets(shifted)).containsExactly(12, 22).inOrder();
+        assertThat(shifted.get(0).getLength()).isEqualTo(3);
+        assertThat(shifted.get(0).getTokenType()).isSameInstanceAs(FIELD);
+    }
+
+    @Test
+    public void testInsertAfterTokenKeepsIt() {
+        List<SemanticToken> tokens = Arrays.asList(token(10, 3, FIELD), token(20, 4, METHOD));
+
+        List<SemanticToken> shifted = SemanticAnalyzeManager.shiftTokens(tokens, 13, 13, 5);
+
+        assertThat(shifted.get(0)).isSameInstanceAs(tokens.get(0));
+        assertThat(offsets(shifted)).containsExactly(10, 25).inOrder();
+    }
+
+    @Test
+    public void testInsertInsideTokenDropsIt() {
+        List<SemanticToken> tokens = Arrays.asList(token(10, 3, FIELD), token(20, 4, METHOD));
+
+        List<SemanticToken> shifted = SemanticAnalyzeManager.shiftTokens(tokens, 11, 11, 1);
+
+        assertThat(offsets(shifted)).containsExactly(21);
+    }
+
+    @Test
+    public void testDeleteAcrossTokenDropsIt() {
+        List<SemanticToken> tokens = Arrays.asList(token(2, 2, FIELD), token(10, 3, FIELD),
+                token(20, 4, METHOD));
+
+        // the deleted range covers the second token and moves the third one back
+        List<SemanticToken> shifted = SemanticAnalyzeManager.shiftTokens(tokens, 8, 15, -7);
+
+        assertThat(offsets(shifted)).containsExactly(2, 13).inOrder();
+    }
+
+    @Test
+    public void testShiftWithoutTokens() {
+        assertThat(SemanticAnalyzeManager.shiftTokens(null, 0, 0, 1)).isNull();
+    }
+
+    @Test
+    public void testTokenInsideSpanRestoresTheRest() {
+        List<Span> spans = Collections.singletonList(Span.obtain(0, TEXT));
+
+        // "this.field = 1;" on a line starting at offset 100
+        List<Span> result = SemanticAnalyzeManager.mergeTokens(spans, 100,
+                Collections.singletonList(token(105, 5, FIELD)), STYLES);
+
+        assertThat(describe(result)).containsExactly("0:" + TEXT, "5:" + FIELD_STYLE,
+                "10:" + TEXT).inOrder();
+    }
+
+    @Test
+    public void testTokenAtStartOfLineReplacesFirstSpan() {
+        List<Span> spans = Arrays.asList(Span.obtain(0, TEXT), Span.obtain(5, KEYWORD));
+
+        List<Span> result = SemanticAnalyzeManager.mergeTokens(spans, 0,
+                Collections.singletonList(token(0, 5, METHOD)), STYLES);
+
+        assertThat(describe(result)).containsExactly("0:" + METHOD_STYLE, "5:" + KEYWORD)
+                .inOrder();
+    }
+
+    @Test
+    public void testAdjacentTokens() {
+        List<Span> spans = Collections.singletonList(Span.obtain(0, TEXT));
+
+        List<Span> result = SemanticAnalyzeManager.mergeTokens(spans, 0,
+                Arrays.asList(token(2, 3, FIELD), token(5, 4, METHOD)), STYLES);
+
+        assertThat(describe(result)).containsExactly("0:" + TEXT, "2:" + FIELD_STYLE,
+                "5:" + METHOD_STYLE, "9:" + TEXT).inOrder();
+    }
+
+    @Test
+    public void testTokenCoveringSpansRestoresLastOne() {
+        List<Span> spans = Arrays.asList(Span.obtain(0, TEXT), Span.obtain(3, KEYWORD),
+                Span.obtain(6, TEXT));
+
+        List<Span> result = SemanticAnalyzeManager.mergeTokens(spans, 0,
+                Collections.singletonList(token(2, 6, FIELD)), STYLES);
+
+        assertThat(describe(result)).containsExactly("0:" + TEXT, "2:" + FIELD_STYLE,
+                "8:" + TEXT).inOrder();
+    }
+
+    @Test
+    public void testSpansOfLineAreNotModified() {
+        Span first = Span.obtain(0, TEXT);
+        Span second = Span.obtain(4, KEYWORD);
+        List<Span> spans = Arrays.asList(first, second);
+
+        List<Span> result = SemanticAnalyzeManager.mergeTokens(spans, 0,
+                Collections.singletonList(token(4, 2, FIELD)), STYLES);
+
+        assertThat(describe(spans)).containsExactly("0:" + TEXT, "4:" + KEYWORD).inOrder();
+        assertThat(result).doesNotContain(second);
+        assertThat(describe(result)).containsExactly("0:" + TEXT, "4:" + FIELD_STYLE,
+                "6:" + KEYWORD).inOrder();
+    }
+}
@@ -0,0 +1,222 @@
+package com.tyron.code.language.textmate;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.os.Bundle;
+
+import com.tyron.code.analyzer.BaseTextmateAnalyzer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import io.github.rosemoe.sora.lang.analysis.AnalyzeManager;
+import io.github.rosemoe.sora.lang.analysis.StyleReceiver;
+import io.github.rosemoe.sora.lang.styling.CodeBlock;
+import io.github.rosemoe.sora.lang.styling.Span;
+import io.github.rosemoe.sora.lang.styling.Styles;
+import io.github.rosemoe.sora.text.CharPosition;
+import io.github.rosemoe.sora.text.Content;
+import io.github.rosemoe.sora.text.ContentReference;
+import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
+
+/**
+ * Tests the incremental re-tokenizing of {@link BaseIncrementalAnalyzeManager}, which
+ * {@link BaseTextmateAnalyzer} and the language analyzers built on it rely on.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BaseIncrementalAnalyzeManagerTest {
+
+    private static final String LINE = "int a = 1;";
+    private static final int LINE_COUNT = 100;
+
+    private final BlockingQueue<Styles> mUpdates = new LinkedBlockingQueue<>();
+    private final StyleReceiver mReceiver = new StyleReceiver() {
+        @Override
+        public void setStyles(AnalyzeManager sourceManager, Styles styles) {
+            // the manager also sends its current styles when an edit is posted,
+            // only the updates of the analysis thread have the result of the edit
+            if (styles != null && Thread.currentThread().getName().startsWith("AsyncAnalyzer")) {
+                mUpdates.add(styles);
+            }
+        }
+    };
+
+    private CommentStateAnalyzeManager mManager;
+    private Content mContent;
+
+    @Before
+    public void setup() throws InterruptedException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < LINE_COUNT; i++) {
+            if (i > 0) {
+                text.append('\n');
+            }
+            text.append(i == 10 ? "x */" : LINE);
+        }
+        mContent = new Content(text);
+
+        mManager = new CommentStateAnalyzeManager();
+        mManager.setReceiver(mReceiver);
+        mManager.reset(new ContentReference(mContent), new Bundle());
+        awaitUpdate();
+        assertThat(mManager.getTokenizedLines()).hasSize(LINE_COUNT);
+        mManager.clearTokenizedLines();
+    }
+
+    @After
+    public void tearDown() {
+        mManager.destroy();
+    }
+
+    private Styles awaitUpdate() throws InterruptedException {
+        Styles styles = mUpdates.poll(5, TimeUnit.SECONDS);
+        assertThat(styles).isNotNull();
+        return styles;
+    }
+
+    private Styles insert(int line, int column, String text) throws InterruptedException {
+        CharPosition start = mContent.getIndexer().getCharPosition(line, column);
+        mContent.insert(line, column, text);
+        CharPosition end = mContent.getIndexer().getCharPosition(start.index + text.length());
+        mManager.insert(start, end, text);
+        return awaitUpdate();
+    }
+
+    private Styles delete(int line, int column, int endLine, int endColumn) throws InterruptedException {
+        CharPosition start = mContent.getIndexer().getCharPosition(line, column);
+        CharPosition end = mContent.getIndexer().getCharPosition(endLine, endColumn);
+        CharSequence deleted = mContent.subContent(line, column, endLine, endColumn);
+        mContent.delete(line, column, endLine, endColumn);
+        mManager.delete(start, end, deleted);
+        return awaitUpdate();
+    }
+
+    private static long styleOf(Styles styles, int line) {
+        return styles.getSpans().read().getSpansOnLine(line).get(0).style;
+    }
+
+    @Test
+    public void testEditInsideLineOnlyTokenizesThatLine() throws InterruptedException {
+        insert(50, 0, "b");
+
+        // the next line is tokenized once to find that its state has not changed
+        assertThat(mManager.getTokenizedLines()).containsExactly("b" + LINE, LINE).inOrder();
+    }
+
+    @Test
+    public void testOpenedCommentIsTokenizedUntilStateConverges() throws InterruptedException {
+        Styles styles = insert(2, 0, "/*");
+
+        assertThat(mManager.getTokenizedLines()).hasSize(9);
+        for (int line = 2; line <= 10; line++) {
+            assertThat(styleOf(styles, line)).isEqualTo((long) EditorColorScheme.COMMENT);
+        }
+        assertThat(styleOf(styles, 1)).isEqualTo((long) EditorColorScheme.TEXT_NORMAL);
+        assertThat(styleOf(styles, 11)).isEqualTo((long) EditorColorScheme.TEXT_NORMAL);
+    }
+
+    @Test
+    public void testDeletedCommentIsTokenizedUntilStateConverges() throws InterruptedException {
+        insert(2, 0, "/*");
+        mManager.clearTokenizedLines();
+
+        Styles styles = delete(2, 0, 2, 2);
+
+        assertThat(mManager.getTokenizedLines()).hasSize(9);
+        for (int line = 2; line <= 10; line++) {
+            assertThat(styleOf(styles, line)).isEqualTo((long) EditorColorScheme.TEXT_NORMAL);
+        }
+    }
+
+    @Test
+    public void testInsertedLinesShiftTheFollowingLines() throws InterruptedException {
+        Styles styles = insert(0, 0, "/* first\nsecond */\n");
+
+        assertThat(styles.getSpans().getLineCount()).isEqualTo(LINE_COUNT + 2);
+        assertThat(mManager.getTokenizedLines())
+                .containsExactly("/* first", "second */", LINE, LINE).inOrder();
+        assertThat(styleOf(styles, 0)).isEqualTo((long) EditorColorScheme.COMMENT);
+        assertThat(styleOf(styles, 1)).isEqualTo((long) EditorColorScheme.COMMENT);
+        assertThat(styleOf(styles, 2)).isEqualTo((long) EditorColorScheme.TEXT_NORMAL);
+    }
+
+    @Test
+    public void testDeletedLinesAreRemoved() throws InterruptedException {
+        Styles styles = delete(20, 0, 23, 0);
+
+        assertThat(styles.getSpans().getLineCount()).isEqualTo(LINE_COUNT - 3);
+        assertThat(mManager.getTokenizedLines()).containsExactly(LINE);
+    }
+
+    /**
+     * Colors whole lines as comments while inside a block comment, the state of a line is
+     * whether it ends inside one.
+     */
+    private static class CommentStateAnalyzeManager
+            extends BaseIncrementalAnalyzeManager<Boolean, Span> {
+
+        private final List<String> mTokenizedLines = Collections.synchronizedList(new ArrayList<>());
+
+        List<String> getTokenizedLines() {
+            synchronized (mTokenizedLines) {
+                return new ArrayList<>(mTokenizedLines);
+            }
+        }
+
+        void clearTokenizedLines() {
+            mTokenizedLines.clear();
+        }
+
+        @Override
+        public Boolean getInitialState() {
+            return false;
+        }
+
+        @Override
+        public boolean stateEquals(Boolean state, Boolean another) {
+            return state.equals(another);
+        }
+
+        @Override
+        public Result<Boolean, Span> tokenizeLine(CharSequence line, Boolean state) {
+            String text = line.toString();
+            mTokenizedLines.add(text);
+
+            boolean inComment = state;
+            boolean commented = state;
+            for (int i = 0; i + 1 < text.length(); i++) {
+                if (text.startsWith("/*", i)) {
+                    inComment = true;
+                    commented = true;
+                } else if (text.startsWith("*/", i)) {
+                    inComment = false;
+                }
+            }
+            List<Span> spans = new ArrayList<>();
+            spans.add(Span.obtain(0, commented
+                    ? EditorColorScheme.COMMENT
+                    : EditorColorScheme.TEXT_NORMAL));
+            return new Result<>(inComment, null, spans);
+        }
+
+        @Override
+        public List<Span> generateSpansForLine(LineTokenizeResult<Boolean, Span> tokens) {
+            return null;
+        }
+
+        @Override
+        public List<CodeBlock> computeBlocks(Content text, CodeBlockAnalyzeDelegate delegate) {
+            return new ArrayList<>();
+        }
+    }
+}
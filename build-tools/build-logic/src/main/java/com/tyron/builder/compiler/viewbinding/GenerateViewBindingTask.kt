@@ -19,9 +19,12 @@ import com.tyron.viewbinding.tool.writer.BaseLayoutModel
 import com.tyron.viewbinding.tool.writer.toJavaFile
 import com.tyron.viewbinding.tool.writer.toViewBinder
 import org.apache.commons.io.FileUtils
+import java.io.DataInputStream
+import java.io.DataOutputStream
 import java.io.File
 import java.io.IOException
 import java.nio.charset.StandardCharsets
+import java.security.MessageDigest
 
 /**
  * @param addToClasspath true if the generated binding classes
@@ -49,7 +52,7 @@ class GenerateViewBindingTask(
     }
 
     private fun doPrepare() {
-        outputDirectory.deleteRecursively() // todo: incremental?
+        // binding classes of unchanged layouts are kept, see doRun()
         outputDirectory.mkdirs()
     }
 
@@ -70,54 +73,171 @@ class GenerateViewBindingTask(
         }
     }
 
+    /**
+     * Only the layouts whose contents changed since the last run are parsed and generated,
+     * along with the layouts that include a layout whose binding class was added or removed.
+     * The binding classes of the other layouts are kept from the last run.
+     */
     private fun doRun() {
-        // generate binding classes from layouts
-        val resourceBundle = generateClassesToBundle()
+        val stateFile = File(outputDirectory, STATE_FILE_NAME)
+        val previousStates = readStates(stateFile)
+        if (previousStates.isEmpty()) {
+            // nothing is known about the existing classes, start from a clean directory
+            outputDirectory.deleteRecursively()
+            outputDirectory.mkdirs()
+        }
+
+        val layouts = collectLayoutFiles()
+        val contents = HashMap<File, String?>()
+        layouts.values.flatten().forEach { contents[it] = getUpToDateFileContent(module, it) }
+        val hashes = layouts.mapValues { (_, files) -> hashLayout(files, contents) }
+
+        val parsed = HashMap<String, List<ResourceBundle.LayoutFileBundle>>()
+        layouts.forEach { (name, files) ->
+            val previous = previousStates[name]
+            val upToDate = previous != null &&
+                    previous.hash == hashes[name] &&
+                    previous.outputs.all { File(outputDirectory, it).exists() }
+            if (!upToDate) {
+                parsed[name] = parseLayouts(files, contents)
+            }
+        }
+
+        fun bindingClassOf(name: String): String? = when (name) {
+            in parsed -> parsed[name]?.firstOrNull()?.fullBindingClass
+            in layouts -> previousStates[name]?.bindingClass
+            else -> null
+        }
+
+        // an unchanged layout must be generated again if one of its includes now resolves to a
+        // different binding class. The binding class of a layout only depends on its own
+        // contents, so one pass is enough.
+        layouts.keys.filter { it !in parsed }.forEach { name ->
+            val previous = previousStates.getValue(name)
+            val stale = previous.includes.any { (included, bindingClass) ->
+                bindingClassOf(included).orEmpty() != bindingClass
+            }
+            if (stale) {
+                parsed[name] = parseLayouts(layouts.getValue(name), contents)
+            }
+        }
+
+        // generate binding classes from the parsed layouts
+        val resourceBundle = generateClassesToBundle(parsed, layouts.keys, previousStates)
 
         // write classes to output dir
-        writeClassesToDisk(resourceBundle)
+        val outputs = writeClassesToDisk(resourceBundle)
 
         // data binding will eat some errors to be able to report them later on. This is a good
         // time to report them after the processing is done.
         Scope.assertNoError()
 
+        val states = HashMap<String, LayoutState>()
+        layouts.keys.forEach { name ->
+            val bundles = parsed[name]
+            states[name] = if (bundles == null) {
+                previousStates.getValue(name)
+            } else {
+                // includes that did not resolve to a binding class are recorded too, so the
+                // layout is generated again once the included layout is added back
+                val includes = bundles.flatMap { it.bindingTargetBundles }
+                    .mapNotNull { it.includedLayout }
+                    .distinct()
+                    .associateWith { bindingClassOf(it).orEmpty() }
+                LayoutState(
+                    hashes.getValue(name),
+                    bundles.firstOrNull()?.fullBindingClass,
+                    bundles.firstOrNull()?.modulePackage,
+                    includes,
+                    outputs[name].orEmpty()
+                )
+            }
+        }
+        deleteStaleOutputs(previousStates, states)
+        writeStates(stateFile, states)
+
         // add classes to module classpath
-        addToClasspath()
+        addToClasspath(states)
     }
 
-    private fun generateClassesToBundle(): ResourceBundle {
-        // it doesn't matter what we pass to the 2nd argument, we won't be using data binding anyways
-        val resourceBundle = ResourceBundle(module.packageName, true)
+    /**
+     * @return the layout files of the module, grouped by the name of the layout
+     */
+    private fun collectLayoutFiles(): Map<String, List<File>> {
         val resDir = module.androidResourcesDirectory
 
-        resDir.walkTopDown().filter {
+        return resDir.walkTopDown().filter {
             val isXmlFile = it.isFile && it.name.endsWith(".xml")
             val isLayoutFile = it.parentFile.name == "layout" || it.parentFile.name.startsWith("layout-")
             val applicable = isXmlFile && isLayoutFile
 
             applicable
-        }.forEach { file ->
-            val bundle = LayoutFileParser.parseXml(
+        }.groupBy { it.nameWithoutExtension }
+    }
+
+    private fun hashLayout(files: List<File>, contents: Map<File, String?>): String {
+        val digest = MessageDigest.getInstance("SHA-256")
+        digest.update(STATE_VERSION.toString().toByteArray(StandardCharsets.UTF_8))
+        digest.update(module.packageName.toByteArray(StandardCharsets.UTF_8))
+        files.sortedBy { getVariantPath(it) }.forEach { file ->
+            digest.update(0.toByte())
+            digest.update(getVariantPath(file).toByteArray(StandardCharsets.UTF_8))
+            digest.update(0.toByte())
+            digest.update(contents[file].orEmpty().toByteArray(StandardCharsets.UTF_8))
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+
+    private fun parseLayouts(
+        files: List<File>,
+        contents: Map<File, String?>
+    ): List<ResourceBundle.LayoutFileBundle> {
+        return files.mapNotNull { file ->
+            LayoutFileParser.parseXml(
                 RelativizableFile.fromAbsoluteFile(file),
                 module.packageName,
-                getUpToDateFileContent(module, file),
+                contents[file],
                 true
             )
-            if (bundle != null) {
-                resourceBundle.addLayoutBundle(bundle, true)
+        }
+    }
+
+    private fun generateClassesToBundle(
+        parsed: Map<String, List<ResourceBundle.LayoutFileBundle>>,
+        layouts: Set<String>,
+        previousStates: Map<String, LayoutState>
+    ): ResourceBundle {
+        // it doesn't matter what we pass to the 2nd argument, we won't be using data binding anyways
+        val resourceBundle = ResourceBundle(module.packageName, true)
+        parsed.values.flatten().forEach { bundle ->
+            resourceBundle.addLayoutBundle(bundle, true)
+        }
+
+        // layouts that are not parsed can still be included by the parsed ones, as long as
+        // they still exist. An include of a deleted layout falls back to a plain view.
+        previousStates.forEach { (name, state) ->
+            if (name !in parsed && name in layouts && state.bindingClass != null) {
+                resourceBundle.addDependencyLayout(name, state.modulePackage, state.bindingClass)
             }
         }
         resourceBundle.validateAndRegisterErrors()
         return resourceBundle
     }
 
-    private fun writeClassesToDisk(resourceBundle: ResourceBundle) {
+    /**
+     * Writes the binding classes whose contents changed, so that the unchanged ones keep their
+     * modification time and are not compiled again.
+     *
+     * @return the paths of the written classes relative to the output directory, by layout name
+     */
+    private fun writeClassesToDisk(resourceBundle: ResourceBundle): Map<String, List<String>> {
         val writer = GradleFileWriter(outputDirectory.absolutePath)
+        val outputs = HashMap<String, MutableList<String>>()
 
         val layoutBindings = resourceBundle.allLayoutFileBundlesInSource
             .groupBy(ResourceBundle.LayoutFileBundle::getFileName)
 
-        layoutBindings.forEach { (_, variations) ->
+        layoutBindings.forEach { (name, variations) ->
             val layoutModel = BaseLayoutModel(variations)
             val viewBinder = layoutModel.toViewBinder()
             val javaFile = viewBinder.toJavaFile(
@@ -126,15 +246,115 @@ class GenerateViewBindingTask(
                 // the user must use the newer view binding library (androidx)
                 useLegacyAnnotations = false
             )
-            writer.writeToFile(javaFile)
+
+            val path = javaFile.packageName.replace('.', '/') + "/" + javaFile.typeSpec.name + ".java"
+            val outputFile = File(outputDirectory, path)
+            val contents = javaFile.toString()
+            if (!outputFile.exists() || FileUtils.readFileToString(outputFile, StandardCharsets.UTF_8) != contents) {
+                writer.writeToFile(javaFile)
+            }
+            outputs.getOrPut(name) { ArrayList() }.add(path)
         }
+        return outputs
     }
 
-    private fun addToClasspath() {
+    private fun deleteStaleOutputs(
+        previousStates: Map<String, LayoutState>,
+        states: Map<String, LayoutState>
+    ) {
+        val outputs = states.values.flatMapTo(HashSet()) { it.outputs }
+        previousStates.values.flatMap { it.outputs }
+            .filter { it !in outputs }
+            .forEach { FileUtils.deleteQuietly(File(outputDirectory, it)) }
+    }
+
+    private fun addToClasspath(states: Map<String, LayoutState>) {
         if (addToClasspath) {
-            outputDirectory.walkTopDown().filter {
-                it.isFile && it.name.endsWith(".java")
-            }.forEach(module::addResourceClass)
+            val resourceClasses = module.resourceClasses
+            states.values.flatMap { it.outputs }.forEach { path ->
+                val className = path.removeSuffix(".java").replace('/', '.')
+                val file = File(outputDirectory, path)
+                if (resourceClasses[className] != file) {
+                    module.addResourceClass(file)
+                }
+            }
+        }
+    }
+
+    /**
+     * What was generated for a layout in the last run.
+     *
+     * @param hash the hash of the contents of every variant of the layout
+     * @param includes the layouts included by this layout, mapped to the binding class they
+     * resolved to, or an empty string if they had none
+     * @param outputs the paths of the generated classes relative to the output directory
+     */
+    private class LayoutState(
+        val hash: String,
+        val bindingClass: String?,
+        val modulePackage: String?,
+        val includes: Map<String, String>,
+        val outputs: List<String>
+    )
+
+    private fun readStates(stateFile: File): Map<String, LayoutState> {
+        if (!stateFile.exists()) {
+            return emptyMap()
+        }
+        try {
+            DataInputStream(stateFile.inputStream().buffered()).use { input ->
+                if (input.readInt() != STATE_VERSION) {
+                    return emptyMap()
+                }
+                val states = HashMap<String, LayoutState>()
+                repeat(input.readInt()) {
+                    val name = input.readUTF()
+                    val hash = input.readUTF()
+                    val bindingClass = if (input.readBoolean()) input.readUTF() else null
+                    val modulePackage = if (input.readBoolean()) input.readUTF() else null
+                    val includes = HashMap<String, String>()
+                    repeat(input.readInt()) {
+                        includes[input.readUTF()] = input.readUTF()
+                    }
+                    val outputs = ArrayList<String>()
+                    repeat(input.readInt()) {
+                        outputs.add(input.readUTF())
+                    }
+                    states[name] = LayoutState(hash, bindingClass, modulePackage, includes, outputs)
+                }
+                return states
+            }
+        } catch (e: IOException) {
+            Log.d(TAG, "Unable to read $stateFile, generating all binding classes", e)
+            return emptyMap()
+        }
+    }
+
+    private fun writeStates(stateFile: File, states: Map<String, LayoutState>) {
+        try {
+            DataOutputStream(stateFile.outputStream().buffered()).use { output ->
+                output.writeInt(STATE_VERSION)
+                output.writeInt(states.size)
+                states.forEach { (name, state) ->
+                    output.writeUTF(name)
+                    output.writeUTF(state.hash)
+                    output.writeBoolean(state.bindingClass != null)
+                    state.bindingClass?.let(output::writeUTF)
+                    output.writeBoolean(state.modulePackage != null)
+                    state.modulePackage?.let(output::writeUTF)
+                    output.writeInt(state.includes.size)
+                    state.includes.forEach { (included, bindingClass) ->
+                        output.writeUTF(included)
+                        output.writeUTF(bindingClass)
+                    }
+                    output.writeInt(state.outputs.size)
+                    state.outputs.forEach(output::writeUTF)
+                }
+            }
+        } catch (e: IOException) {
+            // the next run will generate every binding class again
+            Log.d(TAG, "Unable to write $stateFile", e)
+            FileUtils.deleteQuietly(stateFile)
         }
     }
 
@@ -142,6 +362,20 @@ class GenerateViewBindingTask(
         const val TAG = "GenerateViewBindingTask"
         const val VIEW_BINDING_GEN_DIR = "view_binding"
 
+        private const val STATE_FILE_NAME = ".view_binding_state"
+
+        /**
+         * Increment when the generated classes change, so that every binding class is
+         * generated again.
+         */
+        private const val STATE_VERSION = 1
+
+        /**
+         * @return the path of the layout file relative to the resources directory, which
+         * identifies the variant of the layout
+         */
+        private fun getVariantPath(file: File) = file.parentFile.name + "/" + file.name
+
         private fun getUpToDateFileContent(module: AndroidModule, file: File): String? {
             try {
                 val fileManager = module.fileManager
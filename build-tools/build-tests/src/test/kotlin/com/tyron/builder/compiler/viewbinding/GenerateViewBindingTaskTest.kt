@@ -56,4 +56,116 @@ class GenerateViewBindingTaskTest : AndroidAppBuilderTestBase() {
         FileUtils.deleteQuietly(mProject.buildDirectory)
     }
 
+    @Test
+    fun testIncrementalGeneration() {
+        mProject.settings.edit()
+            .putBoolean(ModuleSettings.VIEW_BINDING_ENABLED, true)
+            .commit()
+        mProject.open()
+
+        val bindingDir = File(mProject.buildDirectory, VIEW_BINDING_GEN_DIR)
+        val bindingClass =
+            File(bindingDir, "com/tyron/test/databinding/ActivityMainBinding.java")
+
+        generateViewBinding(bindingDir)
+        assertThat(bindingClass.exists()).isTrue()
+
+        // unchanged layouts are not written again
+        assertThat(bindingClass.setLastModified(1000)).isTrue()
+        generateViewBinding(bindingDir)
+        assertThat(bindingClass.lastModified()).isEqualTo(1000)
+
+        // edited layouts are
+        val layout = File(mProject.androidResourcesDirectory, "layout/activity_main.xml")
+        val layoutContents = FileUtils.readFileToString(layout, StandardCharsets.UTF_8)
+        mFileManager.openFileForSnapshot(
+            layout,
+            layoutContents.replace("@+id/text_view", "@+id/title_view")
+        )
+        generateViewBinding(bindingDir)
+        assertThat(
+            FileUtils.readFileToString(bindingClass, StandardCharsets.UTF_8)
+        ).contains("public final TextView titleView;")
+        mFileManager.closeFileForSnapshot(layout)
+
+        FileUtils.deleteQuietly(mProject.buildDirectory)
+    }
+
+    @Test
+    fun testIncludedLayoutIsDeleted() {
+        mProject.settings.edit()
+            .putBoolean(ModuleSettings.VIEW_BINDING_ENABLED, true)
+            .commit()
+        mProject.open()
+
+        val bindingDir = File(mProject.buildDirectory, VIEW_BINDING_GEN_DIR)
+        val mainBinding =
+            File(bindingDir, "com/tyron/test/databinding/ActivityMainBinding.java")
+        val includedBinding =
+            File(bindingDir, "com/tyron/test/databinding/ViewIncludedBinding.java")
+
+        val layoutDir = File(mProject.androidResourcesDirectory, "layout")
+        val mainLayout = File(layoutDir, "activity_main.xml")
+        val includedLayout = File(layoutDir, "view_included.xml")
+        try {
+            FileUtils.writeStringToFile(includedLayout, INCLUDED_LAYOUT, StandardCharsets.UTF_8)
+            val mainContents = FileUtils.readFileToString(mainLayout, StandardCharsets.UTF_8)
+            mFileManager.openFileForSnapshot(
+                mainLayout,
+                mainContents.replace("</LinearLayout>", "$INCLUDE\n</LinearLayout>")
+            )
+
+            generateViewBinding(bindingDir)
+            assertThat(includedBinding.exists()).isTrue()
+            assertThat(
+                FileUtils.readFileToString(mainBinding, StandardCharsets.UTF_8)
+            ).contains("public final ViewIncludedBinding included;")
+
+            // the include of a deleted layout is a plain view and its binding class is removed
+            assertThat(includedLayout.delete()).isTrue()
+            generateViewBinding(bindingDir)
+            assertThat(includedBinding.exists()).isFalse()
+            val contents = FileUtils.readFileToString(mainBinding, StandardCharsets.UTF_8)
+            assertThat(contents).contains("public final View included;")
+            assertThat(contents).doesNotContain("ViewIncludedBinding")
+
+            // and is bound again once the layout is added back
+            FileUtils.writeStringToFile(includedLayout, INCLUDED_LAYOUT, StandardCharsets.UTF_8)
+            generateViewBinding(bindingDir)
+            assertThat(includedBinding.exists()).isTrue()
+            assertThat(
+                FileUtils.readFileToString(mainBinding, StandardCharsets.UTF_8)
+            ).contains("public final ViewIncludedBinding included;")
+        } finally {
+            mFileManager.closeFileForSnapshot(mainLayout)
+            FileUtils.deleteQuietly(includedLayout)
+            FileUtils.deleteQuietly(mProject.buildDirectory)
+        }
+    }
+
+    private fun generateViewBinding(outputDir: File) {
+        val task = GenerateViewBindingTask(null, mProject, ILogger.STD_OUT, false)
+        task.prepareWithOutputDir(outputDir)
+        task.run()
+    }
+
+    companion object {
+        private const val INCLUDED_LAYOUT = """<?xml version="1.0" encoding="utf-8"?>
+<FrameLayout xmlns:android="http://schemas.android.com/apk/res/android"
+    android:layout_width="match_parent"
+    android:layout_height="wrap_content">
+
+    <TextView
+        android:id="@+id/label"
+        android:layout_width="wrap_content"
+        android:layout_height="wrap_content" />
+
+</FrameLayout>
+"""
+
+        private const val INCLUDE = """    <include
+        android:id="@+id/included"
+        layout="@layout/view_included" />
+"""
+    }
 }
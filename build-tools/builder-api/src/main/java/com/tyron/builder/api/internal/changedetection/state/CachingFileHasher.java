@@ -0,0 +1,221 @@
+package com.tyron.builder.api.internal.changedetection.state;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.hash.HashCode;
+import com.tyron.builder.api.internal.concurrent.Stoppable;
+import com.tyron.builder.api.internal.file.FileMetadata;
+import com.tyron.builder.api.internal.file.Stat;
+import com.tyron.builder.api.internal.hash.FileHasher;
+import com.tyron.builder.api.internal.serialize.AbstractSerializer;
+import com.tyron.builder.api.internal.serialize.Decoder;
+import com.tyron.builder.api.internal.serialize.Encoder;
+import com.tyron.builder.api.internal.serialize.HashCodeSerializer;
+import com.tyron.builder.cache.PersistentIndexedCache;
+import com.tyron.builder.cache.PersistentIndexedCacheParameters;
+import com.tyron.builder.cache.StringInterner;
+
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link FileHasher} that remembers the hash of each file across builds, keyed by its absolute
+ * path. A remembered hash is used as long as the length, modification time and file key of the
+ * file are the same as when it was hashed.
+ *
+ * <p>A file modified within {@link #TIMESTAMP_RESOLUTION_MILLIS} of being hashed may be
+ * modified again without its timestamp changing, so its hash is not remembered until it is
+ * hashed again later.
+ */
+public class CachingFileHasher implements FileHasher, Stoppable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingFileHasher.class);
+
+    private static final long TIMESTAMP_RESOLUTION_MILLIS = 2000;
+
+    private final PersistentIndexedCache<String, FileInfo> cache;
+    private final FileHasher delegate;
+    private final Stat stat;
+    private final StringInterner stringInterner;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong hashedBytes = new AtomicLong();
+
+    public CachingFileHasher(
+            FileHasher delegate,
+            CrossBuildFileHashCache store,
+            StringInterner stringInterner,
+            Stat stat,
+            String cacheName,
+            int inMemorySize
+    ) {
+        this(delegate, store.createCache(PersistentIndexedCacheParameters.of(cacheName, String.class, new FileInfoSerializer()), inMemorySize, true), stringInterner, stat);
+    }
+
+    @VisibleForTesting
+    CachingFileHasher(
+            FileHasher delegate,
+            PersistentIndexedCache<String, FileInfo> cache,
+            StringInterner stringInterner,
+            Stat stat
+    ) {
+        this.delegate = delegate;
+        this.stat = stat;
+        this.stringInterner = stringInterner;
+        this.cache = cache;
+    }
+
+    @Override
+    public HashCode hash(File file) {
+        BasicFileAttributes attributes = readAttributes(file);
+        if (attributes != null) {
+            return hash(file, attributes);
+        }
+        FileMetadata metadata = stat.stat(file);
+        return snapshot(file, metadata.getLength(), metadata.getLastModified(), "").getHash();
+    }
+
+    /**
+     * The metadata of the callers of this method do not include the file key, so the
+     * attributes of the file are read here.
+     */
+    @Override
+    public HashCode hash(File file, long length, long lastModified) {
+        BasicFileAttributes attributes = readAttributes(file);
+        return snapshot(file, length, lastModified, getFileKey(attributes)).getHash();
+    }
+
+    @Override
+    public HashCode hash(File file, BasicFileAttributes attributes) {
+        return snapshot(file, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                getFileKey(attributes)).getHash();
+    }
+
+    private FileInfo snapshot(File file, long length, long lastModified, String fileKey) {
+        String absolutePath = file.getAbsolutePath();
+        FileInfo info = cache.getIfPresent(absolutePath);
+        if (info != null && info.length == length && info.timestamp == lastModified && info.fileKey.equals(fileKey)) {
+            hits.incrementAndGet();
+            return info;
+        }
+
+        long hashedAt = System.currentTimeMillis();
+        HashCode hash = delegate.hash(file);
+        misses.incrementAndGet();
+        hashedBytes.addAndGet(length);
+        info = new FileInfo(hash, length, lastModified, fileKey);
+        if (hashedAt - lastModified >= TIMESTAMP_RESOLUTION_MILLIS) {
+            cache.put(stringInterner.intern(absolutePath), info);
+        }
+        return info;
+    }
+
+    @Nullable
+    private static BasicFileAttributes readAttributes(File file) {
+        try {
+            return Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * The file key of the file, such as its device and inode, so that a file replaced by
+     * another one with the same length and timestamp is hashed again. Empty if the file
+     * system does not expose one.
+     */
+    private static String getFileKey(@Nullable BasicFileAttributes attributes) {
+        Object fileKey = attributes == null ? null : attributes.fileKey();
+        return fileKey == null ? "" : fileKey.toString();
+    }
+
+    @Override
+    public void stop() {
+        LOGGER.info("{}", getStatistics());
+    }
+
+    public Statistics getStatistics() {
+        return new Statistics(hits.get(), misses.get(), hashedBytes.get());
+    }
+
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long hashedBytes;
+
+        public Statistics(long hits, long misses, long hashedBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.hashedBytes = hashedBytes;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getHashedBytes() {
+            return hashedBytes;
+        }
+
+        public double getHitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Hashed %d files (%d bytes), %d answered from the file hash cache (%.1f%%)",
+                    misses, hashedBytes, hits, getHitRate() * 100);
+        }
+    }
+
+    public static final class FileInfo {
+        private final HashCode hash;
+        private final long timestamp;
+        private final long length;
+        private final String fileKey;
+
+        public FileInfo(HashCode hash, long length, long timestamp, String fileKey) {
+            this.hash = hash;
+            this.length = length;
+            this.timestamp = timestamp;
+            this.fileKey = fileKey;
+        }
+
+        public HashCode getHash() {
+            return hash;
+        }
+    }
+
+    private static class FileInfoSerializer extends AbstractSerializer<FileInfo> {
+        private final HashCodeSerializer hashCodeSerializer = new HashCodeSerializer();
+
+        @Override
+        public FileInfo read(Decoder decoder) throws Exception {
+            HashCode hash = hashCodeSerializer.read(decoder);
+            long timestamp = decoder.readLong();
+            long length = decoder.readLong();
+            String fileKey = decoder.readString();
+            return new FileInfo(hash, length, timestamp, fileKey);
+        }
+
+        @Override
+        public void write(Encoder encoder, FileInfo value) throws Exception {
+            hashCodeSerializer.write(encoder, value.hash);
+            encoder.writeLong(value.timestamp);
+            encoder.writeLong(value.length);
+            encoder.writeString(value.fileKey);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.tyron.builder.api.internal.hash;
 import com.google.common.hash.HashCode;
 
 import java.io.File;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public interface FileHasher {
     /**
@@ -14,4 +15,11 @@ public interface FileHasher {
      * Returns the hash of the current content of the given file, assuming the given file metadata. The provided file must exist and be a file (rather than, say, a directory).
      */
     HashCode hash(File file, long length, long lastModified);
+
+    /**
+     * Returns the hash of the current content of the given file, assuming the given file attributes. The provided file must exist and be a file (rather than, say, a directory).
+     */
+    default HashCode hash(File file, BasicFileAttributes attributes) {
+        return hash(file, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
 }
\ No newline at end of file
@@ -14,13 +14,20 @@ public class OperatingSystem {
     }
 
     private final boolean isWindows;
+    private final boolean isLinux;
 
     private OperatingSystem() {
-        isWindows = System.getProperty("os.name", "")
-                .startsWith("Windows");
+        String osName = System.getProperty("os.name", "");
+        isWindows = osName.startsWith("Windows");
+        // android reports itself as linux too
+        isLinux = osName.toLowerCase().contains("linux");
     }
 
     public boolean isWindows() {
         return isWindows;
     }
+
+    public boolean isLinux() {
+        return isLinux;
+    }
 }
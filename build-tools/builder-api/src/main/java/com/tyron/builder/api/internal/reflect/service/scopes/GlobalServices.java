@@ -64,6 +64,7 @@ import com.tyron.builder.internal.vfs.impl.DefaultFileSystemAccess;
 import com.tyron.builder.internal.vfs.impl.DefaultSnapshotHierarchy;
 import com.tyron.builder.internal.vfs.impl.VfsRootReference;
 import com.tyron.builder.internal.watch.registry.FileWatcherRegistryFactory;
+import com.tyron.builder.internal.watch.registry.impl.LinuxFileWatcherRegistryFactory;
 import com.tyron.builder.internal.watch.registry.impl.WindowsFileWatcherRegistryFactory;
 import com.tyron.builder.internal.watch.vfs.BuildLifecycleAwareVirtualFileSystem;
 import com.tyron.builder.internal.watch.vfs.FileChangeListeners;
@@ -73,9 +74,13 @@ import com.tyron.builder.internal.watch.vfs.impl.LocationsWrittenByCurrentBuild;
 import com.tyron.builder.internal.watch.vfs.impl.WatchingNotSupportedVirtualFileSystem;
 import com.tyron.builder.internal.watch.vfs.impl.WatchingVirtualFileSystem;
 
+import net.rubygrapefruit.platform.NativeIntegrationUnavailableException;
 import net.rubygrapefruit.platform.file.FileSystems;
 import net.rubygrapefruit.platform.internal.PosixFileSystems;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.File;
 import java.net.URI;
 import java.util.List;
@@ -85,6 +90,8 @@ import java.util.function.Predicate;
 
 public class GlobalServices extends WorkerSharedGlobalScopeServices {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GlobalServices.class);
+
     public GlobalServices() {
         super();
     }
@@ -234,8 +241,14 @@ public class GlobalServices extends WorkerSharedGlobalScopeServices {
             OperatingSystem operatingSystem,
             Predicate<String> watchingFilter
     ) {
-        if (operatingSystem.isWindows()) {
-            return Optional.of(new WindowsFileWatcherRegistryFactory(watchingFilter));
+        try {
+            if (operatingSystem.isWindows()) {
+                return Optional.of(new WindowsFileWatcherRegistryFactory(watchingFilter));
+            } else if (operatingSystem.isLinux()) {
+                return Optional.of(new LinuxFileWatcherRegistryFactory(watchingFilter));
+            }
+        } catch (NativeIntegrationUnavailableException e) {
+            LOGGER.info("Native file system watching is not available for this operating system.", e);
         }
         return Optional.empty();
     }
@@ -3,18 +3,24 @@ package com.tyron.builder.api.internal.reflect.service.scopes;
 import com.google.common.hash.HashCode;
 import com.tyron.builder.api.internal.DocumentationRegistry;
 import com.tyron.builder.api.internal.GradleInternal;
+import com.tyron.builder.api.internal.changedetection.state.CachingFileHasher;
 import com.tyron.builder.api.internal.changedetection.state.CrossBuildFileHashCache;
 import com.tyron.builder.api.internal.classpath.ClassPath;
 import com.tyron.builder.api.internal.concurrent.ExecutorFactory;
+import com.tyron.builder.api.internal.file.Stat;
 import com.tyron.builder.api.internal.hash.ClassLoaderHierarchyHasher;
 import com.tyron.builder.api.internal.hash.ConfigurableClassLoaderHierarchyHasher;
+import com.tyron.builder.api.internal.hash.DefaultFileHasher;
 import com.tyron.builder.api.internal.hash.Hashes;
 import com.tyron.builder.api.internal.hash.HashingClassLoaderFactory;
+import com.tyron.builder.api.internal.hash.StreamHasher;
 import com.tyron.builder.api.internal.logging.progress.ProgressLoggerFactory;
 import com.tyron.builder.api.internal.reflect.service.ServiceRegistration;
 import com.tyron.builder.api.internal.reflect.service.ServiceRegistry;
+import com.tyron.builder.api.internal.snapshot.impl.DirectorySnapshotterStatistics;
 import com.tyron.builder.cache.CacheRepository;
 import com.tyron.builder.cache.FileLockManager;
+import com.tyron.builder.cache.StringInterner;
 import com.tyron.builder.cache.internal.CacheFactory;
 import com.tyron.builder.cache.internal.CacheScopeMapping;
 import com.tyron.builder.cache.internal.CrossBuildInMemoryCacheFactory;
@@ -30,6 +36,9 @@ import com.tyron.builder.initialization.layout.GlobalCacheDir;
 import com.tyron.builder.internal.service.scopes.PluginServiceRegistry;
 import com.tyron.builder.internal.service.scopes.WorkerSharedGlobalScopeServices;
 import com.tyron.builder.internal.service.scopes.WorkerSharedUserHomeScopeServices;
+import com.tyron.builder.internal.vfs.FileSystemAccess;
+import com.tyron.builder.internal.vfs.VirtualFileSystem;
+import com.tyron.builder.internal.vfs.impl.DefaultFileSystemAccess;
 import com.tyron.common.TestUtil;
 
 import org.jetbrains.annotations.Nullable;
@@ -113,6 +122,30 @@ public class GradleUserHomeScopeServices extends WorkerSharedUserHomeScopeServic
         return new CrossBuildFileHashCache(scopedCache, factory, CrossBuildFileHashCache.Kind.FILE_HASHES);
     }
 
+    /**
+     * Replaces the global file hasher for the builds of this user home, so that files which
+     * have not changed since a previous build are not read again.
+     */
+    CachingFileHasher createCachingFileHasher(
+            StreamHasher streamHasher,
+            CrossBuildFileHashCache fileStore,
+            StringInterner stringInterner,
+            Stat stat
+    ) {
+        return new CachingFileHasher(new DefaultFileHasher(streamHasher), fileStore, stringInterner, stat, "fileKeyHashes", 400000);
+    }
+
+    FileSystemAccess createFileSystemAccess(
+            CachingFileHasher fileHasher,
+            StringInterner interner,
+            Stat stat,
+            VirtualFileSystem virtualFileSystem
+    ) {
+        return new DefaultFileSystemAccess(fileHasher, interner, stat, virtualFileSystem,
+                locations -> {
+                }, new DirectorySnapshotterStatistics.Collector());
+    }
+
 
     CacheFactory createCacheFactory(
             FileLockManager fileLockManager,
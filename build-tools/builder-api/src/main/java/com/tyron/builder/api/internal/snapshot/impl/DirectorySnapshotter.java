@@ -404,7 +404,7 @@ public class DirectorySnapshotter {
             long lastModified = attrs.lastModifiedTime().toMillis();
             long fileLength = attrs.size();
             FileMetadata metadata = DefaultFileMetadata.file(lastModified, fileLength, accessType);
-            HashCode hash = hasher.hash(absoluteFilePath.toFile(), fileLength, lastModified);
+            HashCode hash = hasher.hash(absoluteFilePath.toFile(), attrs);
             return new RegularFileSnapshot(internedRemappedAbsoluteFilePath, internedName, hash, metadata);
         }
 
@@ -11,14 +11,30 @@ import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class CachingBlockStore implements BlockStore {
+    /**
+     * The default number of bytes of cached blocks, enough for about 700 index blocks of 512 entries.
+     */
+    public static final long DEFAULT_MAX_CACHED_BYTES = 8L * 1024 * 1024;
+
     private final BlockStore store;
     private final Map<BlockPointer, BlockPayload> dirty = new LinkedHashMap<BlockPointer, BlockPayload>();
-    private final Cache<BlockPointer, BlockPayload> indexBlockCache = CacheBuilder.newBuilder().maximumSize(100).concurrencyLevel(1).build();
+    private final Cache<BlockPointer, BlockPayload> indexBlockCache;
     private final ImmutableSet<Class<? extends BlockPayload>> cacheableBlockTypes;
 
     public CachingBlockStore(BlockStore store, Collection<Class<? extends BlockPayload>> cacheableBlockTypes) {
+        this(store, cacheableBlockTypes, DEFAULT_MAX_CACHED_BYTES);
+    }
+
+    /**
+     * @param maxCachedBytes the maximum total size of the cached blocks, weighed by their size in the store
+     */
+    public CachingBlockStore(BlockStore store, Collection<Class<? extends BlockPayload>> cacheableBlockTypes, long maxCachedBytes) {
         this.store = store;
         this.cacheableBlockTypes = ImmutableSet.copyOf(cacheableBlockTypes);
+        this.indexBlockCache = CacheBuilder.newBuilder()
+                .maximumWeight(maxCachedBytes)
+                .weigher((BlockPointer pos, BlockPayload block) -> block.getBlock().getSize())
+                .build();
     }
 
     @Override
@@ -0,0 +1,454 @@
+package com.tyron.builder.cache.internal.btree;
+
+import com.tyron.builder.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link BlockStore} which reads blocks from memory mapped regions of the cache file, using the
+ * same file format as {@link FileBackedBlockStore}.
+ *
+ * <p>The file is mapped in regions of {@link #REGION_SIZE} bytes once it is long enough to fill
+ * them, so that the file never has to be extended for a mapping. Blocks in the last, partially
+ * written region or crossing a region boundary are read with positional reads of the channel.
+ * Blocks are written with positional writes, which are visible through the mapped regions.
+ *
+ * <p>Reads of this store do not lock and may run concurrently with each other and with writes
+ * of other blocks. The {@link CachingBlockStore} and the btree usually stacked on top of it are
+ * not thread safe though, so their callers still have to serialize lookups. Opening, closing
+ * and clearing the store must not run concurrently with anything else.
+ *
+ * <p>The regions are unmapped before the file is closed or truncated, so no mapping outlives
+ * the part of the file it covers.
+ */
+public class MappedFileBlockStore implements BlockStore {
+    static final int REGION_SIZE = 1 << 20;
+
+    private final File cacheFile;
+    private FileChannel channel;
+    private Factory factory;
+    private final AtomicLong nextBlock = new AtomicLong();
+    private final AtomicLong currentFileSize = new AtomicLong();
+    private final Object mappingLock = new Object();
+    private volatile MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    public MappedFileBlockStore(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            channel = openChannel();
+            long length = channel.size();
+            currentFileSize.set(length);
+            nextBlock.set(length);
+            regions = new MappedByteBuffer[0];
+            if (length == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        try {
+            return FileChannel.open(cacheFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (AccessDeniedException e) {
+            return FileChannel.open(cacheFile.toPath(), StandardOpenOption.READ);
+        }
+    }
+
+    @Override
+    public void close() {
+        unmapRegions();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void clear() {
+        unmapRegions();
+        try {
+            channel.truncate(0);
+            currentFileSize.set(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock.set(0);
+    }
+
+    /**
+     * Drops and unmaps the mapped regions, the regions are mapped again when they are read.
+     */
+    private void unmapRegions() {
+        synchronized (mappingLock) {
+            MappedByteBuffer[] current = regions;
+            regions = new MappedByteBuffer[0];
+            for (MappedByteBuffer region : current) {
+                if (region != null) {
+                    unmap(region);
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases the mapping of the buffer right away instead of when it is garbage collected.
+     * There is no public API for this, so the cleaner of the buffer is looked up reflectively,
+     * if that fails the mapping is left to the garbage collector.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            // Java 9 and later
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            return;
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // not available, try the cleaner of the buffer
+        }
+        try {
+            // Java 8 and Android
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (ReflectiveOperationException | RuntimeException ignored) {
+            // left to the garbage collector
+        }
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        return nextBlock.getAndAdd(length);
+    }
+
+    /**
+     * Returns a buffer positioned at the given offset with at least the given number of bytes
+     * remaining. The buffer is a view of a mapped region if the bytes are inside one.
+     */
+    private ByteBuffer slice(long offset, int length) throws IOException {
+        int index = (int) (offset / REGION_SIZE);
+        int start = (int) (offset % REGION_SIZE);
+        if (start + length <= REGION_SIZE) {
+            MappedByteBuffer region = getRegion(index);
+            if (region != null) {
+                ByteBuffer view = region.duplicate();
+                view.position(start);
+                view.limit(start + length);
+                return view;
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Returns the mapped region with the given index, mapping it if the file is long enough to
+     * fill it, or null if it is not.
+     */
+    private MappedByteBuffer getRegion(int index) throws IOException {
+        MappedByteBuffer[] current = regions;
+        if (index < current.length && current[index] != null) {
+            return current[index];
+        }
+        long end = (long) (index + 1) * REGION_SIZE;
+        if (end > currentFileSize.get()) {
+            return null;
+        }
+        synchronized (mappingLock) {
+            current = regions;
+            if (index < current.length && current[index] != null) {
+                return current[index];
+            }
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, end - REGION_SIZE, REGION_SIZE);
+            MappedByteBuffer[] updated = Arrays.copyOf(current, Math.max(current.length, index + 1));
+            updated[index] = region;
+            regions = updated;
+            return region;
+        }
+    }
+
+    private void updateFileSize(long size) {
+        long current;
+        do {
+            current = currentFileSize.get();
+        } while (current < size && !currentFileSize.compareAndSet(current, size));
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+            int size = getSize();
+
+            BlockOutputStream bytes = new BlockOutputStream(size);
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count, which includes the header like in FileBackedBlockStore
+            long bytesWritten = outputStream.size();
+            if (bytesWritten > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Block payload exceeds maximum size");
+            }
+            outputStream.writeInt((int) bytesWritten);
+
+            // Pad
+            ByteBuffer buffer = bytes.toPaddedBuffer(size);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, pos + buffer.position());
+            }
+            updateFileSize(pos + buffer.limit());
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            long fileSize = currentFileSize.get();
+            if (pos + HEADER_SIZE >= fileSize) {
+                throw blockCorruptedException();
+            }
+
+            ByteBuffer header = slice(pos, HEADER_SIZE);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = header.get();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = header.getInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > fileSize) {
+                throw blockCorruptedException();
+            }
+            ByteBuffer body = slice(pos + HEADER_SIZE, payloadSize + TAIL_SIZE);
+            BlockInputStream inputStream = new BlockInputStream(body);
+            payload.read(new DataInputStream(inputStream));
+
+            // Read and verify count
+            long actualCount = HEADER_SIZE + inputStream.getBytesRead();
+            if (body.remaining() < INT_SIZE || actualCount != body.getInt()) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    /**
+     * Collects the bytes of a block, without copying them again when they are written.
+     */
+    private static class BlockOutputStream extends ByteArrayOutputStream {
+        BlockOutputStream(int size) {
+            super(size);
+        }
+
+        /**
+         * Returns the bytes written, padded with zeros up to the given size. The bytes of the
+         * buffer after the written ones are still zero, so it is wrapped as is unless it is
+         * smaller than the block.
+         */
+        ByteBuffer toPaddedBuffer(int size) {
+            int length = Math.max(count, size);
+            byte[] bytes = buf.length >= length ? buf : Arrays.copyOf(buf, length);
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Reads the payload of a block from a buffer, counting the bytes read.
+     */
+    private static class BlockInputStream extends InputStream {
+        private final ByteBuffer buffer;
+        private final int start;
+
+        BlockInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.start = buffer.position();
+        }
+
+        long getBytesRead() {
+            return buffer.position() - start;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -47,7 +47,7 @@ import java.util.List;
  *     <dt>watched directories</dt>
  *     <dd>On OSs with non-hierarchical file system events (currently Linux only) we don't watch whole
  *     hierarchies, but need to individually watch each directory and its immediate children.
- *     See {@link org.gradle.internal.watch.registry.impl.NonHierarchicalFileWatcherUpdater}.</dd>
+ *     See {@link com.tyron.builder.internal.watch.registry.impl.NonHierarchicalFileWatcherUpdater}.</dd>
  *
  *     <dt>probed hierarchies</dt>
  *     <dd>The list of file system hierarchies that we've activated a file system probe for.
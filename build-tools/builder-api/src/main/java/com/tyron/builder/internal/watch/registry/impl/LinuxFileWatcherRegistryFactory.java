@@ -0,0 +1,74 @@
+package com.tyron.builder.internal.watch.registry.impl;
+
+import com.tyron.builder.api.internal.file.FileType;
+import com.tyron.builder.api.internal.snapshot.SnapshotHierarchy;
+import com.tyron.builder.internal.watch.registry.FileWatcherProbeRegistry;
+import com.tyron.builder.internal.watch.registry.FileWatcherUpdater;
+
+import net.rubygrapefruit.platform.NativeIntegrationUnavailableException;
+import net.rubygrapefruit.platform.file.FileEvents;
+import net.rubygrapefruit.platform.file.FileWatchEvent;
+import net.rubygrapefruit.platform.internal.jni.LinuxFileEventFunctions;
+import net.rubygrapefruit.platform.internal.jni.LinuxFileEventFunctions.LinuxFileWatcher;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Watches files with inotify. Inotify only reports changes to the immediate children of a
+ * watched directory, so every directory with snapshots in the virtual file system is watched.
+ */
+public class LinuxFileWatcherRegistryFactory extends AbstractFileWatcherRegistryFactory<LinuxFileEventFunctions, LinuxFileWatcher> {
+
+    public LinuxFileWatcherRegistryFactory(
+            Predicate<String> watchFilter
+    ) throws NativeIntegrationUnavailableException {
+        super(FileEvents.get(LinuxFileEventFunctions.class), watchFilter);
+    }
+
+    @Override
+    protected LinuxFileWatcher createFileWatcher(BlockingQueue<FileWatchEvent> fileEvents) throws InterruptedException {
+        return fileEventFunctions.newWatcher(fileEvents)
+                .start();
+    }
+
+    @Override
+    protected FileWatcherUpdater createFileWatcherUpdater(
+            LinuxFileWatcher watcher,
+            FileWatcherProbeRegistry probeRegistry,
+            WatchableHierarchies watchableHierarchies
+    ) {
+        return new NonHierarchicalFileWatcherUpdater(watcher, probeRegistry, watchableHierarchies, new LinuxMovedDirectoryHandler(watcher, watchableHierarchies));
+    }
+
+    /**
+     * Inotify does not report when the parent of a watched directory is moved, the watches
+     * whose paths no longer point to the watched directories are dropped at the start of a build.
+     */
+    private static class LinuxMovedDirectoryHandler implements AbstractFileWatcherUpdater.MovedDirectoryHandler {
+        private final LinuxFileWatcher watcher;
+        private final WatchableHierarchies watchableHierarchies;
+
+        public LinuxMovedDirectoryHandler(LinuxFileWatcher watcher, WatchableHierarchies watchableHierarchies) {
+            this.watcher = watcher;
+            this.watchableHierarchies = watchableHierarchies;
+        }
+
+        @Override
+        public Collection<File> stopWatchingMovedDirectories(SnapshotHierarchy vfsRoot) {
+            List<File> directoriesToCheck = vfsRoot.rootSnapshots()
+                    .filter(snapshot -> snapshot.getType() != FileType.Missing)
+                    .filter(watchableHierarchies::shouldWatch)
+                    .map(snapshot -> {
+                        File file = new File(snapshot.getAbsolutePath());
+                        return snapshot.getType() == FileType.Directory ? file : file.getParentFile();
+                    })
+                    .collect(Collectors.toList());
+            return watcher.stopWatchingMovedPaths(directoriesToCheck);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.tyron.builder.internal.watch.registry.impl;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Multiset;
+import com.tyron.builder.api.internal.file.FileType;
+import com.tyron.builder.api.internal.snapshot.FileSystemLocationSnapshot;
+import com.tyron.builder.api.internal.snapshot.RootTrackingFileSystemSnapshotHierarchyVisitor;
+import com.tyron.builder.api.internal.snapshot.SnapshotHierarchy;
+import com.tyron.builder.api.internal.snapshot.SnapshotVisitResult;
+import com.tyron.builder.internal.file.FileHierarchySet;
+import com.tyron.builder.internal.watch.WatchingNotSupportedException;
+import com.tyron.builder.internal.watch.registry.FileWatcherProbeRegistry;
+
+import net.rubygrapefruit.platform.NativeException;
+import net.rubygrapefruit.platform.file.FileWatcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Updater for non-hierarchical file watchers.
+ *
+ * For non-hierarchical watchers, we need to watch every directory we have snapshots in, since
+ * the operating system only reports changes to the immediate children of a watched directory.
+ *
+ * We keep a count of how many snapshots need each directory to be watched, a directory
+ * is watched as long as the count is above zero. The counts are updated from the diffs of
+ * the virtual file system, so only the directories of the snapshots which were added or removed
+ * are visited, the rest of the hierarchy keeps its watches between builds.
+ */
+public class NonHierarchicalFileWatcherUpdater extends AbstractFileWatcherUpdater {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NonHierarchicalFileWatcherUpdater.class);
+
+    private final Multiset<String> watchedDirectories = HashMultiset.create();
+    private final Map<String, ImmutableList<String>> watchedDirectoriesForSnapshot = new HashMap<>();
+    private final FileWatcher fileWatcher;
+
+    public NonHierarchicalFileWatcherUpdater(
+            FileWatcher fileWatcher,
+            FileWatcherProbeRegistry probeRegistry,
+            WatchableHierarchies watchableHierarchies,
+            MovedDirectoryHandler movedDirectoryHandler
+    ) {
+        super(probeRegistry, watchableHierarchies, movedDirectoryHandler);
+        this.fileWatcher = fileWatcher;
+    }
+
+    @Override
+    protected boolean handleVirtualFileSystemContentsChanged(Collection<FileSystemLocationSnapshot> removedSnapshots, Collection<FileSystemLocationSnapshot> addedSnapshots, SnapshotHierarchy root) {
+        Map<String, Integer> changedWatchedDirectories = new HashMap<>();
+
+        removedSnapshots.stream()
+                .filter(watchableHierarchies::shouldWatch)
+                .forEach(snapshot -> {
+                    ImmutableList<String> previouslyWatchedDirectories = watchedDirectoriesForSnapshot.remove(snapshot.getAbsolutePath());
+                    if (previouslyWatchedDirectories != null) {
+                        previouslyWatchedDirectories.forEach(path -> decrement(path, changedWatchedDirectories));
+                    }
+                    snapshot.accept(new SubdirectoriesToWatchVisitor(path -> decrement(path, changedWatchedDirectories)));
+                });
+        addedSnapshots.stream()
+                .filter(watchableHierarchies::shouldWatch)
+                .forEach(snapshot -> {
+                    ImmutableList<String> directoriesToWatch = SnapshotWatchedDirectoryFinder.getDirectoriesToWatch(snapshot).stream()
+                            .map(File::getAbsolutePath)
+                            .collect(ImmutableList.toImmutableList());
+                    watchedDirectoriesForSnapshot.put(snapshot.getAbsolutePath(), directoriesToWatch);
+                    directoriesToWatch.forEach(path -> increment(path, changedWatchedDirectories));
+                    snapshot.accept(new SubdirectoriesToWatchVisitor(path -> increment(path, changedWatchedDirectories)));
+                });
+        changedWatchedDirectories.values().removeIf(count -> count == 0);
+        if (changedWatchedDirectories.isEmpty()) {
+            return false;
+        }
+        updateWatchedDirectories(changedWatchedDirectories);
+        return true;
+    }
+
+    @Override
+    protected void updateWatchesOnChangedWatchedFiles(FileHierarchySet newWatchedFiles) {
+        // The watched directories are updated from the changes to the virtual file system
+    }
+
+    @Override
+    protected void startWatchingProbeDirectory(File probeDirectory) {
+        updateWatchedDirectories(ImmutableMap.of(probeDirectory.getAbsolutePath(), 1));
+    }
+
+    @Override
+    protected void stopWatchingProbeDirectory(File probeDirectory) {
+        updateWatchedDirectories(ImmutableMap.of(probeDirectory.getAbsolutePath(), -1));
+    }
+
+    private void updateWatchedDirectories(Map<String, Integer> changedWatchDirectories) {
+        Set<File> directoriesToStopWatching = new HashSet<>();
+        Set<File> directoriesToStartWatching = new HashSet<>();
+        changedWatchDirectories.forEach((absolutePath, count) -> {
+            if (count < 0) {
+                int toRemove = -count;
+                int contained = watchedDirectories.remove(absolutePath, toRemove);
+                if (contained <= toRemove) {
+                    directoriesToStopWatching.add(new File(absolutePath));
+                }
+            } else if (count > 0) {
+                int contained = watchedDirectories.add(absolutePath, count);
+                if (contained == 0) {
+                    directoriesToStartWatching.add(new File(absolutePath));
+                }
+            }
+        });
+        if (directoriesToStopWatching.isEmpty() && directoriesToStartWatching.isEmpty()) {
+            return;
+        }
+        LOGGER.info("Watching {} directories to track changes", watchedDirectories.elementSet().size());
+
+        try {
+            if (!directoriesToStopWatching.isEmpty()) {
+                if (!fileWatcher.stopWatching(directoriesToStopWatching)) {
+                    LOGGER.debug("Couldn't stop watching directories: {}", directoriesToStopWatching);
+                }
+            }
+            if (!directoriesToStartWatching.isEmpty()) {
+                fileWatcher.startWatching(directoriesToStartWatching);
+            }
+        } catch (NativeException e) {
+            if (e.getMessage() != null && e.getMessage().contains("Already watching path: ")) {
+                throw new WatchingNotSupportedException("Unable to watch same file twice via different paths: " + e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected WatchableHierarchies.Invalidator createInvalidator() {
+        return (location, currentRoot) -> {
+            SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener();
+            SnapshotHierarchy invalidatedRoot = currentRoot.invalidate(location, diffListener);
+            diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) ->
+                    virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, invalidatedRoot));
+            return invalidatedRoot;
+        };
+    }
+
+    private static void decrement(String path, Map<String, Integer> changedWatchedDirectories) {
+        changedWatchedDirectories.merge(path, -1, Integer::sum);
+    }
+
+    private static void increment(String path, Map<String, Integer> changedWatchedDirectories) {
+        changedWatchedDirectories.merge(path, 1, Integer::sum);
+    }
+
+    private class SubdirectoriesToWatchVisitor extends RootTrackingFileSystemSnapshotHierarchyVisitor {
+        private final Consumer<String> subDirectoryToWatchConsumer;
+
+        public SubdirectoriesToWatchVisitor(Consumer<String> subDirectoryToWatchConsumer) {
+            this.subDirectoryToWatchConsumer = subDirectoryToWatchConsumer;
+        }
+
+        @Override
+        public SnapshotVisitResult visitEntry(FileSystemLocationSnapshot snapshot, boolean isRoot) {
+            if (isRoot || snapshot.getType() != FileType.Directory) {
+                return SnapshotVisitResult.CONTINUE;
+            }
+            if (watchableHierarchies.ignoredForWatching(snapshot)) {
+                return SnapshotVisitResult.SKIP_SUBTREE;
+            }
+            subDirectoryToWatchConsumer.accept(snapshot.getAbsolutePath());
+            return SnapshotVisitResult.CONTINUE;
+        }
+    }
+}
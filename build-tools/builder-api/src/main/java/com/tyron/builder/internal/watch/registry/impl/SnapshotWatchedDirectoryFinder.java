@@ -0,0 +1,53 @@
+package com.tyron.builder.internal.watch.registry.impl;
+
+import com.google.common.collect.ImmutableList;
+import com.tyron.builder.api.internal.snapshot.DirectorySnapshot;
+import com.tyron.builder.api.internal.snapshot.FileSystemLocationSnapshot;
+import com.tyron.builder.api.internal.snapshot.MissingFileSnapshot;
+import com.tyron.builder.api.internal.snapshot.RegularFileSnapshot;
+
+import java.io.File;
+
+public class SnapshotWatchedDirectoryFinder {
+
+    /**
+     * Resolves the directories to watch for a snapshot.
+     *
+     * For existing files and directories we watch the parent directory,
+     * so we learn if the entry itself disappears or gets modified.
+     * For directories we also watch the directory itself, so we learn about new children.
+     * In case of a missing file we need to find the closest existing
+     * ancestor to watch so we can learn if the missing file respawns.
+     */
+    public static ImmutableList<File> getDirectoriesToWatch(FileSystemLocationSnapshot snapshot) {
+        File path = new File(snapshot.getAbsolutePath());
+        return snapshot.accept(new FileSystemLocationSnapshot.FileSystemLocationSnapshotTransformer<ImmutableList<File>>() {
+            @Override
+            public ImmutableList<File> visitDirectory(DirectorySnapshot directorySnapshot) {
+                File parent = path.getParentFile();
+                return parent == null ? ImmutableList.of(path) : ImmutableList.of(parent, path);
+            }
+
+            @Override
+            public ImmutableList<File> visitRegularFile(RegularFileSnapshot fileSnapshot) {
+                return ImmutableList.of(path.getParentFile());
+            }
+
+            @Override
+            public ImmutableList<File> visitMissing(MissingFileSnapshot missingSnapshot) {
+                return ImmutableList.of(findFirstExistingAncestor(path));
+            }
+        });
+    }
+
+    private static File findFirstExistingAncestor(File path) {
+        File candidate = path.getParentFile();
+        while (candidate != null && !candidate.isDirectory()) {
+            candidate = candidate.getParentFile();
+        }
+        if (candidate == null) {
+            throw new IllegalStateException("Couldn't find existing ancestor for " + path);
+        }
+        return candidate;
+    }
+}
@@ -0,0 +1,183 @@
+package com.tyron.builder.api.internal.changedetection.state;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assume.assumeNotNull;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.tyron.builder.api.internal.file.FileMetadata;
+import com.tyron.builder.api.internal.file.Stat;
+import com.tyron.builder.api.internal.file.impl.DefaultFileMetadata;
+import com.tyron.builder.api.internal.hash.FileHasher;
+import com.tyron.builder.cache.PersistentIndexedCache;
+import com.tyron.builder.cache.StringInterner;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class CachingFileHasherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger hashed = new AtomicInteger();
+    private final Map<String, CachingFileHasher.FileInfo> entries = new HashMap<>();
+    private CachingFileHasher hasher;
+
+    @Before
+    public void setup() {
+        FileHasher delegate = new FileHasher() {
+            @Override
+            public HashCode hash(File file) {
+                hashed.incrementAndGet();
+                try {
+                    return Hashing.md5().hashBytes(Files.readAllBytes(file.toPath()));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public HashCode hash(File file, long length, long lastModified) {
+                return hash(file);
+            }
+        };
+        Stat stat = new Stat() {
+            @Override
+            public int getUnixMode(File f) {
+                return 0;
+            }
+
+            @Override
+            public FileMetadata stat(File f) {
+                return DefaultFileMetadata.file(f.lastModified(), f.length(),
+                        FileMetadata.AccessType.DIRECT);
+            }
+        };
+        hasher = new CachingFileHasher(delegate, new InMemoryCache(), new StringInterner(), stat);
+    }
+
+    /**
+     * Writes the file with a timestamp far enough in the past for its hash to be remembered.
+     */
+    private File write(String name, String contents, long lastModified) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        file.setLastModified(lastModified);
+        return file;
+    }
+
+    private static long past() {
+        // a whole number of seconds, which every file system can store
+        return (System.currentTimeMillis() / 1000 - 60) * 1000;
+    }
+
+    @Test
+    public void testUnchangedFileIsHashedOnce() throws IOException {
+        File file = write("a.txt", "contents", past());
+
+        HashCode first = hasher.hash(file);
+        HashCode second = hasher.hash(file);
+
+        assertEquals(first, second);
+        assertEquals(1, hashed.get());
+        assertEquals(1, hasher.getStatistics().getHits());
+        assertEquals(1, hasher.getStatistics().getMisses());
+        assertEquals(file.length(), hasher.getStatistics().getHashedBytes());
+        assertEquals(0.5, hasher.getStatistics().getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testRecentlyModifiedFileIsNotRemembered() throws IOException {
+        File file = write("a.txt", "contents", System.currentTimeMillis());
+
+        hasher.hash(file);
+        hasher.hash(file);
+
+        assertEquals(2, hashed.get());
+        assertEquals(0, hasher.getStatistics().getHits());
+    }
+
+    @Test
+    public void testModifiedFileIsHashedAgain() throws IOException {
+        long lastModified = past();
+        File file = write("a.txt", "contents", lastModified);
+        HashCode first = hasher.hash(file);
+
+        write("a.txt", "other contents", lastModified + 2000);
+        HashCode second = hasher.hash(file);
+
+        assertNotEquals(first, second);
+        assertEquals(2, hashed.get());
+    }
+
+    @Test
+    public void testReplacedFileWithSameMetadataIsHashedAgain() throws IOException {
+        long lastModified = past();
+        File file = write("a.txt", "contents", lastModified);
+        assumeNotNull(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+        HashCode first = hasher.hash(file);
+
+        // same length and timestamp, only the file key tells them apart
+        File replacement = write("b.txt", "CONTENTS", lastModified);
+        Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        HashCode second = hasher.hash(file);
+
+        assertNotEquals(first, second);
+        assertEquals(2, hashed.get());
+    }
+
+    @Test
+    public void testHashWithAttributes() throws IOException {
+        File file = write("a.txt", "contents", past());
+        BasicFileAttributes attributes =
+                Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+
+        HashCode first = hasher.hash(file, attributes);
+        HashCode second = hasher.hash(file);
+        HashCode third = hasher.hash(file, file.length(), file.lastModified());
+
+        assertEquals(first, second);
+        assertEquals(first, third);
+        assertEquals(1, hashed.get());
+        assertEquals(2, hasher.getStatistics().getHits());
+    }
+
+    private class InMemoryCache implements PersistentIndexedCache<String, CachingFileHasher.FileInfo> {
+
+        @Override
+        public CachingFileHasher.FileInfo getIfPresent(String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public CachingFileHasher.FileInfo get(String key, Function<? super String, ? extends CachingFileHasher.FileInfo> producer) {
+            return entries.computeIfAbsent(key, producer);
+        }
+
+        @Override
+        public void put(String key, CachingFileHasher.FileInfo value) {
+            entries.put(key, value);
+        }
+
+        @Override
+        public void remove(String key) {
+            entries.remove(key);
+        }
+    }
+}
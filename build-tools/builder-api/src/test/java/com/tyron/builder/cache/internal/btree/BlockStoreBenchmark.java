@@ -0,0 +1,83 @@
+package com.tyron.builder.cache.internal.btree;
+
+import com.tyron.builder.api.internal.serialize.BaseSerializerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.function.Function;
+
+/**
+ * Compares the lookups and puts of a {@link BTreePersistentIndexedCache} backed by a
+ * {@link FileBackedBlockStore} with one backed by a {@link MappedFileBlockStore}.
+ *
+ * <p>Run the main method with an optional number of entries, the default is 200000.
+ */
+public class BlockStoreBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        int entries = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        File dir = Files.createTempDirectory("block-store-benchmark").toFile();
+        try {
+            run("file backed, 100 blocks", entries, dir, FileBackedBlockStore::new, 100 * 12_300L);
+            run("file backed, " + CachingBlockStore.DEFAULT_MAX_CACHED_BYTES / 1024 + " KB",
+                    entries, dir, FileBackedBlockStore::new, CachingBlockStore.DEFAULT_MAX_CACHED_BYTES);
+            run("memory mapped, " + CachingBlockStore.DEFAULT_MAX_CACHED_BYTES / 1024 + " KB",
+                    entries, dir, MappedFileBlockStore::new, CachingBlockStore.DEFAULT_MAX_CACHED_BYTES);
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dir.delete();
+        }
+    }
+
+    private static void run(String name, int entries, File dir, Function<File, BlockStore> storeFactory, long maxCachedBytes) {
+        long[] keys = new Random(42).longs(entries).toArray();
+        long putNanos = 0;
+        long getNanos = 0;
+        for (int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            File file = new File(dir, name.replace(' ', '_') + round + ".bin");
+            BTreePersistentIndexedCache<Long, String> cache = new BTreePersistentIndexedCache<>(file,
+                    BaseSerializerFactory.LONG_SERIALIZER, BaseSerializerFactory.STRING_SERIALIZER,
+                    (short) 512, 512, storeFactory.apply(file), maxCachedBytes);
+            try {
+                long start = System.nanoTime();
+                for (long key : keys) {
+                    cache.put(key, Long.toHexString(key));
+                }
+                long puts = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                long found = 0;
+                for (int i = keys.length - 1; i >= 0; i--) {
+                    if (cache.get(keys[i]) != null) {
+                        found++;
+                    }
+                }
+                long gets = System.nanoTime() - start;
+                if (found != keys.length) {
+                    throw new IllegalStateException("Expected " + keys.length + " entries, found " + found);
+                }
+
+                if (round >= WARMUP_ROUNDS) {
+                    putNanos += puts;
+                    getNanos += gets;
+                }
+            } finally {
+                cache.close();
+                file.delete();
+            }
+        }
+        long operations = (long) entries * ROUNDS;
+        System.out.printf("%-30s put %6d ns/op   get %6d ns/op%n", name,
+                putNanos / operations, getNanos / operations);
+    }
+}
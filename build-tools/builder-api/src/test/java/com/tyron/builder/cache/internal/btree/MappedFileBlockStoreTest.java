@@ -0,0 +1,204 @@
+package com.tyron.builder.cache.internal.btree;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MappedFileBlockStoreTest {
+
+    private static final BlockStore.Factory FACTORY = type -> new TestBlock();
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+    private BlockStore store;
+
+    @Before
+    public void setup() {
+        file = new File(folder.getRoot(), "cache.bin");
+        store = open(new MappedFileBlockStore(file), null);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+    }
+
+    private static BlockStore open(BlockStore store, AtomicBoolean initialized) {
+        store.open(() -> {
+            if (initialized != null) {
+                initialized.set(true);
+            }
+        }, FACTORY);
+        return store;
+    }
+
+    private TestBlock write(BlockStore store, int length, long seed) {
+        TestBlock block = new TestBlock();
+        block.data = new byte[length];
+        new Random(seed).nextBytes(block.data);
+        store.attach(block);
+        store.write(block);
+        return block;
+    }
+
+    private static void assertBlock(BlockStore store, TestBlock expected) {
+        TestBlock actual = store.read(expected.getPos(), TestBlock.class);
+        assertArrayEquals(expected.data, actual.data);
+    }
+
+    @Test
+    public void testReadsInsideAndAcrossRegions() {
+        // fills the first region up to a few bytes before its end
+        TestBlock first = write(store, MappedFileBlockStore.REGION_SIZE - 200, 1);
+        TestBlock crossing = write(store, 1000, 2);
+        TestBlock second = write(store, MappedFileBlockStore.REGION_SIZE, 3);
+        TestBlock last = write(store, 100, 4);
+
+        long crossingStart = crossing.getPos().getPos();
+        long crossingEnd = crossingStart + crossing.getBlock().getSize();
+        assertTrue(crossingStart < MappedFileBlockStore.REGION_SIZE);
+        assertTrue(crossingEnd > MappedFileBlockStore.REGION_SIZE);
+        assertTrue(file.length() > 2L * MappedFileBlockStore.REGION_SIZE);
+
+        assertBlock(store, first);
+        assertBlock(store, crossing);
+        assertBlock(store, second);
+        assertBlock(store, last);
+    }
+
+    @Test
+    public void testWritesAreSeenThroughMappedRegions() {
+        TestBlock block = write(store, 100, 1);
+        write(store, MappedFileBlockStore.REGION_SIZE, 2);
+        // maps the first region
+        assertBlock(store, block);
+
+        new Random(3).nextBytes(block.data);
+        store.write(block);
+        assertBlock(store, block);
+    }
+
+    @Test
+    public void testReopenExistingFile() {
+        TestBlock first = write(store, 100, 1);
+        TestBlock crossing = write(store, MappedFileBlockStore.REGION_SIZE, 2);
+        TestBlock last = write(store, 100, 3);
+        long length = file.length();
+        store.close();
+
+        AtomicBoolean initialized = new AtomicBoolean();
+        store = open(new MappedFileBlockStore(file), initialized);
+        assertFalse(initialized.get());
+        assertBlock(store, first);
+        assertBlock(store, crossing);
+        assertBlock(store, last);
+
+        // new blocks are added after the existing ones
+        TestBlock added = write(store, 100, 4);
+        assertEquals(length, added.getPos().getPos());
+        assertBlock(store, added);
+    }
+
+    @Test
+    public void testFileIsReadableByFileBackedStore() {
+        TestBlock first = write(store, 100, 1);
+        TestBlock crossing = write(store, MappedFileBlockStore.REGION_SIZE, 2);
+        store.close();
+
+        store = open(new FileBackedBlockStore(file), null);
+        assertBlock(store, first);
+        assertBlock(store, crossing);
+    }
+
+    @Test
+    public void testReadsFileWrittenByFileBackedStore() {
+        store.close();
+        store = open(new FileBackedBlockStore(file), null);
+        TestBlock first = write(store, 100, 1);
+        TestBlock crossing = write(store, MappedFileBlockStore.REGION_SIZE, 2);
+        store.close();
+
+        store = open(new MappedFileBlockStore(file), null);
+        assertBlock(store, first);
+        assertBlock(store, crossing);
+    }
+
+    @Test
+    public void testClear() {
+        TestBlock old = write(store, MappedFileBlockStore.REGION_SIZE + 100, 1);
+        write(store, MappedFileBlockStore.REGION_SIZE, 2);
+        // maps the regions before they are truncated
+        assertBlock(store, old);
+
+        store.clear();
+        assertEquals(0, file.length());
+        try {
+            store.read(old.getPos(), TestBlock.class);
+            fail("Expected the cleared block to be gone");
+        } catch (CorruptedCacheException expected) {
+            // expected
+        }
+
+        TestBlock block = write(store, 100, 3);
+        assertEquals(0, block.getPos().getPos());
+        assertBlock(store, block);
+        TestBlock large = write(store, 2 * MappedFileBlockStore.REGION_SIZE, 4);
+        assertBlock(store, block);
+        assertBlock(store, large);
+    }
+
+    @Test
+    public void testReopenAfterClear() {
+        write(store, MappedFileBlockStore.REGION_SIZE, 1);
+        store.clear();
+        TestBlock block = write(store, 100, 2);
+        store.close();
+
+        AtomicBoolean initialized = new AtomicBoolean();
+        store = open(new MappedFileBlockStore(file), initialized);
+        assertFalse(initialized.get());
+        assertBlock(store, block);
+    }
+
+    public static class TestBlock extends BlockPayload {
+        private byte[] data = new byte[0];
+
+        @Override
+        protected int getSize() {
+            return 4 + data.length;
+        }
+
+        @Override
+        protected byte getType() {
+            return 0x55;
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            data = new byte[inputStream.readInt()];
+            inputStream.readFully(data);
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeInt(data.length);
+            outputStream.write(data);
+        }
+    }
+}
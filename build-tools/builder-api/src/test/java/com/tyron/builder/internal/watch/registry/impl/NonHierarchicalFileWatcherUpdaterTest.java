@@ -0,0 +1,210 @@
+package com.tyron.builder.internal.watch.registry.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.tyron.builder.api.internal.file.FileMetadata.AccessType;
+import com.tyron.builder.api.internal.file.impl.DefaultFileMetadata;
+import com.tyron.builder.api.internal.snapshot.CaseSensitivity;
+import com.tyron.builder.api.internal.snapshot.DirectorySnapshot;
+import com.tyron.builder.api.internal.snapshot.FileSystemLocationSnapshot;
+import com.tyron.builder.api.internal.snapshot.MissingFileSnapshot;
+import com.tyron.builder.api.internal.snapshot.RegularFileSnapshot;
+import com.tyron.builder.api.internal.snapshot.SnapshotHierarchy;
+import com.tyron.builder.internal.vfs.impl.DefaultSnapshotHierarchy;
+
+import net.rubygrapefruit.platform.file.FileWatcher;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public class NonHierarchicalFileWatcherUpdaterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final RecordingFileWatcher watcher = new RecordingFileWatcher();
+    private NonHierarchicalFileWatcherUpdater updater;
+    private SnapshotHierarchy root = DefaultSnapshotHierarchy.empty(CaseSensitivity.CASE_SENSITIVE);
+
+    private File project;
+    private File sources;
+    private File probeDirectory;
+
+    @Before
+    public void setup() throws IOException {
+        project = folder.newFolder("project");
+        sources = new File(project, "src");
+        assertTrue(sources.mkdirs());
+        probeDirectory = new File(project, ".gradle");
+
+        DefaultFileWatcherProbeRegistry probeRegistry = new DefaultFileWatcherProbeRegistry(hierarchy ->
+                new File(new File(hierarchy, ".gradle"), "file-system.probe"));
+        WatchableHierarchies watchableHierarchies = new WatchableHierarchies(probeRegistry, path -> true);
+        updater = new NonHierarchicalFileWatcherUpdater(watcher, probeRegistry, watchableHierarchies,
+                vfsRoot -> Collections.emptyList());
+        updater.registerWatchableHierarchy(project, root);
+    }
+
+    /**
+     * Stores the snapshot in the virtual file system and reports the diff to the updater,
+     * the same way the virtual file system does.
+     */
+    private void store(FileSystemLocationSnapshot snapshot) {
+        SnapshotCollectingDiffListener diffListener = new SnapshotCollectingDiffListener();
+        SnapshotHierarchy newRoot = root.store(snapshot.getAbsolutePath(), snapshot, diffListener);
+        diffListener.publishSnapshotDiff((removedSnapshots, addedSnapshots) ->
+                updater.virtualFileSystemContentsChanged(removedSnapshots, addedSnapshots, newRoot));
+        root = newRoot;
+    }
+
+    private void invalidate(File location) {
+        root = updater.createInvalidator().invalidate(location.getAbsolutePath(), root);
+    }
+
+    private static RegularFileSnapshot file(File file, String contents) {
+        HashCode hash = Hashing.md5().hashString(contents, StandardCharsets.UTF_8);
+        return new RegularFileSnapshot(file.getAbsolutePath(), file.getName(), hash,
+                DefaultFileMetadata.file(0, contents.length(), AccessType.DIRECT));
+    }
+
+    private static DirectorySnapshot directory(File directory, FileSystemLocationSnapshot... children) {
+        return new DirectorySnapshot(directory.getAbsolutePath(), directory.getName(),
+                AccessType.DIRECT, Hashing.md5().hashString(directory.getPath(), StandardCharsets.UTF_8),
+                Arrays.asList(children));
+    }
+
+    @Test
+    public void testParentOfFileAndProbeDirectoryAreWatched() {
+        store(file(new File(sources, "Main.java"), "class Main {}"));
+
+        assertEquals(ImmutableSet.of(sources, probeDirectory), watcher.watched);
+        assertTrue(new File(probeDirectory, "file-system.probe").exists());
+    }
+
+    @Test
+    public void testDirectoryAndItsSubdirectoriesAreWatched() {
+        File main = new File(sources, "main");
+        File java = new File(main, "java");
+        store(directory(sources,
+                file(new File(sources, "README"), "readme"),
+                directory(main,
+                        directory(java, file(new File(java, "Main.java"), "class Main {}")))));
+
+        assertEquals(ImmutableSet.of(project, sources, main, java, probeDirectory), watcher.watched);
+    }
+
+    @Test
+    public void testClosestExistingAncestorOfMissingFileIsWatched() {
+        store(new MissingFileSnapshot(new File(project, "generated/Missing.java").getAbsolutePath(),
+                AccessType.DIRECT));
+
+        // a hierarchy with only missing files has no content to probe
+        assertEquals(ImmutableSet.of(project), watcher.watched);
+    }
+
+    @Test
+    public void testDirectoryIsWatchedUntilItsLastSnapshotIsRemoved() {
+        File main = new File(sources, "Main.java");
+        File util = new File(sources, "Util.java");
+        store(file(main, "class Main {}"));
+        store(file(util, "class Util {}"));
+        // a directory is only watched once, however many snapshots need it
+        assertEquals(Arrays.asList(sources, probeDirectory), watcher.started);
+
+        invalidate(main);
+        assertTrue(watcher.stopped.isEmpty());
+        assertEquals(ImmutableSet.of(sources, probeDirectory), watcher.watched);
+
+        invalidate(util);
+        assertEquals(Arrays.asList(sources, probeDirectory), watcher.stopped);
+        assertTrue(watcher.watched.isEmpty());
+    }
+
+    @Test
+    public void testUpdatedSnapshotKeepsItsWatches() {
+        File main = new File(sources, "Main.java");
+        store(file(main, "class Main {}"));
+        watcher.started.clear();
+
+        store(file(main, "class Main { void run() {} }"));
+
+        assertTrue(watcher.started.isEmpty());
+        assertTrue(watcher.stopped.isEmpty());
+        assertEquals(ImmutableSet.of(sources, probeDirectory), watcher.watched);
+    }
+
+    @Test
+    public void testReplacingSnapshotOnlyUpdatesTheDifference() {
+        File main = new File(sources, "main");
+        File test = new File(sources, "test");
+        store(file(new File(sources, "Other.java"), "class Other {}"));
+        store(directory(sources, directory(main)));
+        watcher.started.clear();
+
+        // the new snapshot of the directory replaces the previous one
+        store(directory(sources, directory(test)));
+
+        assertEquals(Collections.singletonList(main), watcher.stopped);
+        assertEquals(Collections.singletonList(test), watcher.started);
+        assertEquals(ImmutableSet.of(project, sources, test, probeDirectory), watcher.watched);
+    }
+
+    /**
+     * Records the watched directories, failing when a directory is watched twice
+     * or an unwatched directory is stopped.
+     */
+    private static class RecordingFileWatcher implements FileWatcher {
+
+        private final Set<File> watched = new HashSet<>();
+        private final List<File> started = new ArrayList<>();
+        private final List<File> stopped = new ArrayList<>();
+
+        @Override
+        public void startWatching(Collection<File> paths) {
+            List<File> sorted = new ArrayList<>(paths);
+            Collections.sort(sorted);
+            for (File path : sorted) {
+                assertTrue("Already watching " + path, watched.add(path));
+                started.add(path);
+            }
+        }
+
+        @Override
+        public boolean stopWatching(Collection<File> paths) {
+            List<File> sorted = new ArrayList<>(paths);
+            Collections.sort(sorted);
+            for (File path : sorted) {
+                assertTrue("Not watching " + path, watched.remove(path));
+                stopped.add(path);
+            }
+            return true;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public boolean awaitTermination(long timeoutValue, TimeUnit timeoutUnit) {
+            return true;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.tyron.lint.api.JavaContext;
 import com.tyron.lint.api.JavaVoidVisitor;
 
 import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.IdentifierTree;
 import com.sun.source.tree.MemberSelectTree;
 import com.sun.source.tree.MethodInvocationTree;
@@ -20,10 +21,13 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 public class JavaVisitor {
 
@@ -67,32 +71,81 @@ public class JavaVisitor {
         try {
             CompilerContainer container = mCompiler.compile(context.file.toPath());
             container.run(task -> {
-                Tree compilationUnit = task.root();
                 context.setCompileTask(task);
+                visitCompilationUnit(context, task.root());
+            });
+        } catch (Throwable e) {
+            Log.e("Lint", "Failed to analyze file", e);
+            ((JavaCompilerService) mCompiler).destroy();
+        }
+    }
 
-                for (VisitingDetector v : mAllDetectors) {
-                    v.setContext(context);
-                }
-
-                if (!mMethodDetectors.isEmpty()) {
-                    JavaVoidVisitor visitor = new DelegatingJavaVisitor(context);
-                    compilationUnit.accept(visitor, null);
-                } else if (!mTreeTypeDetectors.isEmpty()) {
-                    JavaVoidVisitor visitor = new DispatchVisitor();
-                    compilationUnit.accept(visitor, null);
+    /**
+     * Visits the files with a single compilation, the files should all belong to the
+     * module of the compiler.
+     */
+    public void visitFiles(@NonNull List<JavaContext> contexts) {
+        if (contexts.isEmpty()) {
+            return;
+        }
+        Path[] paths = new Path[contexts.size()];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = contexts.get(i).file.toPath();
+        }
+        try {
+            CompilerContainer container = mCompiler.compile(paths);
+            container.run(task -> {
+                for (JavaContext context : contexts) {
+                    CompilationUnitTree compilationUnit = task.root(context.file);
+                    if (compilationUnit == null) {
+                        continue;
+                    }
+                    context.setCompileTask(task, compilationUnit);
+                    try {
+                        visitCompilationUnit(context, compilationUnit);
+                    } catch (RuntimeException e) {
+                        Log.e("Lint", "Failed to analyze " + context.file, e);
+                    }
                 }
             });
         } catch (Throwable e) {
-            Log.e("Lint", "Failed to analyze file", e);
+            Log.e("Lint", "Failed to analyze files", e);
             ((JavaCompilerService) mCompiler).destroy();
         }
     }
 
+    /**
+     * @return the time spent in each detector since this visitor was created, in nanoseconds
+     */
+    @NonNull
+    public Map<Detector, Long> getDetectorTimings() {
+        Map<Detector, Long> timings = new LinkedHashMap<>(mAllDetectors.size());
+        for (VisitingDetector v : mAllDetectors) {
+            timings.put(v.getDetector(), v.mTimeNanos);
+        }
+        return timings;
+    }
+
+    private void visitCompilationUnit(JavaContext context, Tree compilationUnit) {
+        for (VisitingDetector v : mAllDetectors) {
+            v.setContext(context);
+        }
+
+        if (!mMethodDetectors.isEmpty()) {
+            JavaVoidVisitor visitor = new DelegatingJavaVisitor(context);
+            compilationUnit.accept(visitor, null);
+        } else if (!mTreeTypeDetectors.isEmpty()) {
+            JavaVoidVisitor visitor = new DispatchVisitor();
+            compilationUnit.accept(visitor, null);
+        }
+    }
+
     private static class VisitingDetector {
         private JavaVoidVisitor mVisitor;
         private JavaContext mContext;
         public final Detector mDetector;
         public final JavaScanner mScanner;
+        private long mTimeNanos;
 
         public VisitingDetector(@NonNull Detector detector, JavaScanner scanner) {
             mDetector = detector;
@@ -128,58 +181,44 @@ public class JavaVisitor {
 
     private class DispatchVisitor extends JavaVoidVisitor {
 
-        @Override
-        public Void visitAnnotation(AnnotationTree annotationTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(AnnotationTree.class);
+        void dispatch(Class<? extends Tree> type, Consumer<JavaVoidVisitor> visit) {
+            List<VisitingDetector> list = mTreeTypeDetectors.get(type);
             if (list != null) {
                 for (VisitingDetector v : list) {
-                    v.getVisitor().visitAnnotation(annotationTree, unused);
+                    long start = System.nanoTime();
+                    visit.accept(v.getVisitor());
+                    v.mTimeNanos += System.nanoTime() - start;
                 }
             }
+        }
+
+        @Override
+        public Void visitAnnotation(AnnotationTree annotationTree, Void unused) {
+            dispatch(AnnotationTree.class, visitor -> visitor.visitAnnotation(annotationTree, unused));
             return null;
         }
 
         @Override
         public Void visitVariable(VariableTree variableTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(VariableTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitVariable(variableTree, unused);
-                }
-            }
+            dispatch(VariableTree.class, visitor -> visitor.visitVariable(variableTree, unused));
             return null;
         }
 
         @Override
         public Void visitMethodInvocation(MethodInvocationTree methodInvocationTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodInvocationTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitMethodInvocation(methodInvocationTree, unused);
-                }
-            }
+            dispatch(MethodInvocationTree.class, visitor -> visitor.visitMethodInvocation(methodInvocationTree, unused));
             return super.visitMethodInvocation(methodInvocationTree, unused);
         }
 
         @Override
         public Void visitMethod(MethodTree methodTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(MethodTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitMethod(methodTree, unused);
-                }
-            }
+            dispatch(MethodTree.class, visitor -> visitor.visitMethod(methodTree, unused));
             return super.visitMethod(methodTree, unused);
         }
 
         @Override
         public Void visitIdentifier(IdentifierTree identifierTree, Void unused) {
-            List<VisitingDetector> list = mTreeTypeDetectors.get(IdentifierTree.class);
-            if (list != null) {
-                for (VisitingDetector v : list) {
-                    v.getVisitor().visitIdentifier(identifierTree, unused);
-                }
-            }
+            dispatch(IdentifierTree.class, visitor -> visitor.visitIdentifier(identifierTree, unused));
             return super.visitIdentifier(identifierTree, unused);
         }
     }
@@ -222,7 +261,9 @@ public class JavaVisitor {
                 List<VisitingDetector> list = mMethodDetectors.get(methodName);
                 if (list != null) {
                     for (VisitingDetector v : list) {
+                        long start = System.nanoTime();
                         v.getJavaScanner().visitMethod(mContext, v.getVisitor(), node);
+                        v.mTimeNanos += System.nanoTime() - start;
                     }
                 }
             }
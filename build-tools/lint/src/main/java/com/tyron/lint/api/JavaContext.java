@@ -30,8 +30,9 @@ import com.sun.source.util.Trees;
 import java.io.File;
 
 public class JavaContext extends Context {
-    static final String SUPPRESS_COMMENT_PREFIX = "//noinspection ";
+    public static final String SUPPRESS_COMMENT_PREFIX = "//noinspection ";
     private CompileTask mCompileTask;
+    private CompilationUnitTree mCompilationUnit;
 
     public JavaContext(LintDriver driver, JavaModule project, File file, Configuration config) {
         super(driver, project, file, config);
@@ -39,6 +40,16 @@ public class JavaContext extends Context {
 
     public void setCompileTask(CompileTask root) {
         mCompileTask = root;
+        mCompilationUnit = null;
+    }
+
+    /**
+     * Sets the compile task of this file when it was compiled along with other files,
+     * the compilation unit of the file is looked up once here.
+     */
+    public void setCompileTask(CompileTask task, CompilationUnitTree compilationUnit) {
+        mCompileTask = task;
+        mCompilationUnit = compilationUnit;
     }
 
     public CompileTask getCompileTask() {
@@ -46,6 +57,9 @@ public class JavaContext extends Context {
     }
 
     public CompilationUnitTree getCompilationUnit() {
+        if (mCompilationUnit != null) {
+            return mCompilationUnit;
+        }
         return mCompileTask.root();
     }
 
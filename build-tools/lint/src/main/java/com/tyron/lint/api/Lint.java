@@ -22,28 +22,29 @@ import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class Lint {
     private final JavaModule mProject;
     private final JavaCompilerService mCompiler;
     private final List<Detector> mDetectors;
     private final LintClient mClient;
+    private final LintDriver mDriver;
+    private final Configuration mConfiguration;
 
     public Lint(JavaCompilerService compiler, JavaModule project, LintClient client) {
         mCompiler = compiler;
         mProject = project;
         mClient = client;
         mDetectors = new ArrayList<>();
-
-        registerDetector(new JavaPerformanceDetector());
-        registerDetector(new SharedPrefsDetector());
-        registerDetector(new CallSuperDetector());
-    }
-
-    public void scanFile(File file) {
-        Instant start = Instant.now();
-        LintDriver driver = new LintDriver(new IssueRegistry() {
+        mDriver = new LintDriver(new IssueRegistry() {
             @NonNull
             @Override
             public List<Issue> getIssues() {
@@ -55,7 +56,7 @@ public class Lint {
                 );
             }
         }, mClient);
-        JavaContext context = new JavaContext(driver, mProject, file, new Configuration() {
+        mConfiguration = new Configuration() {
             @Override
             public void ignore(@NonNull Context context, @NonNull Issue issue, @Nullable Location location, @NonNull String message) {
 
@@ -65,13 +66,83 @@ public class Lint {
             public void setSeverity(@NonNull Issue issue, @Nullable Severity severity) {
 
             }
-        });
+        };
+
+        registerDetector(new JavaPerformanceDetector());
+        registerDetector(new SharedPrefsDetector());
+        registerDetector(new CallSuperDetector());
+    }
+
+    public void scanFile(File file) {
+        Instant start = Instant.now();
         JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
-        visitor.visitFile(context);
+        visitor.visitFile(createContext(file));
 
         Log.d("Lint", "Scanning took " + Duration.between(start, Instant.now()).toMillis() + " ms");
     }
 
+    /**
+     * Scans all the java files of the module, the files are compiled together once
+     * instead of once per file.
+     */
+    public void scanModule() {
+        scanFiles(mProject.getJavaFiles().values());
+    }
+
+    /**
+     * Scans the files with a single compilation, the files must belong to the module
+     * of this lint.
+     */
+    public void scanFiles(Collection<File> files) {
+        Instant start = Instant.now();
+        List<JavaContext> contexts = new ArrayList<>(files.size());
+        for (File file : files) {
+            contexts.add(createContext(file));
+        }
+        JavaVisitor visitor = new JavaVisitor(mCompiler, mDetectors);
+        visitor.visitFiles(contexts);
+
+        for (Map.Entry<Detector, Long> entry : visitor.getDetectorTimings().entrySet()) {
+            Log.d("Lint", entry.getKey().getClass().getSimpleName() + " took " +
+                    TimeUnit.NANOSECONDS.toMillis(entry.getValue()) + " ms");
+        }
+        Log.d("Lint", "Scanning " + files.size() + " files took " +
+                Duration.between(start, Instant.now()).toMillis() + " ms");
+    }
+
+    /**
+     * Scans the modules in parallel, each module is compiled by its own compiler so only
+     * the files of the same module are scanned sequentially.
+     */
+    public static void scanModules(Collection<Lint> modules) {
+        if (modules.isEmpty()) {
+            return;
+        }
+        int threads = Math.min(modules.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>(modules.size());
+            for (Lint lint : modules) {
+                futures.add(executor.submit(lint::scanModule));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Log.e("Lint", "Failed to scan module", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private JavaContext createContext(File file) {
+        return new JavaContext(mDriver, mProject, file, mConfiguration);
+    }
+
     public void registerDetector(Detector detector) {
         mDetectors.add(detector);
     }
@@ -13,18 +13,16 @@ import com.tyron.lint.api.Scope;
 import com.tyron.lint.api.Severity;
 import com.tyron.lint.api.TextFormat;
 
-import com.sun.source.tree.AnnotationTree;
-import com.sun.source.tree.ExpressionTree;
-import com.sun.source.tree.IdentifierTree;
-import com.sun.source.tree.LiteralTree;
-import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ModifiersTree;
 import com.sun.source.tree.Tree;
-import com.sun.source.util.TreePath;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.Trees;
 
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
 public class LintDriver {
 
@@ -46,6 +44,12 @@ public class LintDriver {
     private boolean mParserErrors;
     private Map<Object,Object> mProperties;
 
+    /**
+     * The suppressions of the compilation units linted so far, dropped along with the
+     * compile task that owns the trees.
+     */
+    private final Map<CompilationUnitTree, SuppressionMap> mSuppressionMaps = new WeakHashMap<>();
+
 
     /**
      * Creates a new {@link LintDriver}
@@ -64,26 +68,14 @@ public class LintDriver {
 
     public boolean isSuppressed(@Nullable JavaContext context, @NonNull Issue issue,
                                 @Nullable Tree scope) {
-        boolean checkComments = mClient.checkForSuppressComments() &&
-                context != null && context.containsCommentSuppress();
-        if (context == null) {
+        if (context == null || scope == null) {
             return false;
         }
-        while (scope != null) {
-            if (scope instanceof MethodTree) {
-                if (isSuppressed(issue, ((MethodTree) scope).getModifiers())) {
-                    return true;
-                }
-            }
-
-            TreePath parentPath = TreePath.getPath(context.getCompilationUnit(), scope).getParentPath();
-            if (parentPath == null) {
-                break;
-            } else {
-                scope = parentPath.getLeaf();
+        for (String id : getSuppressionMap(context).getSuppressedIds(scope)) {
+            if (matches(issue, id)) {
+                return true;
             }
         }
-
         return false;
     }
 
@@ -91,35 +83,32 @@ public class LintDriver {
         if (modifiers == null) {
             return false;
         }
-
-        List<? extends AnnotationTree> annotations = modifiers.getAnnotations();
-        if (annotations == null) {
-            return false;
+        for (String id : SuppressionMap.getSuppressedIds(modifiers)) {
+            if (matches(issue, id)) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        for (AnnotationTree annotation : annotations) {
-            IdentifierTree type = (IdentifierTree) annotation.getAnnotationType();
-            String typeName = type.getName().toString();
-            if (typeName.endsWith("SuppressLint")
-                || typeName.endsWith("SuppressWarnings")) {
-                List<? extends ExpressionTree> values = annotation.getArguments();
-                if (values != null) {
-                    for (ExpressionTree arg : values) {
-                        if (arg == null) {
-                            continue;
-                        }
-                        if (arg instanceof LiteralTree) {
-                            String value = String.valueOf(((LiteralTree) arg).getValue());
-                            if (matches(issue, value)) {
-                                return true;
-                            }
-                        }
-                    }
-                }
+    /**
+     * Returns the suppressions of the compilation unit, scanning it the first time
+     * an issue is reported in it.
+     */
+    @NonNull
+    private SuppressionMap getSuppressionMap(@NonNull JavaContext context) {
+        CompilationUnitTree compilationUnit = context.getCompilationUnit();
+        synchronized (mSuppressionMaps) {
+            SuppressionMap map = mSuppressionMaps.get(compilationUnit);
+            if (map == null) {
+                SourcePositions positions = mClient.checkForSuppressComments()
+                        ? Trees.instance(context.getCompileTask().task).getSourcePositions()
+                        : null;
+                map = new SuppressionMap(compilationUnit, positions);
+                mSuppressionMaps.put(compilationUnit, map);
             }
+            return map;
         }
-
-        return false;
     }
 
     private static boolean matches(@Nullable Issue issue, @NonNull String id) {
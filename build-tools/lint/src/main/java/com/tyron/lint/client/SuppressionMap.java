@@ -0,0 +1,222 @@
+package com.tyron.lint.client;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.sun.source.tree.AnnotationTree;
+import com.sun.source.tree.AssignmentTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.LiteralTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.StatementTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TreeScanner;
+import com.tyron.lint.api.JavaContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The suppressions in effect at every node of a compilation unit, computed with a single
+ * scan of the tree. A node maps to the ids of the {@code @SuppressLint} and
+ * {@code @SuppressWarnings} annotations of its enclosing classes, methods and variables,
+ * nodes which are not suppressed share an empty list.
+ *
+ * <p>A {@code //noinspection} comment on the line before a statement or declaration
+ * suppresses the ids it lists for that statement or declaration.
+ */
+final class SuppressionMap {
+
+    private final Map<Tree, List<String>> mSuppressions = new IdentityHashMap<>();
+
+    @Nullable
+    private final CompilationUnitTree mCompilationUnit;
+    @Nullable
+    private final SourcePositions mPositions;
+    @Nullable
+    private final CharSequence mContents;
+
+    SuppressionMap(@NonNull CompilationUnitTree compilationUnit) {
+        this(compilationUnit, null);
+    }
+
+    /**
+     * @param positions The positions of the compilation unit, used to find the suppress
+     *                  comments. Comments are not checked if null.
+     */
+    SuppressionMap(@NonNull CompilationUnitTree compilationUnit,
+                   @Nullable SourcePositions positions) {
+        mCompilationUnit = compilationUnit;
+        mPositions = positions;
+        mContents = positions != null ? getContents(compilationUnit) : null;
+        new Builder().scan(compilationUnit, Collections.emptyList());
+    }
+
+    @Nullable
+    private static CharSequence getContents(CompilationUnitTree compilationUnit) {
+        if (compilationUnit.getSourceFile() == null) {
+            return null;
+        }
+        try {
+            return compilationUnit.getSourceFile().getCharContent(true);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the ids suppressed at the given node, empty if the node is not
+     * part of the compilation unit
+     */
+    @NonNull
+    List<String> getSuppressedIds(@NonNull Tree scope) {
+        List<String> ids = mSuppressions.get(scope);
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    /**
+     * @return the ids listed in the suppress annotations of the modifiers
+     */
+    @NonNull
+    static List<String> getSuppressedIds(@NonNull ModifiersTree modifiers) {
+        List<? extends AnnotationTree> annotations = modifiers.getAnnotations();
+        if (annotations == null || annotations.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<String> ids = null;
+        for (AnnotationTree annotation : annotations) {
+            String typeName = annotation.getAnnotationType().toString();
+            if (!typeName.endsWith("SuppressLint") && !typeName.endsWith("SuppressWarnings")) {
+                continue;
+            }
+            List<? extends ExpressionTree> values = annotation.getArguments();
+            if (values == null) {
+                continue;
+            }
+            for (ExpressionTree arg : values) {
+                if (ids == null) {
+                    ids = new ArrayList<>(2);
+                }
+                addIds(arg, ids);
+            }
+        }
+        return ids != null ? ids : Collections.emptyList();
+    }
+
+    /**
+     * @return the ids of the suppress comment on the line before the node
+     */
+    @NonNull
+    private List<String> getCommentIds(@NonNull Tree tree) {
+        if (mContents == null || mPositions == null) {
+            return Collections.emptyList();
+        }
+        long start = mPositions.getStartPosition(mCompilationUnit, tree);
+        if (start < 0 || start > mContents.length()) {
+            return Collections.emptyList();
+        }
+        int lineStart = (int) start;
+        while (lineStart > 0 && mContents.charAt(lineStart - 1) != '\n') {
+            lineStart--;
+        }
+        if (lineStart == 0) {
+            return Collections.emptyList();
+        }
+        int previousStart = lineStart - 1;
+        while (previousStart > 0 && mContents.charAt(previousStart - 1) != '\n') {
+            previousStart--;
+        }
+        String previous = mContents.subSequence(previousStart, lineStart - 1).toString().trim();
+        if (!previous.startsWith(JavaContext.SUPPRESS_COMMENT_PREFIX)) {
+            return Collections.emptyList();
+        }
+
+        List<String> ids = new ArrayList<>(2);
+        String[] names = previous.substring(JavaContext.SUPPRESS_COMMENT_PREFIX.length())
+                .split("[\\s,]+");
+        for (String name : names) {
+            if (!name.isEmpty()) {
+                ids.add(name);
+            }
+        }
+        return ids;
+    }
+
+    private static void addIds(ExpressionTree value, List<String> ids) {
+        if (value instanceof AssignmentTree) {
+            addIds(((AssignmentTree) value).getExpression(), ids);
+        } else if (value instanceof NewArrayTree) {
+            List<? extends ExpressionTree> initializers = ((NewArrayTree) value).getInitializers();
+            if (initializers != null) {
+                for (ExpressionTree initializer : initializers) {
+                    addIds(initializer, ids);
+                }
+            }
+        } else if (value instanceof LiteralTree) {
+            ids.add(String.valueOf(((LiteralTree) value).getValue()));
+        }
+    }
+
+    private class Builder extends TreeScanner<Void, List<String>> {
+
+        @Override
+        public Void scan(Tree tree, List<String> inherited) {
+            if (tree == null) {
+                return null;
+            }
+            List<String> suppressed = inherited;
+            ModifiersTree modifiers = getModifiers(tree);
+            if (modifiers != null) {
+                suppressed = concat(suppressed, getSuppressedIds(modifiers));
+            }
+            if (tree instanceof StatementTree || tree instanceof MethodTree) {
+                suppressed = concat(suppressed, getCommentIds(tree));
+            }
+            mSuppressions.put(tree, suppressed);
+            return super.scan(tree, suppressed);
+        }
+
+        /**
+         * Adds the ids which are not inherited yet, a comment is seen by every node which
+         * starts on the line after it, such as a statement and the block it begins with.
+         */
+        private List<String> concat(List<String> inherited, List<String> ids) {
+            List<String> suppressed = inherited;
+            for (String id : ids) {
+                if (inherited.contains(id)) {
+                    continue;
+                }
+                if (suppressed == inherited) {
+                    suppressed = new ArrayList<>(inherited.size() + ids.size());
+                    suppressed.addAll(inherited);
+                }
+                suppressed.add(id);
+            }
+            return suppressed;
+        }
+
+        private ModifiersTree getModifiers(Tree tree) {
+            if (tree instanceof MethodTree) {
+                return ((MethodTree) tree).getModifiers();
+            }
+            if (tree instanceof ClassTree) {
+                return ((ClassTree) tree).getModifiers();
+            }
+            if (tree instanceof VariableTree) {
+                return ((VariableTree) tree).getModifiers();
+            }
+            return null;
+        }
+    }
+}
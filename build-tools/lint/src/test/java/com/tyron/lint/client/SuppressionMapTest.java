@@ -0,0 +1,169 @@
+package com.tyron.lint.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+public class SuppressionMapTest {
+
+    private CompilationUnitTree mCompilationUnit;
+    private SuppressionMap mMap;
+
+    private void parse(String contents, boolean checkComments) throws IOException {
+        JavaFileObject file = new SimpleJavaFileObject(URI.create("string:///Test.java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return contents;
+            }
+        };
+        JavacTask task = (JavacTask) ToolProvider.getSystemJavaCompiler()
+                .getTask(null, null, null, null, null, Collections.singletonList(file));
+        mCompilationUnit = task.parse().iterator().next();
+        mMap = new SuppressionMap(mCompilationUnit,
+                checkComments ? Trees.instance(task).getSourcePositions() : null);
+    }
+
+    /**
+     * @return the ids suppressed at the identifier with the given name
+     */
+    private List<String> suppressedAt(String name) {
+        Tree[] found = new Tree[1];
+        new TreePathScanner<Void, Void>() {
+            @Override
+            public Void visitIdentifier(IdentifierTree node, Void unused) {
+                if (found[0] == null && node.getName().contentEquals(name)) {
+                    found[0] = node;
+                }
+                return super.visitIdentifier(node, unused);
+            }
+        }.scan(mCompilationUnit, null);
+        assertTrue("No identifier named " + name, found[0] != null);
+        return mMap.getSuppressedIds(found[0]);
+    }
+
+    @Test
+    public void testSuppressWarningsOnMethod() throws IOException {
+        parse("class Test {\n" +
+              "    @SuppressWarnings(\"ToastId\")\n" +
+              "    void suppressed() { first(); }\n" +
+              "    void other() { second(); }\n" +
+              "}\n", false);
+
+        assertEquals(Collections.singletonList("ToastId"), suppressedAt("first"));
+        assertEquals(Collections.emptyList(), suppressedAt("second"));
+    }
+
+    @Test
+    public void testSuppressWarningsIsInherited() throws IOException {
+        parse("@SuppressWarnings({\"First\", \"Second\"})\n" +
+              "class Test {\n" +
+              "    @android.annotation.SuppressLint(value = \"Third\")\n" +
+              "    int field = init();\n" +
+              "    void method() { call(); }\n" +
+              "}\n", false);
+
+        assertEquals(Arrays.asList("First", "Second", "Third"), suppressedAt("init"));
+        assertEquals(Arrays.asList("First", "Second"), suppressedAt("call"));
+    }
+
+    @Test
+    public void testSuppressWarningsOnLocalVariable() throws IOException {
+        parse("class Test {\n" +
+              "    void method() {\n" +
+              "        @SuppressWarnings(\"Local\") int a = first();\n" +
+              "        int b = second();\n" +
+              "    }\n" +
+              "}\n", false);
+
+        assertEquals(Collections.singletonList("Local"), suppressedAt("first"));
+        assertEquals(Collections.emptyList(), suppressedAt("second"));
+    }
+
+    @Test
+    public void testNoInspectionCoversNextStatement() throws IOException {
+        parse("class Test {\n" +
+              "    void method() {\n" +
+              "        //noinspection ShowToast\n" +
+              "        first();\n" +
+              "        second();\n" +
+              "    }\n" +
+              "}\n", true);
+
+        assertEquals(Collections.singletonList("ShowToast"), suppressedAt("first"));
+        assertEquals(Collections.emptyList(), suppressedAt("second"));
+    }
+
+    @Test
+    public void testNoInspectionCoversDeclaration() throws IOException {
+        parse("class Test {\n" +
+              "    //noinspection First,Second\n" +
+              "    @Override\n" +
+              "    public String toString() {\n" +
+              "        return first();\n" +
+              "    }\n" +
+              "    void other() { second(); }\n" +
+              "}\n", true);
+
+        assertEquals(Arrays.asList("First", "Second"), suppressedAt("first"));
+        assertEquals(Collections.emptyList(), suppressedAt("second"));
+    }
+
+    @Test
+    public void testNoInspectionCoversBlock() throws IOException {
+        parse("class Test {\n" +
+              "    void method(boolean a) {\n" +
+              "        //noinspection All\n" +
+              "        if (a) {\n" +
+              "            first();\n" +
+              "        }\n" +
+              "        second();\n" +
+              "    }\n" +
+              "}\n", true);
+
+        assertEquals(Collections.singletonList("All"), suppressedAt("first"));
+        assertEquals(Collections.emptyList(), suppressedAt("second"));
+    }
+
+    @Test
+    public void testCommentsAreIgnoredWithoutPositions() throws IOException {
+        parse("class Test {\n" +
+              "    void method() {\n" +
+              "        //noinspection ShowToast\n" +
+              "        first();\n" +
+              "    }\n" +
+              "}\n", false);
+
+        assertEquals(Collections.emptyList(), suppressedAt("first"));
+    }
+
+    @Test
+    public void testOtherCommentsAreIgnored() throws IOException {
+        parse("class Test {\n" +
+              "    void method() {\n" +
+              "        // noinspection is not spelled like this\n" +
+              "        first();\n" +
+              "    }\n" +
+              "}\n", true);
+
+        assertEquals(Collections.emptyList(), suppressedAt("first"));
+    }
+}
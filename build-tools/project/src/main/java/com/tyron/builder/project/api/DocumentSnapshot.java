@@ -0,0 +1,45 @@
+package com.tyron.builder.project.api;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+
+/**
+ * An immutable version of the contents of a file opened in a {@link FileManager}.
+ *
+ * <p>The text of a snapshot never changes, it can be read from any thread without copying.
+ * Each edit of the file creates a new snapshot with a higher version.
+ */
+public class DocumentSnapshot {
+
+    private final File mFile;
+    private final long mVersion;
+    private final CharSequence mText;
+
+    public DocumentSnapshot(@NonNull File file, long version, @NonNull CharSequence text) {
+        mFile = file;
+        mVersion = version;
+        mText = text;
+    }
+
+    @NonNull
+    public File getFile() {
+        return mFile;
+    }
+
+    /**
+     * @return the version of the file, increased by one for every change of its contents
+     * since it was opened
+     */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @return a read-only view of the contents of the file at this version
+     */
+    @NonNull
+    public CharSequence getText() {
+        return mText;
+    }
+}
@@ -50,6 +50,44 @@ public interface FileManager {
         setSnapshotContent(file, content, true);
     }
 
+    /**
+     * Apply an edit to the stored contents of this file, only if it has been opened before
+     * through {@link FileManager#openFileForSnapshot(File, String)}. Listeners other than
+     * the passed one are notified with the delta through
+     * {@link FileListener#onSnapshotEdited(File, TextDelta, DocumentSnapshot)}.
+     *
+     * @param file The file
+     * @param delta The edit, with offsets in the current contents of the file
+     * @param listener The listener to ignore, usually the editor that made the edit
+     * @return The new snapshot of the file, or null if the file is not opened
+     * @throws IndexOutOfBoundsException if the range of the delta is outside the contents
+     */
+    @Nullable
+    default DocumentSnapshot applySnapshotEdit(@NonNull File file, @NonNull TextDelta delta,
+                                               @Nullable FileListener listener) {
+        Optional<CharSequence> content = getFileContent(file);
+        if (!isOpened(file) || !content.isPresent()) {
+            return null;
+        }
+        String newContent = new StringBuilder(content.get())
+                .replace(delta.getStart(), delta.getEnd(), delta.getText().toString())
+                .toString();
+        setSnapshotContent(file, newContent, listener);
+        return new DocumentSnapshot(file, 0, newContent);
+    }
+
+    /**
+     * Get the current snapshot of a file opened in this file manager.
+     * @param file The file
+     * @return The snapshot, or {@link Optional#empty()} if the file is not opened
+     */
+    default Optional<DocumentSnapshot> getSnapshot(@NonNull File file) {
+        if (!isOpened(file)) {
+            return Optional.empty();
+        }
+        return getFileContent(file).map(content -> new DocumentSnapshot(file, 0, content));
+    }
+
     /**
      * Mark the file as closed and save its stored snapshot to disk
      * @param file the file to be saved
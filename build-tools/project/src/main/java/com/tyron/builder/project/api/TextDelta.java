@@ -0,0 +1,61 @@
+package com.tyron.builder.project.api;
+
+import androidx.annotation.NonNull;
+
+/**
+ * An edit of a document that replaces a range of its text.
+ */
+public class TextDelta {
+
+    private final int mStart;
+    private final int mEnd;
+    private final CharSequence mText;
+
+    /**
+     * @param start the start of the replaced range, inclusive
+     * @param end the end of the replaced range in the old text, exclusive
+     * @param text the text inserted in place of the range, empty for deletions
+     */
+    public TextDelta(int start, int end, @NonNull CharSequence text) {
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid range: " + start + ", " + end);
+        }
+        mStart = start;
+        mEnd = end;
+        mText = text;
+    }
+
+    public static TextDelta insert(int index, @NonNull CharSequence text) {
+        return new TextDelta(index, index, text);
+    }
+
+    public static TextDelta delete(int start, int end) {
+        return new TextDelta(start, end, "");
+    }
+
+    public int getStart() {
+        return mStart;
+    }
+
+    public int getEnd() {
+        return mEnd;
+    }
+
+    @NonNull
+    public CharSequence getText() {
+        return mText;
+    }
+
+    /**
+     * @return the change in the length of the document after applying this delta
+     */
+    public int getLengthDelta() {
+        return mText.length() - (mEnd - mStart);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "TextDelta{" + mStart + ".." + mEnd + " -> " + mText.length() + " chars}";
+    }
+}
@@ -5,12 +5,13 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.tyron.builder.project.api.DocumentSnapshot;
 import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.api.TextDelta;
 import com.tyron.builder.project.listener.FileListener;
+import com.tyron.builder.project.util.Rope;
 import com.tyron.common.util.ThreadUtil;
 
-import org.apache.commons.io.FileUtils;
-
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -20,52 +21,144 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FileManagerImpl implements FileManager {
 
+    /**
+     * The contents of an opened file. The contents are kept as a {@link Rope} so that
+     * edits only copy the chunks around the edited range and every snapshot handed out
+     * stays valid after later edits.
+     */
     private static class FileState {
 
-        private String mContents;
+        private final File mFile;
+        private Rope mContents;
         private Instant mModified;
-
-        public FileState(String contents, Instant modified) {
-            mContents = contents;
+        private long mVersion;
+        /**
+         * The version of the contents on disk, the file is dirty if it is not the current one.
+         */
+        private long mSavedVersion;
+        /**
+         * The version of the contents in the journal, or -1 if the file has no journal entry.
+         */
+        private long mJournaledVersion = -1;
+        /**
+         * The modification time of the file on disk when it was last read or written.
+         */
+        private long mDiskModified;
+
+        public FileState(File file, String contents, Instant modified) {
+            mFile = file;
+            mContents = Rope.of(contents);
             mModified = modified;
+            mDiskModified = modified.toEpochMilli();
         }
 
-        public String getContents() {
+        public synchronized Rope getContents() {
             return mContents;
         }
 
-        public Instant getModified() {
+        public synchronized Instant getModified() {
             return mModified;
         }
 
-        public void setContents(String content) {
-            mContents = content;
+        /**
+         * @return whether the contents have changed
+         */
+        public synchronized boolean setContents(String content) {
+            if (content.contentEquals(mContents)) {
+                return false;
+            }
+            mContents = Rope.of(content);
+            mModified = Instant.now();
+            mVersion++;
+            return true;
+        }
+
+        public synchronized DocumentSnapshot apply(TextDelta delta) {
+            mContents = mContents.replace(delta.getStart(), delta.getEnd(), delta.getText());
+            mModified = Instant.now();
+            mVersion++;
+            return getSnapshot();
         }
 
-        public void setModified(Instant now) {
+        public synchronized DocumentSnapshot getSnapshot() {
+            return new DocumentSnapshot(mFile, mVersion, mContents);
+        }
+
+        public synchronized void setModified(Instant now) {
             mModified = now;
         }
+
+        public synchronized boolean isDirty() {
+            return mVersion != mSavedVersion;
+        }
+
+        public synchronized boolean needsJournal() {
+            return isDirty() && mJournaledVersion != mVersion;
+        }
+
+        public synchronized long getDiskModified() {
+            return mDiskModified;
+        }
+
+        /**
+         * Marks the contents as recovered from the journal, they differ from the disk until
+         * they are saved.
+         */
+        public synchronized void setRecovered() {
+            mVersion++;
+            mJournaledVersion = mVersion;
+        }
+
+        public synchronized void setJournaled(long version) {
+            mJournaledVersion = version;
+        }
+
+        /**
+         * Records that the contents at the given version have been written to disk.
+         *
+         * @return whether the contents have not changed since, only then can the journal entry
+         * be removed
+         */
+        public synchronized boolean setSaved(long version, long diskModified) {
+            mSavedVersion = version;
+            mDiskModified = diskModified;
+            // an entry based on the old file on disk would not be recovered, so the
+            // newer contents are journaled again
+            mJournaledVersion = -1;
+            return mVersion == version;
+        }
     }
 
     private static final String TAG = FileManagerImpl.class.getSimpleName();
 
-    private final ExecutorService mService;
+    /**
+     * How long to wait after an edit before writing the unsaved files to the journal, so that
+     * a burst of edits is only written once.
+     */
+    private static final long JOURNAL_DELAY_MS = 2000;
+
+    private final ScheduledExecutorService mService;
     private final File mRoot;
     private final Map<File, FileState> mSnapshots;
+    private final SnapshotJournal mJournal;
+    private final AtomicBoolean mSaveScheduled = new AtomicBoolean();
+    private final AtomicBoolean mJournalScheduled = new AtomicBoolean();
 
     private final List<FileListener> mListeners = new ArrayList<>();
 
     public FileManagerImpl(File root) {
         mRoot = root;
-        mService = Executors.newSingleThreadExecutor();
+        mService = Executors.newSingleThreadScheduledExecutor();
         mSnapshots = Collections.synchronizedMap(new HashMap<>());
+        mJournal = new SnapshotJournal(new File(root, "build/.recovery"));
     }
 
     @Override
@@ -96,10 +189,24 @@ public class FileManagerImpl implements FileManager {
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>If the file has unsaved contents in the journal from a previous session and has not
+     * been changed on disk since, the recovered contents are opened instead and the file is
+     * marked as modified.
+     */
     @Override
     public void openFileForSnapshot(@NonNull File file, String content) {
         long lastModified = file.lastModified();
-        FileState state = new FileState(content, Instant.ofEpochMilli(lastModified));
+        String recovered = mJournal.read(file);
+        FileState state = new FileState(file, recovered != null ? recovered : content,
+                                        Instant.ofEpochMilli(lastModified));
+        if (recovered != null) {
+            Log.d(TAG, "Recovered unsaved contents of " + file.getName());
+            state.setRecovered();
+            state.setModified(Instant.now());
+        }
         mSnapshots.put(file, state);
     }
 
@@ -109,14 +216,10 @@ public class FileManagerImpl implements FileManager {
             return;
         }
 
-        mSnapshots.computeIfPresent(file, (f, state) -> {
-            boolean equals = Objects.equals(content, state.getContents());
-            state.setContents(content);
-            if (!equals) {
-                state.setModified(Instant.now());
-            }
-            return state;
-        });
+        FileState state = mSnapshots.get(file);
+        if (state != null && state.setContents(content)) {
+            scheduleJournal();
+        }
 
         for (FileListener l : mListeners) {
             if (l.equals(listener)) {
@@ -132,14 +235,10 @@ public class FileManagerImpl implements FileManager {
             return;
         }
 
-        mSnapshots.computeIfPresent(file, (f, state) -> {
-            boolean equals = Objects.equals(content, state.getContents());
-            state.setContents(content);
-            if (!equals) {
-                state.setModified(Instant.now());
-            }
-            return state;
-        });
+        FileState state = mSnapshots.get(file);
+        if (state != null && state.setContents(content)) {
+            scheduleJournal();
+        }
         if (notify) {
             for (FileListener listener : mListeners) {
                 listener.onSnapshotChanged(file, content);
@@ -147,21 +246,52 @@ public class FileManagerImpl implements FileManager {
         }
     }
 
+    @Nullable
+    @Override
+    public DocumentSnapshot applySnapshotEdit(@NonNull File file, @NonNull TextDelta delta,
+                                              @Nullable FileListener listener) {
+        FileState state = mSnapshots.get(file);
+        if (state == null) {
+            return null;
+        }
+        DocumentSnapshot snapshot = state.apply(delta);
+        scheduleJournal();
+
+        for (FileListener l : mListeners) {
+            if (l.equals(listener)) {
+                continue;
+            }
+            l.onSnapshotEdited(file, delta, snapshot);
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Optional<DocumentSnapshot> getSnapshot(@NonNull File file) {
+        FileState state = mSnapshots.get(file);
+        if (state != null) {
+            return Optional.of(state.getSnapshot());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The file is only written if it has been modified since it was last saved.
+     */
     @Override
     public void closeFileForSnapshot(@NonNull File file) {
         if (!file.exists()) {
             return;
         }
-        if (mSnapshots.containsKey(file)) {
+        FileState state = mSnapshots.remove(file);
+        if (state != null) {
             try {
-                FileState state = mSnapshots.get(file);
-                FileUtils.writeStringToFile(file,
-                        state.getContents(),
-                        StandardCharsets.UTF_8);
+                save(file, state);
             } catch (IOException e) {
                 Log.d(TAG, "Failed to save file " + file.getName(), e);
             }
-            mSnapshots.remove(file);
         }
     }
 
@@ -189,17 +319,100 @@ public class FileManagerImpl implements FileManager {
         saveContents();
     }
 
+    /**
+     * Saves the opened files that have been modified since they were last saved in the
+     * background. Calls made while a save is pending are coalesced into that save.
+     */
     @Override
     public void saveContents() {
-        mService.execute(() -> mSnapshots.forEach((k, v) -> {
+        if (mSaveScheduled.compareAndSet(false, true)) {
+            mService.execute(this::saveDirtyFiles);
+        }
+    }
+
+    private void saveDirtyFiles() {
+        mSaveScheduled.set(false);
+
+        Map<File, Instant> saved = new HashMap<>();
+        for (Map.Entry<File, FileState> entry : getOpenedFiles()) {
+            File file = entry.getKey();
+            try {
+                if (save(file, entry.getValue())) {
+                    saved.put(file, Instant.ofEpochMilli(file.lastModified()));
+                }
+            } catch (IOException e) {
+                Log.d(TAG, "Failed to save file " + file.getName(), e);
+            }
+        }
+
+        if (!saved.isEmpty()) {
+            ThreadUtil.runOnUiThread(() -> saved.forEach(this::setLastModified));
+        }
+    }
+
+    /**
+     * Writes the contents of the file to disk if they have been modified since they were last
+     * saved. The journal entry is removed unless the file has been edited while it was
+     * written, those edits are journaled again instead.
+     *
+     * @return whether the file has been written
+     */
+    private boolean save(File file, FileState state) throws IOException {
+        DocumentSnapshot snapshot;
+        synchronized (state) {
+            if (!state.isDirty()) {
+                return false;
+            }
+            snapshot = state.getSnapshot();
+        }
+
+        byte[] bytes = snapshot.getText().toString().getBytes(StandardCharsets.UTF_8);
+        mJournal.save(file, bytes);
+        if (state.setSaved(snapshot.getVersion(), file.lastModified())) {
+            mJournal.delete(file);
+        } else {
+            scheduleJournal();
+        }
+        return true;
+    }
+
+    private void scheduleJournal() {
+        if (mJournalScheduled.compareAndSet(false, true)) {
+            mService.schedule(this::writeJournal, JOURNAL_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the contents of the modified files that have changed since they were last
+     * written to the journal.
+     */
+    private void writeJournal() {
+        mJournalScheduled.set(false);
+
+        for (Map.Entry<File, FileState> entry : getOpenedFiles()) {
+            File file = entry.getKey();
+            FileState state = entry.getValue();
+            DocumentSnapshot snapshot;
+            long diskModified;
+            synchronized (state) {
+                if (!state.needsJournal()) {
+                    continue;
+                }
+                snapshot = state.getSnapshot();
+                diskModified = state.getDiskModified();
+            }
             try {
-                FileUtils.writeStringToFile(k,
-                                            v.getContents(), StandardCharsets.UTF_8);
-                Instant instant = Instant.ofEpochMilli(k.lastModified());
-                ThreadUtil.runOnUiThread(() -> setLastModified(k, instant));
+                mJournal.write(file, diskModified, snapshot.getText());
+                state.setJournaled(snapshot.getVersion());
             } catch (IOException e) {
-                // ignored
+                Log.d(TAG, "Failed to write the journal of " + file.getName(), e);
             }
-        }));
+        }
+    }
+
+    private List<Map.Entry<File, FileState>> getOpenedFiles() {
+        synchronized (mSnapshots) {
+            return new ArrayList<>(mSnapshots.entrySet());
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,140 @@
+package com.tyron.builder.project.impl;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Keeps a copy of the unsaved contents of opened files, so that edits can be recovered if the
+ * app is killed before they are saved. Each file has one entry, which records the modification
+ * time of the file on disk the edits are based on. An entry is only recovered while the file
+ * on disk is still at that modification time.
+ */
+class SnapshotJournal {
+
+    private static final String TAG = SnapshotJournal.class.getSimpleName();
+
+    private static final int VERSION = 1;
+
+    private final File mDirectory;
+
+    SnapshotJournal(@NonNull File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Writes the unsaved contents of the file, replacing its previous entry.
+     *
+     * @param diskModified the modification time of the file on disk the contents are based on
+     */
+    void write(@NonNull File file, long diskModified, @NonNull CharSequence contents) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(contents.length() + 64);
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeInt(VERSION);
+            output.writeUTF(file.getAbsolutePath());
+            output.writeLong(diskModified);
+            byte[] text = contents.toString().getBytes(StandardCharsets.UTF_8);
+            output.writeInt(text.length);
+            output.write(text);
+        }
+        createDirectory();
+        writeAtomically(getEntryFile(file), bytes.toByteArray(),
+                        new File(mDirectory, getId(file) + ".journal.tmp"));
+    }
+
+    /**
+     * Writes the bytes to the given file atomically. The temporary file is kept in the journal
+     * directory inside the build directory, so no partially written file is ever left in the
+     * source directories of the project.
+     */
+    void save(@NonNull File file, @NonNull byte[] bytes) throws IOException {
+        createDirectory();
+        writeAtomically(file, bytes, new File(mDirectory, getId(file) + ".tmp"));
+    }
+
+    /**
+     * @return the unsaved contents of the file, or null if there are none or the file has been
+     * changed on disk since they were written
+     */
+    @Nullable
+    String read(@NonNull File file) {
+        File entry = getEntryFile(file);
+        if (!entry.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new FileInputStream(entry))) {
+            if (input.readInt() != VERSION
+                || !file.getAbsolutePath().equals(input.readUTF())
+                || input.readLong() != file.lastModified()) {
+                delete(file);
+                return null;
+            }
+            byte[] text = new byte[input.readInt()];
+            input.readFully(text);
+            return new String(text, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.d(TAG, "Unable to read the journal of " + file, e);
+            delete(file);
+            return null;
+        }
+    }
+
+    void delete(@NonNull File file) {
+        File entry = getEntryFile(file);
+        if (entry.exists() && !entry.delete()) {
+            Log.d(TAG, "Unable to delete the journal of " + file);
+        }
+    }
+
+    private File getEntryFile(File file) {
+        return new File(mDirectory, getId(file) + ".journal");
+    }
+
+    private static UUID getId(File file) {
+        return UUID.nameUUIDFromBytes(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void createDirectory() throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+    }
+
+    /**
+     * Writes the bytes to the temporary file and renames it over the file, so that the file
+     * either has its old or its new contents, even if the app is killed while writing. If the
+     * temporary file is on another file system the rename falls back to a plain move.
+     */
+    private static void writeAtomically(@NonNull File file, @NonNull byte[] bytes,
+                                        @NonNull File temp) throws IOException {
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            output.write(bytes);
+            output.getFD().sync();
+        }
+        try {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            if (temp.exists()) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+            }
+        }
+    }
+}
@@ -1,8 +1,25 @@
 package com.tyron.builder.project.listener;
 
+import com.tyron.builder.project.api.DocumentSnapshot;
+import com.tyron.builder.project.api.TextDelta;
+
 import java.io.File;
 
 public interface FileListener {
 
     void onSnapshotChanged(File file, CharSequence contents);
+
+    /**
+     * Called when a range of an opened file has been edited. Listeners that keep their own
+     * state of the file can apply the delta instead of processing the whole contents again.
+     * By default, this calls {@link #onSnapshotChanged(File, CharSequence)} with the text of
+     * the new snapshot, which is not copied.
+     *
+     * @param file The edited file
+     * @param delta The edit, with offsets in the previous snapshot
+     * @param snapshot The snapshot of the file after the edit
+     */
+    default void onSnapshotEdited(File file, TextDelta delta, DocumentSnapshot snapshot) {
+        onSnapshotChanged(file, snapshot.getText());
+    }
 }
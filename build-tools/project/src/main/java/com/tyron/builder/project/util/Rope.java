@@ -0,0 +1,290 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable text stored as a balanced tree of small string chunks.
+ *
+ * <p>Editing a rope returns a new rope that shares every chunk outside of the edited range
+ * with the old one, so an edit only copies the chunks it touches and older versions stay
+ * valid and cheap to keep around. Ropes can be handed to other threads as read-only views
+ * of the text without copying it.
+ *
+ * <p>{@link #toString()} flattens the rope the first time it is called and caches the result.
+ */
+public abstract class Rope implements CharSequence {
+
+    /**
+     * Chunks shorter than this are merged together when they become neighbours.
+     */
+    private static final int MAX_LEAF_LENGTH = 1024;
+
+    /**
+     * Ropes deeper than this are rebuilt into a balanced tree.
+     */
+    private static final int MAX_DEPTH = 48;
+
+    public static final Rope EMPTY = new Leaf("");
+
+    private volatile String mFlat;
+
+    Rope() {
+
+    }
+
+    /**
+     * @return a rope with the given text, or the text itself if it is already a rope
+     */
+    @NonNull
+    public static Rope of(@NonNull CharSequence text) {
+        if (text instanceof Rope) {
+            return (Rope) text;
+        }
+        String string = text.toString();
+        Rope rope = build(string, 0, string.length());
+        rope.mFlat = string;
+        return rope;
+    }
+
+    private static Rope build(String text, int start, int end) {
+        if (end - start <= MAX_LEAF_LENGTH) {
+            return new Leaf(text.substring(start, end));
+        }
+        int middle = (start + end) >>> 1;
+        return new Node(build(text, start, middle), build(text, middle, end));
+    }
+
+    /**
+     * Replaces the given range with the text.
+     *
+     * @param start the start of the range, inclusive
+     * @param end the end of the range, exclusive
+     * @param text the replacement text, may be empty to delete the range
+     * @return the edited rope, sharing the unchanged parts of this rope
+     */
+    @NonNull
+    public Rope replace(int start, int end, @NonNull CharSequence text) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("start: " + start + ", end: " + end +
+                                                ", length: " + length());
+        }
+        Rope replacement = text.length() == 0 ? EMPTY : of(text);
+        return concat(concat(subSequence(0, start), replacement), subSequence(end, length()));
+    }
+
+    @NonNull
+    public Rope insert(int index, @NonNull CharSequence text) {
+        return replace(index, index, text);
+    }
+
+    @NonNull
+    public Rope delete(int start, int end) {
+        return replace(start, end, "");
+    }
+
+    @NonNull
+    public static Rope concat(@NonNull Rope left, @NonNull Rope right) {
+        if (left.length() == 0) {
+            return right;
+        }
+        if (right.length() == 0) {
+            return left;
+        }
+        if (left.length() + right.length() <= MAX_LEAF_LENGTH) {
+            return new Leaf(left.toString() + right);
+        }
+        if (left instanceof Node && right instanceof Leaf) {
+            Node node = (Node) left;
+            if (node.mRight.length() + right.length() <= MAX_LEAF_LENGTH) {
+                return balance(new Node(node.mLeft, new Leaf(node.mRight.toString() + right)));
+            }
+        }
+        if (left instanceof Leaf && right instanceof Node) {
+            Node node = (Node) right;
+            if (left.length() + node.mLeft.length() <= MAX_LEAF_LENGTH) {
+                return balance(new Node(new Leaf(left.toString() + node.mLeft), node.mRight));
+            }
+        }
+        return balance(new Node(left, right));
+    }
+
+    private static Rope balance(Node node) {
+        if (node.depth() <= MAX_DEPTH) {
+            return node;
+        }
+        List<Leaf> leaves = new ArrayList<>();
+        node.collectLeaves(leaves);
+        return build(leaves, 0, leaves.size());
+    }
+
+    private static Rope build(List<Leaf> leaves, int start, int end) {
+        if (end - start == 1) {
+            return leaves.get(start);
+        }
+        int middle = (start + end) >>> 1;
+        return new Node(build(leaves, start, middle), build(leaves, middle, end));
+    }
+
+    @NonNull
+    @Override
+    public abstract Rope subSequence(int start, int end);
+
+    abstract int depth();
+
+    abstract void appendTo(StringBuilder builder);
+
+    abstract void collectLeaves(List<Leaf> leaves);
+
+    @NonNull
+    @Override
+    public String toString() {
+        String flat = mFlat;
+        if (flat == null) {
+            StringBuilder builder = new StringBuilder(length());
+            appendTo(builder);
+            flat = builder.toString();
+            mFlat = flat;
+        }
+        return flat;
+    }
+
+    private void appendFlatTo(StringBuilder builder) {
+        String flat = mFlat;
+        if (flat != null) {
+            builder.append(flat);
+        } else {
+            appendTo(builder);
+        }
+    }
+
+    private static final class Leaf extends Rope {
+
+        private final String mText;
+
+        Leaf(String text) {
+            mText = text;
+        }
+
+        @Override
+        public int length() {
+            return mText.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return mText.charAt(index);
+        }
+
+        @NonNull
+        @Override
+        public Rope subSequence(int start, int end) {
+            if (start == 0 && end == mText.length()) {
+                return this;
+            }
+            return new Leaf(mText.substring(start, end));
+        }
+
+        @Override
+        int depth() {
+            return 0;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder) {
+            builder.append(mText);
+        }
+
+        @Override
+        void collectLeaves(List<Leaf> leaves) {
+            if (!mText.isEmpty()) {
+                leaves.add(this);
+            }
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return mText;
+        }
+    }
+
+    private static final class Node extends Rope {
+
+        private final Rope mLeft;
+        private final Rope mRight;
+        private final int mLength;
+        private final int mDepth;
+
+        Node(Rope left, Rope right) {
+            mLeft = left;
+            mRight = right;
+            mLength = left.length() + right.length();
+            mDepth = Math.max(left.depth(), right.depth()) + 1;
+        }
+
+        @Override
+        public int length() {
+            return mLength;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mLength) {
+                throw new IndexOutOfBoundsException("index: " + index + ", length: " + mLength);
+            }
+            Rope current = this;
+            while (current instanceof Node) {
+                Node node = (Node) current;
+                int leftLength = node.mLeft.length();
+                if (index < leftLength) {
+                    current = node.mLeft;
+                } else {
+                    index -= leftLength;
+                    current = node.mRight;
+                }
+            }
+            return current.charAt(index);
+        }
+
+        @NonNull
+        @Override
+        public Rope subSequence(int start, int end) {
+            if (start < 0 || end > mLength || start > end) {
+                throw new IndexOutOfBoundsException("start: " + start + ", end: " + end +
+                                                    ", length: " + mLength);
+            }
+            if (start == 0 && end == mLength) {
+                return this;
+            }
+            int leftLength = mLeft.length();
+            if (end <= leftLength) {
+                return mLeft.subSequence(start, end);
+            }
+            if (start >= leftLength) {
+                return mRight.subSequence(start - leftLength, end - leftLength);
+            }
+            return concat(mLeft.subSequence(start, leftLength),
+                          mRight.subSequence(0, end - leftLength));
+        }
+
+        @Override
+        int depth() {
+            return mDepth;
+        }
+
+        @Override
+        void appendTo(StringBuilder builder) {
+            mLeft.appendFlatTo(builder);
+            mRight.appendFlatTo(builder);
+        }
+
+        @Override
+        void collectLeaves(List<Leaf> leaves) {
+            mLeft.collectLeaves(leaves);
+            mRight.collectLeaves(leaves);
+        }
+    }
+}
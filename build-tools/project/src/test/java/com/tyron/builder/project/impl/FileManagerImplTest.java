@@ -0,0 +1,109 @@
+package com.tyron.builder.project.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.project.api.TextDelta;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class FileManagerImplTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mRoot;
+    private File mSourceDirectory;
+    private File mJournalDirectory;
+    private FileManagerImpl mFileManager;
+
+    @Before
+    public void setup() throws IOException {
+        mRoot = folder.newFolder("project");
+        mSourceDirectory = new File(mRoot, "src");
+        assertTrue(mSourceDirectory.mkdirs());
+        mJournalDirectory = new File(mRoot, "build/.recovery");
+        mFileManager = new FileManagerImpl(mRoot);
+    }
+
+    /**
+     * Writes the file with a timestamp in the past, so a write by the file manager is seen.
+     */
+    private File createFile(String name, String contents) throws IOException {
+        File file = new File(mSourceDirectory, name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertTrue(file.setLastModified((System.currentTimeMillis() / 1000 - 60) * 1000));
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCleanSnapshotIsNotWritten() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+        long lastModified = file.lastModified();
+
+        // the opened contents are not compared with the disk, only edits make a file dirty
+        mFileManager.openFileForSnapshot(file, "class Main { int opened; }");
+        mFileManager.closeFileForSnapshot(file);
+
+        assertEquals("class Main {}", read(file));
+        assertEquals(lastModified, file.lastModified());
+        assertFalse(mJournalDirectory.exists());
+    }
+
+    @Test
+    public void testSettingTheSameContentsDoesNotWrite() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+        long lastModified = file.lastModified();
+
+        mFileManager.openFileForSnapshot(file, "class Main {}");
+        mFileManager.setSnapshotContent(file, "class Main {}", false);
+        mFileManager.closeFileForSnapshot(file);
+
+        assertEquals(lastModified, file.lastModified());
+    }
+
+    @Test
+    public void testModifiedSnapshotIsWritten() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+
+        mFileManager.openFileForSnapshot(file, "class Main {}");
+        mFileManager.applySnapshotEdit(file, TextDelta.insert(12, " int edited; "), null);
+        assertEquals("class Main { int edited; }",
+                     mFileManager.getFileContent(file).get().toString());
+        mFileManager.closeFileForSnapshot(file);
+
+        assertEquals("class Main { int edited; }", read(file));
+        assertFalse(mFileManager.isOpened(file));
+        // the temporary file of the write is not left next to the file
+        assertArrayEquals(new String[]{"Main.java"}, mSourceDirectory.list());
+    }
+
+    @Test
+    public void testJournalIsRemovedWhenSaved() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+        mFileManager.openFileForSnapshot(file, "class Main {}");
+        // the entry the background journal write would have made
+        new SnapshotJournal(mJournalDirectory)
+                .write(file, file.lastModified(), "class Main { int unsaved; }");
+
+        mFileManager.setSnapshotContent(file, "class Main { int saved; }", false);
+        mFileManager.closeFileForSnapshot(file);
+
+        assertEquals("class Main { int saved; }", read(file));
+        assertEquals(0, mJournalDirectory.list().length);
+    }
+}
@@ -0,0 +1,97 @@
+package com.tyron.builder.project.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class SnapshotJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mSourceDirectory;
+    private File mJournalDirectory;
+    private SnapshotJournal mJournal;
+
+    @Before
+    public void setup() throws IOException {
+        mSourceDirectory = folder.newFolder("src");
+        mJournalDirectory = new File(folder.getRoot(), "build/.recovery");
+        mJournal = new SnapshotJournal(mJournalDirectory);
+    }
+
+    private File createFile(String name, String contents) throws IOException {
+        File file = new File(mSourceDirectory, name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testRecoversUnsavedContents() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+        mJournal.write(file, file.lastModified(), "class Main { int unsaved; }");
+
+        assertEquals("class Main { int unsaved; }", mJournal.read(file));
+        // reading does not consume the entry
+        assertEquals("class Main { int unsaved; }", mJournal.read(file));
+    }
+
+    @Test
+    public void testEntryOfChangedFileIsDropped() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+        mJournal.write(file, file.lastModified(), "class Main { int unsaved; }");
+
+        // the file has been changed on disk after the edits were journaled
+        file.setLastModified(file.lastModified() + 2000);
+
+        assertNull(mJournal.read(file));
+        assertEquals(0, mJournalDirectory.list().length);
+    }
+
+    @Test
+    public void testEntriesAreKeptPerFile() throws IOException {
+        File first = createFile("First.java", "class First {}");
+        File second = createFile("Second.java", "class Second {}");
+        mJournal.write(first, first.lastModified(), "first");
+        mJournal.write(second, second.lastModified(), "second");
+        mJournal.write(first, first.lastModified(), "first again");
+
+        assertEquals("first again", mJournal.read(first));
+        assertEquals("second", mJournal.read(second));
+
+        mJournal.delete(first);
+        assertNull(mJournal.read(first));
+        assertEquals("second", mJournal.read(second));
+    }
+
+    @Test
+    public void testNoEntry() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+
+        assertNull(mJournal.read(file));
+        // deleting a missing entry is allowed
+        mJournal.delete(file);
+    }
+
+    @Test
+    public void testSaveLeavesNoFilesInSourceDirectory() throws IOException {
+        File file = createFile("Main.java", "class Main {}");
+        byte[] contents = "class Main { int saved; }".getBytes(StandardCharsets.UTF_8);
+
+        mJournal.save(file, contents);
+
+        assertArrayEquals(contents, Files.readAllBytes(file.toPath()));
+        assertArrayEquals(new String[]{"Main.java"}, mSourceDirectory.list());
+        assertEquals(0, mJournalDirectory.list().length);
+    }
+}
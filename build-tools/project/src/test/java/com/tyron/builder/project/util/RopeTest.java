@@ -0,0 +1,70 @@
+package com.tyron.builder.project.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class RopeTest {
+
+    @Test
+    public void testEdits() {
+        Rope rope = Rope.of("Hello World");
+        rope = rope.insert(5, ",");
+        rope = rope.replace(7, 12, "Rope");
+        rope = rope.delete(0, 7);
+
+        assertEquals("Rope", rope.toString());
+        assertEquals(4, rope.length());
+        assertEquals('R', rope.charAt(0));
+    }
+
+    @Test
+    public void testEditsDoNotChangeOlderVersions() {
+        String text = createText(10_000);
+        Rope original = Rope.of(text);
+        Rope edited = original.insert(5000, "inserted");
+
+        assertEquals(text, original.toString());
+        assertEquals(text.substring(0, 5000) + "inserted" + text.substring(5000),
+                     edited.toString());
+    }
+
+    @Test
+    public void testRandomEdits() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder(createText(50_000));
+        Rope rope = Rope.of(expected.toString());
+
+        for (int i = 0; i < 5000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = Math.min(expected.length(), start + random.nextInt(20));
+            String text = random.nextBoolean() ? "" : createText(random.nextInt(30));
+            expected.replace(start, end, text);
+            rope = rope.replace(start, end, text);
+        }
+
+        assertEquals(expected.length(), rope.length());
+        assertEquals(expected.toString(), rope.toString());
+        for (int i = 0; i < expected.length(); i += 997) {
+            assertEquals(expected.charAt(i), rope.charAt(i));
+        }
+        assertEquals(expected.substring(100, 30_000), rope.subSequence(100, 30_000).toString());
+    }
+
+    @Test
+    public void testOfRope() {
+        Rope rope = Rope.of("text");
+        assertSame(rope, Rope.of(rope));
+    }
+
+    private static String createText(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        return builder.toString();
+    }
+}
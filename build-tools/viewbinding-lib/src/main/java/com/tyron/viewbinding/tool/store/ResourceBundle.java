@@ -115,6 +115,20 @@ public class ResourceBundle implements Serializable {
         bundles.add(bundle);
     }
 
+    /**
+     * Registers the binding class of a layout that is not added to this bundle, so that
+     * includes of it are bound to its binding class. Used for layouts whose binding classes
+     * have been generated before and did not change.
+     */
+    public void addDependencyLayout(String layoutName, String modulePackage,
+                                    String interfaceQName) {
+        mDependencyBinders.put(layoutName, new IncludedLayout.Builder()
+                .layoutName(layoutName)
+                .modulePackage(modulePackage)
+                .interfaceQName(interfaceQName)
+                .build());
+    }
+
     /*public void addDependencyLayouts(GenClassInfoLog genClassInfoLog) {
         genClassInfoLog.mappings().forEach(
                 (key, value) -> mDependencyBinders.put(key,
@@ -1,23 +1,47 @@
 package com.tyron.xml.completion.repository;
 
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
+
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ListMultimap;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 import com.tyron.common.ApplicationProvider;
+import com.tyron.common.logging.IdeLog;
 import com.tyron.common.util.Decompress;
 import com.tyron.xml.completion.repository.api.ResourceNamespace;
 import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
 
+import org.apache.commons.io.FileUtils;
+
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Predicate;
+import java.util.logging.Logger;
 
+/**
+ * Repository of the framework resources. The framework resources are parsed from the
+ * extracted {@code android-xml.zip} only once, the parsed table is saved as a
+ * {@link ResourceTableSnapshot} which is used on later starts until the bundled zip changes.
+ */
 public class AndroidResourceRepository extends SimpleResourceRepository {
 
+    private static final Logger sLogger = IdeLog.getCurrentLogger(AndroidResourceRepository.class);
+
+    private static final String ASSET_NAME = "android-xml.zip";
+    private static final String STAMP_FILE_NAME = ".android-xml.stamp";
+    private static final String SNAPSHOT_FILE_NAME = "android-31-resources.bin";
 
     private static AndroidResourceRepository sInstance = null;
 
@@ -28,13 +52,103 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
             assert parent != null;
             File resDir = parent.getParentFile();
             assert resDir != null;
-            sInstance = new AndroidResourceRepository(resDir, ResourceNamespace.ANDROID);
+            File snapshotFile = new File(getSourcesDirectory(), SNAPSHOT_FILE_NAME);
+            sInstance = new AndroidResourceRepository(resDir, ResourceNamespace.ANDROID,
+                                                      snapshotFile, getBundleStamp());
         }
         return sInstance;
     }
 
+    @Nullable
+    private final File mSnapshotFile;
+    @Nullable
+    private final String mStamp;
+
+    @Nullable
+    private ResourceTableSnapshot mSnapshot;
+    private boolean mInitialized;
+
     public AndroidResourceRepository(File resDir, ResourceNamespace namespace) {
+        this(resDir, namespace, null, null);
+    }
+
+    /**
+     * @param snapshotFile The file to load the resources from instead of parsing {@code resDir},
+     *                     it is created after parsing if it does not exist
+     * @param stamp        A string identifying the version of the resources in {@code resDir},
+     *                     snapshots with a different stamp are ignored
+     */
+    public AndroidResourceRepository(File resDir,
+                                     ResourceNamespace namespace,
+                                     @Nullable File snapshotFile,
+                                     @Nullable String stamp) {
         super(resDir, namespace);
+        mSnapshotFile = snapshotFile;
+        mStamp = stamp;
+    }
+
+    @Override
+    public synchronized void initialize() throws IOException {
+        if (mInitialized) {
+            return;
+        }
+
+        if (mSnapshotFile != null && mStamp != null) {
+            mSnapshot = ResourceTableSnapshot.open(mSnapshotFile, mStamp);
+            if (mSnapshot == null) {
+                super.initialize();
+                try {
+                    ResourceTableSnapshot.write(mTable, mStamp, mSnapshotFile);
+                } catch (IOException | IllegalArgumentException e) {
+                    sLogger.warning("Unable to save framework resources snapshot: " +
+                                    e.getMessage());
+                }
+            }
+        } else {
+            super.initialize();
+        }
+        mInitialized = true;
+    }
+
+    /**
+     * Returns the resources of the given namespace and type, decoding them from the snapshot
+     * the first time they are requested.
+     */
+    @NotNull
+    private synchronized ListMultimap<String, ResourceItem> getTable(
+            @NotNull ResourceNamespace namespace,
+            @NotNull ResourceType type) {
+        ListMultimap<String, ResourceItem> items = mTable.get(namespace, type);
+        if (items == null && mSnapshot != null) {
+            items = mSnapshot.read(namespace, type);
+            if (items != null) {
+                mTable.put(namespace, type, items);
+            }
+        }
+        if (items == null) {
+            items = mTable.getOrPutEmpty(namespace, type);
+        }
+        return items;
+    }
+
+    @NotNull
+    @Override
+    public synchronized List<ResourceNamespace> getNamespaces() {
+        Set<ResourceNamespace> namespaces = new LinkedHashSet<>(mTable.rowKeySet());
+        if (mSnapshot != null) {
+            namespaces.addAll(mSnapshot.getNamespaces());
+        }
+        return ImmutableList.copyOf(namespaces);
+    }
+
+    @NotNull
+    @Override
+    public synchronized List<ResourceType> getResourceTypes() {
+        Set<ResourceType> types = new LinkedHashSet<>(mTable.columnKeySet());
+        if (mSnapshot != null) {
+            types.addAll(mSnapshot.getResourceTypes());
+        }
+        return ImmutableList.copyOf(types);
     }
 
     @NotNull
@@ -47,14 +161,13 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
     public boolean hasResources(@NotNull ResourceNamespace namespace,
                                 @NotNull ResourceType resourceType,
                                 @NotNull String resourceName) {
-        return !mTable.getOrPutEmpty(namespace, resourceType).get(resourceName).isEmpty();
+        return !getTable(namespace, resourceType).get(resourceName).isEmpty();
     }
 
     @NotNull
     @Override
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace, @NotNull ResourceType type, @NotNull Predicate<ResourceItem> filter) {
-        ListMultimap<String, ResourceItem> value =
-                mTable.get(namespace, type);
+        ListMultimap<String, ResourceItem> value = getTable(namespace, type);
         List<ResourceItem> items = new ArrayList<>();
         for (Map.Entry<String, ResourceItem> entry : value.entries()) {
             if (filter.test(entry.getValue())) {
@@ -69,27 +182,73 @@ public class AndroidResourceRepository extends SimpleResourceRepository {
     public List<ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                            @NotNull ResourceType resourceType,
                                            @NotNull String resourceName) {
-        return mTable.getOrPutEmpty(namespace, resourceType).get(resourceName);
+        return getTable(namespace, resourceType).get(resourceName);
     }
 
     @NotNull
     @Override
     public ListMultimap<String, ResourceItem> getResources(@NotNull ResourceNamespace namespace,
                                                            @NotNull ResourceType resourceType) {
-        return mTable.getOrPutEmpty(namespace, resourceType);
+        return getTable(namespace, resourceType);
     }
 
     public static File getOrExtractFiles() {
         File filesDir = ApplicationProvider.getApplicationContext().getFilesDir();
         File check = new File(filesDir,
                               "sources/android-31/data/res/values/attrs.xml");
-        if (check.exists()) {
+        File dest = getSourcesDirectory();
+        File stampFile = new File(dest, STAMP_FILE_NAME);
+        String stamp = getBundleStamp();
+        if (check.exists() && stamp.equals(readStamp(stampFile))) {
             return check;
         }
-        File dest = new File(filesDir, "sources");
         Decompress.unzipFromAssets(ApplicationProvider.getApplicationContext(),
-                                   "android-xml.zip",
+                                   ASSET_NAME,
                                    dest.getAbsolutePath());
+        try {
+            FileUtils.writeStringToFile(stampFile, stamp, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            sLogger.warning("Unable to save framework resources stamp: " + e.getMessage());
+        }
         return check;
     }
+
+    private static File getSourcesDirectory() {
+        return new File(ApplicationProvider.getApplicationContext().getFilesDir(), "sources");
+    }
+
+    @Nullable
+    private static String readStamp(File stampFile) {
+        if (!stampFile.exists()) {
+            return null;
+        }
+        try {
+            return FileUtils.readFileToString(stampFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a string that changes whenever the bundled {@code android-xml.zip} may have
+     * changed, which is the size of the asset together with the time the app was last updated.
+     */
+    @NotNull
+    private static String getBundleStamp() {
+        Context context = ApplicationProvider.getApplicationContext();
+        long length = -1;
+        try (AssetFileDescriptor fd = context.getAssets().openFd(ASSET_NAME)) {
+            length = fd.getLength();
+        } catch (IOException e) {
+            // the asset is compressed, rely on the update time only
+        }
+        long updateTime = 0;
+        try {
+            updateTime = context.getPackageManager()
+                    .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            // should not happen, this is our own package
+        }
+        return length + ":" + updateTime;
+    }
 }
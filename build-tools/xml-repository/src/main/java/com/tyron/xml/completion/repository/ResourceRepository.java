@@ -1,33 +1,59 @@
 package com.tyron.xml.completion.repository;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Table;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 import com.tyron.builder.compiler.manifest.xml.AndroidManifestParser;
 import com.tyron.builder.compiler.manifest.xml.ManifestData;
 import com.tyron.builder.model.Library;
 import com.tyron.builder.project.api.AndroidModule;
+import com.tyron.builder.project.api.FileManager;
+import com.tyron.common.logging.IdeLog;
 import com.tyron.xml.completion.repository.api.ResourceNamespace;
 import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
 
+import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import kotlin.io.FilesKt;
 
 public class ResourceRepository extends SimpleResourceRepository {
 
+    private static final Logger sLogger = IdeLog.getCurrentLogger(ResourceRepository.class);
+
     private static boolean sInitializeAndroidRepo = true;
 
     private final AndroidModule mModule;
     private final AndroidResourceRepository mAndroidRepository;
 
     public ResourceRepository(AndroidModule module) {
+        this(module, AndroidResourceRepository.getInstance());
+    }
+
+    @VisibleForTesting
+    public ResourceRepository(AndroidModule module, AndroidResourceRepository androidRepository) {
         super(module.getAndroidResourcesDirectory(),
               ResourceNamespace.fromPackageName(module.getPackageName()));
         mModule = module;
-        mAndroidRepository = AndroidResourceRepository.getInstance();
+        mAndroidRepository = androidRepository;
     }
 
     @VisibleForTesting
@@ -44,34 +70,187 @@ public class ResourceRepository extends SimpleResourceRepository {
         File resDir = mModule.getAndroidResourcesDirectory();
         parse(resDir, getNamespace(), null);
 
-        for (File library : mModule.getLibraries()) {
-            File parent = library.getParentFile();
-            if (parent == null) {
-                continue;
+        List<File> libraries = mModule.getLibraries();
+        ExecutorService service = Executors.newFixedThreadPool(
+                Math.max(1, Math.min(libraries.size(), Runtime.getRuntime().availableProcessors())));
+        try {
+            List<Future<ResourceTable>> futures = new ArrayList<>(libraries.size());
+            for (File library : libraries) {
+                futures.add(service.submit(() -> loadLibrary(library)));
             }
 
-            ResourceNamespace namespace;
-            File manifest = new File(parent, "AndroidManifest.xml");
-            try {
-                ManifestData data = AndroidManifestParser.parse(manifest);
-                namespace = ResourceNamespace.fromPackageName(data.getPackage());
-            } catch (IOException ignored) {
-                namespace = ResourceNamespace.RES_AUTO;
+            // merge in the order of the libraries so the result does not depend on scheduling
+            for (Future<ResourceTable> future : futures) {
+                ResourceTable table = getUninterruptibly(future);
+                if (table == null) {
+                    continue;
+                }
+                for (Table.Cell<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> cell :
+                        table.cellSet()) {
+                    mTable.getOrPutEmpty(cell.getRowKey(), cell.getColumnKey())
+                            .putAll(cell.getValue());
+                }
             }
+        } finally {
+            service.shutdown();
+        }
+
+        deleteStaleLibraryCaches(libraries);
+    }
+
+    /**
+     * Loads the resources of a library, from its cache if it has been parsed before.
+     * Libraries never change after they are extracted, so the cache is keyed by the name of the
+     * directory the library is extracted to which is the hash of the library.
+     *
+     * @return null if the library has no resources
+     */
+    @Nullable
+    private ResourceTable loadLibrary(File library) {
+        File parent = library.getParentFile();
+        if (parent == null) {
+            return null;
+        }
+
+        File libraryResDir = new File(parent, "res");
+        if (!libraryResDir.exists()) {
+            return null;
+        }
+
+        Library lib = mModule.getLibrary(parent.getName());
+        String name = null;
+        if (lib != null) {
+            name = lib.getSourceFile()
+                    .getName();
+        }
+
+        ResourceTable table = new ResourceTable();
+        File cacheFile = getLibraryCacheFile(parent.getName());
+        String stamp = parent.getName() + ":" + name;
+        ResourceTableSnapshot snapshot = ResourceTableSnapshot.open(cacheFile, stamp);
+        if (snapshot != null) {
+            snapshot.readInto(table);
+            return table;
+        }
+
+        ResourceNamespace namespace;
+        File manifest = new File(parent, "AndroidManifest.xml");
+        try {
+            ManifestData data = AndroidManifestParser.parse(manifest);
+            namespace = ResourceNamespace.fromPackageName(data.getPackage());
+        } catch (IOException ignored) {
+            namespace = ResourceNamespace.RES_AUTO;
+        }
+
+        parse(libraryResDir, namespace, name, table, null);
+
+        try {
+            ResourceTableSnapshot.write(table, stamp, cacheFile);
+        } catch (IOException | IllegalArgumentException e) {
+            sLogger.warning("Unable to cache resources of " + parent.getName() + ": " +
+                            e.getMessage());
+        }
+        return table;
+    }
 
-            File libraryResDir = new File(parent, "res");
-            if (!libraryResDir.exists()) {
+    /**
+     * Re-parses the resource files of the module that have changed since they were last
+     * parsed and drops the resources of files that have been deleted. The contents of files
+     * opened in the editor are taken from the {@link FileManager}, other files are only read
+     * from disk when their stamp has changed.
+     *
+     * @return the files that were updated or removed
+     */
+    @NotNull
+    public Set<File> updateModifiedFiles() {
+        FileManager fileManager = mModule.getFileManager();
+        Set<File> current = new HashSet<>();
+        Set<File> modified = new HashSet<>();
+
+        File[] dirs = mModule.getAndroidResourcesDirectory().listFiles(File::isDirectory);
+        if (dirs == null) {
+            dirs = new File[0];
+        }
+        for (File dir : dirs) {
+            if (getParser(dir) == null) {
                 continue;
             }
+            File[] files = dir.listFiles(File::isFile);
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                current.add(file);
+
+                CharSequence contents = null;
+                if (fileManager.isOpened(file)) {
+                    contents = fileManager.getFileContent(file).orElse(null);
+                }
+                long stamp = contents != null ? getStamp(contents) : getStamp(file);
+                if (isUpToDate(file, stamp)) {
+                    continue;
+                }
+
+                try {
+                    if (contents == null) {
+                        contents = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+                    }
+                    updateFile(file, contents.toString(), stamp);
+                    modified.add(file);
+                } catch (IOException e) {
+                    sLogger.warning("Unable to update " + file.getName() + ": " + e.getMessage());
+                }
+            }
+        }
+
+        for (File file : getFiles()) {
+            if (!current.contains(file)) {
+                removeFile(file);
+                modified.add(file);
+            }
+        }
+        return modified;
+    }
 
-            Library lib = mModule.getLibrary(parent.getName());
-            String name = null;
-            if (lib != null) {
-                name = lib.getSourceFile()
-                        .getName();
+    private void deleteStaleLibraryCaches(List<File> libraries) {
+        Set<String> hashes = new HashSet<>();
+        for (File library : libraries) {
+            File parent = library.getParentFile();
+            if (parent != null) {
+                hashes.add(parent.getName());
+            }
+        }
+        File[] cacheFiles = getLibraryCacheDirectory().listFiles();
+        if (cacheFiles == null) {
+            return;
+        }
+        for (File cacheFile : cacheFiles) {
+            String hash = FilesKt.getNameWithoutExtension(cacheFile);
+            if (!hashes.contains(hash)) {
+                FileUtils.deleteQuietly(cacheFile);
             }
+        }
+    }
+
+    private File getLibraryCacheDirectory() {
+        return new File(mModule.getBuildDirectory(), "intermediates/library_resources");
+    }
 
-            parse(libraryResDir, namespace, name);
+    private File getLibraryCacheFile(String hash) {
+        return new File(getLibraryCacheDirectory(), hash + ".bin");
+    }
+
+    @Nullable
+    private ResourceTable getUninterruptibly(Future<ResourceTable> future) throws IOException {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            Throwables.throwIfUnchecked(cause);
+            throw new IOException(cause);
         }
     }
 
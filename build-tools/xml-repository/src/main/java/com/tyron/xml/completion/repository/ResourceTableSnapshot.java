@@ -0,0 +1,556 @@
+package com.tyron.xml.completion.repository;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Table;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.xml.completion.repository.api.AttrResourceValue;
+import com.tyron.xml.completion.repository.api.AttrResourceValueImpl;
+import com.tyron.xml.completion.repository.api.AttributeFormat;
+import com.tyron.xml.completion.repository.api.LayoutInfo;
+import com.tyron.xml.completion.repository.api.LayoutResourceValue;
+import com.tyron.xml.completion.repository.api.LayoutResourceValueImpl;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceReference;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.api.ResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleItemResourceValue;
+import com.tyron.xml.completion.repository.api.StyleItemResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleResourceValue;
+import com.tyron.xml.completion.repository.api.StyleResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleableResourceValue;
+import com.tyron.xml.completion.repository.api.StyleableResourceValueImpl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import kotlin.Pair;
+
+/**
+ * A compact binary form of a {@link ResourceTable}.
+ *
+ * <p>The file starts with a header containing a stamp describing where the resources came
+ * from, so callers can discard snapshots of outdated sources. It is followed by a string pool
+ * and one section per namespace and resource type. The file is memory mapped when read and a
+ * section is only decoded into {@link ResourceItem}s the first time it is requested through
+ * {@link #read(ResourceNamespace, ResourceType)}.</p>
+ *
+ * <p>Only the values produced by the parsers in this module are encoded with all of their
+ * data, other {@link ResourceValue} implementations are stored as plain values.</p>
+ */
+public class ResourceTableSnapshot {
+
+    private static final int MAGIC = 0x43415253; // CARS
+    private static final int FORMAT_VERSION = 1;
+
+    private static final byte KIND_PLAIN = 0;
+    private static final byte KIND_STYLE = 1;
+    private static final byte KIND_STYLEABLE = 2;
+    private static final byte KIND_ATTR = 3;
+    private static final byte KIND_LAYOUT = 4;
+
+    private static final int NULL = -1;
+
+    /**
+     * Writes the given table to a file, the file is first written to a temporary file
+     * and then moved to the destination so readers never see a partially written snapshot.
+     *
+     * @param table the table to write, all items must be {@link SimpleResourceItem}s
+     * @param stamp a string identifying the source of the resources
+     * @param file  the destination file
+     */
+    public static void write(@NotNull ResourceTable table,
+                             @NotNull String stamp,
+                             @NotNull File file) throws IOException {
+        StringPool pool = new StringPool();
+        List<byte[]> sections = new ArrayList<>();
+        List<int[]> sectionKeys = new ArrayList<>();
+
+        for (Table.Cell<ResourceNamespace, ResourceType, ListMultimap<String, ResourceItem>> cell :
+                table.cellSet()) {
+            ListMultimap<String, ResourceItem> items = cell.getValue();
+            if (items == null || items.isEmpty()) {
+                continue;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(items.size());
+            for (ResourceItem item : items.values()) {
+                writeItem(out, pool, item);
+            }
+            out.flush();
+
+            sections.add(bytes.toByteArray());
+            sectionKeys.add(new int[]{
+                    pool.add(cell.getRowKey().getPackageName()),
+                    pool.add(cell.getColumnKey().name())
+            });
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Unable to create directory " + parent);
+        }
+        File temp = new File(parent, file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            writeString(out, stamp);
+
+            pool.write(out);
+
+            out.writeInt(sections.size());
+            for (int i = 0; i < sections.size(); i++) {
+                out.writeInt(sectionKeys.get(i)[0]);
+                out.writeInt(sectionKeys.get(i)[1]);
+                out.writeInt(sections.get(i).length);
+            }
+            for (byte[] section : sections) {
+                out.write(section);
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Opens a snapshot previously written with {@link #write(ResourceTable, String, File)}.
+     *
+     * @param stamp the expected stamp, if it does not match the one in the file
+     *              the snapshot is considered outdated
+     * @return null if the file does not exist, is outdated or is not a valid snapshot
+     */
+    @Nullable
+    public static ResourceTableSnapshot open(@NotNull File file, @NotNull String stamp) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            // the mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            if (!stamp.equals(readString(buffer))) {
+                return null;
+            }
+            return new ResourceTableSnapshot(buffer);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private final ByteBuffer mBuffer;
+    private final int[] mStringOffsets;
+    private final String[] mStrings;
+    private final Map<ResourceNamespace, Map<ResourceType, Section>> mSections = new HashMap<>();
+
+    private static class Section {
+        final int offset;
+        final int length;
+        ListMultimap<String, ResourceItem> items;
+
+        Section(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private ResourceTableSnapshot(ByteBuffer buffer) {
+        mBuffer = buffer;
+
+        int stringCount = buffer.getInt();
+        mStringOffsets = new int[stringCount];
+        mStrings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            mStringOffsets[i] = buffer.position();
+            int length = buffer.getInt();
+            buffer.position(buffer.position() + length);
+        }
+
+        int sectionCount = buffer.getInt();
+        int[][] keys = new int[sectionCount][];
+        int[] lengths = new int[sectionCount];
+        for (int i = 0; i < sectionCount; i++) {
+            keys[i] = new int[]{buffer.getInt(), buffer.getInt()};
+            lengths[i] = buffer.getInt();
+        }
+        int offset = buffer.position();
+        for (int i = 0; i < sectionCount; i++) {
+            ResourceNamespace namespace = toNamespace(getString(keys[i][0]));
+            ResourceType type = ResourceType.valueOf(getString(keys[i][1]));
+            mSections.computeIfAbsent(namespace, k -> new HashMap<>())
+                    .put(type, new Section(offset, lengths[i]));
+            offset += lengths[i];
+        }
+        if (offset > buffer.limit()) {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    @NotNull
+    public Set<ResourceNamespace> getNamespaces() {
+        return ImmutableSet.copyOf(mSections.keySet());
+    }
+
+    @NotNull
+    public Set<ResourceType> getResourceTypes() {
+        Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        for (Map<ResourceType, Section> sections : mSections.values()) {
+            types.addAll(sections.keySet());
+        }
+        return types;
+    }
+
+    public boolean contains(@NotNull ResourceNamespace namespace, @NotNull ResourceType type) {
+        Map<ResourceType, Section> sections = mSections.get(namespace);
+        return sections != null && sections.containsKey(type);
+    }
+
+    /**
+     * Decodes the resources of the given namespace and type, the section is only decoded once
+     * and the same multimap is returned on later calls.
+     *
+     * @return null if the snapshot does not contain resources of the given namespace and type
+     */
+    @Nullable
+    public synchronized ListMultimap<String, ResourceItem> read(@NotNull ResourceNamespace namespace,
+                                                                @NotNull ResourceType type) {
+        Map<ResourceType, Section> sections = mSections.get(namespace);
+        if (sections == null) {
+            return null;
+        }
+        Section section = sections.get(type);
+        if (section == null) {
+            return null;
+        }
+        if (section.items == null) {
+            ByteBuffer buffer = mBuffer.duplicate();
+            buffer.position(section.offset);
+            buffer.limit(section.offset + section.length);
+
+            int count = buffer.getInt();
+            ListMultimap<String, ResourceItem> items = ArrayListMultimap.create();
+            for (int i = 0; i < count; i++) {
+                ResourceItem item = readItem(buffer);
+                items.put(item.getName(), item);
+            }
+            section.items = items;
+        }
+        return section.items;
+    }
+
+    /**
+     * Decodes every section of this snapshot into the given table.
+     */
+    public void readInto(@NotNull ResourceTable table) {
+        for (Map.Entry<ResourceNamespace, Map<ResourceType, Section>> entry :
+                mSections.entrySet()) {
+            for (ResourceType type : entry.getValue().keySet()) {
+                ListMultimap<String, ResourceItem> items = read(entry.getKey(), type);
+                if (items != null) {
+                    table.getOrPutEmpty(entry.getKey(), type).putAll(items);
+                }
+            }
+        }
+    }
+
+    private static void writeItem(DataOutputStream out, StringPool pool, ResourceItem item)
+            throws IOException {
+        if (!(item instanceof SimpleResourceItem)) {
+            throw new IllegalArgumentException("Unsupported resource item " + item.getClass());
+        }
+        ResourceValue value = item.getResourceValue();
+        if (value == null) {
+            throw new IllegalArgumentException("Resource item " + item.getName() + " has no value");
+        }
+        out.writeInt(pool.add(((SimpleResourceItem) item).getFolderName()));
+        writeValue(out, pool, value);
+    }
+
+    private static void writeValue(DataOutputStream out, StringPool pool, ResourceValue value)
+            throws IOException {
+        byte kind;
+        if (value instanceof StyleResourceValue) {
+            kind = KIND_STYLE;
+        } else if (value instanceof StyleableResourceValue) {
+            kind = KIND_STYLEABLE;
+        } else if (value instanceof AttrResourceValue) {
+            kind = KIND_ATTR;
+        } else if (value instanceof LayoutResourceValue) {
+            kind = KIND_LAYOUT;
+        } else {
+            kind = KIND_PLAIN;
+        }
+        out.writeByte(kind);
+        out.writeInt(pool.add(value.getNamespace().getPackageName()));
+        out.writeInt(pool.add(value.getResourceType().name()));
+        out.writeInt(pool.add(value.getName()));
+        out.writeInt(pool.add(value.getLibraryName()));
+
+        switch (kind) {
+            case KIND_STYLE:
+                StyleResourceValue style = (StyleResourceValue) value;
+                out.writeInt(pool.add(style.getParentStyleName()));
+                out.writeInt(style.getDefinedItems().size());
+                for (StyleItemResourceValue item : style.getDefinedItems()) {
+                    out.writeInt(pool.add(item.getNamespace().getPackageName()));
+                    out.writeInt(pool.add(item.getAttrName()));
+                    out.writeInt(pool.add(item.getValue()));
+                }
+                break;
+            case KIND_STYLEABLE:
+                List<AttrResourceValue> attributes =
+                        ((StyleableResourceValue) value).getAllAttributes();
+                out.writeInt(pool.add(value.getValue()));
+                out.writeInt(attributes.size());
+                for (AttrResourceValue attr : attributes) {
+                    out.writeInt(pool.add(attr.getNamespace().getPackageName()));
+                    out.writeInt(pool.add(attr.getName()));
+                    out.writeInt(pool.add(attr.getLibraryName()));
+                    writeAttr(out, pool, attr);
+                }
+                break;
+            case KIND_ATTR:
+                writeAttr(out, pool, (AttrResourceValue) value);
+                break;
+            case KIND_LAYOUT:
+                out.writeInt(pool.add(value.getValue()));
+                writeLayoutInfo(out, pool, ((LayoutResourceValue) value).getRoot());
+                break;
+            default:
+                out.writeInt(pool.add(value.getValue()));
+        }
+    }
+
+    private static void writeAttr(DataOutputStream out, StringPool pool, AttrResourceValue attr)
+            throws IOException {
+        out.writeInt(pool.add(attr.getDescription()));
+        out.writeInt(pool.add(attr.getGroupName()));
+
+        Set<AttributeFormat> formats = attr.getFormats();
+        out.writeInt(formats.size());
+        for (AttributeFormat format : formats) {
+            out.writeInt(pool.add(format.name()));
+        }
+
+        Map<String, Integer> values = attr.getAttributeValues();
+        out.writeInt(values.size());
+        for (Map.Entry<String, Integer> entry : values.entrySet()) {
+            out.writeInt(pool.add(entry.getKey()));
+            Integer number = entry.getValue();
+            out.writeBoolean(number != null);
+            out.writeInt(number == null ? 0 : number);
+            out.writeInt(pool.add(attr.getValueDescription(entry.getKey())));
+        }
+    }
+
+    private static void writeLayoutInfo(DataOutputStream out, StringPool pool,
+                                        @Nullable LayoutInfo info) throws IOException {
+        out.writeBoolean(info != null);
+        if (info == null) {
+            return;
+        }
+        out.writeInt(pool.add(info.getName()));
+
+        List<Pair<String, String>> attributes = info.getAttributes();
+        out.writeInt(attributes.size());
+        for (Pair<String, String> attribute : attributes) {
+            out.writeInt(pool.add(attribute.getFirst()));
+            out.writeInt(pool.add(attribute.getSecond()));
+        }
+
+        List<LayoutInfo> children = info.getChildren();
+        if (children == null) {
+            children = Collections.emptyList();
+        }
+        out.writeInt(children.size());
+        for (LayoutInfo child : children) {
+            writeLayoutInfo(out, pool, child);
+        }
+    }
+
+    private ResourceItem readItem(ByteBuffer buffer) {
+        String folderName = getString(buffer.getInt());
+        return new SimpleResourceItem(readValue(buffer), folderName);
+    }
+
+    private ResourceValue readValue(ByteBuffer buffer) {
+        byte kind = buffer.get();
+        ResourceNamespace namespace = toNamespace(getString(buffer.getInt()));
+        ResourceType type = ResourceType.valueOf(getString(buffer.getInt()));
+        String name = getString(buffer.getInt());
+        String libraryName = getString(buffer.getInt());
+
+        switch (kind) {
+            case KIND_STYLE: {
+                StyleResourceValueImpl style = new StyleResourceValueImpl(namespace, name,
+                        getString(buffer.getInt()), libraryName);
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    ResourceNamespace itemNamespace = toNamespace(getString(buffer.getInt()));
+                    String attrName = getString(buffer.getInt());
+                    String value = getString(buffer.getInt());
+                    style.addItem(new StyleItemResourceValueImpl(itemNamespace, attrName, value,
+                            libraryName));
+                }
+                return style;
+            }
+            case KIND_STYLEABLE: {
+                StyleableResourceValueImpl styleable = new StyleableResourceValueImpl(namespace,
+                        name, getString(buffer.getInt()), libraryName);
+                int count = buffer.getInt();
+                for (int i = 0; i < count; i++) {
+                    ResourceNamespace attrNamespace = toNamespace(getString(buffer.getInt()));
+                    AttrResourceValueImpl attr = new AttrResourceValueImpl(attrNamespace,
+                            getString(buffer.getInt()), getString(buffer.getInt()));
+                    readAttr(buffer, attr);
+                    styleable.addValue(attr);
+                }
+                return styleable;
+            }
+            case KIND_ATTR: {
+                AttrResourceValueImpl attr = new AttrResourceValueImpl(namespace, name,
+                        libraryName);
+                readAttr(buffer, attr);
+                return attr;
+            }
+            case KIND_LAYOUT: {
+                String value = getString(buffer.getInt());
+                LayoutInfo root = readLayoutInfo(buffer);
+                return new LayoutResourceValueImpl(new ResourceReference(namespace, type, name),
+                        value, libraryName, root);
+            }
+            default:
+                return new ResourceValueImpl(namespace, type, name, getString(buffer.getInt()),
+                        libraryName);
+        }
+    }
+
+    private void readAttr(ByteBuffer buffer, AttrResourceValueImpl attr) {
+        attr.setDescription(getString(buffer.getInt()));
+        attr.setGroupName(getString(buffer.getInt()));
+
+        int formatCount = buffer.getInt();
+        List<AttributeFormat> formats = new ArrayList<>(formatCount);
+        for (int i = 0; i < formatCount; i++) {
+            formats.add(AttributeFormat.valueOf(getString(buffer.getInt())));
+        }
+        if (!formats.isEmpty()) {
+            attr.setFormats(formats);
+        }
+
+        int valueCount = buffer.getInt();
+        for (int i = 0; i < valueCount; i++) {
+            String valueName = getString(buffer.getInt());
+            boolean hasNumber = buffer.get() != 0;
+            int number = buffer.getInt();
+            String description = getString(buffer.getInt());
+            attr.addValue(valueName, hasNumber ? number : null, description);
+        }
+    }
+
+    @Nullable
+    private LayoutInfo readLayoutInfo(ByteBuffer buffer) {
+        if (buffer.get() == 0) {
+            return null;
+        }
+        LayoutInfo info = new LayoutInfo(getString(buffer.getInt()));
+        int attributeCount = buffer.getInt();
+        for (int i = 0; i < attributeCount; i++) {
+            info.addAttribute(getString(buffer.getInt()), getString(buffer.getInt()));
+        }
+        int childCount = buffer.getInt();
+        for (int i = 0; i < childCount; i++) {
+            info.addChild(readLayoutInfo(buffer));
+        }
+        return info;
+    }
+
+    @Nullable
+    private String getString(int index) {
+        if (index == NULL) {
+            return null;
+        }
+        String string = mStrings[index];
+        if (string == null) {
+            ByteBuffer buffer = mBuffer.duplicate();
+            buffer.position(mStringOffsets[index]);
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            string = new String(bytes, StandardCharsets.UTF_8);
+            mStrings[index] = string;
+        }
+        return string;
+    }
+
+    @NotNull
+    private static ResourceNamespace toNamespace(@Nullable String packageName) {
+        if (packageName == null) {
+            return ResourceNamespace.RES_AUTO;
+        }
+        return ResourceNamespace.fromPackageName(packageName);
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Deduplicates the strings written to the snapshot
+     */
+    private static class StringPool {
+        private final Map<String, Integer> mIndices = new LinkedHashMap<>();
+
+        int add(@Nullable String string) {
+            if (string == null) {
+                return NULL;
+            }
+            Integer index = mIndices.get(string);
+            if (index == null) {
+                index = mIndices.size();
+                mIndices.put(string, index);
+            }
+            return index;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(mIndices.size());
+            for (String string : mIndices.keySet()) {
+                writeString(out, string);
+            }
+        }
+    }
+}
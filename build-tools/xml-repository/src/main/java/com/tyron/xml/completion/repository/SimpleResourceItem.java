@@ -12,14 +12,24 @@ import com.tyron.xml.completion.repository.api.ResourceValue;
 public class SimpleResourceItem implements ResourceItem {
 
     private final ResourceValue mValue;
+    private final String mFolderName;
 
     private FolderConfiguration mConfiguration;
 
     public SimpleResourceItem(ResourceValue value, String folderName) {
         mValue = value;
+        mFolderName = folderName;
         mConfiguration = FolderConfiguration.getConfigForFolder(folderName);
     }
 
+    /**
+     * @return The name of the resource folder this item was declared in, e.g. {@code values-v21}
+     */
+    @NotNull
+    public String getFolderName() {
+        return mFolderName;
+    }
+
     @NotNull
     @Override
     public FolderConfiguration getConfiguration() {
@@ -6,8 +6,10 @@ import org.jetbrains.annotations.Nullable;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Multimap;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.manifest.configuration.Configurable;
 import com.tyron.builder.compiler.manifest.configuration.FolderConfiguration;
 import com.tyron.builder.compiler.manifest.resources.ResourceFolderType;
@@ -33,6 +35,7 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -45,9 +48,14 @@ import jdk.internal.org.jline.utils.Colors;
 
 public class SimpleResourceRepository implements Repository {
 
-    private static final ImmutableMap<ResourceFolderType, ResourceParser> sParsers;
+    /**
+     * Each thread gets its own parsers, libraries are parsed on several threads at once and
+     * the parsers are not required to be thread safe.
+     */
+    private static final ThreadLocal<ImmutableMap<ResourceFolderType, ResourceParser>> sParsers =
+            ThreadLocal.withInitial(SimpleResourceRepository::createParsers);
 
-    static {
+    private static ImmutableMap<ResourceFolderType, ResourceParser> createParsers() {
         ImmutableMap.Builder<ResourceFolderType, ResourceParser> parsers = ImmutableMap.builder();
         parsers.put(ResourceFolderType.VALUES, new ValuesXmlParser());
         parsers.put(ResourceFolderType.LAYOUT, new LayoutXmlParser());
@@ -59,7 +67,7 @@ public class SimpleResourceRepository implements Repository {
         parsers.put(ResourceFolderType.FONT, new TemporaryParser(ResourceType.FONT));
         parsers.put(ResourceFolderType.DRAWABLE, new TemporaryParser(ResourceType.DRAWABLE));
         parsers.put(ResourceFolderType.ANIM, new TemporaryParser(ResourceType.ANIM));
-        sParsers = parsers.build();
+        return parsers.build();
     }
 
     private final Logger logger = IdeLog.getCurrentLogger(this);
@@ -69,6 +77,18 @@ public class SimpleResourceRepository implements Repository {
     protected final ResourceTable mTable = new ResourceTable();
     protected final Multimap<File, ResourceItem> mFileItems = ArrayListMultimap.create();
 
+    /**
+     * The stamps of the files in {@link #mFileItems} at the time they were last parsed,
+     * see {@link #getStamp(File)} and {@link #getStamp(CharSequence)}
+     */
+    private final Map<File, Long> mFileStamps = new HashMap<>();
+
+    /**
+     * The resource types which had items added or removed since the last call to
+     * {@link #pollChangedTypes()}
+     */
+    private final Set<ResourceType> mChangedTypes = EnumSet.noneOf(ResourceType.class);
+
     private FolderConfiguration mConfiguration;
 
     public SimpleResourceRepository(File resDir, ResourceNamespace namespace) {
@@ -84,6 +104,23 @@ public class SimpleResourceRepository implements Repository {
     }
 
     protected void parse(File resDir, ResourceNamespace namespace, String name) throws IOException {
+        parse(resDir, namespace, name, mTable, mFileItems);
+    }
+
+    /**
+     * Parses the resources in the given directory into the given table. When no file items
+     * are given this does not touch the state of this repository so it can be called from
+     * multiple threads with different tables.
+     *
+     * @param fileItems where to store which items were declared in which file, may be null
+     *                  if the files will never be updated. The stamps of the files are
+     *                  recorded along with them.
+     */
+    protected void parse(@NotNull File resDir,
+                         @NotNull ResourceNamespace namespace,
+                         @Nullable String name,
+                         @NotNull ResourceTable table,
+                         @Nullable Multimap<File, ResourceItem> fileItems) {
         Collection<File> dirs = FileUtils.listFilesAndDirs(resDir, FalseFileFilter.INSTANCE,
                                                            TrueFileFilter.INSTANCE);
         for (File dir : dirs) {
@@ -97,8 +134,13 @@ public class SimpleResourceRepository implements Repository {
                     FileUtils.listFiles(dir, TrueFileFilter.INSTANCE, FalseFileFilter.INSTANCE);
             for (File xmlFile : xmlFiles) {
                 try {
+                    long stamp = getStamp(xmlFile);
                     String contents = FileUtils.readFileToString(xmlFile, StandardCharsets.UTF_8);
-                    parseFile(parser, xmlFile, contents, dir.getName(), namespace, name);
+                    parseFile(parser, xmlFile, contents, dir.getName(), namespace, name, table,
+                              fileItems);
+                    if (fileItems != null) {
+                        mFileStamps.put(xmlFile, stamp);
+                    }
                 } catch (IOException e) {
                     logger.warning("Unable to parse " + xmlFile.getName() + ": " + e.getMessage());
                 }
@@ -107,12 +149,12 @@ public class SimpleResourceRepository implements Repository {
     }
 
     @Nullable
-    private ResourceParser getParser(@NotNull File directory) {
+    protected ResourceParser getParser(@NotNull File directory) {
         ResourceFolderType folderType = ResourceFolderType.getFolderType(directory.getName());
         if (folderType == null) {
             return null;
         }
-        return sParsers.get(folderType);
+        return sParsers.get().get(folderType);
     }
 
     private void parseFile(@NotNull ResourceParser parser,
@@ -120,26 +162,35 @@ public class SimpleResourceRepository implements Repository {
                            @Nullable String contents,
                            @NotNull String folderName,
                            @NotNull ResourceNamespace namespace,
-                           @Nullable String libraryName) throws IOException {
+                           @Nullable String libraryName,
+                           @NotNull ResourceTable table,
+                           @Nullable Multimap<File, ResourceItem> fileItems) throws IOException {
         List<ResourceValue> values = parser.parse(xmlFile, contents, namespace, libraryName);
         for (ResourceValue value : values) {
             ListMultimap<String, ResourceItem> tableValue =
-                    mTable.getOrPutEmpty(value.getNamespace(), value.getResourceType());
+                    table.getOrPutEmpty(value.getNamespace(), value.getResourceType());
             SimpleResourceItem resourceItem = new SimpleResourceItem(value, folderName);
             tableValue.put(value.getName(), resourceItem);
 
-            mFileItems.put(xmlFile, resourceItem);
+            if (fileItems != null) {
+                fileItems.put(xmlFile, resourceItem);
+            }
         }
     }
 
     @Override
     public void updateFile(@NotNull File file, @Nullable String contents) throws IOException {
-        Collection<ResourceItem> existingItems = mFileItems.get(file);
-        if (existingItems != null) {
-            existingItems.stream()
-                    .filter(Objects::nonNull)
-                    .forEach(mTable::remove);
-        }
+        updateFile(file, contents, contents == null ? getStamp(file) : getStamp(contents));
+    }
+
+    /**
+     * @param stamp The stamp of where the contents were taken from, recorded
+     *              for {@link #isUpToDate(File, long)}
+     */
+    protected void updateFile(@NotNull File file,
+                              @Nullable String contents,
+                              long stamp) throws IOException {
+        removeItems(file);
 
         File parent = file.getParentFile();
         if (parent == null) {
@@ -152,7 +203,75 @@ public class SimpleResourceRepository implements Repository {
             return;
         }
 
-        parseFile(parser, file, contents, parent.getName(), mNamespace, null);
+        parseFile(parser, file, contents, parent.getName(), mNamespace, null, mTable, mFileItems);
+        mFileStamps.put(file, stamp);
+        for (ResourceItem item : mFileItems.get(file)) {
+            mChangedTypes.add(item.getType());
+        }
+    }
+
+    /**
+     * Removes the resources declared in the given file, used when the file has been deleted.
+     */
+    public void removeFile(@NotNull File file) {
+        removeItems(file);
+        mFileStamps.remove(file);
+    }
+
+    private void removeItems(@NotNull File file) {
+        for (ResourceItem item : mFileItems.removeAll(file)) {
+            if (item == null) {
+                continue;
+            }
+            mTable.remove(item);
+            mChangedTypes.add(item.getType());
+        }
+    }
+
+    /**
+     * @return The files whose resources are tracked by this repository
+     */
+    @NotNull
+    public Set<File> getFiles() {
+        return ImmutableSet.copyOf(mFileStamps.keySet());
+    }
+
+    /**
+     * @param file  The file to check
+     * @param stamp The current stamp of the file
+     * @return whether the file has already been parsed with the contents the stamp was taken from
+     */
+    public boolean isUpToDate(@NotNull File file, long stamp) {
+        Long current = mFileStamps.get(file);
+        return current != null && current == stamp;
+    }
+
+    /**
+     * Returns the resource types whose items have been added or removed through
+     * {@link #updateFile(File, String)} or {@link #removeFile(File)} since the last call
+     * to this method, and resets them.
+     */
+    @NotNull
+    public Set<ResourceType> pollChangedTypes() {
+        Set<ResourceType> changed = EnumSet.copyOf(mChangedTypes);
+        mChangedTypes.clear();
+        return changed;
+    }
+
+    /**
+     * The stamp of a file on disk, changes whenever the file is written to.
+     */
+    public static long getStamp(@NotNull File file) {
+        return file.lastModified() * 31 + file.length();
+    }
+
+    /**
+     * The stamp of contents held in memory, for files that are opened in the editor.
+     */
+    public static long getStamp(@NotNull CharSequence contents) {
+        return Hashing.farmHashFingerprint64()
+                .hashUnencodedChars(contents)
+                .asLong();
     }
 
     @NotNull
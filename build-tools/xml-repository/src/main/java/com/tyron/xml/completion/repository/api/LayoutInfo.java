@@ -34,6 +34,9 @@ public class LayoutInfo {
     }
 
     public ImmutableList<Pair<String, String>> getAttributes() {
+        if (mAttributes == null) {
+            return ImmutableList.of();
+        }
         return ImmutableList.copyOf(mAttributes);
     }
 
@@ -43,6 +46,9 @@ public class LayoutInfo {
      */
     @Nullable
     public ImmutableList<LayoutInfo> getChildren() {
+        if (mChildren == null) {
+            return null;
+        }
         return ImmutableList.copyOf(mChildren);
     }
 
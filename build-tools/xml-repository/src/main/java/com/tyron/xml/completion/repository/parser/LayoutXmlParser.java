@@ -14,11 +14,11 @@ import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
 import com.tyron.xml.completion.repository.api.ResourceValueImpl;
 import com.tyron.xml.completion.util.DOMUtils;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 
 import org.eclipse.lemminx.dom.DOMAttr;
 import org.eclipse.lemminx.dom.DOMDocument;
 import org.eclipse.lemminx.dom.DOMNode;
-import org.eclipse.lemminx.dom.DOMParser;
 import org.eclipse.lemminx.dom.DOMProcessingInstruction;
 
 import java.io.File;
@@ -46,8 +46,8 @@ public class LayoutXmlParser implements ResourceParser {
             return Collections.emptyList();
         }
 
-        DOMDocument document = DOMParser.getInstance()
-                .parse(contents, "", null);
+        DOMDocument document = XmlDocumentCache.getInstance()
+                .parse(file, contents);
         List<DOMNode> roots = document.getRoots();
         for (DOMNode root : roots) {
             if (root instanceof DOMProcessingInstruction) {
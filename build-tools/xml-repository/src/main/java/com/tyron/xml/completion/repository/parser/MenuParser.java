@@ -8,11 +8,11 @@ import com.tyron.xml.completion.repository.api.ResourceReference;
 import com.tyron.xml.completion.repository.api.ResourceValue;
 import com.tyron.xml.completion.repository.api.ResourceValueImpl;
 import com.tyron.xml.completion.util.DOMUtils;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 
 import org.eclipse.lemminx.dom.DOMAttr;
 import org.eclipse.lemminx.dom.DOMDocument;
 import org.eclipse.lemminx.dom.DOMElement;
-import org.eclipse.lemminx.dom.DOMParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.w3c.dom.Node;
@@ -36,7 +36,7 @@ public class MenuParser implements ResourceParser {
             return Collections.emptyList();
         }
 
-        DOMDocument parsed = DOMParser.getInstance().parse(contents, file.toURI().toString(), null);
+        DOMDocument parsed = XmlDocumentCache.getInstance().parse(file, contents);
         if (parsed == null) {
             return Collections.emptyList();
         }
@@ -16,12 +16,11 @@ import com.tyron.xml.completion.repository.api.StyleItemResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleResourceValueImpl;
 import com.tyron.xml.completion.repository.api.StyleableResourceValue;
 import com.tyron.xml.completion.repository.api.StyleableResourceValueImpl;
-import com.tyron.xml.completion.util.DOMUtils;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 
 import org.eclipse.lemminx.dom.DOMComment;
 import org.eclipse.lemminx.dom.DOMDocument;
 import org.eclipse.lemminx.dom.DOMNode;
-import org.eclipse.lemminx.dom.DOMParser;
 import org.eclipse.lemminx.dom.DOMProcessingInstruction;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -46,9 +45,10 @@ public class ValuesXmlParser implements ResourceParser {
             return Collections.emptyList();
         }
 
+        // the document may be shared with the editor, so the namespace is passed along
+        // instead of being stored on it
         DOMDocument document =
-                DOMParser.getInstance().parse(contents, file.toURI().toString(), null);
-        DOMUtils.setNamespace(document, namespace);
+                XmlDocumentCache.getInstance().parse(file, contents);
         List<DOMNode> roots = document.getRoots();
         for (DOMNode root : roots) {
             if (root instanceof DOMProcessingInstruction) {
@@ -0,0 +1,108 @@
+package com.tyron.xml.completion.util;
+
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.eclipse.lemminx.dom.DOMParser;
+import org.eclipse.lemminx.uriresolver.URIResolverExtensionManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the parsed DOM of the XML files being edited so that completion, the resource
+ * repository and the editor share a single parse for each version of a file.
+ *
+ * <p>The nodes of lemminx have final offsets so an edit cannot be applied to an existing
+ * tree, instead a file is parsed again only the first time a new version of its contents is
+ * requested. Returned documents must be treated as read only.
+ */
+public class XmlDocumentCache {
+
+    private static final int MAX_SIZE = 16;
+
+    private static final XmlDocumentCache sInstance = new XmlDocumentCache();
+
+    public static XmlDocumentCache getInstance() {
+        return sInstance;
+    }
+
+    private static class Entry {
+        private final String mText;
+        private final DOMDocument mDocument;
+
+        private Entry(String text, DOMDocument document) {
+            mText = text;
+            mDocument = document;
+        }
+    }
+
+    private final URIResolverExtensionManager mResolverManager =
+            new URIResolverExtensionManager();
+
+    private final Map<File, Entry> mEntries = new LinkedHashMap<File, Entry>(MAX_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Entry> eldest) {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    /**
+     * Returns the document of the given contents, parsing it only if the contents
+     * have changed since the last time the file was requested.
+     */
+    @NotNull
+    public DOMDocument getDocument(@NotNull File file, @NotNull CharSequence contents) {
+        DOMDocument cached = getCached(file, contents);
+        if (cached != null) {
+            return cached;
+        }
+
+        String text = contents.toString();
+        DOMDocument document = parseInternal(file, text);
+        synchronized (mEntries) {
+            mEntries.put(file, new Entry(text, document));
+        }
+        return document;
+    }
+
+    /**
+     * Same as {@link #getDocument(File, CharSequence)} but a newly parsed document is not
+     * cached. Used for files which are parsed only once such as when indexing resources.
+     */
+    @NotNull
+    public DOMDocument parse(@NotNull File file, @NotNull CharSequence contents) {
+        DOMDocument cached = getCached(file, contents);
+        if (cached != null) {
+            return cached;
+        }
+        return parseInternal(file, contents.toString());
+    }
+
+    /**
+     * Removes the document of the file, called when the file is closed or deleted.
+     */
+    public void invalidate(@NotNull File file) {
+        synchronized (mEntries) {
+            mEntries.remove(file);
+        }
+    }
+
+    @Nullable
+    private DOMDocument getCached(@NotNull File file, @NotNull CharSequence contents) {
+        Entry entry;
+        synchronized (mEntries) {
+            entry = mEntries.get(file);
+        }
+        if (entry != null && entry.mText.contentEquals(contents)) {
+            return entry.mDocument;
+        }
+        return null;
+    }
+
+    private DOMDocument parseInternal(@NotNull File file, @NotNull String text) {
+        return DOMParser.getInstance()
+                .parse(text, file.toURI().toString(), mResolverManager);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class AndroidResourceRepositoryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File createResources(String value) throws Exception {
+        File resDir = folder.newFolder("res");
+        FileUtils.writeStringToFile(new File(resDir, "values/strings.xml"),
+                "<resources>\n" +
+                "    <string name=\"ok\">" + value + "</string>\n" +
+                "</resources>", StandardCharsets.UTF_8);
+        return resDir;
+    }
+
+    private static String getString(AndroidResourceRepository repository, String name) {
+        List<ResourceItem> items = repository.getResources(ResourceNamespace.ANDROID,
+                ResourceType.STRING, name);
+        assertEquals(1, items.size());
+        return items.get(0).getResourceValue().getValue();
+    }
+
+    @Test
+    public void testResourcesAreLoadedFromSnapshot() throws Exception {
+        File resDir = createResources("OK");
+        File snapshot = new File(folder.getRoot(), "resources.bin");
+
+        AndroidResourceRepository parsed = new AndroidResourceRepository(resDir,
+                ResourceNamespace.ANDROID, snapshot, "1");
+        parsed.initialize();
+        assertEquals("OK", getString(parsed, "ok"));
+        assertTrue(snapshot.exists());
+
+        // the sources are not read again while the stamp matches
+        FileUtils.deleteDirectory(resDir);
+        AndroidResourceRepository loaded = new AndroidResourceRepository(resDir,
+                ResourceNamespace.ANDROID, snapshot, "1");
+        loaded.initialize();
+        assertEquals("OK", getString(loaded, "ok"));
+        assertTrue(loaded.getResourceTypes().contains(ResourceType.STRING));
+        assertTrue(loaded.hasResources(ResourceNamespace.ANDROID, ResourceType.STRING, "ok"));
+        assertFalse(loaded.hasResources(ResourceNamespace.ANDROID, ResourceType.STRING, "no"));
+    }
+
+    @Test
+    public void testOutdatedSnapshotIsRebuilt() throws Exception {
+        File snapshot = new File(folder.getRoot(), "resources.bin");
+        File resDir = createResources("OK");
+        new AndroidResourceRepository(resDir, ResourceNamespace.ANDROID, snapshot, "1")
+                .initialize();
+
+        FileUtils.writeStringToFile(new File(resDir, "values/strings.xml"),
+                "<resources>\n" +
+                "    <string name=\"ok\">Okay</string>\n" +
+                "</resources>", StandardCharsets.UTF_8);
+        AndroidResourceRepository updated = new AndroidResourceRepository(resDir,
+                ResourceNamespace.ANDROID, snapshot, "2");
+        updated.initialize();
+        assertEquals("Okay", getString(updated, "ok"));
+
+        AndroidResourceRepository loaded = new AndroidResourceRepository(resDir,
+                ResourceNamespace.ANDROID, snapshot, "2");
+        loaded.initialize();
+        assertEquals("Okay", getString(loaded, "ok"));
+    }
+}
@@ -0,0 +1,235 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.parser.ResourceParser;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class ResourceRepositoryTest {
+
+    private static final int LIBRARY_COUNT = 16;
+    private static final int STRINGS_PER_LIBRARY = 50;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockAndroidModule mModule;
+    private final List<File> mLibraries = new ArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        ResourceRepository.setInitializeAndroidRepo(false);
+
+        File root = folder.newFolder("app");
+        mModule = new MockAndroidModule(root, new MockFileManager(root)) {
+            @Override
+            public List<File> getLibraries() {
+                return mLibraries;
+            }
+        };
+        mModule.setPackageName("com.tyron.test");
+        writeStrings(new File(mModule.getAndroidResourcesDirectory(), "values/strings.xml"),
+                "app", 1);
+
+        for (int i = 0; i < LIBRARY_COUNT; i++) {
+            File libraryDir = new File(mModule.getBuildDirectory(), "libs/library" + i);
+            File classes = new File(libraryDir, "classes.jar");
+            FileUtils.writeByteArrayToFile(classes, new byte[0]);
+            writeStrings(new File(libraryDir, "res/values/strings.xml"), "library" + i,
+                    STRINGS_PER_LIBRARY);
+            FileUtils.writeStringToFile(new File(libraryDir, "res/layout/library" + i + ".xml"),
+                    "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\">\n" +
+                    "    <TextView android:id=\"@+id/library" + i + "_text\"/>\n" +
+                    "</LinearLayout>", StandardCharsets.UTF_8);
+            mLibraries.add(classes);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ResourceRepository.setInitializeAndroidRepo(true);
+    }
+
+    private static void writeStrings(File file, String prefix, int count) throws IOException {
+        StringBuilder sb = new StringBuilder("<resources>\n");
+        for (int i = 0; i < count; i++) {
+            sb.append("    <string name=\"").append(prefix).append('_').append(i).append("\">")
+                    .append(prefix).append(' ').append(i).append("</string>\n");
+        }
+        sb.append("</resources>");
+        FileUtils.writeStringToFile(file, sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private ResourceRepository createRepository() throws IOException {
+        File androidRes = folder.newFolder();
+        ResourceRepository repository = new ResourceRepository(mModule,
+                new AndroidResourceRepository(androidRes, ResourceNamespace.ANDROID));
+        repository.initialize();
+        return repository;
+    }
+
+    private static String getString(ResourceRepository repository, String name) {
+        List<ResourceItem> items = repository.getResources(ResourceNamespace.RES_AUTO,
+                ResourceType.STRING).get(name);
+        assertEquals(1, items.size());
+        return items.get(0).getResourceValue().getValue();
+    }
+
+    @Test
+    public void testLibrariesAreParsedInParallel() throws IOException {
+        ResourceRepository repository = createRepository();
+
+        assertEquals("app 0", getString(repository, "app_0"));
+        for (int i = 0; i < LIBRARY_COUNT; i++) {
+            for (int j = 0; j < STRINGS_PER_LIBRARY; j++) {
+                assertEquals("library" + i + " " + j,
+                        getString(repository, "library" + i + "_" + j));
+            }
+            assertEquals(1, repository.getResources(ResourceNamespace.RES_AUTO,
+                    ResourceType.ID).get("library" + i + "_text").size());
+            assertTrue(new File(mModule.getBuildDirectory(),
+                    "intermediates/library_resources/library" + i + ".bin").exists());
+        }
+    }
+
+    @Test
+    public void testLibrariesAreLoadedFromCache() throws IOException {
+        createRepository();
+
+        // libraries never change once extracted, a second load must come from the cache
+        File libraryDir = new File(mModule.getBuildDirectory(), "libs/library0");
+        writeStrings(new File(libraryDir, "res/values/strings.xml"), "changed", 1);
+
+        ResourceRepository repository = createRepository();
+        assertEquals("library0 0", getString(repository, "library0_0"));
+        assertTrue(repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.STRING)
+                .get("changed_0").isEmpty());
+    }
+
+    @Test
+    public void testStaleCachesAreDeleted() throws IOException {
+        createRepository();
+        mLibraries.remove(0);
+        createRepository();
+
+        File cacheDir = new File(mModule.getBuildDirectory(), "intermediates/library_resources");
+        assertTrue(new File(cacheDir, "library1.bin").exists());
+        assertTrue(!new File(cacheDir, "library0.bin").exists());
+    }
+
+    @Test
+    public void testParsersAreNotSharedBetweenThreads() throws Exception {
+        ResourceRepository repository = createRepository();
+        File valuesDir = new File(mModule.getAndroidResourcesDirectory(), "values");
+
+        ResourceParser parser = repository.getParser(valuesDir);
+        assertNotNull(parser);
+        assertSame(parser, repository.getParser(valuesDir));
+
+        ExecutorService service = Executors.newSingleThreadExecutor();
+        try {
+            Future<ResourceParser> other = service.submit(() -> repository.getParser(valuesDir));
+            assertNotSame(parser, other.get());
+        } finally {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnchangedFilesAreNotParsedAgain() throws IOException {
+        ResourceRepository repository = createRepository();
+        repository.pollChangedTypes();
+
+        assertTrue(repository.updateModifiedFiles().isEmpty());
+        assertTrue(repository.pollChangedTypes().isEmpty());
+    }
+
+    @Test
+    public void testModifiedFileIsParsedAgain() throws IOException {
+        ResourceRepository repository = createRepository();
+        repository.pollChangedTypes();
+
+        File strings = new File(mModule.getAndroidResourcesDirectory(), "values/strings.xml");
+        writeStrings(strings, "modified", 2);
+
+        assertEquals(Collections.singleton(strings), repository.updateModifiedFiles());
+        assertEquals(EnumSet.of(ResourceType.STRING), repository.pollChangedTypes());
+        assertEquals("modified 1", getString(repository, "modified_1"));
+        assertTrue(repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.STRING)
+                .get("app_0").isEmpty());
+
+        // the changes have been consumed
+        assertTrue(repository.updateModifiedFiles().isEmpty());
+        assertTrue(repository.pollChangedTypes().isEmpty());
+    }
+
+    @Test
+    public void testOpenedFileContentsAreUsed() throws IOException {
+        ResourceRepository repository = createRepository();
+        repository.pollChangedTypes();
+
+        File strings = new File(mModule.getAndroidResourcesDirectory(), "values/strings.xml");
+        mModule.getFileManager().openFileForSnapshot(strings,
+                "<resources><string name=\"app_0\">edited</string></resources>");
+
+        assertEquals(Collections.singleton(strings), repository.updateModifiedFiles());
+        assertEquals("edited", getString(repository, "app_0"));
+        assertTrue(repository.updateModifiedFiles().isEmpty());
+
+        mModule.getFileManager().closeFileForSnapshot(strings);
+        assertEquals(Collections.singleton(strings), repository.updateModifiedFiles());
+        assertEquals("app 0", getString(repository, "app_0"));
+    }
+
+    @Test
+    public void testAddedAndDeletedFiles() throws IOException {
+        ResourceRepository repository = createRepository();
+        repository.pollChangedTypes();
+
+        File colors = new File(mModule.getAndroidResourcesDirectory(), "values/colors.xml");
+        FileUtils.writeStringToFile(colors,
+                "<resources><color name=\"primary\">#ffffff</color></resources>",
+                StandardCharsets.UTF_8);
+
+        assertEquals(Collections.singleton(colors), repository.updateModifiedFiles());
+        assertEquals(EnumSet.of(ResourceType.COLOR), repository.pollChangedTypes());
+        assertTrue(repository.getFiles().contains(colors));
+        assertEquals(1, repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.COLOR)
+                .get("primary").size());
+
+        assertTrue(colors.delete());
+        assertEquals(Collections.singleton(colors), repository.updateModifiedFiles());
+        assertEquals(EnumSet.of(ResourceType.COLOR), repository.pollChangedTypes());
+        assertFalse(repository.getFiles().contains(colors));
+        assertTrue(repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.COLOR)
+                .get("primary").isEmpty());
+        // resources of other files are left untouched
+        assertEquals("app 0", getString(repository, "app_0"));
+    }
+}
@@ -0,0 +1,194 @@
+package com.tyron.xml.completion.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ListMultimap;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.xml.completion.repository.api.AttrResourceValue;
+import com.tyron.xml.completion.repository.api.AttrResourceValueImpl;
+import com.tyron.xml.completion.repository.api.AttributeFormat;
+import com.tyron.xml.completion.repository.api.LayoutInfo;
+import com.tyron.xml.completion.repository.api.LayoutResourceValue;
+import com.tyron.xml.completion.repository.api.LayoutResourceValueImpl;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceReference;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.api.ResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleItemResourceValue;
+import com.tyron.xml.completion.repository.api.StyleItemResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleResourceValue;
+import com.tyron.xml.completion.repository.api.StyleResourceValueImpl;
+import com.tyron.xml.completion.repository.api.StyleableResourceValue;
+import com.tyron.xml.completion.repository.api.StyleableResourceValueImpl;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+
+public class ResourceTableSnapshotTest {
+
+    private static final ResourceNamespace NAMESPACE = ResourceNamespace.ANDROID;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void add(ResourceTable table, ResourceValue value, String folderName) {
+        table.getOrPutEmpty(value.getNamespace(), value.getResourceType())
+                .put(value.getName(), new SimpleResourceItem(value, folderName));
+    }
+
+    private static ResourceTable createTable() {
+        ResourceTable table = new ResourceTable();
+        add(table, new ResourceValueImpl(NAMESPACE, ResourceType.STRING, "ok", "OK", null),
+                "values");
+        add(table, new ResourceValueImpl(NAMESPACE, ResourceType.STRING, "ok", "Okay", null),
+                "values-en");
+
+        StyleResourceValueImpl style = new StyleResourceValueImpl(NAMESPACE, "Theme.Test",
+                "Theme", null);
+        style.addItem(new StyleItemResourceValueImpl(NAMESPACE, "colorPrimary", "#ff0000",
+                null));
+        add(table, style, "values");
+
+        AttrResourceValueImpl orientation = new AttrResourceValueImpl(NAMESPACE, "orientation",
+                null);
+        orientation.setFormats(Arrays.asList(AttributeFormat.ENUM));
+        orientation.setDescription("The orientation");
+        orientation.addValue("horizontal", 0, "Horizontal");
+        orientation.addValue("vertical", 1, null);
+        add(table, orientation, "values");
+
+        StyleableResourceValueImpl styleable = new StyleableResourceValueImpl(NAMESPACE,
+                "LinearLayout", null, null);
+        styleable.addValue(orientation);
+        add(table, styleable, "values");
+
+        LayoutInfo root = new LayoutInfo("LinearLayout");
+        root.addAttribute("android:orientation", "vertical");
+        LayoutInfo child = new LayoutInfo("TextView");
+        child.addAttribute("android:id", "@+id/text");
+        root.addChild(child);
+        add(table, new LayoutResourceValueImpl(
+                new ResourceReference(NAMESPACE, ResourceType.LAYOUT, "simple"),
+                "simple.xml", null, root), "layout");
+        return table;
+    }
+
+    private ResourceTableSnapshot writeAndOpen(ResourceTable table) throws Exception {
+        File file = new File(folder.getRoot(), "resources.bin");
+        ResourceTableSnapshot.write(table, "stamp", file);
+        assertFalse(new File(folder.getRoot(), "resources.bin.tmp").exists());
+        ResourceTableSnapshot snapshot = ResourceTableSnapshot.open(file, "stamp");
+        assertNotNull(snapshot);
+        return snapshot;
+    }
+
+    @Test
+    public void testPlainValues() throws Exception {
+        ResourceTableSnapshot snapshot = writeAndOpen(createTable());
+
+        ListMultimap<String, ResourceItem> strings = snapshot.read(NAMESPACE, ResourceType.STRING);
+        assertNotNull(strings);
+        List<ResourceItem> ok = strings.get("ok");
+        assertEquals(2, ok.size());
+        assertEquals("OK", ok.get(0).getResourceValue().getValue());
+        assertEquals("values", ((SimpleResourceItem) ok.get(0)).getFolderName());
+        assertEquals("Okay", ok.get(1).getResourceValue().getValue());
+        assertEquals("values-en", ((SimpleResourceItem) ok.get(1)).getFolderName());
+    }
+
+    @Test
+    public void testStyleAndAttributes() throws Exception {
+        ResourceTableSnapshot snapshot = writeAndOpen(createTable());
+
+        ResourceValue value = snapshot.read(NAMESPACE, ResourceType.STYLE)
+                .get("Theme.Test").get(0).getResourceValue();
+        StyleResourceValue style = (StyleResourceValue) value;
+        assertEquals("Theme", style.getParentStyleName());
+        StyleItemResourceValue item = style.getDefinedItems().iterator().next();
+        assertEquals("colorPrimary", item.getAttrName());
+        assertEquals("#ff0000", item.getValue());
+
+        AttrResourceValue attr = (AttrResourceValue) snapshot.read(NAMESPACE, ResourceType.ATTR)
+                .get("orientation").get(0).getResourceValue();
+        assertEquals(EnumSet.of(AttributeFormat.ENUM), attr.getFormats());
+        assertEquals("The orientation", attr.getDescription());
+        assertEquals(Integer.valueOf(0), attr.getAttributeValues().get("horizontal"));
+        assertEquals(Integer.valueOf(1), attr.getAttributeValues().get("vertical"));
+        assertEquals("Horizontal", attr.getValueDescription("horizontal"));
+        assertNull(attr.getValueDescription("vertical"));
+
+        StyleableResourceValue styleable = (StyleableResourceValue) snapshot
+                .read(NAMESPACE, ResourceType.STYLEABLE)
+                .get("LinearLayout").get(0).getResourceValue();
+        assertEquals(1, styleable.getAllAttributes().size());
+        AttrResourceValue styleableAttr = styleable.getAllAttributes().get(0);
+        assertEquals("orientation", styleableAttr.getName());
+        assertEquals(Integer.valueOf(1), styleableAttr.getAttributeValues().get("vertical"));
+    }
+
+    @Test
+    public void testLayoutInfo() throws Exception {
+        ResourceTableSnapshot snapshot = writeAndOpen(createTable());
+
+        LayoutResourceValue layout = (LayoutResourceValue) snapshot
+                .read(NAMESPACE, ResourceType.LAYOUT)
+                .get("simple").get(0).getResourceValue();
+        LayoutInfo root = layout.getRoot();
+        assertNotNull(root);
+        assertEquals("LinearLayout", root.getName());
+        assertEquals("android:orientation", root.getAttributes().get(0).getFirst());
+        assertEquals("vertical", root.getAttributes().get(0).getSecond());
+        assertEquals(1, root.getChildren().size());
+        assertEquals("TextView", root.getChildren().get(0).getName());
+        assertEquals("@+id/text", root.getChildren().get(0).getAttributes().get(0).getSecond());
+    }
+
+    @Test
+    public void testSectionsAreDecodedOnce() throws Exception {
+        ResourceTableSnapshot snapshot = writeAndOpen(createTable());
+
+        assertTrue(snapshot.contains(NAMESPACE, ResourceType.STRING));
+        assertFalse(snapshot.contains(NAMESPACE, ResourceType.DRAWABLE));
+        assertNull(snapshot.read(NAMESPACE, ResourceType.DRAWABLE));
+        assertNull(snapshot.read(ResourceNamespace.RES_AUTO, ResourceType.STRING));
+        assertSame(snapshot.read(NAMESPACE, ResourceType.STRING),
+                snapshot.read(NAMESPACE, ResourceType.STRING));
+        assertEquals(EnumSet.of(ResourceType.STRING, ResourceType.STYLE, ResourceType.ATTR,
+                ResourceType.STYLEABLE, ResourceType.LAYOUT), snapshot.getResourceTypes());
+    }
+
+    @Test
+    public void testReadInto() throws Exception {
+        ResourceTableSnapshot snapshot = writeAndOpen(createTable());
+
+        ResourceTable table = new ResourceTable();
+        snapshot.readInto(table);
+        assertEquals(2, table.get(NAMESPACE, ResourceType.STRING).get("ok").size());
+        assertEquals(1, table.get(NAMESPACE, ResourceType.LAYOUT).size());
+    }
+
+    @Test
+    public void testOutdatedOrInvalidSnapshotIsIgnored() throws Exception {
+        File file = new File(folder.getRoot(), "resources.bin");
+        assertNull(ResourceTableSnapshot.open(file, "stamp"));
+
+        ResourceTableSnapshot.write(createTable(), "stamp", file);
+        assertNull(ResourceTableSnapshot.open(file, "other"));
+
+        FileUtils.writeStringToFile(file, "not a snapshot", StandardCharsets.UTF_8);
+        assertNull(ResourceTableSnapshot.open(file, "stamp"));
+    }
+}
@@ -0,0 +1,100 @@
+package com.tyron.xml.completion.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+import com.tyron.xml.completion.repository.api.ResourceValue;
+import com.tyron.xml.completion.repository.parser.ValuesXmlParser;
+
+import org.eclipse.lemminx.dom.DOMDocument;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+public class XmlDocumentCacheTest {
+
+    private static final File FILE = new File("/project/app/src/main/res/values/strings.xml");
+
+    private static final String VALUES = "<resources>\n" +
+            "    <string name=\"app_name\">App</string>\n" +
+            "</resources>";
+
+    private static final String EDITED_VALUES = "<resources>\n" +
+            "    <string name=\"app_name\">App</string>\n" +
+            "    <string name=\"title\">Title</string>\n" +
+            "</resources>";
+
+    @Test
+    public void testSameVersionIsParsedOnce() {
+        XmlDocumentCache cache = new XmlDocumentCache();
+        DOMDocument document = cache.getDocument(FILE, VALUES);
+
+        // the contents may come from a different buffer, only the text is compared
+        assertSame(document, cache.getDocument(FILE, new StringBuilder(VALUES)));
+        assertSame(document, cache.parse(FILE, VALUES));
+    }
+
+    @Test
+    public void testNewVersionIsParsedAgain() {
+        XmlDocumentCache cache = new XmlDocumentCache();
+        DOMDocument document = cache.getDocument(FILE, VALUES);
+
+        DOMDocument edited = cache.getDocument(FILE, EDITED_VALUES);
+        assertNotSame(document, edited);
+        assertEquals(EDITED_VALUES, edited.getText());
+        assertSame(edited, cache.getDocument(FILE, EDITED_VALUES));
+
+        // the previous version is no longer kept
+        assertNotSame(document, cache.getDocument(FILE, VALUES));
+    }
+
+    @Test
+    public void testParseDoesNotCache() {
+        XmlDocumentCache cache = new XmlDocumentCache();
+        DOMDocument document = cache.parse(FILE, VALUES);
+
+        assertNotSame(document, cache.parse(FILE, VALUES));
+        assertNotSame(document, cache.getDocument(FILE, VALUES));
+    }
+
+    @Test
+    public void testInvalidate() {
+        XmlDocumentCache cache = new XmlDocumentCache();
+        DOMDocument document = cache.getDocument(FILE, VALUES);
+
+        cache.invalidate(FILE);
+        assertNotSame(document, cache.getDocument(FILE, VALUES));
+    }
+
+    @Test
+    public void testFilesAreCachedSeparately() {
+        XmlDocumentCache cache = new XmlDocumentCache();
+        File other = new File(FILE.getParentFile(), "titles.xml");
+        DOMDocument document = cache.getDocument(FILE, VALUES);
+        DOMDocument otherDocument = cache.getDocument(other, VALUES);
+
+        assertNotSame(document, otherDocument);
+        assertSame(document, cache.getDocument(FILE, VALUES));
+        assertSame(otherDocument, cache.getDocument(other, VALUES));
+    }
+
+    @Test
+    public void testParsingValuesDoesNotChangeTheSharedDocument() throws Exception {
+        XmlDocumentCache cache = XmlDocumentCache.getInstance();
+        try {
+            DOMDocument document = cache.getDocument(FILE, VALUES);
+            List<ResourceValue> values = new ValuesXmlParser()
+                    .parse(FILE, VALUES, ResourceNamespace.RES_AUTO, null);
+
+            assertEquals(1, values.size());
+            assertEquals(ResourceNamespace.RES_AUTO, values.get(0).getNamespace());
+            assertNull(DOMUtils.getNamespace(document));
+        } finally {
+            cache.invalidate(FILE);
+        }
+    }
+}
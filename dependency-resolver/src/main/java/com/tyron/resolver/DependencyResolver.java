@@ -60,8 +60,12 @@ public class DependencyResolver {
      * the conflicting libraries
      */
     public List<Pom> resolve(List<Pom> declaredDependencies) {
-        for (Pom pom : declaredDependencies) {
-            resolve(pom);
+        try {
+            for (Pom pom : declaredDependencies) {
+                resolve(pom);
+            }
+        } finally {
+            repository.saveState();
         }
         return new ArrayList<>(resolvedPoms.keySet());
     }
@@ -0,0 +1,444 @@
+package com.tyron.resolver.download;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.common.logging.IdeLog;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Downloads artifacts from remote repositories.
+ *
+ * <p>Each file is first written to a {@code .part} file next to the destination and is only
+ * renamed to the destination once it is complete and its {@code .sha1} checksum (if the
+ * repository publishes one) matches. If a transfer is interrupted, the next attempt resumes
+ * from the end of the partial file using a HTTP range request.</p>
+ *
+ * <p>This class is thread safe, concurrent downloads of the same destination are serialized
+ * and {@link #submit(URL, File)} runs at most {@link #getParallelism()} transfers at a time.</p>
+ */
+public class ArtifactDownloader {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(ArtifactDownloader.class);
+
+    public static final int DEFAULT_PARALLELISM = 4;
+    public static final int DEFAULT_CONNECT_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(15);
+    public static final int DEFAULT_READ_TIMEOUT = (int) TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private static final String PART_SUFFIX = ".part";
+    private static final String SHA1_SUFFIX = ".sha1";
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private static ArtifactDownloader sInstance;
+
+    public static synchronized ArtifactDownloader getInstance() {
+        if (sInstance == null) {
+            sInstance = new ArtifactDownloader(DEFAULT_PARALLELISM);
+        }
+        return sInstance;
+    }
+
+    private final int mParallelism;
+    private final ExecutorService mExecutor;
+    private final DownloadStatistics mStatistics = new DownloadStatistics();
+    private final ConcurrentHashMap<String, DownloadLock> mLocks = new ConcurrentHashMap<>();
+
+    private int mConnectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private int mReadTimeout = DEFAULT_READ_TIMEOUT;
+    private int mMaxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long mRetryDelay = 500;
+    private boolean mVerifyChecksums = true;
+
+    /**
+     * @param parallelism The maximum number of concurrent transfers started through
+     *                    {@link #submit(URL, File)}
+     */
+    public ArtifactDownloader(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        mParallelism = parallelism;
+        mExecutor = Executors.newFixedThreadPool(parallelism, new DownloadThreadFactory());
+    }
+
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    public void setConnectTimeout(int millis) {
+        mConnectTimeout = millis;
+    }
+
+    public void setReadTimeout(int millis) {
+        mReadTimeout = millis;
+    }
+
+    /**
+     * @param attempts The number of times a transfer is attempted before giving up, at least 1
+     */
+    public void setMaxAttempts(int attempts) {
+        mMaxAttempts = Math.max(1, attempts);
+    }
+
+    /**
+     * @param millis The base delay between attempts, it grows linearly with each attempt
+     */
+    public void setRetryDelay(long millis) {
+        mRetryDelay = millis;
+    }
+
+    public void setVerifyChecksums(boolean verify) {
+        mVerifyChecksums = verify;
+    }
+
+    @NonNull
+    public DownloadStatistics getStatistics() {
+        return mStatistics;
+    }
+
+    /**
+     * Schedules a download on this downloader's worker pool.
+     *
+     * @return a future that resolves to the destination file, or null if the
+     * remote file does not exist
+     */
+    @NonNull
+    public Future<File> submit(@NonNull URL url, @NonNull File destination) {
+        return mExecutor.submit(() -> download(url, destination));
+    }
+
+    /**
+     * Runs a task that downloads through this downloader on its worker pool, so that
+     * it counts towards the parallelism limit.
+     */
+    @NonNull
+    public <T> Future<T> submit(@NonNull Callable<T> task) {
+        return mExecutor.submit(task);
+    }
+
+    /**
+     * Downloads the given url into the destination file on the calling thread.
+     *
+     * @return the destination file, or null if the remote file does not exist
+     * @throws IOException if the file could not be downloaded after all attempts
+     */
+    @Nullable
+    public File download(@NonNull URL url, @NonNull File destination) throws IOException {
+        String key = destination.getAbsolutePath();
+        DownloadLock lock = mLocks.compute(key, (k, existing) -> {
+            DownloadLock acquired = existing != null ? existing : new DownloadLock();
+            acquired.mUsers++;
+            return acquired;
+        });
+        try {
+            synchronized (lock) {
+                if (destination.exists()) {
+                    return destination;
+                }
+                return downloadWithRetries(url, destination);
+            }
+        } finally {
+            // the last download of this destination removes its lock
+            mLocks.computeIfPresent(key, (k, existing) -> --existing.mUsers == 0 ? null : existing);
+        }
+    }
+
+    /**
+     * Stops accepting new downloads, running downloads are allowed to finish.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private File downloadWithRetries(URL url, File destination) throws IOException {
+        File partFile = new File(destination.getParentFile(), destination.getName() + PART_SUFFIX);
+        FileUtils.forceMkdirParent(partFile);
+
+        IOException lastException = null;
+        for (int attempt = 1; attempt <= mMaxAttempts; attempt++) {
+            if (attempt > 1) {
+                mStatistics.onRetry();
+                sleep(mRetryDelay * (attempt - 1));
+            }
+            boolean transferred = false;
+            try {
+                if (!transfer(url, partFile)) {
+                    FileUtils.deleteQuietly(partFile);
+                    return null;
+                }
+                transferred = true;
+                verify(url, partFile);
+                move(partFile, destination);
+                mStatistics.onCompleted();
+                return destination;
+            } catch (FatalDownloadException e) {
+                FileUtils.deleteQuietly(partFile);
+                mStatistics.onFailed();
+                throw e;
+            } catch (IOException e) {
+                if (transferred) {
+                    // the partial file is complete but could not be verified, resuming it
+                    // would request a range past its end so start over on the next attempt
+                    FileUtils.deleteQuietly(partFile);
+                }
+                // otherwise keep the partial file so the next attempt can resume from it
+                lastException = e;
+            }
+            sLogger.warning("Attempt " + attempt + " of " + mMaxAttempts + " to download " +
+                            url + " failed: " + lastException.getMessage());
+        }
+
+        // the partial file is kept, a later download of the same file resumes from it
+        mStatistics.onFailed();
+        throw lastException;
+    }
+
+    /**
+     * Transfers the remote file into the part file, appending to it if the server
+     * supports range requests.
+     *
+     * @return false if the remote file does not exist
+     */
+    private boolean transfer(URL url, File partFile) throws IOException {
+        long existing = partFile.exists() ? partFile.length() : 0;
+
+        HttpURLConnection connection = openConnection(url);
+        if (existing > 0) {
+            connection.setRequestProperty("Range", "bytes=" + existing + "-");
+        }
+
+        long received = 0;
+        mStatistics.onTransferStarted();
+        try {
+            int code = connection.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                return false;
+            }
+            if (code == 416) {
+                // the part file is larger than the remote file, it is not usable
+                FileUtils.deleteQuietly(partFile);
+                throw new IOException("Requested range not satisfiable for " + url);
+            }
+            if (code >= 400 && code < 500 && code != HttpURLConnection.HTTP_CLIENT_TIMEOUT &&
+                code != 429) {
+                throw new FatalDownloadException("Server returned HTTP " + code + " for " + url);
+            }
+            if (code != HttpURLConnection.HTTP_OK && code != HttpURLConnection.HTTP_PARTIAL) {
+                throw new IOException("Server returned HTTP " + code + " for " + url);
+            }
+
+            boolean append = code == HttpURLConnection.HTTP_PARTIAL;
+            if (append) {
+                long offset = getRangeStart(connection.getHeaderField("Content-Range"));
+                if (offset != existing) {
+                    // appending would corrupt the file, download it again from the start
+                    FileUtils.deleteQuietly(partFile);
+                    throw new IOException("Server resumed " + url + " at byte " + offset +
+                                          " instead of " + existing);
+                }
+                mStatistics.onResumed();
+            }
+            long expected = connection.getContentLengthLong();
+
+            try (InputStream is = connection.getInputStream();
+                 OutputStream os = new FileOutputStream(partFile, append)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, read);
+                    received += read;
+                }
+            }
+
+            if (expected != -1 && received < expected) {
+                throw new IOException("Connection closed after " + received + " of " +
+                                      expected + " bytes");
+            }
+            return true;
+        } finally {
+            mStatistics.onTransferFinished(received);
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @param contentRange the value of a {@code Content-Range} header, in the form of
+     *                     {@code bytes start-end/total}
+     * @return the start offset of the range, or -1 if the header is missing or malformed
+     */
+    static long getRangeStart(@Nullable String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        String range = contentRange.trim();
+        if (!range.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = range.indexOf('-');
+        if (dash == -1) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(range.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void verify(URL url, File file) throws IOException {
+        if (!mVerifyChecksums) {
+            return;
+        }
+        String expected = getChecksum(new URL(url.toString() + SHA1_SUFFIX));
+        if (expected == null) {
+            // the repository does not publish checksums for this file
+            return;
+        }
+        String actual = sha1(file);
+        if (!expected.equalsIgnoreCase(actual)) {
+            throw new ChecksumMismatchException("Checksum mismatch for " + url + ", expected " +
+                                                expected + " but was " + actual);
+        }
+    }
+
+    @Nullable
+    private String getChecksum(URL url) throws IOException {
+        HttpURLConnection connection = openConnection(url);
+        try {
+            if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            String contents;
+            try (InputStream is = connection.getInputStream()) {
+                contents = IOUtils.toString(is, StandardCharsets.UTF_8).trim();
+            }
+            // some repositories append the file name after the hash
+            int space = contents.indexOf(' ');
+            if (space != -1) {
+                contents = contents.substring(0, space);
+            }
+            return contents.isEmpty() ? null : contents;
+        } catch (FileNotFoundException e) {
+            return null;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        if (!(connection instanceof HttpURLConnection)) {
+            throw new FatalDownloadException("Unsupported protocol: " + url);
+        }
+        connection.setConnectTimeout(mConnectTimeout);
+        connection.setReadTimeout(mReadTimeout);
+        connection.setUseCaches(false);
+        return (HttpURLConnection) connection;
+    }
+
+    private static void move(File source, File destination) throws IOException {
+        try {
+            Files.move(source.toPath(), destination.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), destination.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static String sha1(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format(Locale.ENGLISH, "%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting to retry", e);
+        }
+    }
+
+    /**
+     * Thrown when retrying the download will not help, e.g. the server refused the request
+     */
+    private static class FatalDownloadException extends IOException {
+        FatalDownloadException(String message) {
+            super(message);
+        }
+    }
+
+    private static class ChecksumMismatchException extends IOException {
+        ChecksumMismatchException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Serializes the downloads of one destination, removed once nobody is using it.
+     */
+    private static class DownloadLock {
+        /**
+         * Only accessed inside the compute functions of the locks map
+         */
+        private int mUsers;
+    }
+
+    private static class DownloadThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ArtifactDownloader-" + mCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.tyron.resolver.download;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Aggregated counters of an {@link ArtifactDownloader}, safe to update from multiple threads.
+ *
+ * <p>The counters cover the whole lifetime of the downloader, use {@link #snapshot()} before
+ * and after a batch of downloads and {@link Snapshot#minus(Snapshot)} to get the counters of
+ * that batch only.</p>
+ */
+public class DownloadStatistics {
+
+    private long mBytes;
+    private int mCompleted;
+    private int mResumed;
+    private int mRetries;
+    private int mFailed;
+
+    private int mActive;
+    private long mBusyNanos;
+    private long mBusySince;
+
+    synchronized void onTransferStarted() {
+        if (mActive++ == 0) {
+            mBusySince = System.nanoTime();
+        }
+    }
+
+    synchronized void onTransferFinished(long bytes) {
+        mBytes += bytes;
+        if (--mActive == 0) {
+            mBusyNanos += System.nanoTime() - mBusySince;
+        }
+    }
+
+    synchronized void onCompleted() {
+        mCompleted++;
+    }
+
+    synchronized void onResumed() {
+        mResumed++;
+    }
+
+    synchronized void onRetry() {
+        mRetries++;
+    }
+
+    synchronized void onFailed() {
+        mFailed++;
+    }
+
+    /**
+     * @return The number of transfers currently running
+     */
+    public synchronized int getActive() {
+        return mActive;
+    }
+
+    /**
+     * @return the current values of the counters
+     */
+    @NonNull
+    public synchronized Snapshot snapshot() {
+        long busyNanos = mBusyNanos;
+        if (mActive > 0) {
+            busyNanos += System.nanoTime() - mBusySince;
+        }
+        return new Snapshot(mBytes, busyNanos, mCompleted, mResumed, mRetries, mFailed);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    /**
+     * The values of the counters at one point in time.
+     */
+    public static class Snapshot {
+
+        private final long mBytes;
+        private final long mBusyNanos;
+        private final int mCompleted;
+        private final int mResumed;
+        private final int mRetries;
+        private final int mFailed;
+
+        Snapshot(long bytes, long busyNanos, int completed, int resumed, int retries, int failed) {
+            mBytes = bytes;
+            mBusyNanos = busyNanos;
+            mCompleted = completed;
+            mResumed = resumed;
+            mRetries = retries;
+            mFailed = failed;
+        }
+
+        /**
+         * @return the counters accumulated between the given earlier snapshot and this one
+         */
+        @NonNull
+        public Snapshot minus(@NonNull Snapshot earlier) {
+            return new Snapshot(mBytes - earlier.mBytes, mBusyNanos - earlier.mBusyNanos,
+                    mCompleted - earlier.mCompleted, mResumed - earlier.mResumed,
+                    mRetries - earlier.mRetries, mFailed - earlier.mFailed);
+        }
+
+        /**
+         * @return The total number of bytes received from the network
+         */
+        public long getBytes() {
+            return mBytes;
+        }
+
+        public int getCompleted() {
+            return mCompleted;
+        }
+
+        public int getResumed() {
+            return mResumed;
+        }
+
+        public int getRetries() {
+            return mRetries;
+        }
+
+        public int getFailed() {
+            return mFailed;
+        }
+
+        /**
+         * The wall clock time during which at least one transfer was running, concurrent
+         * transfers are only counted once and idle time between transfers is not counted.
+         */
+        public long getElapsedMillis() {
+            return mBusyNanos / 1_000_000;
+        }
+
+        /**
+         * @return The aggregate throughput of the transfers in bytes per second
+         */
+        public double getBytesPerSecond() {
+            if (mBusyNanos <= 0) {
+                return 0;
+            }
+            return mBytes * 1_000_000_000.0 / mBusyNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                    "%d files, %d bytes in %d ms (%.1f KB/s), %d resumed, %d retries, %d failed",
+                    getCompleted(), getBytes(), getElapsedMillis(), getBytesPerSecond() / 1024,
+                    getResumed(), getRetries(), getFailed());
+        }
+    }
+}
@@ -91,6 +91,15 @@ public class LocalRepository extends DefaultRepository {
         return file;
     }
 
+    /**
+     * @param path The path of the file relative to the URL
+     * @return The location where the file would be saved in this repository,
+     * the file may not exist yet
+     */
+    public File getTargetFile(String path) {
+        return new File(getRootFile(), path);
+    }
+
     private File getRootFile() {
         return new File(getCacheDirectory(), mName);
     }
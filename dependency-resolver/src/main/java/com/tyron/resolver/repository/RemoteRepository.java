@@ -3,6 +3,8 @@ package com.tyron.resolver.repository;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import com.tyron.resolver.download.ArtifactDownloader;
+
 import org.apache.commons.io.FileUtils;
 
 import java.io.File;
@@ -17,6 +19,8 @@ public class RemoteRepository extends DefaultRepository {
 
     private final LocalRepository mLocalRepository;
 
+    private ArtifactDownloader mDownloader = ArtifactDownloader.getInstance();
+
     /**
      * @param name The name of the directory on which this repository will store caches into
      * @param url The url to search for files
@@ -35,6 +39,13 @@ public class RemoteRepository extends DefaultRepository {
         return mName;
     }
 
+    /**
+     * Sets the downloader used to fetch files that are not yet in the cache
+     */
+    public void setDownloader(@NonNull ArtifactDownloader downloader) {
+        mDownloader = downloader;
+    }
+
     @Override
     public void setCacheDirectory(@NonNull File file) {
         super.setCacheDirectory(file);
@@ -68,18 +79,14 @@ public class RemoteRepository extends DefaultRepository {
         return mLocalRepository.getCachedFile(path);
     }
 
+    /**
+     * @return null if the file does not exist on this repository
+     * @throws IOException if the file exists but could not be downloaded
+     */
     private File getFileInternal(String path) throws IOException {
         String downloadUrl = mUrl + path;
         URL url = new URL(downloadUrl);
-        try {
-            InputStream inputStream = url.openStream();
-            if (inputStream != null) {
-                // save the file to cache, and then return the one from there
-                return mLocalRepository.save(path, inputStream);
-            }
-        } catch (IOException e) {
-            // ignored, return null
-        }
-        return null;
+        // the downloader saves the file to the cache, and returns the one from there
+        return mDownloader.download(url, mLocalRepository.getTargetFile(path));
     }
 }
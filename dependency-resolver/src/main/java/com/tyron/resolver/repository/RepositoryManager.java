@@ -7,6 +7,9 @@ import com.tyron.resolver.model.Pom;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 public interface RepositoryManager {
 
@@ -24,6 +27,20 @@ public interface RepositoryManager {
     @Nullable
     File getLibrary(Pom pom) throws IOException;
 
+    /**
+     * Retrieves the libraries of the given poms concurrently.
+     * @return A future for each of the given poms, see {@link #getLibrary(Pom)}
+     */
+    @NonNull
+    Map<Pom, Future<File>> getLibraries(@NonNull Collection<Pom> poms);
+
+    /**
+     * Persists what was learned about the repositories during the lookups, such as which
+     * repository serves which group. Lookups only record it in memory, call this once the
+     * dependencies have been resolved or downloaded.
+     */
+    void saveState();
+
     void setCacheDirectory(File directory);
 
     /**
@@ -6,6 +6,7 @@ import androidx.annotation.Nullable;
 import com.google.common.io.CharStreams;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.common.util.FileUtilsEx;
+import com.tyron.resolver.download.ArtifactDownloader;
 import com.tyron.resolver.model.Pom;
 import com.tyron.resolver.parser.PomParser;
 
@@ -22,8 +23,12 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.jar.JarFile;
 import java.util.logging.Logger;
 import java.util.zip.ZipFile;
@@ -37,10 +42,33 @@ public class RepositoryManagerImpl implements RepositoryManager {
     private File cacheDir;
     private final List<Repository> repositories;
     private final List<Pom> pomFiles;
+    private final RepositoryRoutingTable routingTable;
+    private final ArtifactDownloader downloader;
 
     public RepositoryManagerImpl() {
+        this(new RepositoryRoutingTable());
+    }
+
+    public RepositoryManagerImpl(@NonNull RepositoryRoutingTable routingTable) {
+        this(routingTable, ArtifactDownloader.getInstance());
+    }
+
+    public RepositoryManagerImpl(@NonNull RepositoryRoutingTable routingTable,
+                                 @NonNull ArtifactDownloader downloader) {
         this.repositories = new ArrayList<>();
         this.pomFiles = new ArrayList<>();
+        this.routingTable = routingTable;
+        this.downloader = downloader;
+    }
+
+    @NonNull
+    public ArtifactDownloader getDownloader() {
+        return downloader;
+    }
+
+    @NonNull
+    public RepositoryRoutingTable getRoutingTable() {
+        return routingTable;
     }
 
     @Override
@@ -88,15 +116,18 @@ public class RepositoryManagerImpl implements RepositoryManager {
     }
 
     private InputStream getFromUrls(String appendUrl) {
-        for (int i = 0; i < repositories.size(); i++) {
-            Repository repository = repositories.get(i);
+        List<Repository> routed = routingTable.route(appendUrl, repositories);
+        for (int i = 0; i < routed.size(); i++) {
+            Repository repository = routed.get(i);
             try {
                 InputStream is = repository.getInputStream(appendUrl);
                 if (is != null) {
+                    routingTable.recordHit(repository, appendUrl);
                     return is;
                 }
+                routingTable.recordMiss(repository, appendUrl);
             } catch (IOException e) {
-                if (i == repositories.size() - 1) {
+                if (i == routed.size() - 1) {
                     sLogger.warning("Dependency " + appendUrl + " is not found.");
                 }
             }
@@ -149,15 +180,45 @@ public class RepositoryManagerImpl implements RepositoryManager {
         }
 
         // cannot find file from disk, try from network
-        for (Repository repository : repositories) {
-            File file = repository.getFile(sb.toString());
+        String path = sb.toString();
+        IOException lastException = null;
+        for (Repository repository : routingTable.route(path, repositories)) {
+            File file;
+            try {
+                file = repository.getFile(path);
+            } catch (IOException e) {
+                // the repository may have the file but failed to serve it, don't remember
+                // this as a miss and try the next one
+                lastException = e;
+                continue;
+            }
             if (file != null && file.exists()) {
+                routingTable.recordHit(repository, path);
                 return file;
             }
+            routingTable.recordMiss(repository, path);
+        }
+        if (lastException != null) {
+            throw lastException;
         }
         return null;
     }
 
+    @NonNull
+    @Override
+    public Map<Pom, Future<File>> getLibraries(@NonNull Collection<Pom> poms) {
+        Map<Pom, Future<File>> futures = new LinkedHashMap<>();
+        for (Pom pom : poms) {
+            futures.put(pom, downloader.submit(() -> getLibrary(pom)));
+        }
+        return futures;
+    }
+
+    @Override
+    public void saveState() {
+        routingTable.save();
+    }
+
     private boolean isValidZipFile(File file) {
         try {
             // noinspection unused
@@ -194,7 +255,9 @@ public class RepositoryManagerImpl implements RepositoryManager {
 
     @Override
     public void addRepository(@NonNull String name, @NonNull String url) {
-        addRepository(new RemoteRepository(name, url));
+        RemoteRepository repository = new RemoteRepository(name, url);
+        repository.setDownloader(downloader);
+        addRepository(repository);
     }
 
     @Override
@@ -203,6 +266,8 @@ public class RepositoryManagerImpl implements RepositoryManager {
             throw new IllegalStateException("Cache directory is not set.");
         }
 
+        routingTable.load(cacheDir);
+
         for (Repository repository : repositories) {
             repository.setCacheDirectory(cacheDir);
 
@@ -0,0 +1,284 @@
+package com.tyron.resolver.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.tyron.common.logging.IdeLog;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Remembers which repository served a given group id, and which paths were not found
+ * on which repository, so that a lookup only needs to send one request per artifact
+ * instead of one request per configured repository.
+ *
+ * <p>Routes are keyed by group prefix, e.g. once {@code com.google.android.material} has been
+ * served by the google repository, {@code com.google.android.gms} will be tried there first as
+ * well. Prefixes shorter than two segments such as {@code com} are never routed, they are
+ * shared by unrelated publishers.
+ * Routes are only hints, a repository which does not have the file falls back to the
+ * normal repository order and the route is updated with the repository that served it.</p>
+ *
+ * <p>Misses are kept for {@link #getNegativeTtl()} milliseconds, after which the
+ * repository will be asked again.</p>
+ */
+public class RepositoryRoutingTable {
+
+    private static final Logger sLogger = IdeLog.getCurrentLogger(RepositoryRoutingTable.class);
+
+    public static final String FILE_NAME = "repository-routes.json";
+
+    public static final long DEFAULT_NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * The persisted form of this table
+     */
+    private static class State {
+        Map<String, String> routes = new HashMap<>();
+        Map<String, Long> misses = new HashMap<>();
+    }
+
+    private final long mNegativeTtl;
+    private State mState = new State();
+    private File mFile;
+    private boolean mDirty;
+
+    public RepositoryRoutingTable() {
+        this(DEFAULT_NEGATIVE_TTL);
+    }
+
+    /**
+     * @param negativeTtl How long in milliseconds a miss is remembered
+     */
+    public RepositoryRoutingTable(long negativeTtl) {
+        mNegativeTtl = negativeTtl;
+    }
+
+    public long getNegativeTtl() {
+        return mNegativeTtl;
+    }
+
+    /**
+     * Loads the persisted table from the given directory, the same file will be used
+     * when {@link #save()} is called.
+     */
+    public synchronized void load(@NonNull File directory) {
+        mFile = new File(directory, FILE_NAME);
+        mState = new State();
+        mDirty = false;
+
+        if (!mFile.exists()) {
+            return;
+        }
+
+        try {
+            String contents = FileUtils.readFileToString(mFile, StandardCharsets.UTF_8);
+            State state = new Gson().fromJson(contents, State.class);
+            if (state != null) {
+                if (state.routes != null) {
+                    mState.routes.putAll(state.routes);
+                }
+                if (state.misses != null) {
+                    mState.misses.putAll(state.misses);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            sLogger.warning("Unable to read repository routes, starting fresh.\n" +
+                            "Reason: " + e.getMessage());
+        }
+        pruneExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Writes the table to the file it was loaded from, does nothing if nothing has changed.
+     * The table is written to a temporary file first and moved over the old one, so readers
+     * never see a partially written table.
+     */
+    public synchronized void save() {
+        if (mFile == null || !mDirty) {
+            return;
+        }
+        pruneExpired(System.currentTimeMillis());
+        File temp = new File(mFile.getParentFile(), mFile.getName() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(temp, new Gson().toJson(mState), StandardCharsets.UTF_8);
+            try {
+                Files.move(temp.toPath(), mFile.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            mDirty = false;
+        } catch (IOException e) {
+            FileUtils.deleteQuietly(temp);
+            sLogger.warning("Unable to save repository routes.\n" +
+                            "Reason: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the repositories in the order they should be tried for the given path.
+     * The repository which last served the group of this path comes first, repositories
+     * which recently did not have this path are left out.
+     *
+     * @param path the path of the file relative to the repository url
+     * @param repositories the repositories in their configured order
+     */
+    @NonNull
+    public synchronized List<Repository> route(@NonNull String path,
+                                               @NonNull List<Repository> repositories) {
+        long now = System.currentTimeMillis();
+        String preferred = getRoute(getGroupId(path));
+
+        List<Repository> ordered = new ArrayList<>(repositories.size());
+        for (Repository repository : repositories) {
+            if (isMissing(repository, path, now)) {
+                continue;
+            }
+            if (preferred != null && preferred.equals(repository.getName())) {
+                ordered.add(0, repository);
+            } else {
+                ordered.add(repository);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Records that the given repository has served the path, its group and its parent groups
+     * of at least two segments will be routed to this repository.
+     */
+    public synchronized void recordHit(@NonNull Repository repository, @NonNull String path) {
+        String name = repository.getName();
+        if (name == null) {
+            return;
+        }
+        if (mState.misses.remove(getMissKey(name, path)) != null) {
+            mDirty = true;
+        }
+
+        String groupId = getGroupId(path);
+        while (groupId != null) {
+            String old = mState.routes.put(groupId, name);
+            if (!name.equals(old)) {
+                mDirty = true;
+            }
+            groupId = getParentGroup(groupId);
+        }
+    }
+
+    /**
+     * Records that the given repository does not have the path.
+     */
+    public synchronized void recordMiss(@NonNull Repository repository, @NonNull String path) {
+        String name = repository.getName();
+        if (name == null) {
+            return;
+        }
+        mState.misses.put(getMissKey(name, path), System.currentTimeMillis() + mNegativeTtl);
+        mDirty = true;
+    }
+
+    @Nullable
+    public synchronized String getRoute(@Nullable String groupId) {
+        while (groupId != null) {
+            String route = mState.routes.get(groupId);
+            if (route != null) {
+                return route;
+            }
+            groupId = getParentGroup(groupId);
+        }
+        return null;
+    }
+
+    public synchronized boolean isMissing(@NonNull Repository repository, @NonNull String path) {
+        return isMissing(repository, path, System.currentTimeMillis());
+    }
+
+    public synchronized void clear() {
+        mState = new State();
+        mDirty = true;
+    }
+
+    private boolean isMissing(Repository repository, String path, long now) {
+        String name = repository.getName();
+        if (name == null) {
+            return false;
+        }
+        String key = getMissKey(name, path);
+        Long expiry = mState.misses.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry <= now) {
+            mState.misses.remove(key);
+            mDirty = true;
+            return false;
+        }
+        return true;
+    }
+
+    private void pruneExpired(long now) {
+        Iterator<Map.Entry<String, Long>> iterator = mState.misses.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() <= now) {
+                iterator.remove();
+                mDirty = true;
+            }
+        }
+    }
+
+    private static String getMissKey(String repositoryName, String path) {
+        return repositoryName + "|" + path;
+    }
+
+    /**
+     * Extracts the group id from a maven layout path in the form of
+     * {@code group/id/artifactId/version/fileName}
+     *
+     * @return the group id separated by dots, or null if the path is not in maven layout
+     */
+    @Nullable
+    static String getGroupId(String path) {
+        String[] segments = path.split("/");
+        if (segments.length < 4) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < segments.length - 3; i++) {
+            if (i != 0) {
+                sb.append('.');
+            }
+            sb.append(segments[i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return the parent of the group, or null if the parent would have less than two segments
+     */
+    @Nullable
+    private static String getParentGroup(String groupId) {
+        int index = groupId.lastIndexOf('.');
+        if (index == -1 || groupId.lastIndexOf('.', index - 1) == -1) {
+            return null;
+        }
+        return groupId.substring(0, index);
+    }
+}
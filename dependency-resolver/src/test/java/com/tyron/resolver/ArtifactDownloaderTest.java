@@ -0,0 +1,303 @@
+package com.tyron.resolver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tyron.resolver.download.ArtifactDownloader;
+import com.tyron.resolver.download.DownloadStatistics;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ArtifactDownloaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer mServer;
+
+    /**
+     * The files served by the local server, keyed by path
+     */
+    private final Map<String, byte[]> mFiles = new ConcurrentHashMap<>();
+
+    /**
+     * Paths which will be cut off halfway through on their first request
+     */
+    private final Map<String, Boolean> mInterrupted = new ConcurrentHashMap<>();
+
+    /**
+     * Paths whose next range request is answered from the start of the file, with a
+     * {@code Content-Range} header that says so
+     */
+    private final Map<String, Boolean> mIgnoredRanges = new ConcurrentHashMap<>();
+
+    private final AtomicInteger mRangeRequests = new AtomicInteger();
+    private final AtomicInteger mActive = new AtomicInteger();
+    private final AtomicInteger mMaxActive = new AtomicInteger();
+    private volatile long mDelay;
+
+    @Before
+    public void setup() throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/", this::handle);
+        mServer.setExecutor(Executors.newCachedThreadPool());
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int active = mActive.incrementAndGet();
+        mMaxActive.accumulateAndGet(active, Math::max);
+        boolean released = false;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            byte[] contents = mFiles.get(path);
+            if (contents == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            int start = 0;
+            String range = exchange.getRequestHeaders().getFirst("Range");
+            if (range != null && range.startsWith("bytes=")) {
+                start = Integer.parseInt(range.substring(6, range.indexOf('-')));
+                mRangeRequests.incrementAndGet();
+            }
+
+            boolean partial = start > 0;
+            if (partial && mIgnoredRanges.remove(path) != null) {
+                start = 0;
+            }
+            int length = contents.length - start;
+            if (partial) {
+                exchange.getResponseHeaders().add("Content-Range",
+                        "bytes " + start + "-" + (contents.length - 1) + "/" + contents.length);
+                exchange.sendResponseHeaders(206, length);
+            } else {
+                exchange.sendResponseHeaders(200, length);
+            }
+
+            OutputStream os = exchange.getResponseBody();
+            if (mInterrupted.remove(path) != null) {
+                // simulate a dropped connection halfway through the transfer
+                os.write(contents, start, length / 2);
+                os.flush();
+                sleep(mDelay);
+                throw new IOException("Simulated connection drop");
+            }
+            int chunk = 1024;
+            for (int i = start; i < contents.length; i += chunk) {
+                sleep(mDelay);
+                if (i + chunk >= contents.length) {
+                    // the client may start its next request as soon as it has the last chunk
+                    mActive.decrementAndGet();
+                    released = true;
+                }
+                os.write(contents, i, Math.min(chunk, contents.length - i));
+                os.flush();
+            }
+            os.close();
+        } finally {
+            if (!released) {
+                mActive.decrementAndGet();
+            }
+            exchange.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + mServer.getAddress().getPort() + path);
+    }
+
+    private byte[] publish(String path, int size, boolean withChecksum) throws Exception {
+        byte[] contents = new byte[size];
+        new Random(path.hashCode()).nextBytes(contents);
+        mFiles.put(path, contents);
+        if (withChecksum) {
+            mFiles.put(path + ".sha1", sha1(contents).getBytes(StandardCharsets.UTF_8));
+        }
+        return contents;
+    }
+
+    private static String sha1(byte[] bytes) throws NoSuchAlgorithmException {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-1").digest(bytes)) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private ArtifactDownloader createDownloader(int parallelism) {
+        ArtifactDownloader downloader = new ArtifactDownloader(parallelism);
+        downloader.setRetryDelay(0);
+        downloader.setReadTimeout(5000);
+        return downloader;
+    }
+
+    @Test
+    public void testDownloadVerifiesChecksum() throws Exception {
+        byte[] contents = publish("/lib/lib-1.0.jar", 64 * 1024, true);
+        File destination = new File(folder.getRoot(), "lib-1.0.jar");
+
+        ArtifactDownloader downloader = createDownloader(1);
+        assertEquals(destination, downloader.download(url("/lib/lib-1.0.jar"), destination));
+        assertArrayEquals(contents, FileUtils.readFileToByteArray(destination));
+        assertFalse(new File(folder.getRoot(), "lib-1.0.jar.part").exists());
+        assertEquals(1, downloader.getStatistics().snapshot().getCompleted());
+        assertEquals(contents.length, downloader.getStatistics().snapshot().getBytes());
+    }
+
+    @Test
+    public void testMissingFileReturnsNull() throws Exception {
+        File destination = new File(folder.getRoot(), "missing.jar");
+        assertNull(createDownloader(1).download(url("/missing.jar"), destination));
+        assertFalse(destination.exists());
+    }
+
+    @Test
+    public void testInterruptedDownloadIsResumed() throws Exception {
+        byte[] contents = publish("/lib/interrupted.jar", 128 * 1024, true);
+        mInterrupted.put("/lib/interrupted.jar", true);
+        File destination = new File(folder.getRoot(), "interrupted.jar");
+
+        ArtifactDownloader downloader = createDownloader(1);
+        downloader.download(url("/lib/interrupted.jar"), destination);
+
+        assertArrayEquals(contents, FileUtils.readFileToByteArray(destination));
+        assertEquals(1, mRangeRequests.get());
+        assertEquals(1, downloader.getStatistics().snapshot().getResumed());
+        assertEquals(1, downloader.getStatistics().snapshot().getRetries());
+    }
+
+    @Test
+    public void testChecksumMismatchFails() throws Exception {
+        publish("/lib/corrupt.jar", 16 * 1024, false);
+        mFiles.put("/lib/corrupt.jar.sha1", "0000000000000000000000000000000000000000"
+                .getBytes(StandardCharsets.UTF_8));
+        File destination = new File(folder.getRoot(), "corrupt.jar");
+
+        ArtifactDownloader downloader = createDownloader(1);
+        downloader.setMaxAttempts(2);
+        try {
+            downloader.download(url("/lib/corrupt.jar"), destination);
+            fail("Expected checksum mismatch");
+        } catch (IOException expected) {
+            // expected
+        }
+        assertFalse(destination.exists());
+        assertFalse(new File(folder.getRoot(), "corrupt.jar.part").exists());
+        assertEquals(1, downloader.getStatistics().snapshot().getFailed());
+    }
+
+    @Test
+    public void testParallelismIsBounded() throws Exception {
+        mDelay = 5;
+        List<byte[]> contents = new ArrayList<>();
+        List<Future<File>> futures = new ArrayList<>();
+        ArtifactDownloader downloader = createDownloader(3);
+        for (int i = 0; i < 9; i++) {
+            String path = "/lib/slow-" + i + ".jar";
+            contents.add(publish(path, 8 * 1024, true));
+            futures.add(downloader.submit(url(path), new File(folder.getRoot(), "slow-" + i + ".jar")));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            assertArrayEquals(contents.get(i), FileUtils.readFileToByteArray(futures.get(i).get()));
+        }
+        assertTrue("Expected at most 3 concurrent transfers, was " + mMaxActive.get(),
+                mMaxActive.get() <= 3);
+        assertEquals(9, downloader.getStatistics().snapshot().getCompleted());
+        assertTrue(downloader.getStatistics().snapshot().getBytesPerSecond() > 0);
+        downloader.shutdown();
+    }
+
+    @Test
+    public void testUnverifiedPartFileIsNotResumed() throws Exception {
+        byte[] contents = publish("/lib/unverified.jar", 32 * 1024, true);
+        // the checksum response is cut short, so the complete file fails verification once
+        mInterrupted.put("/lib/unverified.jar.sha1", true);
+        File destination = new File(folder.getRoot(), "unverified.jar");
+
+        ArtifactDownloader downloader = createDownloader(1);
+        assertEquals(destination, downloader.download(url("/lib/unverified.jar"), destination));
+        assertArrayEquals(contents, FileUtils.readFileToByteArray(destination));
+        assertEquals(0, mRangeRequests.get());
+        assertEquals(1, downloader.getStatistics().snapshot().getRetries());
+    }
+
+    @Test
+    public void testResumeAtWrongOffsetStartsOver() throws Exception {
+        byte[] contents = publish("/lib/offset.jar", 32 * 1024, true);
+        mIgnoredRanges.put("/lib/offset.jar", true);
+        File destination = new File(folder.getRoot(), "offset.jar");
+        FileUtils.writeByteArrayToFile(new File(folder.getRoot(), "offset.jar.part"),
+                Arrays.copyOf(contents, 1024));
+
+        ArtifactDownloader downloader = createDownloader(1);
+        assertEquals(destination, downloader.download(url("/lib/offset.jar"), destination));
+        assertArrayEquals(contents, FileUtils.readFileToByteArray(destination));
+        assertEquals(1, mRangeRequests.get());
+        assertEquals(0, downloader.getStatistics().snapshot().getResumed());
+    }
+
+    @Test
+    public void testStatisticsOfBatch() throws Exception {
+        publish("/lib/first.jar", 8 * 1024, true);
+        byte[] second = publish("/lib/second.jar", 16 * 1024, true);
+
+        ArtifactDownloader downloader = createDownloader(1);
+        downloader.download(url("/lib/first.jar"), new File(folder.getRoot(), "first.jar"));
+
+        DownloadStatistics.Snapshot start = downloader.getStatistics().snapshot();
+        downloader.download(url("/lib/second.jar"), new File(folder.getRoot(), "second.jar"));
+        DownloadStatistics.Snapshot batch = downloader.getStatistics().snapshot().minus(start);
+
+        assertEquals(1, batch.getCompleted());
+        assertEquals(second.length, batch.getBytes());
+        assertEquals(0, downloader.getStatistics().getActive());
+    }
+}
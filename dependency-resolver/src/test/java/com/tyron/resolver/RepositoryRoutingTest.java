@@ -0,0 +1,190 @@
+package com.tyron.resolver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.Nullable;
+
+import com.tyron.resolver.model.Pom;
+import com.tyron.resolver.repository.DefaultRepository;
+import com.tyron.resolver.repository.RepositoryManagerImpl;
+import com.tyron.resolver.repository.RepositoryRoutingTable;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class RepositoryRoutingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Stands in for a remote repository, every call to {@link #getFile(String)} counts as
+     * a request sent to the network.
+     */
+    private static class StandInRepository extends DefaultRepository {
+
+        private final String mName;
+        private final File mRoot;
+        private int mRequests;
+
+        StandInRepository(String name, File root) {
+            mName = name;
+            mRoot = root;
+        }
+
+        void publish(String path) throws IOException {
+            FileUtils.writeStringToFile(new File(mRoot, path), path, "UTF-8");
+        }
+
+        @Nullable
+        @Override
+        public InputStream getInputStream(String path) throws IOException {
+            File file = getFile(path);
+            return file == null ? null : FileUtils.openInputStream(file);
+        }
+
+        @Nullable
+        @Override
+        public File getFile(String path) {
+            mRequests++;
+            File file = new File(mRoot, path);
+            return file.exists() ? file : null;
+        }
+
+        @Override
+        public String getName() {
+            return mName;
+        }
+    }
+
+    private RepositoryManagerImpl createManager(RepositoryRoutingTable table,
+                                                StandInRepository... repositories) throws IOException {
+        RepositoryManagerImpl manager = new RepositoryManagerImpl(table);
+        for (StandInRepository repository : repositories) {
+            manager.addRepository(repository);
+        }
+        manager.setCacheDirectory(folder.newFolder());
+        manager.initialize();
+        return manager;
+    }
+
+    private static Pom pom(String groupId, String artifactId, String version) {
+        Pom pom = Pom.valueOf(groupId, artifactId, version);
+        pom.setPackaging("jar");
+        return pom;
+    }
+
+    @Test
+    public void testRoutedGroupSendsOneRequest() throws IOException {
+        StandInRepository central = new StandInRepository("central", folder.newFolder());
+        StandInRepository google = new StandInRepository("google", folder.newFolder());
+        google.publish("com/google/android/material/material/1.0.0/material-1.0.0.jar");
+        google.publish("com/google/android/gms/play-services/1.0.0/play-services-1.0.0.jar");
+
+        RepositoryManagerImpl manager = createManager(new RepositoryRoutingTable(), central, google);
+
+        assertNotNull(manager.getLibrary(pom("com.google.android.material", "material", "1.0.0")));
+        assertEquals(1, central.mRequests);
+        assertEquals(1, google.mRequests);
+
+        // com.google.android was served by google, another group under it should go there first
+        assertNotNull(manager.getLibrary(pom("com.google.android.gms", "play-services", "1.0.0")));
+        assertEquals(1, central.mRequests);
+        assertEquals(2, google.mRequests);
+    }
+
+    @Test
+    public void testTopLevelSegmentIsNotRouted() {
+        StandInRepository google = new StandInRepository("google", folder.getRoot());
+
+        RepositoryRoutingTable table = new RepositoryRoutingTable();
+        table.recordHit(google, "com/google/android/material/material/1.0.0/material-1.0.0.jar");
+
+        assertEquals("google", table.getRoute("com.google.android.material"));
+        assertEquals("google", table.getRoute("com.google.code.gson"));
+        assertNull(table.getRoute("com.squareup.okhttp3"));
+        assertNull(table.getRoute("com"));
+    }
+
+    @Test
+    public void testRoutesAreSavedOnRequest() throws IOException {
+        File cacheDir = folder.newFolder();
+        StandInRepository central = new StandInRepository("central", folder.newFolder());
+        central.publish("com/example/library/1.0.0/library-1.0.0.jar");
+
+        RepositoryManagerImpl manager = new RepositoryManagerImpl(new RepositoryRoutingTable());
+        manager.addRepository(central);
+        manager.setCacheDirectory(cacheDir);
+        manager.initialize();
+
+        File routes = new File(cacheDir, RepositoryRoutingTable.FILE_NAME);
+        assertNotNull(manager.getLibrary(pom("com.example", "library", "1.0.0")));
+        assertFalse(routes.exists());
+
+        manager.saveState();
+        assertTrue(routes.exists());
+        assertFalse(new File(cacheDir, RepositoryRoutingTable.FILE_NAME + ".tmp").exists());
+
+        // nothing changed, the file is not written again
+        assertTrue(routes.setLastModified(1000));
+        assertNotNull(manager.getLibrary(pom("com.example", "library", "1.0.0")));
+        manager.saveState();
+        assertEquals(1000, routes.lastModified());
+    }
+
+    @Test
+    public void testMissIsRemembered() throws IOException {
+        StandInRepository central = new StandInRepository("central", folder.newFolder());
+        StandInRepository google = new StandInRepository("google", folder.newFolder());
+
+        RepositoryManagerImpl manager = createManager(new RepositoryRoutingTable(), central, google);
+
+        Pom missing = pom("com.example", "missing", "1.0.0");
+        assertNull(manager.getLibrary(missing));
+        assertNull(manager.getLibrary(missing));
+        assertEquals(1, central.mRequests);
+        assertEquals(1, google.mRequests);
+    }
+
+    @Test
+    public void testMissExpires() throws IOException {
+        StandInRepository central = new StandInRepository("central", folder.newFolder());
+
+        RepositoryManagerImpl manager = createManager(new RepositoryRoutingTable(0), central);
+
+        Pom pom = pom("com.example", "library", "1.0.0");
+        assertNull(manager.getLibrary(pom));
+
+        central.publish("com/example/library/1.0.0/library-1.0.0.jar");
+        assertNotNull(manager.getLibrary(pom));
+        assertEquals(2, central.mRequests);
+    }
+
+    @Test
+    public void testRoutesArePersisted() throws IOException {
+        File cacheDir = folder.newFolder();
+        StandInRepository google = new StandInRepository("google", folder.newFolder());
+        google.publish("androidx/core/core/1.0.0/core-1.0.0.jar");
+
+        RepositoryRoutingTable table = new RepositoryRoutingTable();
+        table.load(cacheDir);
+        table.recordHit(google, "androidx/core/core/1.0.0/core-1.0.0.jar");
+        table.recordMiss(google, "com/example/missing/1.0.0/missing-1.0.0.jar");
+        table.save();
+
+        RepositoryRoutingTable loaded = new RepositoryRoutingTable();
+        loaded.load(cacheDir);
+        assertEquals("google", loaded.getRoute("androidx.core"));
+        assert loaded.isMissing(google, "com/example/missing/1.0.0/missing-1.0.0.jar");
+    }
+}
@@ -54,14 +54,40 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
     }
 
     public synchronized JavaCompilerService getCompiler(Project project, JavaModule module) {
+        Set<File> paths = getClassPath(project, module);
+
+        if (mProvider == null || changed(mCachedPaths, paths)) {
+            mProvider = new JavaCompilerService(project, paths, Collections.emptySet(),
+                                                Collections.emptySet());
+
+            mCachedPaths.clear();
+            mCachedPaths.addAll(paths);
+            mProvider.setCurrentModule(module);
+        }
+
+        return mProvider;
+    }
+
+    /**
+     * Creates a compiler for the module which is not shared with the editor, for work
+     * that compiles several modules at the same time.
+     */
+    @NonNull
+    public static JavaCompilerService createCompiler(@NonNull Project project,
+                                                     @NonNull JavaModule module) {
+        JavaCompilerService compiler = new JavaCompilerService(project,
+                getClassPath(project, module), Collections.emptySet(), Collections.emptySet());
+        compiler.setCurrentModule(module);
+        return compiler;
+    }
+
+    private static Set<File> getClassPath(Project project, JavaModule module) {
         List<Module> dependencies = new ArrayList<>();
         if (project != null) {
             dependencies.addAll(project.getDependencies(module));
         }
 
         Set<File> paths = new HashSet<>();
-
-
         for (Module dependency : dependencies) {
             if (dependency instanceof JavaModule) {
                 paths.addAll(((JavaModule) dependency).getJavaFiles().values());
@@ -69,17 +95,7 @@ public class JavaCompilerProvider extends CompilerProvider<JavaCompilerService>
                 paths.addAll(((JavaModule) dependency).getInjectedClasses().values());
             }
         }
-
-        if (mProvider == null || changed(mCachedPaths, paths)) {
-            mProvider = new JavaCompilerService(project, paths, Collections.emptySet(),
-                                                Collections.emptySet());
-
-            mCachedPaths.clear();
-            mCachedPaths.addAll(paths);
-            mProvider.setCurrentModule(module);
-        }
-
-        return mProvider;
+        return paths;
     }
 
     private synchronized boolean changed(Set<File> oldFiles, Set<File> newFiles) {
@@ -27,8 +27,6 @@ import org.jetbrains.kotlin.com.intellij.openapi.command.CommandProcessor;
 import org.jetbrains.kotlin.com.intellij.openapi.editor.Document;
 import org.jetbrains.kotlin.com.intellij.openapi.editor.ex.DocumentEx;
 import org.jetbrains.kotlin.com.intellij.openapi.editor.impl.DocumentImpl;
-import org.jetbrains.kotlin.com.intellij.openapi.editor.impl.event.DocumentEventImpl;
-import org.jetbrains.kotlin.com.intellij.openapi.progress.EmptyProgressIndicator;
 import org.jetbrains.kotlin.com.intellij.openapi.progress.ProgressIndicator;
 import org.jetbrains.kotlin.com.intellij.openapi.progress.impl.CoreProgressManager;
 import org.jetbrains.kotlin.com.intellij.openapi.progress.util.AbstractProgressIndicatorBase;
@@ -40,10 +38,7 @@ import org.jetbrains.kotlin.com.intellij.psi.PsiDirectory;
 import org.jetbrains.kotlin.com.intellij.psi.PsiDocumentManager;
 import org.jetbrains.kotlin.com.intellij.psi.PsiElement;
 import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
-import org.jetbrains.kotlin.com.intellij.psi.PsiFileFactory;
 import org.jetbrains.kotlin.com.intellij.psi.PsiManager;
-import org.jetbrains.kotlin.com.intellij.psi.impl.BlockSupportImpl;
-import org.jetbrains.kotlin.com.intellij.psi.impl.PsiDocumentManagerBase;
 import org.jetbrains.kotlin.com.intellij.psi.impl.source.resolve.SymbolCollectingProcessor;
 import org.jetbrains.kotlin.com.intellij.psi.scope.util.PsiScopesUtil;
 import org.jetbrains.kotlin.com.intellij.psi.stubs.StubTreeLoader;
@@ -143,23 +138,11 @@ public class JavaCompletionProvider extends CompletionProvider {
         PsiFile storedPsi = PsiManager.getInstance(jetProject).findFile(virtualFile);
         assert storedPsi != null && storedPsi.isValid();
 
-        String oldText = storedPsi.getText();
-
         PsiDocumentManager documentManager = PsiDocumentManager.getInstance(jetProject);
         Document document = documentManager.getDocument(storedPsi);
         assert document != null;
 
-        document.setText(contents);
-
-        DocumentEventImpl event = new DocumentEventImpl(document, 0, oldText, contents, storedPsi.getModificationStamp(), true);
-        ((PsiDocumentManagerBase) documentManager).documentChanged(event);
-
-        PsiFileFactory factory = PsiFileFactory.getInstance(jetProject);
-        PsiFile parsed =
-                factory.createFileFromText(contents, storedPsi);
-        assert parsed != null;
-
-        storedPsi.getViewProvider().rootChanged(parsed);
+        PsiFile parsed = JavaFileReparser.reparse(jetProject, storedPsi, document, contents);
 
         PsiElement elementAt = parsed.findElementAt((int) (cursor - 1));
         assert elementAt != null;
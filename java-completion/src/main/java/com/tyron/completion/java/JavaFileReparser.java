@@ -0,0 +1,103 @@
+package com.tyron.completion.java;
+
+import android.util.Log;
+
+import com.tyron.kotlin_completion.position.Position;
+
+import org.jetbrains.kotlin.com.intellij.openapi.command.CommandProcessor;
+import org.jetbrains.kotlin.com.intellij.openapi.editor.Document;
+import org.jetbrains.kotlin.com.intellij.openapi.editor.impl.event.DocumentEventImpl;
+import org.jetbrains.kotlin.com.intellij.openapi.progress.EmptyProgressIndicator;
+import org.jetbrains.kotlin.com.intellij.openapi.project.Project;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Pair;
+import org.jetbrains.kotlin.com.intellij.openapi.util.TextRange;
+import org.jetbrains.kotlin.com.intellij.pom.PomManager;
+import org.jetbrains.kotlin.com.intellij.pom.PomModel;
+import org.jetbrains.kotlin.com.intellij.pom.event.PomModelEvent;
+import org.jetbrains.kotlin.com.intellij.pom.impl.PomTransactionBase;
+import org.jetbrains.kotlin.com.intellij.psi.AbstractFileViewProvider;
+import org.jetbrains.kotlin.com.intellij.psi.PsiDocumentManager;
+import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
+import org.jetbrains.kotlin.com.intellij.psi.PsiFileFactory;
+import org.jetbrains.kotlin.com.intellij.psi.impl.BlockSupportImpl;
+import org.jetbrains.kotlin.com.intellij.psi.impl.DiffLog;
+import org.jetbrains.kotlin.com.intellij.psi.impl.PsiDocumentManagerBase;
+import org.jetbrains.kotlin.com.intellij.util.IncorrectOperationException;
+
+/**
+ * Updates the PSI of a file opened in the editor to new contents. Only the range that has
+ * changed is forwarded to the document and reparsed, the smallest reparseable block
+ * containing it is replaced in place so that the rest of the tree and its caches stay valid.
+ */
+class JavaFileReparser {
+
+    private static final String TAG = "JavaFileReparser";
+
+    /**
+     * @return the file with the new contents, the stored file itself unless it had to be
+     * parsed again as a whole
+     */
+    static PsiFile reparse(Project project, PsiFile storedPsi, Document document, String contents) {
+        String oldText = storedPsi.getText();
+        Pair<TextRange, TextRange> changed = Position.changedRegion(oldText, contents);
+        if (changed == null) {
+            return storedPsi;
+        }
+        TextRange oldRange = changed.getFirst();
+        TextRange newRange = changed.getSecond();
+
+        // the document asserts that it is only modified inside a command, like an editor would
+        CommandProcessor.getInstance().executeCommand(project, () -> {
+            if (oldText.contentEquals(document.getImmutableCharSequence())) {
+                document.replaceString(oldRange.getStartOffset(), oldRange.getEndOffset(),
+                        newRange.subSequence(contents));
+            } else {
+                document.setText(contents);
+            }
+        }, null, null);
+
+        try {
+            DiffLog diffLog = new BlockSupportImpl().reparseRange(storedPsi,
+                    storedPsi.getNode(), oldRange, contents, new EmptyProgressIndicator(), oldText);
+            applyChanges(project, storedPsi, diffLog);
+            if (contents.contentEquals(storedPsi.getText())) {
+                return storedPsi;
+            }
+            Log.w(TAG, "Incremental reparse of " + storedPsi.getName() +
+                       " is out of sync, reparsing the whole file");
+        } catch (IncorrectOperationException | IllegalStateException | IndexOutOfBoundsException e) {
+            Log.w(TAG, "Unable to reparse " + storedPsi.getName() +
+                       " incrementally, reparsing the whole file", e);
+        }
+        return reparseWholeFile(project, storedPsi, document, oldText, contents);
+    }
+
+    /**
+     * Applies the changes of the reparse to the tree. {@link DiffLog#doActualPsiChange(PsiFile)}
+     * cannot be used as it goes through the {@code CodeStyleManager}, which is not registered
+     * in the compiler environment.
+     */
+    private static void applyChanges(Project project, PsiFile file, DiffLog diffLog) {
+        PomModel model = PomManager.getModel(project);
+        synchronized (((AbstractFileViewProvider) file.getViewProvider()).getFilePsiLock()) {
+            model.runTransaction(new PomTransactionBase(file) {
+                @Override
+                public PomModelEvent runInner() {
+                    return new PomModelEvent(model, diffLog.performActualPsiChange(file));
+                }
+            });
+        }
+    }
+
+    private static PsiFile reparseWholeFile(Project project, PsiFile storedPsi, Document document,
+                                            String oldText, String contents) {
+        DocumentEventImpl event = new DocumentEventImpl(document, 0, oldText, contents,
+                storedPsi.getModificationStamp(), true);
+        ((PsiDocumentManagerBase) PsiDocumentManager.getInstance(project)).documentChanged(event);
+
+        PsiFile parsed = PsiFileFactory.getInstance(project).createFileFromText(contents, storedPsi);
+        assert parsed != null;
+        storedPsi.getViewProvider().rootChanged(parsed);
+        return parsed;
+    }
+}
@@ -0,0 +1,148 @@
+package com.tyron.completion.java;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.kotlin.completion.core.model.CorePomModel;
+
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.com.intellij.core.CoreApplicationEnvironment;
+import org.jetbrains.kotlin.com.intellij.lang.java.JavaLanguage;
+import org.jetbrains.kotlin.com.intellij.mock.MockProject;
+import org.jetbrains.kotlin.com.intellij.openapi.Disposable;
+import org.jetbrains.kotlin.com.intellij.openapi.editor.Document;
+import org.jetbrains.kotlin.com.intellij.openapi.editor.impl.DocumentWriteAccessGuard;
+import org.jetbrains.kotlin.com.intellij.openapi.project.Project;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer;
+import org.jetbrains.kotlin.com.intellij.pom.PomModel;
+import org.jetbrains.kotlin.com.intellij.psi.PsiClass;
+import org.jetbrains.kotlin.com.intellij.psi.PsiDocumentManager;
+import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
+import org.jetbrains.kotlin.com.intellij.psi.PsiFileFactory;
+import org.jetbrains.kotlin.com.intellij.psi.PsiJavaFile;
+import org.jetbrains.kotlin.com.intellij.psi.PsiMethod;
+import org.jetbrains.kotlin.com.intellij.psi.PsiTreeChangeListener;
+import org.jetbrains.kotlin.config.CommonConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.config.JVMConfigurationKeys;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class JavaFileReparserTest {
+
+    private static final String CONTENTS = "class Main {\n" +
+                                           "    void first() {\n" +
+                                           "        int aaa = 1;\n" +
+                                           "    }\n" +
+                                           "\n" +
+                                           "    void second() {\n" +
+                                           "        String text = \"\";\n" +
+                                           "    }\n" +
+                                           "}\n";
+
+    private final Disposable mDisposable = Disposer.newDisposable();
+    private Project mProject;
+
+    private PsiFile mFile;
+    private Document mDocument;
+
+    @Before
+    public void setup() {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.put(CommonConfigurationKeys.MODULE_NAME, "test");
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.Companion.getNONE());
+        configuration.put(JVMConfigurationKeys.NO_JDK, true);
+        KotlinCoreEnvironment environment = KotlinCoreEnvironment.createForProduction(mDisposable,
+                configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+        CoreApplicationEnvironment.registerApplicationExtensionPoint(DocumentWriteAccessGuard.EP_NAME,
+                DocumentWriteAccessGuard.class);
+        mProject = environment.getProject();
+        CoreApplicationEnvironment.registerExtensionPoint(mProject.getExtensionArea(),
+                PsiTreeChangeListener.EP.getName(), PsiTreeChangeListener.class);
+        ((MockProject) mProject).registerService(PomModel.class, new CorePomModel());
+
+        mFile = PsiFileFactory.getInstance(mProject)
+                .createFileFromText("Main.java", JavaLanguage.INSTANCE, CONTENTS, true, false);
+        mDocument = PsiDocumentManager.getInstance(mProject).getDocument(mFile);
+        assertNotNull(mDocument);
+    }
+
+    @After
+    public void tearDown() {
+        Disposer.dispose(mDisposable);
+    }
+
+    private PsiMethod getMethod(PsiFile file, String name) {
+        PsiClass mainClass = ((PsiJavaFile) file).getClasses()[0];
+        return mainClass.findMethodsByName(name, false)[0];
+    }
+
+    private void assertReparsed(PsiFile file, String contents) {
+        assertEquals(contents, file.getText());
+        assertEquals(contents, mDocument.getText());
+    }
+
+    @Test
+    public void testUnchangedContents() {
+        assertSame(mFile, JavaFileReparser.reparse(mProject, mFile, mDocument, CONTENTS));
+        assertReparsed(mFile, CONTENTS);
+    }
+
+    @Test
+    public void testEditKeepsTheRestOfTheTree() {
+        PsiMethod second = getMethod(mFile, "second");
+
+        String contents = CONTENTS.replace("int aaa = 1;", "int aaa = 1;\n        aaa++;");
+        PsiFile reparsed = JavaFileReparser.reparse(mProject, mFile, mDocument, contents);
+
+        assertSame(mFile, reparsed);
+        assertReparsed(reparsed, contents);
+        assertTrue(second.isValid());
+        assertSame(second, getMethod(reparsed, "second"));
+        assertEquals(2, getMethod(reparsed, "first").getBody().getStatements().length);
+    }
+
+    @Test
+    public void testEditsAreApplied() {
+        String contents = CONTENTS;
+        for (String statement : new String[]{"aaa++;", "aaa--;", "aaa = 2;"}) {
+            contents = contents.replace("int aaa = 1;", "int aaa = 1;\n        " + statement);
+            assertReparsed(JavaFileReparser.reparse(mProject, mFile, mDocument, contents), contents);
+        }
+        assertEquals(4, getMethod(mFile, "first").getBody().getStatements().length);
+    }
+
+    @Test
+    public void testInsertionIntoRepeatedCharacters() {
+        String contents = CONTENTS.replace("aaa", "aaaa");
+        assertReparsed(JavaFileReparser.reparse(mProject, mFile, mDocument, contents), contents);
+    }
+
+    @Test
+    public void testDocumentOutOfSync() {
+        mDocument.setText("class Other {}");
+
+        String contents = CONTENTS.replace("String text", "CharSequence text");
+        PsiFile reparsed = JavaFileReparser.reparse(mProject, mFile, mDocument, contents);
+        assertReparsed(reparsed, contents);
+        assertTrue(getMethod(reparsed, "second").getBody().getStatements()[0].getText()
+                .startsWith("CharSequence"));
+    }
+
+    @Test
+    public void testStructuralEdit() {
+        String contents = CONTENTS.replace("void second()", "int second(int value)");
+        PsiFile reparsed = JavaFileReparser.reparse(mProject, mFile, mDocument, contents);
+        assertReparsed(reparsed, contents);
+        assertEquals(1, getMethod(reparsed, "second").getParameterList().getParametersCount());
+    }
+}
@@ -0,0 +1,185 @@
+package com.tyron.kotlin.completion.core.model
+
+import android.util.Log
+import com.tyron.kotlin.completion.core.resolve.AnalysisResultWithProvider
+import org.jetbrains.kotlin.com.intellij.psi.PsiElement
+import org.jetbrains.kotlin.name.FqName
+import org.jetbrains.kotlin.psi.KtDeclarationWithBody
+import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.psi.KtProperty
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Caches the analysis results of the [maxSize] most recently analyzed files.
+ *
+ * An entry is only valid for the exact [KtFile] instance and modification stamp it was created
+ * from. Entries also remember the packages their file can see without qualification, when
+ * a new version of another file changes its declarations (not just the bodies of its
+ * functions) the entries depending on the package of that file are dropped.
+ *
+ * Lookups do not lock. The files are analyzed in a shared environment which is not safe to
+ * use from several threads, so [analyzer] is only called from [runAnalysis] and analyses
+ * run one at a time.
+ */
+class AnalysisResultCache(
+    private val maxSize: Int,
+    private val analyzer: (KtFile) -> AnalysisResultWithProvider
+) {
+
+    private class Entry(
+        val results: FileAnalysisResults,
+        val stamp: Long,
+        val dependencies: Set<FqName>
+    ) {
+        @Volatile
+        var lastAccess: Long = 0
+    }
+
+    private val entries = ConcurrentHashMap<String, Entry>()
+    private val analysisLock = Any()
+
+    /**
+     * The hash of the declarations of every file seen so far, kept after the entry of the file
+     * has been evicted so that changes can still be detected.
+     */
+    private val declarationHashes = ConcurrentHashMap<String, Int>()
+
+    private val clock = AtomicLong()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val evictions = AtomicLong()
+    private val invalidations = AtomicLong()
+
+    fun getAnalysisResult(file: KtFile): AnalysisResultWithProvider {
+        getImmediatlyFromCache(file)?.let { return it }
+
+        return runAnalysis {
+            // another thread may have analyzed it while we were waiting
+            getImmediatlyFromCache(file)?.let { return@runAnalysis it }
+            misses.incrementAndGet()
+
+            val path = getPath(file)
+            val declarationsHash = hashDeclarations(file)
+            val previousHash = declarationHashes.put(path, declarationsHash)
+            if (previousHash != null && previousHash != declarationsHash) {
+                invalidateDependents(path, file.packageFqName)
+            }
+
+            val started = System.currentTimeMillis()
+            val analysisResult = analyzer(file)
+
+            val entry = Entry(FileAnalysisResults(file, analysisResult), file.modificationStamp,
+                getDependencies(file))
+            entry.lastAccess = clock.incrementAndGet()
+            entries[path] = entry
+            evictIfNeeded()
+
+            Log.d(TAG, "Analyzed $path in ${System.currentTimeMillis() - started} ms, " +
+                    "${getStatistics()}")
+            analysisResult
+        }
+    }
+
+    /**
+     * Runs an analysis in the shared environment, waiting for the one in progress to finish.
+     */
+    fun <T> runAnalysis(analysis: () -> T): T = synchronized(analysisLock) {
+        analysis()
+    }
+
+    fun reset() {
+        entries.clear()
+        declarationHashes.clear()
+    }
+
+    fun getStatistics() = AnalysisCacheStatistics(
+        hits.get(), misses.get(), evictions.get(), invalidations.get()
+    )
+
+    private fun getImmediatlyFromCache(file: KtFile): AnalysisResultWithProvider? {
+        val entry = entries[getPath(file)] ?: return null
+        if (entry.results.file != file || entry.stamp != file.modificationStamp) {
+            return null
+        }
+        entry.lastAccess = clock.incrementAndGet()
+        hits.incrementAndGet()
+        return entry.results.analysisResult
+    }
+
+    private fun invalidateDependents(changedPath: String, changedPackage: FqName) {
+        val iterator = entries.entries.iterator()
+        while (iterator.hasNext()) {
+            val (path, entry) = iterator.next()
+            if (path != changedPath && changedPackage in entry.dependencies) {
+                iterator.remove()
+                invalidations.incrementAndGet()
+            }
+        }
+    }
+
+    private fun evictIfNeeded() {
+        while (entries.size > maxSize) {
+            val eldest = entries.entries.minByOrNull { it.value.lastAccess } ?: return
+            if (entries.remove(eldest.key, eldest.value)) {
+                evictions.incrementAndGet()
+            }
+        }
+    }
+
+    private fun getPath(file: KtFile): String = file.virtualFilePath
+
+    /**
+     * The packages whose declarations are visible in the file: its own package and the
+     * packages of its imports.
+     */
+    private fun getDependencies(file: KtFile): Set<FqName> {
+        val dependencies = mutableSetOf(file.packageFqName)
+        for (directive in file.importDirectives) {
+            val importPath = directive.importPath ?: continue
+            dependencies += if (importPath.isAllUnder) importPath.fqName else importPath.fqName.parent()
+        }
+        return dependencies
+    }
+
+    /**
+     * Hashes the text of the file without the bodies of functions and the initializers of
+     * properties with an explicit type, editing those does not change what other
+     * files can see.
+     */
+    private fun hashDeclarations(file: KtFile): Int {
+        var hash = 1
+        fun visit(element: PsiElement) {
+            if (isBody(element)) {
+                return
+            }
+            val child = element.firstChild
+            if (child == null) {
+                hash = 31 * hash + element.text.hashCode()
+                return
+            }
+            var current: PsiElement? = child
+            while (current != null) {
+                visit(current)
+                current = current.nextSibling
+            }
+        }
+        file.declarations.forEach { visit(it) }
+        return hash
+    }
+
+    private fun isBody(element: PsiElement): Boolean {
+        val parent = element.parent
+        if (parent is KtDeclarationWithBody) {
+            return element == parent.bodyExpression && (parent.hasBlockBody() || parent.hasDeclaredReturnType())
+        }
+        if (parent is KtProperty) {
+            return element == parent.initializer && parent.typeReference != null
+        }
+        return false
+    }
+
+    private companion object {
+        const val TAG = "AnalysisResultCache"
+    }
+}
@@ -0,0 +1,31 @@
+package com.tyron.kotlin.completion.core.model;
+
+import org.jetbrains.kotlin.com.intellij.openapi.util.UserDataHolderBase;
+import org.jetbrains.kotlin.com.intellij.pom.PomModel;
+import org.jetbrains.kotlin.com.intellij.pom.PomModelAspect;
+import org.jetbrains.kotlin.com.intellij.pom.PomTransaction;
+import org.jetbrains.kotlin.com.intellij.pom.tree.TreeAspect;
+import org.jetbrains.kotlin.com.intellij.util.IncorrectOperationException;
+
+/**
+ * The compiler environment does not register a {@link PomModel}, which is needed to apply
+ * the changes of an incremental reparse to the PSI. Transactions are run directly as there
+ * are no model listeners to notify.
+ */
+public class CorePomModel extends UserDataHolderBase implements PomModel {
+
+    private final TreeAspect mTreeAspect = new TreeAspect();
+
+    @Override
+    public <T extends PomModelAspect> T getModelAspect(Class<T> aClass) {
+        if (aClass == TreeAspect.class) {
+            return aClass.cast(mTreeAspect);
+        }
+        return null;
+    }
+
+    @Override
+    public void runTransaction(PomTransaction transaction) throws IncorrectOperationException {
+        transaction.run();
+    }
+}
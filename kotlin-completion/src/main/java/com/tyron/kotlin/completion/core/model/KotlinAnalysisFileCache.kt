@@ -8,24 +8,43 @@ import org.jetbrains.kotlin.psi.KtFile
 
 data class FileAnalysisResults(val file: KtFile, val analysisResult: AnalysisResultWithProvider)
 
+data class AnalysisCacheStatistics(
+    val hits: Long,
+    val misses: Long,
+    val evictions: Long,
+    val invalidations: Long
+) {
+    val hitRate: Double
+        get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+}
+
+/**
+ * Caches the analysis results of the most recently analyzed files, see [AnalysisResultCache].
+ */
 object KotlinAnalysisFileCache {
-    @Volatile
-    private var lastAnalysedFileCache: FileAnalysisResults? = null
 
-    @Synchronized fun getAnalysisResult(file: KtFile): AnalysisResultWithProvider {
-        return getImmediatlyFromCache(file) ?: run {
-            val environment = getEnvironment(file.project)!!
-            val analysisResult = resolve(file, environment)
+    private const val MAX_SIZE = 8
 
-            lastAnalysedFileCache = FileAnalysisResults(file, analysisResult)
-            lastAnalysedFileCache!!.analysisResult
-        }
+    private val cache = AnalysisResultCache(MAX_SIZE) { file ->
+        resolve(file, getEnvironment(file.project)!!)
+    }
+
+    fun getAnalysisResult(file: KtFile): AnalysisResultWithProvider {
+        return cache.getAnalysisResult(file)
     }
 
+    /**
+     * Runs an analysis which is not cached, such as one of several files, after the analysis
+     * in progress has finished.
+     */
+    fun <T> runAnalysis(analysis: () -> T): T = cache.runAnalysis(analysis)
+
     fun resetCache() {
-        lastAnalysedFileCache = null
+        cache.reset()
     }
 
+    fun getStatistics() = cache.getStatistics()
+
     private fun resolve(file: KtFile, environment: KotlinCoreEnvironment): AnalysisResultWithProvider {
         return when (environment) {
 //            is KotlinScriptEnvironment -> EclipseAnalyzerFacadeForJVM.analyzeScript(environment, file)
@@ -33,12 +52,4 @@ object KotlinAnalysisFileCache {
             else -> throw IllegalArgumentException("Could not analyze file with environment: $environment")
         }
     }
-
-    @Synchronized
-    private fun getImmediatlyFromCache(file: KtFile): AnalysisResultWithProvider? {
-        return if (lastAnalysedFileCache != null && lastAnalysedFileCache!!.file == file)
-            lastAnalysedFileCache!!.analysisResult
-        else
-            null
-    }
-}
\ No newline at end of file
+}
@@ -32,6 +32,7 @@ import org.jetbrains.kotlin.com.intellij.openapi.extensions.ExtensionPointName
 import org.jetbrains.kotlin.com.intellij.openapi.project.Project
 import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer
 import org.jetbrains.kotlin.com.intellij.openapi.vfs.local.CoreLocalFileSystem
+import org.jetbrains.kotlin.com.intellij.pom.PomModel
 import org.jetbrains.kotlin.com.intellij.psi.PsiDocumentManager
 import org.jetbrains.kotlin.com.intellij.psi.PsiFile
 import org.jetbrains.kotlin.com.intellij.psi.PsiNameHelper
@@ -161,6 +162,7 @@ class KotlinEnvironment private constructor(val module: KotlinModule, disposable
 
         private fun registerProjectDependentServices(module: KotlinModule, project: MockProject) {
             project.registerService(PsiNameHelper::class.java, PsiNameHelperImpl(project))
+            project.registerService(PomModel::class.java, CorePomModel())
             project.registerService(PsiDocumentManager::class.java, object : PsiDocumentManagerBase(project) {
 
             })
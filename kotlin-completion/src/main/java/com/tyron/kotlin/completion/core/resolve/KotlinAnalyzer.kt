@@ -42,6 +42,8 @@ object KotlinAnalyzer {
     private fun analyzeFiles(kotlinEnvironment: KotlinCoreEnvironment,
                              allFiles: Collection<KtFile>,
                              filesToAnalyze: Collection<KtFile>): AnalysisResultWithProvider {
-        return CodeAssistAnalyzerFacadeForJVM.analyzeSources(kotlinEnvironment, allFiles, filesToAnalyze)
+        return KotlinAnalysisFileCache.runAnalysis {
+            CodeAssistAnalyzerFacadeForJVM.analyzeSources(kotlinEnvironment, allFiles, filesToAnalyze)
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+package com.tyron.kotlin.completion.core.resolve
+
+import android.util.Log
+import org.jetbrains.kotlin.config.LanguageVersionSettingsImpl
+import org.jetbrains.kotlin.load.kotlin.PackagePartProvider
+import org.jetbrains.kotlin.metadata.jvm.deserialization.ModuleMapping
+import org.jetbrains.kotlin.metadata.jvm.deserialization.PackageParts
+import org.jetbrains.kotlin.resolve.CompilerDeserializationConfiguration
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.File
+import java.io.IOException
+import java.security.MessageDigest
+import java.util.Properties
+import java.util.concurrent.ConcurrentHashMap
+import java.util.zip.ZipFile
+
+private const val TAG = "KotlinPackagePartIndex"
+
+/**
+ * The `META-INF/<module>.kotlin_module` mappings of a single class path root, indexed by package.
+ */
+class JarPackageParts(modules: List<Pair<String, ModuleMapping>>) {
+
+    /**
+     * The parts of each package, one for every module of the root that declares the package.
+     */
+    val packageParts: Map<String, List<PackageParts>>
+
+    /**
+     * The annotations on each module of the root, keyed by module name.
+     */
+    val moduleAnnotations: Map<String, List<String>>
+
+    init {
+        val parts = HashMap<String, MutableList<PackageParts>>()
+        val annotations = HashMap<String, MutableList<String>>()
+        for ((name, mapping) in modules) {
+            for ((packageFqName, packageParts) in mapping.packageFqName2Parts) {
+                parts.getOrPut(packageFqName) { ArrayList(1) }.add(packageParts)
+            }
+            annotations.getOrPut(name) { ArrayList() }.addAll(mapping.moduleData.annotations)
+        }
+        packageParts = parts
+        moduleAnnotations = annotations
+    }
+
+    companion object {
+        val EMPTY = JarPackageParts(emptyList())
+    }
+}
+
+/**
+ * Builds and caches the [JarPackageParts] of the class path roots so that a
+ * [PackagePartProvider] can answer lookups without opening any jar.
+ *
+ * The module files of a jar are read once and persisted in the cache directory of the project
+ * under the content hash of the jar, a small table maps the path and stamp of each jar to its
+ * hash so that a warm start neither hashes nor opens the jars that have not changed.
+ */
+object KotlinPackagePartIndex {
+
+    private const val VERSION = 1
+    private const val STAMPS_FILE = "stamps.properties"
+
+    private class Entry(val stamp: Long, val parts: JarPackageParts)
+
+    private val deserializationConfiguration = CompilerDeserializationConfiguration(LanguageVersionSettingsImpl.DEFAULT)
+
+    private val entries = ConcurrentHashMap<File, Entry>()
+
+    /**
+     * The persisted `path -> stamp:hash` table of each cache directory.
+     */
+    private val stampTables = ConcurrentHashMap<File, Properties>()
+
+    /**
+     * Returns the package parts of each root, [cacheDir] is where the index of a jar
+     * is persisted or null if it should only be kept in memory. The table of stamps is
+     * written at most once for all the roots.
+     */
+    fun getPackageParts(roots: List<File>, cacheDir: File?): List<JarPackageParts> {
+        var stampsChanged = false
+        val parts = roots.map { root ->
+            getPackageParts(root, cacheDir) { stampsChanged = true }
+        }
+        if (stampsChanged && cacheDir != null) {
+            val stamps = getStampTable(cacheDir)
+            synchronized(stamps) {
+                writeStampTable(cacheDir, stamps)
+            }
+        }
+        return parts
+    }
+
+    fun getPackageParts(root: File, cacheDir: File?): JarPackageParts =
+        getPackageParts(listOf(root), cacheDir).single()
+
+    /**
+     * Drops the indexes kept in memory, the persisted ones are used again on the next lookup.
+     */
+    fun resetCache() {
+        entries.clear()
+        stampTables.clear()
+    }
+
+    private fun getPackageParts(root: File, cacheDir: File?, onStampRecorded: () -> Unit): JarPackageParts {
+        val stamp = getStamp(root)
+        entries[root]?.let { entry ->
+            if (entry.stamp == stamp) {
+                return entry.parts
+            }
+        }
+
+        val parts = try {
+            if (root.isDirectory) {
+                JarPackageParts(readModulesFromDirectory(root))
+            } else if (root.isFile) {
+                loadJar(root, stamp, cacheDir, onStampRecorded)
+            } else {
+                JarPackageParts.EMPTY
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Unable to read the kotlin modules of $root", e)
+            JarPackageParts.EMPTY
+        }
+        entries[root] = Entry(stamp, parts)
+        return parts
+    }
+
+    private fun loadJar(jar: File, stamp: Long, cacheDir: File?, onStampRecorded: () -> Unit): JarPackageParts {
+        if (cacheDir == null) {
+            return JarPackageParts(loadModuleMappings(readModulesFromJar(jar)))
+        }
+
+        val stamps = getStampTable(cacheDir)
+        val recorded = synchronized(stamps) { stamps.getProperty(jar.absolutePath) }
+        if (recorded != null && recorded.substringBefore(':') == stamp.toString()) {
+            val cached = readCache(File(cacheDir, recorded.substringAfter(':') + ".bin"))
+            if (cached != null) {
+                return JarPackageParts(loadModuleMappings(cached))
+            }
+        }
+
+        val hash = hash(jar)
+        val cacheFile = File(cacheDir, "$hash.bin")
+        // another path may point to a jar with the same contents
+        val modules = readCache(cacheFile) ?: readModulesFromJar(jar).also {
+            writeCache(cacheFile, it)
+        }
+        synchronized(stamps) {
+            stamps.setProperty(jar.absolutePath, "$stamp:$hash")
+        }
+        onStampRecorded()
+        return JarPackageParts(loadModuleMappings(modules))
+    }
+
+    private fun readModulesFromJar(jar: File): List<Pair<String, ByteArray>> {
+        val modules = mutableListOf<Pair<String, ByteArray>>()
+        ZipFile(jar).use { zip ->
+            for (entry in zip.entries()) {
+                val name = entry.name
+                if (entry.isDirectory || !name.startsWith("META-INF/") ||
+                    !name.endsWith(ModuleMapping.MAPPING_FILE_EXT)) {
+                    continue
+                }
+                val bytes = zip.getInputStream(entry).use { it.readBytes() }
+                modules += name.substringAfterLast('/').removeSuffix(".${ModuleMapping.MAPPING_FILE_EXT}") to bytes
+            }
+        }
+        return modules
+    }
+
+    private fun readModulesFromDirectory(directory: File): List<Pair<String, ModuleMapping>> {
+        val files = File(directory, "META-INF").listFiles { file ->
+            file.isFile && file.name.endsWith(ModuleMapping.MAPPING_FILE_EXT)
+        } ?: return emptyList()
+        return loadModuleMappings(files.map { it.nameWithoutExtension to it.readBytes() })
+    }
+
+    private fun loadModuleMappings(modules: List<Pair<String, ByteArray>>): List<Pair<String, ModuleMapping>> {
+        return modules.map { (name, bytes) ->
+            val mapping = try {
+                ModuleMapping.loadModuleMapping(
+                    bytes,
+                    name,
+                    deserializationConfiguration.skipMetadataVersionCheck,
+                    deserializationConfiguration.isJvmPackageNameSupported
+                ) {
+                    Log.w(TAG, "Incompatible version for module '$name': $it")
+                }
+            } catch (e: EOFException) {
+                Log.w(TAG, "Module file of '$name' is corrupted", e)
+                ModuleMapping.CORRUPTED
+            }
+            name to mapping
+        }
+    }
+
+    private fun readCache(file: File): List<Pair<String, ByteArray>>? {
+        if (!file.exists()) {
+            return null
+        }
+        return try {
+            DataInputStream(file.inputStream().buffered()).use { input ->
+                if (input.readInt() != VERSION) {
+                    return null
+                }
+                val count = input.readInt()
+                List(count) {
+                    val name = input.readUTF()
+                    val bytes = ByteArray(input.readInt())
+                    input.readFully(bytes)
+                    name to bytes
+                }
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Unable to read package part cache $file", e)
+            null
+        }
+    }
+
+    private fun writeCache(file: File, modules: List<Pair<String, ByteArray>>) {
+        try {
+            file.parentFile?.mkdirs()
+            val temp = File(file.parentFile, file.name + ".tmp")
+            DataOutputStream(temp.outputStream().buffered()).use { output ->
+                output.writeInt(VERSION)
+                output.writeInt(modules.size)
+                for ((name, bytes) in modules) {
+                    output.writeUTF(name)
+                    output.writeInt(bytes.size)
+                    output.write(bytes)
+                }
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete()
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Unable to write package part cache $file", e)
+        }
+    }
+
+    private fun getStampTable(cacheDir: File): Properties = stampTables.computeIfAbsent(cacheDir) {
+        val properties = Properties()
+        val file = File(cacheDir, STAMPS_FILE)
+        if (file.exists()) {
+            try {
+                file.inputStream().use { properties.load(it) }
+            } catch (e: IOException) {
+                Log.w(TAG, "Unable to read $file", e)
+            }
+        }
+        properties
+    }
+
+    private fun writeStampTable(cacheDir: File, stamps: Properties) {
+        val file = File(cacheDir, STAMPS_FILE)
+        try {
+            cacheDir.mkdirs()
+            val temp = File(cacheDir, "$STAMPS_FILE.tmp")
+            temp.outputStream().use { stamps.store(it, null) }
+            if (!temp.renameTo(file)) {
+                temp.delete()
+            }
+        } catch (e: IOException) {
+            Log.w(TAG, "Unable to write $file", e)
+        }
+    }
+
+    private fun getStamp(file: File): Long = file.lastModified() * 31 + file.length()
+
+    private fun hash(file: File): String {
+        val digest = MessageDigest.getInstance("SHA-1")
+        file.inputStream().use { input ->
+            val buffer = ByteArray(64 * 1024)
+            while (true) {
+                val read = input.read(buffer)
+                if (read < 0) break
+                digest.update(buffer, 0, read)
+            }
+        }
+        return digest.digest().joinToString("") { "%02x".format(it) }
+    }
+}
@@ -1,35 +1,30 @@
 package com.tyron.kotlin.completion.core.resolve
 
-import com.tyron.kotlin.completion.core.model.KotlinCommonEnvironment
+import com.tyron.kotlin.completion.core.model.KotlinEnvironment
 import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment
-import org.jetbrains.kotlin.com.intellij.openapi.vfs.VirtualFile
-import org.jetbrains.kotlin.config.LanguageVersionSettingsImpl
+import org.jetbrains.kotlin.cli.jvm.config.jvmClasspathRoots
 import org.jetbrains.kotlin.load.kotlin.PackagePartProvider
-import org.jetbrains.kotlin.metadata.jvm.deserialization.ModuleMapping
 import org.jetbrains.kotlin.metadata.jvm.deserialization.PackageParts
 import org.jetbrains.kotlin.name.ClassId
-import org.jetbrains.kotlin.resolve.CompilerDeserializationConfiguration
-import org.jetbrains.kotlin.utils.SmartList
 import org.jetbrains.kotlin.serialization.deserialization.ClassData
-import java.io.EOFException
 import java.io.File
 
+/**
+ * Finds the package parts of the class path from the [KotlinPackagePartIndex] of each root,
+ * every lookup is a map access per root instead of a scan of the loaded modules.
+ */
 class KotlinPackagePartProvider(private val environment: KotlinCoreEnvironment) : PackagePartProvider {
-    private data class ModuleMappingInfo(val root: VirtualFile, val mapping: ModuleMapping, val name: String)
 
-    private val notLoadedRoots by lazy(LazyThreadSafetyMode.NONE) {
-        mutableListOf<VirtualFile>()
+    private val roots: List<Pair<File, JarPackageParts>> by lazy {
+        val cacheDir = KotlinEnvironment.getJavaProject(environment.project)?.let {
+            File(it.buildDirectory, "intermediates/kotlin_package_parts")
+        }
+        val classpathRoots = environment.configuration.jvmClasspathRoots
+        classpathRoots.zip(KotlinPackagePartIndex.getPackageParts(classpathRoots, cacheDir))
     }
 
-    private val loadedModules: MutableList<ModuleMappingInfo> = SmartList()
-
-    private val deserializationConfiguration = CompilerDeserializationConfiguration(LanguageVersionSettingsImpl.DEFAULT)
-
     override fun getAnnotationsOnBinaryModule(moduleName: String): List<ClassId> =
-        loadedModules.mapNotNull { (_, mapping, name) ->
-            mapping.moduleData.annotations.takeIf { name == moduleName }
-        }
-            .flatten()
+        roots.flatMap { (_, parts) -> parts.moduleAnnotations[moduleName].orEmpty() }
             .map { ClassId.fromString(it) }
 
     override fun findPackageParts(packageFqName: String): List<String> {
@@ -56,54 +51,17 @@ class KotlinPackagePartProvider(private val environment: KotlinCoreEnvironment)
     fun findMetadataPackageParts(packageFqName: String): List<String> =
         getPackageParts(packageFqName).values.flatMap(PackageParts::metadataParts).distinct()
 
-    @Synchronized
-    private fun getPackageParts(packageFqName: String): Map<VirtualFile, PackageParts> {
-        processNotLoadedRelevantRoots(packageFqName)
-
-        val result = mutableMapOf<VirtualFile, PackageParts>()
-        for ((root, mapping) in loadedModules) {
-            val newParts = mapping.findPackageParts(packageFqName) ?: continue
-            result[root]?.let { parts -> parts += newParts } ?: result.put(root, newParts)
-        }
-        return result
-    }
-
-    private fun processNotLoadedRelevantRoots(packageFqName: String) {
-        if (notLoadedRoots.isEmpty()) return
-
-        val pathParts = packageFqName.split('.')
-
-        val relevantRoots = notLoadedRoots.filter {
-            //filter all roots by package path existing
-            pathParts.fold(it) {
-                    parent, part ->
-                if (part.isEmpty()) parent
-                else parent.findChild(part) ?: return@filter false
-            }
-            true
-        }
-        notLoadedRoots.removeAll(relevantRoots)
-
-        for (root in relevantRoots) {
-            val metaInf = root.findChild("META-INF") ?: continue
-            val moduleFiles = metaInf.children.filter { it.name.endsWith(ModuleMapping.MAPPING_FILE_EXT) }
-            for (moduleFile: VirtualFile in moduleFiles) {
-                val mapping = try {
-                    ModuleMapping.loadModuleMapping(
-                        moduleFile.contentsToByteArray(),
-                        moduleFile.toString(),
-                        deserializationConfiguration.skipMetadataVersionCheck,
-                        deserializationConfiguration.isJvmPackageNameSupported
-                    ) {
-//                        KotlinLogger.logWarning("Incompatible version for '$moduleFile': $it")
-                    }
-                }
-                catch (e: EOFException) {
-                    throw RuntimeException("Error on reading package parts for '$packageFqName' package in '$moduleFile', " +
-                            "roots: $notLoadedRoots", e)
-                }
-                loadedModules.add(ModuleMappingInfo(root, mapping, moduleFile.nameWithoutExtension))
+    private fun getPackageParts(packageFqName: String): Map<File, PackageParts> {
+        val result = mutableMapOf<File, PackageParts>()
+        for ((root, index) in roots) {
+            val parts = index.packageParts[packageFqName] ?: continue
+            result[root] = if (parts.size == 1) {
+                parts[0]
+            } else {
+                // the indexed parts are shared, merge them into a copy
+                PackageParts(packageFqName).apply { parts.forEach { this += it } }
             }
         }
+        return result
     }
-}
\ No newline at end of file
+}
@@ -1,5 +1,7 @@
 package com.tyron.kotlin_completion;
 
+import androidx.annotation.Nullable;
+
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.kotlin_completion.compiler.CompletionKind;
 import com.tyron.kotlin_completion.position.Position;
@@ -40,14 +42,25 @@ public class CompiledFile {
     private final Collection<KtFile> mSourcePath;
     private final CompilerClassPath mClassPath;
     private final CompletionKind mKind = CompletionKind.DEFAULT;
+    @Nullable
+    private final ReplacedBody mReplacedBody;
 
     public CompiledFile(String mContent, KtFile mParse, BindingContext mCompile, ComponentProvider mContainer, Collection<KtFile> mSourcePath, CompilerClassPath classpath) {
+        this(mContent, mParse, mCompile, mContainer, mSourcePath, classpath, null);
+    }
+
+    /**
+     * @param replacedBody The body that has been resolved on top of the analysis of an earlier
+     *                     version of the file, if any
+     */
+    public CompiledFile(String mContent, KtFile mParse, BindingContext mCompile, ComponentProvider mContainer, Collection<KtFile> mSourcePath, CompilerClassPath classpath, @Nullable ReplacedBody replacedBody) {
         this.mContent = mContent;
         this.mParse = mParse;
         this.mCompile = mCompile;
         this.mContainer = mContainer;
         this.mClassPath = classpath;
         this.mSourcePath = mSourcePath;
+        this.mReplacedBody = replacedBody;
     }
 
     public KotlinType typeAtPoint(int cursor) {
@@ -99,8 +112,12 @@ public class CompiledFile {
     public Pair<KtExpression, DeclarationDescriptor> referenceFromContext(int cursor, BindingContext context) {
         ProgressManager.checkCanceled();
         ImmutableMap<KtReferenceExpression, DeclarationDescriptor> targets = context.getSliceContents(BindingContext.REFERENCE_TARGET);
-        Sequence<Map.Entry<KtReferenceExpression, DeclarationDescriptor>> filter = SequencesKt.filter(MapsKt.asSequence(targets), it -> it.getKey().getTextRange().contains(cursor));
-        Sequence<Map.Entry<KtReferenceExpression, DeclarationDescriptor>> sorted = SequencesKt.sortedBy(filter, it -> it.getKey().getTextRange().getLength());
+        int oldCursor = oldOffset(cursor);
+        Sequence<Map.Entry<KtReferenceExpression, DeclarationDescriptor>> filter = SequencesKt.filter(MapsKt.asSequence(targets), it -> {
+            TextRange range = rangeOf(it.getKey());
+            return range != null && range.contains(oldCursor);
+        });
+        Sequence<Map.Entry<KtReferenceExpression, DeclarationDescriptor>> sorted = SequencesKt.sortedBy(filter, it -> it.getKey().getTextLength());
         Sequence<Pair<KtExpression, DeclarationDescriptor>> map = SequencesKt.map(sorted, it -> Pair.create(it.getKey(), it.getValue()));
         return SequencesKt.firstOrNull(map);
     }
@@ -142,8 +159,11 @@ public class CompiledFile {
     public LexicalScope scopeAtPoint(int cursor) {
         int oldCursor = oldOffset(cursor);
         Sequence<Map.Entry<KtElement, LexicalScope>> sequence = MapsKt.asSequence(mCompile.getSliceContents(BindingContext.LEXICAL_SCOPE));
-        Sequence<Map.Entry<KtElement, LexicalScope>> filter = SequencesKt.filter(sequence, it -> (it.getKey().getTextRange().getStartOffset() <= oldCursor && oldCursor <= it.getKey().getTextRange().getEndOffset()));
-        Sequence<Map.Entry<KtElement, LexicalScope>> entrySequence = SequencesKt.sortedBy(filter, it -> it.getKey().getTextRange().getLength());
+        Sequence<Map.Entry<KtElement, LexicalScope>> filter = SequencesKt.filter(sequence, it -> {
+            TextRange range = rangeOf(it.getKey());
+            return range != null && range.getStartOffset() <= oldCursor && oldCursor <= range.getEndOffset();
+        });
+        Sequence<Map.Entry<KtElement, LexicalScope>> entrySequence = SequencesKt.sortedBy(filter, it -> it.getKey().getTextLength());
         Sequence<LexicalScope> map = SequencesKt.map(entrySequence, Map.Entry::getValue);
         return SequencesKt.firstOrNull(map);
     }
@@ -154,6 +174,18 @@ public class CompiledFile {
         return PsiUtils.findParent(psi, KtElement.class);
     }
 
+    /**
+     * @return The range of an element of the binding context in {@link #getParse()}, null if
+     * the element is no longer part of it
+     */
+    @Nullable
+    private TextRange rangeOf(PsiElement element) {
+        if (mReplacedBody == null) {
+            return element.getTextRange();
+        }
+        return mReplacedBody.getCurrentRange(element);
+    }
+
     private int oldOffset(int cursor) {
         Pair<TextRange, TextRange> pair = Position.changedRegion(mParse.getText(), mContent);
 
@@ -27,7 +27,7 @@ public class CompilerClassPath implements Closeable {
 
    // private final CompilerConfiguration mConfiguration;
 
-    private Compiler compiler;
+    private volatile Compiler compiler;
 
     private final AsyncExecutor asyncExecutor = new AsyncExecutor();
 
@@ -14,6 +14,7 @@ import com.tyron.kotlin_completion.diagnostic.ConvertDiagnosticKt;
 import com.tyron.kotlin_completion.util.AsyncExecutor;
 import com.tyron.kotlin_completion.util.StringUtilsKt;
 
+import org.jetbrains.kotlin.com.intellij.openapi.progress.ProcessCanceledException;
 import org.jetbrains.kotlin.diagnostics.Diagnostic;
 import org.jetbrains.kotlin.resolve.BindingContext;
 import org.jetbrains.kotlin.resolve.diagnostics.Diagnostics;
@@ -76,8 +77,14 @@ public class CompletionEngine {
         return sp;
     }
 
-    public synchronized Pair<CompiledFile, Integer> recover(File file, String contents,
-                                                            Recompile recompile, int offset) {
+    /**
+     * Returns the latest analysis of the file. Callers for the same file wait for each other,
+     * reads of an existing analysis run concurrently with the analyses of other files.
+     *
+     * @throws ProcessCanceledException if the compiler environment changed while analyzing
+     */
+    public Pair<CompiledFile, Integer> recover(File file, String contents,
+                                               Recompile recompile, int offset) {
         boolean shouldRecompile = true;
         switch (recompile) {
             case NEVER:
@@ -107,8 +114,12 @@ public class CompletionEngine {
         }
 
         return async.compute(() -> {
-            Pair<CompiledFile, Integer> pair = recover(file, contents, Recompile.NEVER, cursor);
-            return new Completions().completions(pair.first, cursor, sp.getIndex());
+            try {
+                Pair<CompiledFile, Integer> pair = recover(file, contents, Recompile.NEVER, cursor);
+                return completions(pair.first, cursor);
+            } catch (ProcessCanceledException e) {
+                return CompletionList.EMPTY;
+            }
         });
     }
 
@@ -140,14 +151,27 @@ public class CompletionEngine {
 
         debounceLint.cancel();
 
-        Pair<CompiledFile, Integer> recover = recover(file, contents, Recompile.NEVER, cursor);
-        CompletionList completions = new Completions().completions(recover.first, cursor,
-                sp.getIndex());
+        CompletionList completions;
+        try {
+            Pair<CompiledFile, Integer> recover = recover(file, contents, Recompile.NEVER, cursor);
+            completions = completions(recover.first, cursor);
+        } catch (ProcessCanceledException e) {
+            return CompletionList.EMPTY;
+        }
         String partialIdentifier = partialIdentifier(contents, cursor);
         cachedCompletion = new CachedCompletion(file, line, column, partialIdentifier, completions);
         return completions;
     }
 
+    /**
+     * Completing may resolve declarations lazily so it also runs as an analysis, in parallel
+     * with other completions but cancelled if the environment changes.
+     */
+    private CompletionList completions(CompiledFile file, int cursor) {
+        return classPath.getCompiler().runReadAnalysis(() ->
+                new Completions().completions(file, cursor, sp.getIndex()));
+    }
+
     private String partialIdentifier(String contents, int end) {
         int start = end;
         while (start > 0 && Character.isJavaIdentifierPart(contents.charAt(start - 1))) {
@@ -232,7 +256,12 @@ public class CompletionEngine {
         }
 
         sp.put(file, contents, false);
-        BindingContext context = sp.compileFiles(Collections.singletonList(file));
+        BindingContext context;
+        try {
+            context = sp.compileFiles(Collections.singletonList(file));
+        } catch (ProcessCanceledException e) {
+            return;
+        }
         if (cancelCallback.invoke()) {
            return;
         }
@@ -248,7 +277,12 @@ public class CompletionEngine {
 
     public List<DiagnosticWrapper> doLint(Function0<Boolean> cancelCallback) {
         List<File> files = clearLint();
-        BindingContext context = sp.compileFiles(files);
+        BindingContext context;
+        try {
+            context = sp.compileFiles(files);
+        } catch (ProcessCanceledException e) {
+            return Collections.emptyList();
+        }
         if (!cancelCallback.invoke()) {
             List<DiagnosticWrapper> diagnosticWrappers = new ArrayList<>();
             Diagnostics diagnostics = context.getDiagnostics();
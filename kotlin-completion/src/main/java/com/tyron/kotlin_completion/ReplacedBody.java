@@ -0,0 +1,155 @@
+package com.tyron.kotlin_completion;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.kotlin_completion.position.Position;
+
+import org.jetbrains.kotlin.com.intellij.openapi.util.Pair;
+import org.jetbrains.kotlin.com.intellij.openapi.util.TextRange;
+import org.jetbrains.kotlin.com.intellij.psi.PsiElement;
+import org.jetbrains.kotlin.psi.KtDeclarationWithBody;
+import org.jetbrains.kotlin.psi.KtExpression;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.kotlin.psi.KtNamedFunction;
+import org.jetbrains.kotlin.psi.KtProperty;
+import org.jetbrains.kotlin.psi.KtPropertyAccessor;
+
+/**
+ * The body of a function or property which has been resolved again on top of the analysis of
+ * an earlier version of its file.
+ *
+ * <p>The binding context of such an analysis holds the elements of two files: those of the
+ * new body, and those of the earlier version for everything else. The elements of the earlier
+ * version which were inside the old body are stale and the ones after it are at offsets which
+ * no longer match the current text, {@link #getCurrentRange(PsiElement)} accounts for both.
+ */
+public class ReplacedBody {
+
+    private final KtFile mBaseFile;
+    private final KtExpression mOldBody;
+    private final KtExpression mNewBody;
+    private final TextRange mOldRange;
+    private final int mDelta;
+
+    private ReplacedBody(KtFile baseFile, KtExpression oldBody, KtExpression newBody) {
+        mBaseFile = baseFile;
+        mOldBody = oldBody;
+        mNewBody = newBody;
+        mOldRange = oldBody.getTextRange();
+        mDelta = newBody.getTextLength() - oldBody.getTextLength();
+    }
+
+    /**
+     * Finds the single body which differs between the analyzed version of a file and its
+     * current version.
+     *
+     * @param baseFile The version of the file the analysis was made from
+     * @param newFile  The current version of the file
+     * @return null if the files differ outside of a single body, in that case the whole file
+     * needs to be analyzed again
+     */
+    @Nullable
+    public static ReplacedBody find(@NonNull KtFile baseFile, @NonNull KtFile newFile) {
+        Pair<TextRange, TextRange> changed =
+                Position.changedRegion(baseFile.getText(), newFile.getText());
+        if (changed == null) {
+            return null;
+        }
+
+        KtExpression oldBody = findChangedBody(baseFile, changed.getFirst());
+        KtExpression newBody = findChangedBody(newFile, changed.getSecond());
+        if (oldBody == null || newBody == null ||
+            oldBody.getTextRange().getStartOffset() != newBody.getTextRange().getStartOffset()) {
+            return null;
+        }
+        return new ReplacedBody(baseFile, oldBody, newBody);
+    }
+
+    /**
+     * @return The body in the version of the file the analysis was made from
+     */
+    public KtExpression getOldBody() {
+        return mOldBody;
+    }
+
+    /**
+     * @return The body in the current version of the file
+     */
+    public KtExpression getNewBody() {
+        return mNewBody;
+    }
+
+    /**
+     * Returns the range of an element of the binding context in the current version of the
+     * file.
+     *
+     * @return null if the element belonged to the old body and has been replaced
+     */
+    @Nullable
+    public TextRange getCurrentRange(@NonNull PsiElement element) {
+        TextRange range = element.getTextRange();
+        if (element.getContainingFile() != mBaseFile) {
+            return range;
+        }
+        if (range.getEndOffset() <= mOldRange.getStartOffset()) {
+            return range;
+        }
+        if (range.getStartOffset() >= mOldRange.getEndOffset()) {
+            return range.shiftRight(mDelta);
+        }
+        if (range.contains(mOldRange) && !range.equals(mOldRange)) {
+            // the declarations enclosing the body
+            return new TextRange(range.getStartOffset(), range.getEndOffset() + mDelta);
+        }
+        return null;
+    }
+
+    /**
+     * Finds the body of the function, property accessor or explicitly typed property which
+     * contains the whole range. The declaration must not be local and its body must not
+     * affect its signature, so that editing it does not change what the rest of the
+     * module sees.
+     */
+    @Nullable
+    private static KtExpression findChangedBody(KtFile file, TextRange range) {
+        PsiElement element = file.findElementAt(range.getStartOffset());
+        while (element != null && !(element instanceof KtFile)) {
+            if (element instanceof KtNamedFunction || element instanceof KtPropertyAccessor) {
+                KtDeclarationWithBody declaration = (KtDeclarationWithBody) element;
+                if (declaration instanceof KtNamedFunction && ((KtNamedFunction) declaration).isLocal()) {
+                    element = element.getParent();
+                    continue;
+                }
+                KtExpression body = declaration.getBodyExpression();
+                if (body == null || !declaration.hasBlockBody()) {
+                    return null;
+                }
+                // the braces of the block must be left untouched
+                TextRange bodyRange = body.getTextRange();
+                if (bodyRange.getStartOffset() < range.getStartOffset() &&
+                    range.getEndOffset() < bodyRange.getEndOffset()) {
+                    return body;
+                }
+                return null;
+            }
+            if (element instanceof KtProperty) {
+                KtProperty property = (KtProperty) element;
+                if (property.isLocal()) {
+                    element = element.getParent();
+                    continue;
+                }
+                KtExpression initializer = property.getInitializer();
+                if (initializer == null || property.getTypeReference() == null) {
+                    return null;
+                }
+                if (initializer.getTextRange().contains(range)) {
+                    return initializer;
+                }
+                return null;
+            }
+            element = element.getParent();
+        }
+        return null;
+    }
+}
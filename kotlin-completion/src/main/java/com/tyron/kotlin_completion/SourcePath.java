@@ -2,6 +2,9 @@ package com.tyron.kotlin_completion;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
+import com.tyron.kotlin_completion.classpath.ClassPathEntry;
 import com.tyron.kotlin_completion.compiler.CompletionKind;
 import com.tyron.kotlin_completion.index.SymbolIndex;
 import com.tyron.kotlin_completion.util.AsyncExecutor;
@@ -9,13 +12,14 @@ import com.tyron.kotlin_completion.util.UtilKt;
 
 import org.apache.commons.io.FileUtils;
 import org.jetbrains.kotlin.com.intellij.lang.Language;
-import org.jetbrains.kotlin.com.intellij.psi.PsiElement;
 import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
 import org.jetbrains.kotlin.container.ComponentProvider;
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
+import org.jetbrains.kotlin.name.FqName;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.scopes.LexicalScope;
 
 import java.io.File;
 import java.io.IOException;
@@ -24,9 +28,11 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
@@ -40,18 +46,12 @@ public class SourcePath {
     private static final String TAG = "SourcePath";
 
     private final CompilerClassPath cp;
-    private final Map<URI, SourceFile> files = new HashMap<>();
-    private final FakeLock parsedDataWriteLock = new FakeLock();
-
-    public static class FakeLock {
-        public void lock() {}
-        public void unlock() {}
-    }
+    private final Map<URI, SourceFile> files = new ConcurrentHashMap<>();
 
     private final AsyncExecutor indexAsync = new AsyncExecutor();
     private final SymbolIndex index = new SymbolIndex();
-    private boolean indexEnabled = false;
     private boolean indexInitialized;
+    private Set<ClassPathEntry> indexedClassPath = Collections.emptySet();
 
 
     public SourcePath(CompilerClassPath classPath) {
@@ -72,9 +72,31 @@ public class SourcePath {
         private String content;
         private final Path path;
         private KtFile parsed;
+
+        /**
+         * Guards the results of the analyses below and is held for the whole compile path, so
+         * a file is never compiled twice at the same time while other files are. The content
+         * and the parsed file are guarded by the file itself, that monitor may be taken while
+         * holding this lock but never the other way around.
+         */
+        private final ReentrantLock compileLock = new ReentrantLock();
         private KtFile compiledFile;
-        public BindingContext compiledContext;
+        private BindingContext compiledContext;
         private ComponentProvider compiledcontainer;
+        /**
+         * The file and the results of the last analysis of the whole file, bodies edited
+         * afterwards are resolved on top of these so that analyses never stack up.
+         */
+        private KtFile baseFile;
+        private BindingContext baseContext;
+        @Nullable
+        private ReplacedBody replacedBody;
+        /**
+         * The package of the file when it was last indexed, re-indexed along with the current
+         * one so that the symbols of a file moved to another package are removed from it.
+         */
+        @Nullable
+        private FqName indexedPackage;
         private final Language language;
         private final boolean isTemporary;
 
@@ -102,78 +124,194 @@ public class SourcePath {
             extension = ".kt";
         }
 
-        public void put(String newContent) {
+        public synchronized void put(String newContent) {
             content = newContent;
         }
 
         public void clean() {
-            parsed = null;
-            compiledFile = null;
-            compiledContext = null;
-            compiledcontainer = null;
+            synchronized (this) {
+                parsed = null;
+            }
+            compileLock.lock();
+            try {
+                compiledFile = null;
+                compiledContext = null;
+                compiledcontainer = null;
+                baseFile = null;
+                baseContext = null;
+                replacedBody = null;
+            } finally {
+                compileLock.unlock();
+            }
         }
 
-        public void parse() {
+        public synchronized void parse() {
             Log.d(TAG, "Parsing file " + path);
             parsed = cp.getCompiler().createKtFile(content, (path == null ? Paths.get("sourceFile.virtual" + extension) : path), kind);
         }
 
-        public void parseIfChanged() {
+        public synchronized void parseIfChanged() {
             if (parsed == null || !content.equals(parsed.getText())) {
                 Log.d(TAG, "Parse has changed, parsing.");
                 parse();
             }
         }
 
-        public void compileIfNull() {
-            if (compiledFile == null) {
-                parseIfChanged();
-                doCompileIfChanged();
+        /**
+         * @return the file parsed from the latest content
+         */
+        private synchronized KtFile parsedFile() {
+            parseIfChanged();
+            return parsed;
+        }
+
+        private synchronized KtFile getParsed() {
+            return parsed;
+        }
+
+        private synchronized String getContent() {
+            return content;
+        }
+
+        public BindingContext getCompiledContext() {
+            compileLock.lock();
+            try {
+                return compiledContext;
+            } finally {
+                compileLock.unlock();
             }
         }
 
-        private void compile() {
-            parse();
-            doCompile();
+        /**
+         * @return whether the latest content has not been compiled yet
+         */
+        private boolean isChanged() {
+            String content = getContent();
+            compileLock.lock();
+            try {
+                return compiledFile == null || !content.equals(compiledFile.getText());
+            } finally {
+                compileLock.unlock();
+            }
+        }
+
+        public void compileIfNull() {
+            compileLock.lock();
+            try {
+                if (compiledFile == null) {
+                    doCompileIfChanged(parsedFile());
+                }
+            } finally {
+                compileLock.unlock();
+            }
         }
 
         private void compileIfChanged() {
-            parseIfChanged();
-            doCompileIfChanged();
+            compileLock.lock();
+            try {
+                KtFile parsed = parsedFile();
+                if (!compileChangedBody(parsed)) {
+                    doCompileIfChanged(parsed);
+                }
+            } finally {
+                compileLock.unlock();
+            }
         }
 
-        private void doCompileIfChanged() {
-            if (parsed == null || compiledFile == null || !parsed.getText().equals(compiledFile.getText())) {
-                doCompile();;
+        /**
+         * If the file has only been edited inside the body of a single function or property since
+         * it was last analyzed as a whole, resolves only that body on top of that analysis.
+         * Must be called with the compile lock held.
+         *
+         * @return whether the body has been compiled, if false the whole file needs to be compiled
+         */
+        private boolean compileChangedBody(KtFile parsed) {
+            if (compiledFile == null || baseFile == null || baseContext == null || compiledcontainer == null) {
+                return false;
+            }
+            if (parsed.getText().equals(compiledFile.getText())) {
+                return false;
+            }
+
+            // always compared with the last full analysis, the entries of the body compiled
+            // previously are dropped along with it
+            ReplacedBody body = ReplacedBody.find(baseFile, parsed);
+            if (body == null) {
+                return false;
             }
+
+            LexicalScope scope = baseContext.get(BindingContext.LEXICAL_SCOPE, body.getOldBody());
+            if (scope == null) {
+                return false;
+            }
+
+            Log.d(TAG, "Compiling changed body of " + path);
+            compiledContext = cp.getCompiler().compileKtBody(body.getNewBody(), scope, baseContext, compiledcontainer);
+            compiledFile = parsed;
+            replacedBody = body;
+            return true;
         }
 
-        private void doCompile() {
+        private void doCompileIfChanged(KtFile parsed) {
+            if (compiledFile == null || !parsed.getText().equals(compiledFile.getText())) {
+                doCompile(parsed);
+            }
+        }
+
+        private void doCompile(KtFile parsed) {
             if (this.path.toFile().getName().endsWith(".kt")) {
-                Pair<BindingContext, ComponentProvider> pair = cp.getCompiler().compileKtFile(parsed, allIncludingThis());
-                parsedDataWriteLock.lock();
-                try {
-                    compiledContext = pair.getFirst();
-                    compiledcontainer = pair.getSecond();
-                    compiledFile = parsed;
-                } finally {
-                    parsedDataWriteLock.unlock();
-                }
+                Pair<BindingContext, ComponentProvider> pair = cp.getCompiler().compileKtFile(parsed, allIncludingThis(parsed));
+                compiledContext = pair.getFirst();
+                compiledcontainer = pair.getSecond();
+                compiledFile = parsed;
+                baseFile = parsed;
+                baseContext = compiledContext;
+                replacedBody = null;
+                updateIndexAsync(pair.getSecond(), Collections.singletonMap(this, parsed));
             }
-            initializeIndexAsyncIfNeeded(compiledcontainer);
         }
+
         public CompiledFile prepareCompiledFile() {
-            parseIfChanged();
-            compileIfNull();
-            return doPrepareCompiledFile();
+            compileLock.lock();
+            try {
+                compileIfNull();
+                return doPrepareCompiledFile();
+            } finally {
+                compileLock.unlock();
+            }
         }
 
         public CompiledFile doPrepareCompiledFile() {
-            return new CompiledFile(content, compiledFile, compiledContext, compiledcontainer, allIncludingThis(), cp);
+            String content = getContent();
+            compileLock.lock();
+            try {
+                return new CompiledFile(content, compiledFile, compiledContext, compiledcontainer, allIncludingThis(parsedFile()), cp, replacedBody);
+            } finally {
+                compileLock.unlock();
+            }
         }
 
-        private Collection<KtFile> allIncludingThis() {
-            parseIfChanged();
+        /**
+         * Stores the results of an analysis of several files, unless the file has been parsed
+         * again since.
+         */
+        private void setCompiled(KtFile parsed, Pair<BindingContext, ComponentProvider> pair) {
+            compileLock.lock();
+            try {
+                if (parsed.equals(getParsed())) {
+                    compiledFile = parsed;
+                    compiledContext = pair.getFirst();
+                    compiledcontainer = pair.getSecond();
+                    baseFile = parsed;
+                    baseContext = pair.getFirst();
+                    replacedBody = null;
+                }
+            } finally {
+                compileLock.unlock();
+            }
+        }
+
+        private Collection<KtFile> allIncludingThis(KtFile parsed) {
             if (isTemporary) {
                 Set<KtFile> all = all(false);
                 Sequence<KtFile> plus = SequencesKt.plus(SequencesKt.asSequence(all.iterator()), SequencesKt.sequenceOf(parsed));
@@ -193,10 +331,12 @@ public class SourcePath {
             Log.d(TAG, "Adding temporary file");
         }
 
-        if (files.containsKey(file.toURI())) {
-            sourceFile(file).put(content);
-        } else {
-            files.put(file.toURI(), new SourceFile(file.toURI(), content, KotlinLanguage.INSTANCE, temp));
+        SourceFile existing = files.get(file.toURI());
+        if (existing == null) {
+            existing = files.putIfAbsent(file.toURI(), new SourceFile(file.toURI(), content, KotlinLanguage.INSTANCE, temp));
+        }
+        if (existing != null) {
+            existing.put(content);
         }
     }
 
@@ -215,23 +355,45 @@ public class SourcePath {
 
     public BindingContext compileFiles(Collection<File> all) {
         Set<SourceFile> sources = all.stream().map(o -> files.get(o.toURI())).collect(Collectors.toSet());
-        Set<SourceFile> allChanged = sources.stream().filter(it -> {
-            if (it.compiledFile == null) {
-                return true;
-            }
-            return !it.content.equals(it.compiledFile.getText());
-        })
+        Set<SourceFile> allChanged = sources.stream()
+                .filter(SourceFile::isChanged)
                 .collect(Collectors.toSet());
         BindingContext sourcesContext = compileAndUpdate(allChanged);
         return UtilKt.util(sourcesContext, sources, allChanged);
     }
 
-    private void initializeIndexAsyncIfNeeded(ComponentProvider container) {
+    /**
+     * Indexes the whole module the first time and whenever the class path has changed,
+     * otherwise only the packages of the given files are indexed again.
+     */
+    private void updateIndexAsync(@Nullable ComponentProvider container,
+                                  Map<SourceFile, KtFile> changedFiles) {
+        if (container == null) {
+            return;
+        }
+        Set<FqName> changedPackages = new HashSet<>();
+        changedFiles.forEach((file, parsed) -> {
+            FqName packageName = parsed.getPackageFqName();
+            changedPackages.add(packageName);
+            synchronized (file) {
+                if (file.indexedPackage != null) {
+                    changedPackages.add(file.indexedPackage);
+                }
+                file.indexedPackage = packageName;
+            }
+        });
+        Set<ClassPathEntry> classPath;
+        synchronized (cp.mClassPath) {
+            classPath = new HashSet<>(cp.mClassPath);
+        }
         indexAsync.execute(() -> {
-            if (indexEnabled && !indexInitialized) {
-                ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
+            ModuleDescriptor module = (ModuleDescriptor) container.resolve(ModuleDescriptor.class).getValue();
+            if (!indexInitialized || !classPath.equals(indexedClassPath)) {
                 index.refresh(module, true);
+                indexedClassPath = classPath;
                 indexInitialized = true;
+            } else {
+                index.updatePackages(module, changedPackages);
             }
         });
     }
@@ -239,28 +401,14 @@ public class SourcePath {
 
     private BindingContext compileAndUpdate(Set<SourceFile> changed) {
         if (changed.isEmpty()) return null;
-        Map<SourceFile, KtFile> parse = CollectionsKt.associateWith(changed, sourceFile -> {
-            sourceFile.parseIfChanged();
-            return sourceFile.parsed;
-        });
+        Map<SourceFile, KtFile> parse = CollectionsKt.associateWith(changed, SourceFile::parsedFile);
         Set<KtFile> all = all(false);
         Pair<BindingContext, ComponentProvider> pair = cp.getCompiler()
                 .compileKtFiles(parse.values(), all, CompletionKind.DEFAULT);
 
-        parse.forEach((f, parsed) -> {
-            parsedDataWriteLock.lock();
-            try {
-                if (f.parsed.equals(parsed)) {
-                    f.compiledFile = parsed;
-                    f.compiledContext = pair.getFirst();
-                    f.compiledcontainer = pair.getSecond();
-                }
-            } finally {
-                parsedDataWriteLock.unlock();
-            }
-        });
+        parse.forEach((f, parsed) -> f.setCompiled(parsed, pair));
 
-        initializeIndexAsyncIfNeeded(pair.getSecond());
+        updateIndexAsync(pair.getSecond(), parse);
         return pair.getFirst();
     }
 
@@ -291,10 +439,7 @@ public class SourcePath {
     private Set<KtFile> all(boolean includeHidden) {
         return files.values().stream()
                 .filter(it -> includeHidden || !it.isTemporary)
-                .map(it -> {
-                    it.parseIfChanged();
-                    return it.parsed;
-                }).collect(Collectors.toSet());
+                .map(SourceFile::parsedFile)
+                .collect(Collectors.toSet());
     }
-
 }
@@ -11,6 +11,11 @@ import org.jetbrains.kotlin.cli.common.environment.UtilKt;
 import org.jetbrains.kotlin.cli.jvm.config.JvmContentRootsKt;
 import org.jetbrains.kotlin.com.intellij.lang.Language;
 import org.jetbrains.kotlin.com.intellij.lang.java.JavaLanguage;
+import org.jetbrains.kotlin.com.intellij.openapi.progress.EmptyProgressIndicator;
+import org.jetbrains.kotlin.com.intellij.openapi.progress.ProcessCanceledException;
+import org.jetbrains.kotlin.com.intellij.openapi.progress.ProgressIndicator;
+import org.jetbrains.kotlin.com.intellij.openapi.progress.ProgressManager;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Computable;
 import org.jetbrains.kotlin.com.intellij.openapi.vfs.StandardFileSystems;
 import org.jetbrains.kotlin.com.intellij.openapi.vfs.VirtualFileManager;
 import org.jetbrains.kotlin.com.intellij.openapi.vfs.VirtualFileSystem;
@@ -24,6 +29,7 @@ import org.jetbrains.kotlin.psi.KtExpression;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.resolve.BindingContext;
 import org.jetbrains.kotlin.resolve.BindingTraceContext;
+import org.jetbrains.kotlin.resolve.DelegatingBindingTrace;
 import org.jetbrains.kotlin.resolve.LazyTopDownAnalyzer;
 import org.jetbrains.kotlin.resolve.TopDownAnalysisMode;
 import org.jetbrains.kotlin.resolve.calls.components.InferenceSession;
@@ -38,10 +44,23 @@ import java.nio.file.Paths;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import kotlin.Pair;
 
+/**
+ * Analyzes kotlin files against a shared environment.
+ *
+ * <p>Analyses only read the environment and record their results into a trace and container
+ * of their own, so they run under the read lock at the same time as each other. The analyses
+ * of whole files are still run one at a time by {@link KotlinAnalyzer} but they do not block
+ * completions and other queries on the results of a previous analysis. Changes to the
+ * environment such as updating the configuration or closing it take the write lock, after
+ * cancelling the analyses still running, which will throw {@link ProcessCanceledException}.
+ */
 public class Compiler implements Closeable {
 
     private final Set<Path> mJavaSourcePath;
@@ -49,7 +68,22 @@ public class Compiler implements Closeable {
 
     private final CompilationEnvironment mDefaultCompileEnvironment;
     private final VirtualFileSystem mLocalFileSystem;
-    private final ReentrantLock mCompileLock = new ReentrantLock();
+    /**
+     * Fair so that analyses which start while a change is waiting for the write lock queue
+     * up behind it.
+     */
+    private final ReentrantReadWriteLock mCompileLock = new ReentrantReadWriteLock(true);
+
+    /**
+     * The number of changes to the environment waiting for the write lock, analyses which
+     * acquire a lock in the meantime are cancelled right away.
+     */
+    private final AtomicInteger mPendingChanges = new AtomicInteger();
+
+    /**
+     * The indicators of the analyses currently running, cancelled when the environment changes.
+     */
+    private final Set<ProgressIndicator> mRunningAnalyses = ConcurrentHashMap.newKeySet();
 
     private boolean closed = false;
 
@@ -90,8 +124,7 @@ public class Compiler implements Closeable {
     }
 
     public Pair<BindingContext, ComponentProvider> compileKtFiles(Collection<? extends KtFile> files, Collection<KtFile> sourcePath, CompletionKind kind) {
-        mCompileLock.lock();
-        try {
+        return runReadAnalysis(() -> {
             AnalysisResultWithProvider result =
                     KotlinAnalyzer.INSTANCE.analyzeFiles(sourcePath, files);
             return new Pair<>(result.getAnalysisResult().getBindingContext(), result.getComponentProvider());
@@ -99,9 +132,7 @@ public class Compiler implements Closeable {
 //            ((LazyTopDownAnalyzer) pair.getFirst().resolve(LazyTopDownAnalyzer.class).getValue())
 //                    .analyzeDeclarations(TopDownAnalysisMode.TopLevelDeclarations, files, DataFlowInfo.Companion.getEMPTY(), null);
 //            return new Pair<>(pair.getSecond().getBindingContext(), pair.getFirst());
-        } finally {
-            mCompileLock.unlock();
-        }
+        });
     }
 
     public CompilationEnvironment getDefaultCompileEnvironment() {
@@ -109,22 +140,18 @@ public class Compiler implements Closeable {
     }
 
     public Pair<BindingContext, ComponentProvider> compileJavaFiles(Collection<? extends PsiJavaFile> files, Collection<KtFile> sourcePath, CompletionKind kind) {
-        mCompileLock.lock();
-        try {
+        return runReadAnalysis(() -> {
             Pair<ComponentProvider, BindingTraceContext> pair = mDefaultCompileEnvironment.createContainer(sourcePath);
             ((LazyTopDownAnalyzer) pair.getFirst().resolve(LazyTopDownAnalyzer.class).getValue())
                     .analyzeDeclarations(TopDownAnalysisMode.TopLevelDeclarations,
                             files, DataFlowInfo.Companion.getEMPTY(), null);
             return new Pair<>(pair.getSecond().getBindingContext(), pair.getFirst());
-        } finally {
-            mCompileLock.unlock();
-        }
+        });
     }
 
     public Pair<BindingContext, ComponentProvider> compileKtExpression(KtExpression expression, LexicalScope scopeWithImports, Collection<KtFile> sourcePath) {
         Log.d(null, "Compiling kt expression: " + expression.getText());
-        mCompileLock.lock();
-        try {
+        return runReadAnalysis(() -> {
             Pair<ComponentProvider, BindingTraceContext> pair = mDefaultCompileEnvironment.createContainer(sourcePath);
             ExpressionTypingServices incrementalCompiler = pair.getFirst().create(ExpressionTypingServices.class);
             incrementalCompiler.getTypeInfo(
@@ -136,22 +163,98 @@ public class Compiler implements Closeable {
                     pair.getSecond(),
                     true);
             return new Pair<>(pair.getSecond().getBindingContext(), pair.getFirst());
-        } finally {
-            mCompileLock.unlock();
-        }
+        });
+    }
+
+    /**
+     * Resolves a single body expression against the results of a previous analysis, reusing
+     * its container. Everything outside the body is answered by the previous context so
+     * the cost does not depend on the size of the module.
+     *
+     * @param body     The new body of a function or property
+     * @param scope    The scope the previous version of the body was resolved in
+     * @param previous The binding context of the last analysis of the whole file, never the
+     *                 result of an earlier call so that the contexts do not stack up
+     * @param container The container of the previous analysis
+     */
+    public BindingContext compileKtBody(KtExpression body, LexicalScope scope, BindingContext previous, ComponentProvider container) {
+        return runReadAnalysis(() -> {
+            DelegatingBindingTrace trace = CompilerKt.createDelegatingTrace(previous, "Incremental analysis of " + body.getContainingKtFile().getName());
+            ExpressionTypingServices typingServices = container.create(ExpressionTypingServices.class);
+            typingServices.getTypeInfo(
+                    scope,
+                    body,
+                    TypeUtils.NO_EXPECTED_TYPE,
+                    DataFlowInfo.Companion.getEMPTY(),
+                    InferenceSession.Companion.getDefault(),
+                    trace,
+                    true);
+            return trace.getBindingContext();
+        });
     }
 
     public void updateConfiguration(CompilerConfiguration config) {
-        mDefaultCompileEnvironment.updateConfiguration(config);
+        runWrite(() -> mDefaultCompileEnvironment.updateConfiguration(config));
     }
 
     @Override
     public void close()  {
-        if (!closed) {
-            mDefaultCompileEnvironment.close();
-            closed = true;
-        } else {
-            Log.w(null, "Compiler is already closed!");
+        runWrite(() -> {
+            if (!closed) {
+                mDefaultCompileEnvironment.close();
+                closed = true;
+            } else {
+                Log.w(null, "Compiler is already closed!");
+            }
+        });
+    }
+
+    /**
+     * Runs a query under the read lock with its own progress indicator so that it can be
+     * cancelled by a change to the environment. Also used for queries on the results of
+     * a previous analysis which may resolve declarations lazily.
+     *
+     * @throws ProcessCanceledException if the environment has changed while analyzing
+     */
+    public <T> T runReadAnalysis(Computable<T> analysis) {
+        return runAnalysis(mCompileLock.readLock(), analysis);
+    }
+
+    private <T> T runAnalysis(Lock lock, Computable<T> analysis) {
+        ProgressIndicator indicator = new EmptyProgressIndicator();
+        lock.lock();
+        mRunningAnalyses.add(indicator);
+        try {
+            if (mPendingChanges.get() > 0) {
+                // acquired the lock before the change did, it would only be cancelled later
+                throw new ProcessCanceledException();
+            }
+            return ProgressManager.getInstance().runProcess(analysis, indicator);
+        } finally {
+            mRunningAnalyses.remove(indicator);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the running analyses and runs the change once they have released their locks.
+     * Analyses which acquire a lock after the change has been requested cancel themselves, so
+     * the write lock is only waited for as long as it takes them to notice.
+     */
+    private void runWrite(Runnable change) {
+        mPendingChanges.incrementAndGet();
+        try {
+            for (ProgressIndicator indicator : mRunningAnalyses) {
+                indicator.cancel();
+            }
+            mCompileLock.writeLock().lock();
+            try {
+                change.run();
+            } finally {
+                mCompileLock.writeLock().unlock();
+            }
+        } finally {
+            mPendingChanges.decrementAndGet();
         }
     }
 }
@@ -7,7 +7,9 @@ import org.jetbrains.kotlin.com.intellij.openapi.project.Project
 import org.jetbrains.kotlin.config.CompilerConfiguration
 import org.jetbrains.kotlin.container.ComponentProvider
 import org.jetbrains.kotlin.psi.KtFile
+import org.jetbrains.kotlin.resolve.BindingContext
 import org.jetbrains.kotlin.resolve.BindingTraceContext
+import org.jetbrains.kotlin.resolve.DelegatingBindingTrace
 import org.jetbrains.kotlin.resolve.LazyTopDownAnalyzer
 import org.jetbrains.kotlin.resolve.TopDownAnalysisMode
 import org.jetbrains.kotlin.resolve.lazy.declarations.FileBasedDeclarationProviderFactory
@@ -29,4 +31,10 @@ fun createContainer(environment: KotlinCoreEnvironment, sourcePath: Collection<K
         ::FileBasedDeclarationProviderFactory
     )
     return Pair(container, cliBindingTrace)
-}
\ No newline at end of file
+}
+
+/**
+ * Creates a trace which records new results on top of a previous binding context
+ */
+fun createDelegatingTrace(parent: BindingContext, debugName: String) =
+    DelegatingBindingTrace(parent, debugName)
@@ -2,129 +2,163 @@ package com.tyron.kotlin_completion.index
 
 import android.util.Log
 import com.tyron.kotlin_completion.util.PsiUtils
-import org.jetbrains.exposed.sql.*
-import org.jetbrains.exposed.sql.transactions.transaction
 import org.jetbrains.kotlin.descriptors.DeclarationDescriptor
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor
 import org.jetbrains.kotlin.name.FqName
 import org.jetbrains.kotlin.resolve.scopes.DescriptorKindFilter
 import org.jetbrains.kotlin.resolve.scopes.MemberScope
 import java.lang.IllegalStateException
-import java.time.Duration
-import java.time.Instant
+import java.util.TreeMap
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentSkipListMap
 import kotlin.sequences.Sequence
 
-private const val MAX_FQNAME_LENGTH = 255
-private const val MAX_SHORT_NAME_LENGTH = 80
-
-private object Symbols : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH) references FqNames.fqName
-    val kind = integer("kind")
-    val visibility = integer("visibility")
-    val extensionReceiverType = varchar("extensionreceivertype", length = MAX_FQNAME_LENGTH).nullable()
-
-    override val primaryKey = PrimaryKey(fqName)
-}
+/**
+ * Separates the parts of a key, sorts before any character that can appear in a name
+ * so that all the keys of a receiver type are contiguous.
+ */
+private const val SEPARATOR = '\u0000'
+
+/**
+ * Sorts after any character that can appear in a name, appended to a prefix to get
+ * the upper bound of the keys starting with it.
+ */
+private const val MAX_CHAR = '\uFFFF'
+
+/**
+ * An in-memory index of the top level declarations of a module, used to complete symbols
+ * which are not imported yet.
+ *
+ * Symbols are kept in a sorted map keyed by `receiverType + shortName + fqName`, so a query
+ * for a prefix is a single range lookup. The index is bulk loaded on the first refresh and
+ * afterwards only the packages which have changed are replaced.
+ */
+class SymbolIndex {
 
-private object FqNames : Table() {
-    val fqName = varchar("fqname", length = MAX_FQNAME_LENGTH)
-    val shortName = varchar("shortname", length = MAX_SHORT_NAME_LENGTH)
+    @Volatile
+    private var symbols = ConcurrentSkipListMap<String, Symbol>()
 
-    override val primaryKey = PrimaryKey(fqName)
-}
-class SymbolIndex {
-    private val db = Database.connect("jdbc:h2:mem:symbolindex;DB_CLOSE_DELAY=-1", "org.h2.Driver")
+    /**
+     * The keys of the symbols declared in each package, used to remove them when the
+     * package is updated.
+     */
+    @Volatile
+    private var packageKeys = ConcurrentHashMap<FqName, List<String>>()
 
     var indexing: Boolean = false
 
-    init {
-       transaction (db) {
-           SchemaUtils.create(Symbols, FqNames)
-       }
+    /**
+     * Replaces the whole index with the declarations of the module. Queries made while
+     * refreshing are answered from the previous index.
+     */
+    fun refresh(module: ModuleDescriptor, forced: Boolean = true) {
+        if (!forced && symbols.isNotEmpty()) {
+            return
+        }
+        refresh(allPackages(module).asIterable()) { packageSymbols(module, it) }
     }
 
-    fun refresh(module: ModuleDescriptor, forced: Boolean = true) {
+    /**
+     * Replaces the whole index with the symbols of the given packages.
+     */
+    fun refresh(packages: Iterable<FqName>, symbolsOf: (FqName) -> Collection<Symbol>) {
         val started = System.currentTimeMillis()
-        Log.d("SymbolIndex", "Updating symbol index...");
+        Log.d("SymbolIndex", "Updating symbol index...")
 
         indexing = true
         try {
-            transaction(db) {
-                if (forced) {
-                    Symbols.deleteAll()
-                }
-                for (descriptor in allDescriptors(module)) {
-                    val descriptorFqn = PsiUtils.getFqNameSafe(descriptor)
-                    val extensionReceiverFqn = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
-
-                    if (canStoreFqName(descriptorFqn) && (extensionReceiverFqn?.let { canStoreFqName(it) } != false)) {
-
-                        for (fqn in listOfNotNull(descriptorFqn, extensionReceiverFqn)) {
-                            FqNames.replace {
-                                it[fqName] = fqn.toString()
-                                it[shortName] = fqn.shortName().toString()
-                            }
-                        }
-
-
-                        Symbols.replace {
-                            it[fqName] = descriptorFqn.toString()
-                            it[kind] = descriptor.accept(ExtractSymbolKind, Unit).rawValue
-                            it[visibility] = descriptor.accept(ExtractSymbolVisibility, Unit).rawValue
-                            it[extensionReceiverType] = extensionReceiverFqn?.toString()
-                        }
-                    } else {
-                        Log.w("SymbolIndex",
-                            "Excluding symbol $descriptorFqn from index since its name is too long"
-                        );
-                    }
+            val sorted = TreeMap<String, Symbol>()
+            val keys = ConcurrentHashMap<FqName, List<String>>()
+            for (pkg in packages) {
+                val packageSymbols = symbolsOf(pkg).map { key(it) to it }
+                if (packageSymbols.isEmpty()) {
+                    continue
                 }
-
-                indexing = false
+                packageSymbols.forEach { (key, symbol) -> sorted[key] = symbol }
+                keys[pkg] = packageSymbols.map { it.first }
             }
+
+            // built in linear time from the sorted map
+            symbols = ConcurrentSkipListMap(sorted)
+            packageKeys = keys
+
+            Log.d("SymbolIndex", "Indexed ${sorted.size} symbols in " +
+                    "${System.currentTimeMillis() - started} ms")
         } catch (e: Exception) {
-            Log.e("SymbolIndex", "Error while updating symbol index", e);
+            Log.e("SymbolIndex", "Error while updating symbol index", e)
+        } finally {
+            indexing = false
         }
     }
 
-    fun query(prefix: String, receiverType: FqName? = null, limit: Int = 20): List<Symbol> {
-        val start = Instant.now()
+    /**
+     * Re-indexes only the given packages, used when the sources declaring them have changed.
+     * When a file has moved to another package both packages must be given, the symbols
+     * which are no longer declared in a package are removed from it.
+     */
+    fun updatePackages(module: ModuleDescriptor, packages: Collection<FqName>) {
+        updatePackages(packages) { packageSymbols(module, it) }
+    }
+
+    /**
+     * Replaces the symbols of the given packages with the ones returned by [symbolsOf].
+     */
+    fun updatePackages(packages: Collection<FqName>, symbolsOf: (FqName) -> Collection<Symbol>) {
+        if (packages.isEmpty()) {
+            return
+        }
         try {
-            return transaction(db) {
-                (Symbols innerJoin FqNames)
-                    .select { FqNames.shortName.like("$prefix%") and (Symbols.extensionReceiverType eq receiverType?.toString()) }
-                    .limit(limit)
-                    .map {
-                        Symbol(
-                            fqName = FqName(it[Symbols.fqName]),
-                            kind = Symbol.Kind.fromRaw(it[Symbols.kind]),
-                            visibility = Symbol.Visibility.fromRaw(it[Symbols.visibility]),
-                            extensionReceiverType = it[Symbols.extensionReceiverType]?.let(::FqName)
-                        )
-                    }
+            for (pkg in packages) {
+                packageKeys.remove(pkg)?.forEach { symbols.remove(it) }
+
+                val packageSymbols = symbolsOf(pkg).map { key(it) to it }
+                packageSymbols.forEach { (key, symbol) -> symbols[key] = symbol }
+                if (packageSymbols.isNotEmpty()) {
+                    packageKeys[pkg] = packageSymbols.map { it.first }
+                }
             }
-        } finally {
-            Log.d("SymbolIndex", "Query took " + Duration.between(start, Instant.now()).toMillis() + " ms")
+        } catch (e: Exception) {
+            Log.e("SymbolIndex", "Error while updating packages $packages", e)
         }
     }
 
-    private fun canStoreFqName(fqName: FqName) =
-        fqName.toString().length <= MAX_FQNAME_LENGTH
-                && fqName.shortName().toString().length <= MAX_SHORT_NAME_LENGTH
-
-    private fun allDescriptors(module: ModuleDescriptor) : Sequence<DeclarationDescriptor> = allPackages(module)
-        .map(module::getPackage)
-        .flatMap {
-            try {
-                it.memberScope.getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
-            } catch (e: IllegalStateException) {
-                Log.w("SymbolIndex", "Couldn't query descriptors in package $it")
-                emptyList()
-            }
+    fun query(prefix: String, receiverType: FqName? = null, limit: Int = 20): List<Symbol> {
+        val from = key(receiverType, prefix)
+        return symbols.subMap(from, true, from + MAX_CHAR, false)
+            .values
+            .asSequence()
+            .take(limit)
+            .toList()
+    }
+
+    private fun packageSymbols(module: ModuleDescriptor, pkg: FqName): List<Symbol> {
+        val descriptors = try {
+            module.getPackage(pkg).memberScope
+                .getContributedDescriptors(DescriptorKindFilter.ALL, MemberScope.ALL_NAME_FILTER)
+        } catch (e: IllegalStateException) {
+            Log.w("SymbolIndex", "Couldn't query descriptors in package $pkg")
+            emptyList<DeclarationDescriptor>()
+        }
+
+        return descriptors.map { descriptor ->
+            Symbol(
+                fqName = PsiUtils.getFqNameSafe(descriptor),
+                kind = descriptor.accept(ExtractSymbolKind, Unit),
+                visibility = descriptor.accept(ExtractSymbolVisibility, Unit),
+                extensionReceiverType = descriptor.accept(ExtractSymbolExtensionReceiverType, Unit)
+            )
         }
+    }
+
+    private fun key(symbol: Symbol) =
+        key(symbol.extensionReceiverType, symbol.fqName.shortName().toString()) +
+                SEPARATOR + symbol.fqName.toString()
+
+    private fun key(receiverType: FqName?, shortName: String) =
+        (receiverType?.toString() ?: "") + SEPARATOR + shortName
 
     private fun allPackages(module: ModuleDescriptor, pkgName: FqName = FqName.ROOT) : Sequence<FqName> = module
         .getSubPackagesOf(pkgName) { it.toString()  != "META-INF"}
         .asSequence()
         .flatMap { sequenceOf(it) + allPackages(module, it) }
-}
\ No newline at end of file
+}
@@ -61,8 +61,10 @@ public class Position {
 
         int prefix = StringsKt.commonPrefixWith(oldContent, newContent, false).length();
         int suffix = StringsKt.commonSuffixWith(oldContent, newContent, false).length();
-        int oldEnd = Math.max(oldContent.length() - suffix, prefix);
-        int newEnd = Math.max(newContent.length() - suffix, prefix);
+        // the prefix and the suffix must not overlap, eg. when inserting into a repeated character
+        suffix = Math.min(suffix, Math.min(oldContent.length(), newContent.length()) - prefix);
+        int oldEnd = oldContent.length() - suffix;
+        int newEnd = newContent.length() - suffix;
 
         return Pair.create(new TextRange(prefix, oldEnd), new TextRange(prefix, newEnd));
     }
@@ -0,0 +1,235 @@
+package com.tyron.kotlin.completion.core.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.kotlin.completion.core.resolve.AnalysisResultWithProvider;
+
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.com.intellij.openapi.Disposable;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer;
+import org.jetbrains.kotlin.com.intellij.psi.PsiFileFactory;
+import org.jetbrains.kotlin.config.CommonConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.config.JVMConfigurationKeys;
+import org.jetbrains.kotlin.idea.KotlinLanguage;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Analyses are counted in place of running them, the files only need to be parsed.
+ */
+public class AnalysisResultCacheTest {
+
+    private static final String UTIL = "package com.example.util\n" +
+                                       "\n" +
+                                       "fun format(value: Int): String {\n" +
+                                       "    return value.toString()\n" +
+                                       "}\n";
+
+    private static final String UTIL_BODY_EDITED = "package com.example.util\n" +
+                                                   "\n" +
+                                                   "fun format(value: Int): String {\n" +
+                                                   "    return \"\" + value\n" +
+                                                   "}\n";
+
+    private static final String UTIL_SIGNATURE_EDITED = "package com.example.util\n" +
+                                                        "\n" +
+                                                        "fun format(value: Long): String {\n" +
+                                                        "    return value.toString()\n" +
+                                                        "}\n";
+
+    private static final String MAIN = "package com.example\n" +
+                                       "\n" +
+                                       "import com.example.util.format\n" +
+                                       "\n" +
+                                       "fun main() {\n" +
+                                       "    format(1)\n" +
+                                       "}\n";
+
+    private static final String OTHER = "package com.example.other\n" +
+                                        "\n" +
+                                        "fun other() {\n" +
+                                        "}\n";
+
+    private final Disposable mDisposable = Disposer.newDisposable();
+    private KotlinCoreEnvironment mEnvironment;
+
+    private final AtomicInteger mAnalyses = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.put(CommonConfigurationKeys.MODULE_NAME, "test");
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.Companion.getNONE());
+        configuration.put(JVMConfigurationKeys.NO_JDK, true);
+        mEnvironment = KotlinCoreEnvironment.createForProduction(mDisposable, configuration,
+                EnvironmentConfigFiles.JVM_CONFIG_FILES);
+    }
+
+    @After
+    public void tearDown() {
+        Disposer.dispose(mDisposable);
+    }
+
+    private KtFile createFile(String name, String text) {
+        return (KtFile) PsiFileFactory.getInstance(mEnvironment.getProject())
+                .createFileFromText(name, KotlinLanguage.INSTANCE, text);
+    }
+
+    private AnalysisResultCache createCache(int maxSize) {
+        return new AnalysisResultCache(maxSize, file -> {
+            mAnalyses.incrementAndGet();
+            return AnalysisResultWithProvider.Companion.getEMPTY();
+        });
+    }
+
+    @Test
+    public void testSameVersionIsAnalyzedOnce() {
+        AnalysisResultCache cache = createCache(8);
+        KtFile main = createFile("Main.kt", MAIN);
+
+        AnalysisResultWithProvider result = cache.getAnalysisResult(main);
+        assertSame(result, cache.getAnalysisResult(main));
+        assertSame(result, cache.getAnalysisResult(main));
+
+        assertEquals(1, mAnalyses.get());
+        assertEquals(2, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testNewVersionIsAnalyzedAgain() {
+        AnalysisResultCache cache = createCache(8);
+        cache.getAnalysisResult(createFile("Main.kt", MAIN));
+        cache.getAnalysisResult(createFile("Main.kt", MAIN));
+
+        assertEquals(2, mAnalyses.get());
+        assertEquals(0, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        AnalysisResultCache cache = createCache(2);
+        KtFile main = createFile("Main.kt", MAIN);
+        KtFile util = createFile("Util.kt", UTIL);
+        KtFile other = createFile("Other.kt", OTHER);
+
+        cache.getAnalysisResult(main);
+        cache.getAnalysisResult(util);
+        cache.getAnalysisResult(main);
+        cache.getAnalysisResult(other);
+        assertEquals(3, mAnalyses.get());
+        assertEquals(1, cache.getStatistics().getEvictions());
+
+        // util was used least recently
+        cache.getAnalysisResult(main);
+        cache.getAnalysisResult(other);
+        assertEquals(3, mAnalyses.get());
+        cache.getAnalysisResult(util);
+        assertEquals(4, mAnalyses.get());
+        assertEquals(2, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testDependentsAreInvalidatedWhenDeclarationsChange() {
+        AnalysisResultCache cache = createCache(8);
+        KtFile main = createFile("Main.kt", MAIN);
+        KtFile other = createFile("Other.kt", OTHER);
+        cache.getAnalysisResult(createFile("Util.kt", UTIL));
+        cache.getAnalysisResult(main);
+        cache.getAnalysisResult(other);
+        assertEquals(3, mAnalyses.get());
+
+        cache.getAnalysisResult(createFile("Util.kt", UTIL_SIGNATURE_EDITED));
+        assertEquals(4, mAnalyses.get());
+        assertEquals(1, cache.getStatistics().getInvalidations());
+
+        // main imports the changed package, other does not
+        cache.getAnalysisResult(main);
+        assertEquals(5, mAnalyses.get());
+        cache.getAnalysisResult(other);
+        assertEquals(5, mAnalyses.get());
+    }
+
+    @Test
+    public void testEditedBodyDoesNotInvalidateDependents() {
+        AnalysisResultCache cache = createCache(8);
+        KtFile main = createFile("Main.kt", MAIN);
+        cache.getAnalysisResult(createFile("Util.kt", UTIL));
+        cache.getAnalysisResult(main);
+
+        cache.getAnalysisResult(createFile("Util.kt", UTIL_BODY_EDITED));
+        cache.getAnalysisResult(main);
+
+        assertEquals(3, mAnalyses.get());
+        assertEquals(0, cache.getStatistics().getInvalidations());
+    }
+
+    @Test
+    public void testReset() {
+        AnalysisResultCache cache = createCache(8);
+        KtFile main = createFile("Main.kt", MAIN);
+        cache.getAnalysisResult(main);
+
+        cache.reset();
+        cache.getAnalysisResult(main);
+        assertEquals(2, mAnalyses.get());
+    }
+
+    @Test
+    public void testAnalysesRunOneAtATime() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AnalysisResultCache cache = new AnalysisResultCache(8, file -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+            return AnalysisResultWithProvider.Companion.getEMPTY();
+        });
+
+        List<KtFile> files = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            files.add(createFile("File" + i + ".kt", OTHER));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(files.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>();
+            for (KtFile file : files) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return cache.getAnalysisResult(file);
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, maxRunning.get());
+        assertEquals(4, cache.getStatistics().getMisses());
+    }
+}
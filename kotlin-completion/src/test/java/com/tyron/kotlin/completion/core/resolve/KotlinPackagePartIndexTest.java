@@ -0,0 +1,225 @@
+package com.tyron.kotlin.completion.core.resolve;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.jetbrains.kotlin.metadata.jvm.JvmModuleProtoBuf;
+import org.jetbrains.kotlin.metadata.jvm.deserialization.JvmMetadataVersion;
+import org.jetbrains.kotlin.metadata.jvm.deserialization.ModuleMappingKt;
+import org.jetbrains.kotlin.metadata.jvm.deserialization.PackageParts;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class KotlinPackagePartIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mCacheDir;
+
+    @Before
+    public void setup() throws IOException {
+        mCacheDir = folder.newFolder("cache");
+        KotlinPackagePartIndex.INSTANCE.resetCache();
+    }
+
+    @After
+    public void tearDown() {
+        KotlinPackagePartIndex.INSTANCE.resetCache();
+    }
+
+    private static byte[] moduleMapping(String packageName, String part) {
+        PackageParts packageParts = new PackageParts(packageName);
+        packageParts.addPart(part, null);
+        JvmModuleProtoBuf.Module.Builder builder = JvmModuleProtoBuf.Module.newBuilder();
+        packageParts.addTo(builder);
+        return ModuleMappingKt.serializeToByteArray(builder.build(), JvmMetadataVersion.INSTANCE, 0);
+    }
+
+    /**
+     * Creates a jar with a single module declaring a single part in the package.
+     */
+    private File createJar(String name, String packageName, String part) throws IOException {
+        File jar = new File(folder.getRoot(), name);
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(jar))) {
+            output.putNextEntry(new ZipEntry("META-INF/" + name.replace(".jar", "") + ".kotlin_module"));
+            output.write(moduleMapping(packageName, part));
+            output.closeEntry();
+            output.putNextEntry(new ZipEntry(part + ".class"));
+            output.write(new byte[]{(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE});
+            output.closeEntry();
+        }
+        // a timestamp in the past so that rewriting the jar changes it
+        assertTrue(jar.setLastModified((System.currentTimeMillis() / 1000 - 60) * 1000));
+        return jar;
+    }
+
+    private static List<String> parts(JarPackageParts index, String packageName) {
+        List<PackageParts> parts = index.getPackageParts().get(packageName);
+        if (parts == null) {
+            return Collections.emptyList();
+        }
+        assertEquals(1, parts.size());
+        return new ArrayList<>(parts.get(0).getParts());
+    }
+
+    private String[] cacheFiles() {
+        String[] names = mCacheDir.list((dir, name) -> name.endsWith(".bin"));
+        Arrays.sort(names);
+        return names;
+    }
+
+    private Properties readStamps() throws IOException {
+        Properties properties = new Properties();
+        try (FileReader reader = new FileReader(new File(mCacheDir, "stamps.properties"))) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    /**
+     * Overwrites the jar with bytes which are not a zip, keeping its length and timestamp.
+     */
+    private static void corrupt(File jar) throws IOException {
+        long lastModified = jar.lastModified();
+        try (RandomAccessFile file = new RandomAccessFile(jar, "rw")) {
+            byte[] garbage = new byte[(int) file.length()];
+            Arrays.fill(garbage, (byte) 1);
+            file.write(garbage);
+        }
+        assertTrue(jar.setLastModified(lastModified));
+    }
+
+    @Test
+    public void testJarIsIndexed() throws IOException {
+        File jar = createJar("library.jar", "com.example", "com/example/LibraryKt");
+
+        JarPackageParts index = KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+
+        assertEquals(Collections.singletonList("com/example/LibraryKt"), parts(index, "com.example"));
+        assertTrue(index.getModuleAnnotations().containsKey("library"));
+        assertEquals(1, cacheFiles().length);
+        assertEquals(jar.lastModified() * 31 + jar.length() + ":" +
+                cacheFiles()[0].replace(".bin", ""), readStamps().getProperty(jar.getAbsolutePath()));
+    }
+
+    @Test
+    public void testIndexIsKeptInMemory() throws IOException {
+        File jar = createJar("library.jar", "com.example", "com/example/LibraryKt");
+        JarPackageParts index = KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+
+        assertSame(index, KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir));
+    }
+
+    @Test
+    public void testWarmStartDoesNotOpenTheJar() throws IOException {
+        File jar = createJar("library.jar", "com.example", "com/example/LibraryKt");
+        KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+
+        // a new process, the jar could no longer be read so only the persisted index is used
+        KotlinPackagePartIndex.INSTANCE.resetCache();
+        corrupt(jar);
+
+        JarPackageParts index = KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+        assertEquals(Collections.singletonList("com/example/LibraryKt"), parts(index, "com.example"));
+    }
+
+    @Test
+    public void testChangedJarIsIndexedAgain() throws IOException {
+        File jar = createJar("library.jar", "com.example", "com/example/LibraryKt");
+        JarPackageParts index = KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+
+        Files.delete(jar.toPath());
+        createJar("library.jar", "com.example.changed", "com/example/changed/LibraryKt");
+        assertTrue(jar.setLastModified(jar.lastModified() + 10_000));
+
+        JarPackageParts changed = KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+        assertNotSame(index, changed);
+        assertNull(changed.getPackageParts().get("com.example"));
+        assertEquals(Collections.singletonList("com/example/changed/LibraryKt"),
+                parts(changed, "com.example.changed"));
+        // one index for each version of the contents
+        assertEquals(2, cacheFiles().length);
+    }
+
+    @Test
+    public void testTouchedJarReusesTheIndexOfItsContents() throws IOException {
+        File jar = createJar("library.jar", "com.example", "com/example/LibraryKt");
+        KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+        String[] before = cacheFiles();
+
+        assertTrue(jar.setLastModified(jar.lastModified() + 10_000));
+        KotlinPackagePartIndex.INSTANCE.resetCache();
+
+        JarPackageParts index = KotlinPackagePartIndex.INSTANCE.getPackageParts(jar, mCacheDir);
+        assertEquals(Collections.singletonList("com/example/LibraryKt"), parts(index, "com.example"));
+        assertEquals(Arrays.asList(before), Arrays.asList(cacheFiles()));
+        assertTrue(readStamps().getProperty(jar.getAbsolutePath())
+                .startsWith(jar.lastModified() * 31 + jar.length() + ":"));
+    }
+
+    @Test
+    public void testStampsOfBatchAreRecorded() throws IOException {
+        File first = createJar("first.jar", "com.example.first", "com/example/first/FirstKt");
+        File second = createJar("second.jar", "com.example.second", "com/example/second/SecondKt");
+
+        List<JarPackageParts> indexes = KotlinPackagePartIndex.INSTANCE
+                .getPackageParts(Arrays.asList(first, second), mCacheDir);
+
+        assertEquals(2, indexes.size());
+        assertEquals(Collections.singletonList("com/example/first/FirstKt"),
+                parts(indexes.get(0), "com.example.first"));
+        assertEquals(Collections.singletonList("com/example/second/SecondKt"),
+                parts(indexes.get(1), "com.example.second"));
+
+        Properties stamps = readStamps();
+        assertEquals(2, stamps.size());
+        assertTrue(stamps.containsKey(first.getAbsolutePath()));
+        assertTrue(stamps.containsKey(second.getAbsolutePath()));
+        assertFalse(new File(mCacheDir, "stamps.properties.tmp").exists());
+    }
+
+    @Test
+    public void testDirectoryIsNotPersisted() throws IOException {
+        File classes = folder.newFolder("classes");
+        File metaInf = new File(classes, "META-INF");
+        assertTrue(metaInf.mkdirs());
+        Files.write(new File(metaInf, "app.kotlin_module").toPath(),
+                moduleMapping("com.example.app", "com/example/app/MainKt"));
+
+        JarPackageParts index = KotlinPackagePartIndex.INSTANCE.getPackageParts(classes, mCacheDir);
+
+        assertEquals(Collections.singletonList("com/example/app/MainKt"),
+                parts(index, "com.example.app"));
+        assertEquals(0, cacheFiles().length);
+    }
+
+    @Test
+    public void testMissingRoot() {
+        File missing = new File(folder.getRoot(), "missing.jar");
+
+        assertSame(JarPackageParts.Companion.getEMPTY(),
+                KotlinPackagePartIndex.INSTANCE.getPackageParts(missing, mCacheDir));
+    }
+}
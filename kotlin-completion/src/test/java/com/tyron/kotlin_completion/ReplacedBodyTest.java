@@ -0,0 +1,191 @@
+package com.tyron.kotlin_completion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.tyron.kotlin_completion.compiler.CompilerKt;
+
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.com.intellij.openapi.Disposable;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer;
+import org.jetbrains.kotlin.com.intellij.psi.PsiElement;
+import org.jetbrains.kotlin.com.intellij.psi.PsiFileFactory;
+import org.jetbrains.kotlin.com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.kotlin.config.CommonConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.config.JVMConfigurationKeys;
+import org.jetbrains.kotlin.descriptors.DeclarationDescriptor;
+import org.jetbrains.kotlin.idea.KotlinLanguage;
+import org.jetbrains.kotlin.psi.KtBlockExpression;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.kotlin.psi.KtNameReferenceExpression;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.jetbrains.kotlin.resolve.BindingTrace;
+import org.jetbrains.kotlin.resolve.scopes.LexicalScope;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+
+/**
+ * Edits the same body twice the way {@link SourcePath} does, each edit is resolved on top of
+ * the analysis of the whole file, and checks what the lookups of {@link CompiledFile} see.
+ * Scopes and reference targets are recorded by hand in place of a real analysis.
+ */
+public class ReplacedBodyTest {
+
+    private static final String BASE = "fun first() {\n" +
+                                       "    val a = 1\n" +
+                                       "    a.toString()\n" +
+                                       "}\n" +
+                                       "\n" +
+                                       "fun second() {\n" +
+                                       "    val b = 2\n" +
+                                       "    b.toString()\n" +
+                                       "}\n";
+
+    private static final String FIRST_EDIT = "fun first() {\n" +
+                                             "    val a = 1\n" +
+                                             "    val longer = a + a\n" +
+                                             "    a.toString()\n" +
+                                             "}\n" +
+                                             "\n" +
+                                             "fun second() {\n" +
+                                             "    val b = 2\n" +
+                                             "    b.toString()\n" +
+                                             "}\n";
+
+    private static final String SECOND_EDIT = "fun first() {\n" +
+                                              "    a.toString()\n" +
+                                              "}\n" +
+                                              "\n" +
+                                              "fun second() {\n" +
+                                              "    val b = 2\n" +
+                                              "    b.toString()\n" +
+                                              "}\n";
+
+    private final Disposable mDisposable = Disposer.newDisposable();
+    private KotlinCoreEnvironment mEnvironment;
+
+    private KtFile mBaseFile;
+    private BindingContext mBaseContext;
+
+    @Before
+    public void setup() {
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.put(CommonConfigurationKeys.MODULE_NAME, "test");
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY, MessageCollector.Companion.getNONE());
+        configuration.put(JVMConfigurationKeys.NO_JDK, true);
+        mEnvironment = KotlinCoreEnvironment.createForProduction(mDisposable, configuration,
+                EnvironmentConfigFiles.JVM_CONFIG_FILES);
+
+        mBaseFile = createFile(BASE);
+        BindingTrace trace = CompilerKt.createDelegatingTrace(BindingContext.EMPTY, "Full analysis");
+        trace.record(BindingContext.LEXICAL_SCOPE, body(mBaseFile, "first"), scope("first"));
+        trace.record(BindingContext.LEXICAL_SCOPE, body(mBaseFile, "second"), scope("second"));
+        trace.record(BindingContext.REFERENCE_TARGET, reference(mBaseFile, "a.toString"), target("a"));
+        trace.record(BindingContext.REFERENCE_TARGET, reference(mBaseFile, "b.toString"), target("b"));
+        mBaseContext = trace.getBindingContext();
+    }
+
+    @After
+    public void tearDown() {
+        Disposer.dispose(mDisposable);
+    }
+
+    private KtFile createFile(String text) {
+        return (KtFile) PsiFileFactory.getInstance(mEnvironment.getProject())
+                .createFileFromText("Main.kt", KotlinLanguage.INSTANCE, text);
+    }
+
+    /**
+     * Resolves the edited body on top of the analysis of the base file, recording a new scope
+     * for the body and a target for its last reference to {@code a}.
+     */
+    private CompiledFile edit(String text, String version) {
+        KtFile file = createFile(text);
+        ReplacedBody body = ReplacedBody.find(mBaseFile, file);
+        assertNotNull(body);
+        assertEquals(body(mBaseFile, "first"), body.getOldBody());
+        assertNotNull(mBaseContext.get(BindingContext.LEXICAL_SCOPE, body.getOldBody()));
+
+        BindingTrace trace = CompilerKt.createDelegatingTrace(mBaseContext, "Body analysis");
+        trace.record(BindingContext.LEXICAL_SCOPE, body.getNewBody(), scope("first " + version));
+        trace.record(BindingContext.REFERENCE_TARGET, reference(file, "a.toString"), target("a " + version));
+        return new CompiledFile(text, file, trace.getBindingContext(), null,
+                Collections.emptyList(), null, body);
+    }
+
+    @Test
+    public void testSameBodyEditedTwice() {
+        CompiledFile first = edit(FIRST_EDIT, "v1");
+        assertLookups(first, FIRST_EDIT, "v1");
+
+        CompiledFile second = edit(SECOND_EDIT, "v2");
+        assertLookups(second, SECOND_EDIT, "v2");
+        assertFalse(second.getCompile().getSliceContents(BindingContext.LEXICAL_SCOPE)
+                .values().toString().contains("v1"));
+    }
+
+    private static void assertLookups(CompiledFile file, String text, String version) {
+        int insideFirst = text.indexOf("a.toString");
+        int insideSecond = text.indexOf("b.toString");
+
+        assertEquals("first " + version, String.valueOf(file.scopeAtPoint(insideFirst)));
+        assertEquals("second", String.valueOf(file.scopeAtPoint(insideSecond)));
+
+        assertEquals("a " + version, String.valueOf(
+                file.referenceFromContext(insideFirst, file.getCompile()).getSecond()));
+        assertEquals("b", String.valueOf(
+                file.referenceFromContext(insideSecond, file.getCompile()).getSecond()));
+        // between the two functions, where the old body used to end
+        assertNull(file.scopeAtPoint(text.indexOf("fun second") - 1));
+    }
+
+    @Test
+    public void testEditOutsideOfBodyIsNotReplaced() {
+        assertNull(ReplacedBody.find(mBaseFile, createFile(BASE.replace("fun second", "fun third"))));
+        assertNull(ReplacedBody.find(mBaseFile, createFile(FIRST_EDIT.replace("b.toString", "b.hashCode"))));
+    }
+
+    private static KtBlockExpression body(KtFile file, String function) {
+        PsiElement name = file.findElementAt(file.getText().indexOf("fun " + function) + 4);
+        return PsiTreeUtil.findChildOfType(name.getParent(), KtBlockExpression.class);
+    }
+
+    private static KtNameReferenceExpression reference(KtFile file, String marker) {
+        PsiElement element = file.findElementAt(file.getText().indexOf(marker));
+        return PsiTreeUtil.getParentOfType(element, KtNameReferenceExpression.class, false);
+    }
+
+    private static LexicalScope scope(String name) {
+        return proxy(LexicalScope.class, name);
+    }
+
+    private static DeclarationDescriptor target(String name) {
+        return proxy(DeclarationDescriptor.class, name);
+    }
+
+    private static <T> T proxy(Class<T> type, String name) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "toString":
+                            return name;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+}
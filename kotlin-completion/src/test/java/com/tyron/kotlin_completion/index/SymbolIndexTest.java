@@ -0,0 +1,151 @@
+package com.tyron.kotlin_completion.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.jetbrains.kotlin.name.FqName;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class SymbolIndexTest {
+
+    private static final FqName UTIL = new FqName("com.example.util");
+    private static final FqName MODEL = new FqName("com.example.model");
+    private static final FqName STRING = new FqName("kotlin.String");
+
+    private final Map<FqName, List<Symbol>> mPackages = new HashMap<>();
+    private SymbolIndex mIndex;
+
+    @Before
+    public void setup() {
+        mIndex = new SymbolIndex();
+        declare(UTIL, function("com.example.util.formatDate"),
+                function("com.example.util.formatTime"),
+                function("com.example.util.parse"));
+        declare(MODEL, type("com.example.model.Format"),
+                extension("com.example.model.formatted", STRING));
+        mIndex.refresh(mPackages.keySet(), this::symbolsOf);
+    }
+
+    private Collection<Symbol> symbolsOf(FqName packageName) {
+        return mPackages.getOrDefault(packageName, Collections.emptyList());
+    }
+
+    private void declare(FqName packageName, Symbol... symbols) {
+        mPackages.put(packageName, new ArrayList<>(Arrays.asList(symbols)));
+    }
+
+    private static Symbol function(String fqName) {
+        return new Symbol(new FqName(fqName), Symbol.Kind.FUNCTION,
+                Symbol.Visibility.PUBLIC, null);
+    }
+
+    private static Symbol type(String fqName) {
+        return new Symbol(new FqName(fqName), Symbol.Kind.CLASS,
+                Symbol.Visibility.PUBLIC, null);
+    }
+
+    private static Symbol extension(String fqName, FqName receiverType) {
+        return new Symbol(new FqName(fqName), Symbol.Kind.FUNCTION,
+                Symbol.Visibility.PUBLIC, receiverType);
+    }
+
+    private List<String> query(String prefix, FqName receiverType) {
+        List<String> names = new ArrayList<>();
+        for (Symbol symbol : mIndex.query(prefix, receiverType, 20)) {
+            names.add(symbol.getFqName().asString());
+        }
+        return names;
+    }
+
+    @Test
+    public void testPrefixQuery() {
+        assertEquals(Arrays.asList("com.example.util.formatDate", "com.example.util.formatTime"),
+                query("format", null));
+        assertEquals(Collections.singletonList("com.example.util.parse"), query("p", null));
+        assertEquals(Collections.emptyList(), query("formatX", null));
+        // names are case sensitive
+        assertEquals(Collections.singletonList("com.example.model.Format"), query("F", null));
+    }
+
+    @Test
+    public void testEmptyPrefixReturnsAllSymbols() {
+        assertEquals(4, query("", null).size());
+    }
+
+    @Test
+    public void testQueryLimit() {
+        assertEquals(1, mIndex.query("format", null, 1).size());
+    }
+
+    @Test
+    public void testExtensionsAreQueriedByReceiverType() {
+        assertEquals(Collections.singletonList("com.example.model.formatted"),
+                query("format", STRING));
+        assertEquals(Collections.emptyList(), query("format", new FqName("kotlin.Int")));
+        assertTrue(!query("format", null).contains("com.example.model.formatted"));
+    }
+
+    @Test
+    public void testUpdatedPackageReplacesItsSymbols() {
+        declare(UTIL, function("com.example.util.formatDate"),
+                function("com.example.util.formatNumber"));
+        mIndex.updatePackages(Collections.singleton(UTIL), this::symbolsOf);
+
+        assertEquals(Arrays.asList("com.example.util.formatDate", "com.example.util.formatNumber"),
+                query("format", null));
+        assertEquals(Collections.emptyList(), query("parse", null));
+        // the other packages are kept
+        assertEquals(Collections.singletonList("com.example.model.Format"), query("F", null));
+    }
+
+    @Test
+    public void testNewPackageIsAdded() {
+        FqName added = new FqName("com.example.added");
+        declare(added, function("com.example.added.parseAll"));
+        mIndex.updatePackages(Collections.singleton(added), this::symbolsOf);
+
+        // sorted by the short name
+        assertEquals(Arrays.asList("com.example.util.parse", "com.example.added.parseAll"),
+                query("parse", null));
+    }
+
+    @Test
+    public void testSymbolsOfMovedFileAreRemovedFromOldPackage() {
+        // the file declaring parse moved from util to model
+        declare(UTIL, function("com.example.util.formatDate"),
+                function("com.example.util.formatTime"));
+        declare(MODEL, type("com.example.model.Format"),
+                extension("com.example.model.formatted", STRING),
+                function("com.example.model.parse"));
+        mIndex.updatePackages(Arrays.asList(MODEL, UTIL), this::symbolsOf);
+
+        assertEquals(Collections.singletonList("com.example.model.parse"), query("parse", null));
+    }
+
+    @Test
+    public void testRemovedPackage() {
+        mPackages.remove(UTIL);
+        mIndex.updatePackages(Collections.singleton(UTIL), this::symbolsOf);
+
+        assertEquals(Collections.emptyList(), query("format", null));
+        assertEquals(2, query("", null).size() + query("", STRING).size());
+    }
+
+    @Test
+    public void testRefreshReplacesTheIndex() {
+        Map<FqName, List<Symbol>> packages = new HashMap<>();
+        packages.put(MODEL, Collections.singletonList(type("com.example.model.Parser")));
+        mIndex.refresh(packages.keySet(), packages::get);
+
+        assertEquals(Collections.singletonList("com.example.model.Parser"), query("", null));
+    }
+}
@@ -1,29 +1,57 @@
 package com.tyron.layoutpreview;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import com.flipkart.android.proteus.ProteusContext;
 import com.flipkart.android.proteus.value.DrawableValue;
 import com.flipkart.android.proteus.value.Layout;
 import com.flipkart.android.proteus.value.Value;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.FileManager;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
 import com.tyron.layoutpreview.resource.ResourceDrawableParser;
 import com.tyron.layoutpreview.resource.ResourceLayoutParser;
 import com.tyron.layoutpreview.resource.ResourceStringParser;
+import com.tyron.layoutpreview.resource.StampedFileCache;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * Provides the layouts and drawables of a module and its libraries to the layout preview.
+ *
+ * <p>{@link #getLayout(String)} and {@link #getDrawable(String)} only parse the file of the
+ * requested resource, and keep the result until the file is modified, so that showing a
+ * layout does not parse the resources it does not use. The resources of the module take
+ * precedence over the resources of its libraries.
+ */
 public class ResourceManager {
 
+    private static final String[] DRAWABLE_EXTENSIONS = {".xml", ".png", ".jpg", ".jpeg"};
+
     private final AndroidModule mAndroidModule;
     private final ProteusContext mContext;
     private final FileManager mFileManager;
+    private final XmlToLayoutConverter mLayoutConverter;
+
+    private final StampedFileCache<Layout> mLayoutCache = new StampedFileCache<>();
+    private final StampedFileCache<DrawableValue> mDrawableCache = new StampedFileCache<>();
+    private List<File> mResourceDirectories;
 
     public ResourceManager(ProteusContext context, AndroidModule module, FileManager fileManager) {
+        this(context, module, fileManager, new XmlToLayoutConverter(context));
+    }
+
+    public ResourceManager(ProteusContext context, AndroidModule module, FileManager fileManager,
+                           XmlToLayoutConverter layoutConverter) {
         mAndroidModule = module;
         mContext = context;
         mFileManager = fileManager;
+        mLayoutConverter = layoutConverter;
     }
 
     /**
@@ -56,8 +84,69 @@ public class ResourceManager {
     }
 
     public Map<String, Layout> getLayouts() {
-        ResourceLayoutParser parser = new ResourceLayoutParser(mContext, mAndroidModule.getAndroidResourcesDirectory(), mFileManager);
+        ResourceLayoutParser parser = new ResourceLayoutParser(mContext, mAndroidModule.getAndroidResourcesDirectory(),
+                mFileManager, mLayoutConverter);
         return parser.getLayouts();
     }
 
+    /**
+     * @return the layout with the given name, or null if there is none
+     */
+    @Nullable
+    public Layout getLayout(@NonNull String name) {
+        for (File resourceDirectory : getResourceDirectories()) {
+            File file = new File(resourceDirectory, "layout/" + name + ".xml");
+            if (!file.exists()) {
+                continue;
+            }
+            ResourceLayoutParser parser = new ResourceLayoutParser(mContext, resourceDirectory,
+                    mFileManager, mLayoutConverter);
+            Layout layout = mLayoutCache.get(file, mFileManager, parser::parse);
+            if (layout != null) {
+                return layout;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the drawable with the given name, or null if there is none
+     */
+    @Nullable
+    public DrawableValue getDrawable(@NonNull String name) {
+        for (File resourceDirectory : getResourceDirectories()) {
+            for (String extension : DRAWABLE_EXTENSIONS) {
+                File file = new File(resourceDirectory, "drawable/" + name + extension);
+                if (!file.exists()) {
+                    continue;
+                }
+                ResourceDrawableParser parser = new ResourceDrawableParser(mContext,
+                        resourceDirectory, mFileManager);
+                DrawableValue drawable = mDrawableCache.get(file, mFileManager, parser::parse);
+                if (drawable != null) {
+                    return drawable;
+                }
+            }
+        }
+        return null;
+    }
+
+    private synchronized List<File> getResourceDirectories() {
+        if (mResourceDirectories == null) {
+            List<File> directories = new ArrayList<>();
+            directories.add(mAndroidModule.getAndroidResourcesDirectory());
+            for (File library : mAndroidModule.getLibraries()) {
+                File parent = library.getParentFile();
+                if (parent == null) {
+                    continue;
+                }
+                File resourcesDir = new File(parent, "res");
+                if (resourcesDir.exists()) {
+                    directories.add(resourcesDir);
+                }
+            }
+            mResourceDirectories = directories;
+        }
+        return mResourceDirectories;
+    }
 }
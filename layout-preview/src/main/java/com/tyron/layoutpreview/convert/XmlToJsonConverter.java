@@ -2,8 +2,13 @@ package com.tyron.layoutpreview.convert;
 
 import android.util.Pair;
 
+import com.flipkart.android.proteus.ProteusConstants;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
@@ -127,12 +132,34 @@ public class XmlToJsonConverter {
 //                value = value.substring(ID_NEW_PREFIX.length());
 //            }
 
+            if (ProteusConstants.DATA.equals(name)) {
+                json.add(name, toDataElement(value));
+                continue;
+            }
+
             json.addProperty(name, value);
         }
 
         return json;
     }
 
+    /**
+     * The {@code data} of a layout is a JSON object, so an attribute holding one is added as
+     * an object instead of a string. Any other value is kept as a string and rejected when
+     * the layout is read.
+     */
+    static JsonElement toDataElement(String value) {
+        try {
+            JsonElement element = JsonParser.parseString(value);
+            if (element.isJsonObject()) {
+                return element;
+            }
+        } catch (JsonParseException e) {
+            // not a JSON object
+        }
+        return new JsonPrimitive(value);
+    }
+
     /**
      * Advances the given parser to the first START_TAG. Throws ConvertException if no start tag is
      * found.
@@ -0,0 +1,231 @@
+package com.tyron.layoutpreview.convert;
+
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.flipkart.android.proteus.FunctionManager;
+import com.flipkart.android.proteus.ProteusConstants;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.ViewTypeParser;
+import com.flipkart.android.proteus.value.Array;
+import com.flipkart.android.proteus.value.Binding;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.ObjectValue;
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Value;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts layout XML directly to proteus {@link Layout}s while reading the XML, instead of
+ * going through a {@link com.google.gson.JsonObject} with {@link XmlToJsonConverter} and
+ * reading it back with {@link ProteusTypeAdapterFactory}. The result is the same as the JSON
+ * path: attributes known to the parser of a view are precompiled by their processor, so
+ * dimensions, colors and resource references are parsed once here instead of on every
+ * inflation, and unknown attributes are kept in the extras of the layout. The {@code data}
+ * attribute holds a JSON object and becomes the data of the layout, like the {@code data}
+ * key of a JSON layout.
+ *
+ * <p>The values are compiled for the {@link ProteusContext} of this converter, so converted
+ * layouts are cached per converter, keyed by the SHA-1 of the XML contents. Converting the
+ * layouts of a project again only converts the files that have changed.
+ */
+public class XmlToLayoutConverter {
+
+    private static final String CHILDREN = "children";
+    private static final int MAX_CACHED_LAYOUTS = 256;
+
+    private final ProteusContext mContext;
+    private final ProteusTypeAdapterFactory mAdapterFactory;
+    private final Map<String, Value> mCache = Collections.synchronizedMap(
+            new LinkedHashMap<String, Value>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Value> eldest) {
+                    return size() > MAX_CACHED_LAYOUTS;
+                }
+            });
+
+    public XmlToLayoutConverter(@NonNull ProteusContext context) {
+        mContext = context;
+        mAdapterFactory = new ProteusTypeAdapterFactory(context);
+    }
+
+    /**
+     * Converts the given layout XML, returning the cached value if the same contents have
+     * been converted before.
+     *
+     * @param contents The xml string to parse
+     * @return The layout of the root element, or an {@link ObjectValue} if the root element
+     * is not a layout such as a vector drawable
+     * @throws IOException if an error has occurred while reading the string content
+     * @throws XmlPullParserException if the XML content is malformed
+     * @throws ConvertException if the XML has no root element or a {@code data} attribute is
+     * not a JSON object
+     */
+    @NonNull
+    public Value convert(@NonNull String contents) throws IOException, XmlPullParserException, ConvertException {
+        String hash = hash(contents);
+        Value cached = mCache.get(hash);
+        if (cached != null) {
+            return cached;
+        }
+
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(new StringReader(contents));
+        advanceToRootNode(parser);
+
+        Value value = convert(parser);
+        mCache.put(hash, value);
+        return value;
+    }
+
+    /**
+     * Converts the element at the current position of the parser and its children, leaving
+     * the parser at its end tag.
+     */
+    @NonNull
+    public Value convert(@NonNull XmlPullParser parser) throws IOException, XmlPullParserException, ConvertException {
+        String type = parser.getName();
+        if (ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.isLayout(type)) {
+            return convertLayout(type, parser);
+        }
+
+        ObjectValue object = new ObjectValue();
+        object.add(ProteusConstants.TYPE, compileString(type));
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            object.add(parser.getAttributeName(i), compileString(parser.getAttributeValue(i)));
+        }
+        Array children = convertChildren(parser);
+        if (children.size() > 0) {
+            object.add(CHILDREN, children);
+        }
+        return object;
+    }
+
+    private Layout convertLayout(String type, XmlPullParser parser) throws IOException, XmlPullParserException, ConvertException {
+        ViewTypeParser<View> viewParser = mContext.getParser(type);
+        FunctionManager functions = getFunctions();
+        List<Layout.Attribute> attributes = new ArrayList<>();
+        Map<String, Value> data = null;
+        ObjectValue extras = new ObjectValue();
+
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            String name = parser.getAttributeName(i);
+            if (ProteusConstants.DATA.equals(name)) {
+                data = readData(parser, parser.getAttributeValue(i));
+                continue;
+            }
+            addAttribute(viewParser, functions, name,
+                    compileString(parser.getAttributeValue(i)), attributes, extras);
+        }
+        Array children = convertChildren(parser);
+        if (children.size() > 0) {
+            addAttribute(viewParser, functions, CHILDREN, children, attributes, extras);
+        }
+
+        return new Layout(type, attributes.size() > 0 ? attributes : null, data,
+                extras.entrySet().size() > 0 ? extras : null);
+    }
+
+    /**
+     * Reads the value of a {@code data} attribute with the same rules as the {@code data} key
+     * of a JSON layout, so each entry is precompiled and duplicate keys are rejected.
+     */
+    private Map<String, Value> readData(XmlPullParser parser, String value) throws IOException, ConvertException {
+        String json = XmlToJsonConverter.toDataElement(value).toString();
+        try {
+            return mAdapterFactory.LAYOUT_TYPE_ADAPTER.readData(new JsonReader(new StringReader(json)));
+        } catch (JsonParseException e) {
+            throw new ConvertException(parser.getPositionDescription() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void addAttribute(@Nullable ViewTypeParser<View> viewParser, FunctionManager functions,
+                              String name, Value value,
+                              List<Layout.Attribute> attributes, ObjectValue extras) {
+        ViewTypeParser.AttributeSet.Attribute attribute = viewParser != null
+                ? viewParser.getAttributeSet().getAttribute(name)
+                : null;
+        if (attribute != null) {
+            attributes.add(new Layout.Attribute(attribute.id,
+                    attribute.processor.precompile(value, mContext, functions)));
+        } else {
+            extras.add(name, value);
+        }
+    }
+
+    private Array convertChildren(XmlPullParser parser) throws IOException, XmlPullParserException {
+        Array children = new Array();
+        final int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+            children.add(convert(parser));
+        }
+        return children;
+    }
+
+    private Value compileString(String string) {
+        if (Binding.isBindingValue(string)) {
+            return Binding.valueOf(string, mContext, getFunctions());
+        }
+        return new Primitive(string);
+    }
+
+    private FunctionManager getFunctions() {
+        return ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.getProteus().functions;
+    }
+
+    /**
+     * Advances the given parser to the first START_TAG. Throws ConvertException if no start tag is
+     * found.
+     */
+    private static void advanceToRootNode(XmlPullParser parser) throws IOException, XmlPullParserException, ConvertException {
+        int type;
+        while ((type = parser.next()) != XmlPullParser.START_TAG &&
+               type != XmlPullParser.END_DOCUMENT) {
+            // Empty
+        }
+
+        if (type != XmlPullParser.START_TAG) {
+            throw new ConvertException(parser.getPositionDescription()
+                    + ": No start tag found!");
+        }
+    }
+
+    private static String hash(String contents) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] bytes = digest.digest(contents.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has SHA-1, fall back to the contents themselves
+            return contents;
+        }
+    }
+}
@@ -33,7 +33,7 @@ import com.tyron.layout.appcompat.AppCompatModule;
 import com.tyron.layout.cardview.CardViewModule;
 import com.tyron.layout.constraintlayout.ConstraintLayoutModule;
 import com.tyron.layoutpreview.ResourceManager;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
 import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
 import com.tyron.layoutpreview.manager.ResourceDrawableManager;
 import com.tyron.layoutpreview.manager.ResourceLayoutManager;
@@ -54,6 +54,8 @@ public class PreviewLayoutInflater {
     private final Proteus mProteus;
     private final AndroidModule mProject;
     private ProteusContext mContext;
+    private final XmlToLayoutConverter mLayoutConverter;
+    private final ResourceManager mResourceManager;
 
     private final ProteusLayoutInflater.Callback mCallback = new ProteusLayoutInflater.Callback() {
         @Override
@@ -159,27 +161,25 @@ public class PreviewLayoutInflater {
                 .build();
         mContext.setParserFactory(new MaterialParserFactory(mContext));
         ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.setProteus(mProteus);
+        mLayoutConverter = new XmlToLayoutConverter(mContext);
+        mResourceManager = new ResourceManager(mContext, project, project.getFileManager(),
+                mLayoutConverter);
 
         mParser.setProteusContext(mContext);
     }
 
     public CompletableFuture<PreviewLayoutInflater> parseResources(Executor executor) {
         return CompletableFuture.supplyAsync(() -> {
-            ResourceManager resourceManager = new ResourceManager(mContext,
-                    mProject, mProject.getFileManager());
-            mDrawableManager.setDrawables(resourceManager.getDrawables());
-            mLayoutManager.setLayouts(resourceManager.getLayouts());
-
+            // layouts and drawables are parsed when the inflater first asks for them
+            mDrawableManager.setResourceManager(mResourceManager);
+            mLayoutManager.setResourceManager(mResourceManager);
 
             mParser.parse(mProject);
 
             File sources = extractAndGetAndroidXml();
             File valuesFile = new File(sources, "android-31/data/res/values");
             if (valuesFile.exists()) {
-                File[] children = valuesFile.listFiles(c -> c.getName().endsWith(".xml"));
-                if (children != null) {
-                    mParser.parse(children, "android");
-                }
+                mParser.parseFramework(valuesFile);
             }
 
             try {
@@ -218,13 +218,16 @@ public class PreviewLayoutInflater {
 
     @Deprecated
     public ProteusView inflate(String xml) throws InflateException {
+        Value value;
         try {
-            JsonObject object = new XmlToJsonConverter()
-                    .convert(xml);
-            return inflate(object);
+            value = mLayoutConverter.convert(xml);
         } catch (Exception e) {
             throw new InflateException("Unable to inflate layout: " + e.getMessage());
         }
+        if (!value.isLayout()) {
+            throw new InflateException("Unable to inflate layout: the root element is not a view");
+        }
+        return inflate(value.getAsLayout());
     }
 
     /**
@@ -1,9 +1,11 @@
 package com.tyron.layoutpreview.manager;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.flipkart.android.proteus.DrawableManager;
 import com.flipkart.android.proteus.value.DrawableValue;
+import com.tyron.layoutpreview.ResourceManager;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -11,13 +13,32 @@ import java.util.Map;
 public class ResourceDrawableManager extends DrawableManager {
 
     private final Map<String, DrawableValue> mDrawables = new HashMap<>();
+    private ResourceManager mResourceManager;
 
     public void setDrawables(@NonNull Map<String, DrawableValue> map) {
         mDrawables.clear();
         mDrawables.putAll(map);
     }
+
+    /**
+     * Drawables which were not set with {@link #setDrawables(Map)} are parsed when they are
+     * first requested from the given resource manager.
+     */
+    public void setResourceManager(@Nullable ResourceManager resourceManager) {
+        mResourceManager = resourceManager;
+    }
+
     @Override
     protected Map<String, DrawableValue> getDrawables() {
         return mDrawables;
     }
+
+    @Override
+    public DrawableValue get(String name) {
+        DrawableValue drawable = mDrawables.get(name);
+        if (drawable == null && mResourceManager != null) {
+            drawable = mResourceManager.getDrawable(name);
+        }
+        return drawable;
+    }
 }
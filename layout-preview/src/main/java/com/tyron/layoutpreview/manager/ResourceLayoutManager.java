@@ -1,9 +1,11 @@
 package com.tyron.layoutpreview.manager;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.flipkart.android.proteus.LayoutManager;
 import com.flipkart.android.proteus.value.Layout;
+import com.tyron.layoutpreview.ResourceManager;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -11,6 +13,7 @@ import java.util.Map;
 public class ResourceLayoutManager extends LayoutManager {
 
     private final Map<String, Layout> mLayouts = new HashMap<>();
+    private ResourceManager mResourceManager;
 
     @Nullable
     @Override
@@ -22,4 +25,22 @@ public class ResourceLayoutManager extends LayoutManager {
         mLayouts.clear();
         mLayouts.putAll(map);
     }
+
+    /**
+     * Layouts which were not set with {@link #setLayouts(Map)} are parsed when they are
+     * first requested from the given resource manager.
+     */
+    public void setResourceManager(@Nullable ResourceManager resourceManager) {
+        mResourceManager = resourceManager;
+    }
+
+    @Nullable
+    @Override
+    public Layout get(@NonNull String name) {
+        Layout layout = mLayouts.get(name);
+        if (layout == null && mResourceManager != null) {
+            layout = mResourceManager.getLayout(name);
+        }
+        return layout;
+    }
 }
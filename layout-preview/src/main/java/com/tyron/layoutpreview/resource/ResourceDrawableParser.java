@@ -28,13 +28,11 @@ public class ResourceDrawableParser {
     private final ProteusContext mContext;
     private final File mResourceDirectory;
     private final FileManager mFileManager;
-    private final Map<String, DrawableValue> drawableValueMap = new HashMap<>();
 
     public ResourceDrawableParser(ProteusContext context, File dir, FileManager fileManager) {
         mContext = context;
         mResourceDirectory = dir;
         mFileManager = fileManager;
-        drawableValueMap.putAll(getDefaultDrawables());
     }
 
     public Map<String, DrawableValue> getDefaultDrawables() {
@@ -46,21 +44,7 @@ public class ResourceDrawableParser {
         }
 
         for (File file : xmlFiles) {
-            DrawableValue value = null;
-
-            if (isImageFile(file)) {
-                value = parseFile(file);
-            } else if (file.getName().endsWith(".xml")) {
-                try {
-                    value = parseXml(file);
-                    if (value != null) {
-                        map.put(getName(file), value);
-                    }
-                } catch (IOException | ConvertException | XmlPullParserException ignore) {
-
-                }
-            }
-
+            DrawableValue value = parse(file);
             if (value != null) {
                 map.put(getName(file), value);
             }
@@ -69,6 +53,26 @@ public class ResourceDrawableParser {
         return map;
     }
 
+    /**
+     * Parses a single drawable file, either an image or an XML drawable.
+     *
+     * @return the drawable, or null if the file is not a drawable or cannot be parsed
+     */
+    @Nullable
+    public DrawableValue parse(File file) {
+        if (isImageFile(file)) {
+            return parseFile(file);
+        }
+        if (file.getName().endsWith(".xml")) {
+            try {
+                return parseXml(file);
+            } catch (IOException | ConvertException | XmlPullParserException ignore) {
+
+            }
+        }
+        return null;
+    }
+
     private DrawableValue parseFile(File file) {
         try {
             return DrawableValue.valueOf(file);
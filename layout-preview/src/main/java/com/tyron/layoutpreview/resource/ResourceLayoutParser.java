@@ -7,19 +7,15 @@ import androidx.annotation.Nullable;
 import com.flipkart.android.proteus.ProteusContext;
 import com.flipkart.android.proteus.value.Layout;
 import com.flipkart.android.proteus.value.Value;
-import com.google.gson.JsonObject;
-import com.google.gson.stream.JsonReader;
 import com.tyron.builder.project.api.FileManager;
 import com.tyron.layoutpreview.BuildConfig;
 import com.tyron.layoutpreview.convert.ConvertException;
-import com.tyron.layoutpreview.convert.XmlToJsonConverter;
-import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
 
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringReader;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,18 +27,30 @@ public class ResourceLayoutParser {
     private final ProteusContext mContext;
     private final File mResourceDirectory;
     private final FileManager mFileManager;
+    private final XmlToLayoutConverter mConverter;
 
-    private final Map<String, Layout> layoutMap = new HashMap<>();
+    private Map<String, Layout> layoutMap;
 
     public ResourceLayoutParser(ProteusContext context, File dir, FileManager fileManager) {
+        this(context, dir, fileManager, new XmlToLayoutConverter(context));
+    }
+
+    /**
+     * @param converter the converter to use, layouts that it has already converted are
+     *                  not parsed again
+     */
+    public ResourceLayoutParser(ProteusContext context, File dir, FileManager fileManager,
+                                XmlToLayoutConverter converter) {
         mContext = context;
         mResourceDirectory = dir;
         mFileManager = fileManager;
-
-        layoutMap.putAll(getDefaultLayouts());
+        mConverter = converter;
     }
 
-    public Map<String, Layout> getLayouts() {
+    public synchronized Map<String, Layout> getLayouts() {
+        if (layoutMap == null) {
+            layoutMap = getDefaultLayouts();
+        }
         return layoutMap;
     }
 
@@ -56,30 +64,40 @@ public class ResourceLayoutParser {
         Map<String, Layout> map = new HashMap<>();
 
         for (File file : xmlFiles) {
-            try {
-                Value layout = parseLayout(file);
-                if (layout != null && layout.isLayout()) {
-                    map.put(getName(file), layout.getAsLayout());
-                }
-            } catch (IOException | XmlPullParserException | ConvertException e) {
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "Unable to parse file: " + file.getName(), e);
-                }
+            Layout layout = parse(file);
+            if (layout != null) {
+                map.put(getName(file), layout);
             }
         }
 
         return map;
     }
 
+    /**
+     * Parses a single layout file.
+     *
+     * @return the layout, or null if the file cannot be parsed or its root is not a view
+     */
+    @Nullable
+    public Layout parse(File file) {
+        try {
+            Value layout = parseLayout(file);
+            if (layout != null && layout.isLayout()) {
+                return layout.getAsLayout();
+            }
+        } catch (IOException | XmlPullParserException | ConvertException e) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Unable to parse file: " + file.getName(), e);
+            }
+        }
+        return null;
+    }
+
     @Nullable
     private Value parseLayout(File file) throws ConvertException, XmlPullParserException, IOException {
         Optional<CharSequence> fileContent = mFileManager.getFileContent(file);
         if (fileContent.isPresent()) {
-            String contents = fileContent.get().toString();
-            JsonObject jsonObject = new XmlToJsonConverter()
-                    .convert(contents);
-            return new ProteusTypeAdapterFactory(mContext).VALUE_TYPE_ADAPTER
-                    .read(new JsonReader(new StringReader(jsonObject.toString())), false);
+            return mConverter.convert(fileContent.get().toString());
         }
         return null;
     }
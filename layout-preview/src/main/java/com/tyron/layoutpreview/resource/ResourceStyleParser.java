@@ -71,11 +71,18 @@ public class ResourceStyleParser {
         }
 
         String text = XmlUtils.readText(parser);
+        style.addValue(name, getItemValue(text));
+        parser.require(XmlPullParser.END_TAG, null, "item");
+    }
+
+    /**
+     * @return the value of a style item with the given text
+     */
+    public static String getItemValue(String text) {
         if (text.contains("@")) {
             text = text.substring(text.indexOf("@"));
         }
-        style.addValue(name, text.trim());
-        parser.require(XmlPullParser.END_TAG, null, "item");
+        return text.trim();
     }
 
 }
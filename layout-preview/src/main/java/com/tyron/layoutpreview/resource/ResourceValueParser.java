@@ -2,7 +2,6 @@ package com.tyron.layoutpreview.resource;
 
 import android.content.res.ColorStateList;
 import android.util.Log;
-import android.util.Pair;
 import android.util.SparseIntArray;
 
 import androidx.annotation.NonNull;
@@ -32,14 +31,20 @@ import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -48,8 +53,19 @@ import java.util.Set;
 
 public class ResourceValueParser {
 
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
     private static final Set<String> sSupportedDirs = new HashSet<>();
 
+    /**
+     * The values of each values file, shared by all the previews since they do not depend
+     * on the proteus context.
+     */
+    private static final StampedFileCache<ResourceValues> sValuesCache = new StampedFileCache<>();
+    private static ResourceValues sFrameworkValues;
+    private static File sFrameworkValuesDir;
+    private static long sFrameworkValuesStamp;
+
     static {
         sSupportedDirs.add("layout");
         sSupportedDirs.add("color");
@@ -166,12 +182,19 @@ public class ResourceValueParser {
         parse(children, "");
     }
 
+    /**
+     * Adds the values of the file, which are only parsed again if the file has changed since
+     * it was last parsed.
+     */
     public void parse(File file, String namePrefix) throws IOException, XmlPullParserException {
-        parse(new InputStreamReader(new FileInputStream(file)), namePrefix);
+        ResourceValues values = sValuesCache.get(file, null, ResourceValueParser::parseValues);
+        if (values != null) {
+            values.addTo(this, normalizePrefix(namePrefix));
+        }
     }
 
     public void parse(File file) throws IOException, XmlPullParserException {
-        parse(new InputStreamReader(new FileInputStream(file)), "");
+        parse(file, "");
     }
 
     public void parse(String contents) throws IOException, XmlPullParserException {
@@ -179,49 +202,120 @@ public class ResourceValueParser {
     }
 
     public void parse(Reader reader, String namePrefix) throws IOException, XmlPullParserException {
-        if (!namePrefix.isEmpty() && !namePrefix.endsWith(":")) {
-            namePrefix = namePrefix + ":";
-        }
-        XmlPullParser parser;
+        ResourceValues.parse(reader).addTo(this, normalizePrefix(namePrefix));
+    }
 
-        parser = XmlPullParserFactory.newInstance().newPullParser();
-        parser.setInput(reader);
+    /**
+     * Adds the values of the framework, read from a snapshot next to the given values
+     * directory. The snapshot is created from the XML files of the directory the first time,
+     * and again when the names, modification times or lengths of the files change, such as
+     * when the framework sources are extracted from the assets again.
+     *
+     * @param valuesDir the {@code values} directory of the framework resources
+     */
+    public void parseFramework(@NonNull File valuesDir) {
+        ResourceValues values = getFrameworkValues(valuesDir);
+        if (values != null) {
+            values.addTo(this, normalizePrefix("android"));
+        }
+    }
 
-        XmlUtils.advanceToRootNode(parser);
+    @Nullable
+    private static synchronized ResourceValues getFrameworkValues(File valuesDir) {
+        File[] children = valuesDir.listFiles(c -> c.getName().endsWith(".xml"));
+        if (children == null) {
+            return null;
+        }
+        // the order of the listed files is unspecified
+        Arrays.sort(children);
+        long stamp = getStamp(children);
+        if (sFrameworkValues != null && valuesDir.equals(sFrameworkValuesDir) &&
+            stamp == sFrameworkValuesStamp) {
+            return sFrameworkValues;
+        }
 
-        while (parser.next() != XmlPullParser.END_DOCUMENT) {
-            if (parser.getEventType() != XmlPullParser.START_TAG) {
-                continue;
+        File snapshot = new File(valuesDir.getParentFile(), valuesDir.getName() + SNAPSHOT_EXTENSION);
+        ResourceValues values = readSnapshot(snapshot, stamp);
+        if (values == null) {
+            List<ResourceValues> parsed = new ArrayList<>();
+            for (File child : children) {
+                try {
+                    parsed.add(parseValues(child));
+                } catch (XmlPullParserException | IOException e) {
+                    Log.e("ResourceValueParser", "Unable to parse " + child, e);
+                }
             }
+            values = ResourceValues.merge(parsed);
+            writeSnapshot(snapshot, stamp, values);
+        }
+        sFrameworkValues = values;
+        sFrameworkValuesDir = valuesDir;
+        sFrameworkValuesStamp = stamp;
+        return values;
+    }
 
-            try {
-                String tag = parser.getName();
-                switch (tag) {
-                    case "string":
-                        parseStringTag(parser, namePrefix);
-                        break;
-                    case "item":
-                        parseItemTag(parser, namePrefix);
-                        break;
-                    case "style":
-                        parseStyleTag(parser, namePrefix);
-                        break;
-                    case "color":
-                        parseColorTag(parser, namePrefix);
-                        break;
-                    case "dimen":
-                        parseDimension(parser, namePrefix);
-                        break;
-                    default:
-                        XmlUtils.skip(parser);
-                }
+    private static long getStamp(File[] files) {
+        long stamp = files.length;
+        for (File file : files) {
+            stamp = 31 * stamp + file.getName().hashCode();
+            stamp = 31 * stamp + file.lastModified();
+            stamp = 31 * stamp + file.length();
+        }
+        return stamp;
+    }
 
-            } catch (XmlPullParserException | IOException e) {
-                System.out.println(e);
+    /**
+     * @return the values of the snapshot, or null if it does not exist or was created from
+     * files with a different stamp
+     */
+    @Nullable
+    private static ResourceValues readSnapshot(File snapshot, long stamp) {
+        if (!snapshot.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(snapshot)))) {
+            if (input.readLong() != stamp) {
+                return null;
             }
+            return ResourceValues.read(input);
+        } catch (IOException e) {
+            Log.w("ResourceValueParser", "Unable to read " + snapshot, e);
+            return null;
+        }
+    }
+
+    private static void writeSnapshot(File snapshot, long stamp, ResourceValues values) {
+        File temp = new File(snapshot.getPath() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeLong(stamp);
+            values.write(output);
+        } catch (IOException e) {
+            Log.w("ResourceValueParser", "Unable to write " + snapshot, e);
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(snapshot)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
         }
     }
 
+    private static ResourceValues parseValues(File file) throws IOException, XmlPullParserException {
+        try (Reader reader = new InputStreamReader(new FileInputStream(file))) {
+            return ResourceValues.parse(reader);
+        }
+    }
+
+    private static String normalizePrefix(String namePrefix) {
+        if (!namePrefix.isEmpty() && !namePrefix.endsWith(":")) {
+            return namePrefix + ":";
+        }
+        return namePrefix;
+    }
+
     private void parseColor(File[] children, String namePrefix) {
         for (File child : children) {
             try {
@@ -285,41 +379,29 @@ public class ResourceValueParser {
         }
     }
 
-    private void parseDimension(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceDimensionParser.parseDimension(parser);
-        mDimensions.put(namePrefix + pair.first, pair.second);
+    void addDimension(String namePrefix, String name, Value value) {
+        mDimensions.put(namePrefix + name, value);
     }
 
-    private void parseStyleTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Style> pair = ResourceStyleParser.parseStyleTag(parser);
-        if (!mStyles.containsKey(pair.first)) {
-            mStyles.put(namePrefix + pair.first, pair.second);
+    void addStyle(String namePrefix, String name, Style style) {
+        if (!mStyles.containsKey(name)) {
+            mStyles.put(namePrefix + name, style);
         }
     }
 
-    private void parseStringTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceStringParser.parseStringXmlInternal(parser);
-        if (!mStrings.containsKey(pair.first)) {
-            mStrings.put(namePrefix + pair.first, pair.second);
+    void addString(String namePrefix, String name, Value value) {
+        if (!mStrings.containsKey(name)) {
+            mStrings.put(namePrefix + name, value);
         }
     }
 
-    private void parseColorTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceColorParser.parseColor(parser);
-        if (!mColors.containsKey(pair.first)) {
-            mColors.put(namePrefix + pair.first, pair.second);
+    void addColor(String namePrefix, String name, Value value) {
+        if (!mColors.containsKey(name)) {
+            mColors.put(namePrefix + name, value);
         }
     }
 
-    private void parseItemTag(XmlPullParser parser, String namePrefix) throws IOException,
-            XmlPullParserException {
-        Pair<String, Value> pair = ResourceStringParser.parseItemString(parser);
-        if (pair != null) {
-            mStrings.put(namePrefix + pair.first, pair.second);
-        }
+    void addItem(String namePrefix, String name, Value value) {
+        mStrings.put(namePrefix + name, value);
     }
 }
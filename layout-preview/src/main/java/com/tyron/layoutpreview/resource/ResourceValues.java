@@ -0,0 +1,272 @@
+package com.tyron.layoutpreview.resource;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.layoutpreview.util.XmlUtils;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The strings, styles, colors and dimensions declared in values XML files. The text of each
+ * entry is kept so that the values can be written to a snapshot and read back without
+ * parsing the XML again. The proteus values are created once, when first added to a
+ * {@link ResourceValueParser}, and shared afterwards.
+ */
+public class ResourceValues {
+
+    private static final String TAG = ResourceValues.class.getSimpleName();
+
+    private static final int VERSION = 1;
+
+    private static final byte STRING = 0;
+    private static final byte ITEM = 1;
+    private static final byte STYLE = 2;
+    private static final byte COLOR = 3;
+    private static final byte DIMEN = 4;
+
+    private final List<Entry> mEntries;
+
+    private ResourceValues(List<Entry> entries) {
+        mEntries = entries;
+    }
+
+    public static ResourceValues parse(@NonNull Reader reader) throws IOException, XmlPullParserException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(reader);
+        XmlUtils.advanceToRootNode(parser);
+
+        List<Entry> entries = new ArrayList<>();
+        while (parser.next() != XmlPullParser.END_DOCUMENT) {
+            if (parser.getEventType() != XmlPullParser.START_TAG) {
+                continue;
+            }
+
+            try {
+                Entry entry;
+                switch (parser.getName()) {
+                    case "string":
+                        entry = parseText(parser, STRING);
+                        break;
+                    case "item":
+                        entry = getAttribute(parser, "type") != null
+                                ? parseText(parser, ITEM)
+                                : null;
+                        if (entry == null) {
+                            XmlUtils.skip(parser);
+                        }
+                        break;
+                    case "style":
+                        entry = parseStyle(parser);
+                        break;
+                    case "color":
+                        entry = parseText(parser, COLOR);
+                        break;
+                    case "dimen":
+                        entry = parseText(parser, DIMEN);
+                        break;
+                    default:
+                        entry = null;
+                        XmlUtils.skip(parser);
+                }
+                if (entry != null && entry.mName != null) {
+                    entries.add(entry);
+                }
+            } catch (XmlPullParserException | IOException e) {
+                Log.d(TAG, "Unable to parse tag " + parser.getName(), e);
+            }
+        }
+        return new ResourceValues(entries);
+    }
+
+    private static Entry parseText(XmlPullParser parser, byte kind) throws IOException, XmlPullParserException {
+        String tag = parser.getName();
+        String name = getAttribute(parser, "name");
+        String text = XmlUtils.readText(parser);
+        parser.require(XmlPullParser.END_TAG, null, tag);
+        return new Entry(kind, name, text, null, Collections.emptyList());
+    }
+
+    private static Entry parseStyle(XmlPullParser parser) throws IOException, XmlPullParserException {
+        String name = getAttribute(parser, "name");
+        String parent = getAttribute(parser, "parent");
+        List<String> items = new ArrayList<>();
+
+        final int depth = parser.getDepth();
+        int type;
+        while (((type = parser.next()) != XmlPullParser.END_TAG ||
+                parser.getDepth() > depth) && type != XmlPullParser.END_DOCUMENT) {
+            if (type != XmlPullParser.START_TAG) {
+                continue;
+            }
+            if ("item".equals(parser.getName())) {
+                String itemName = getAttribute(parser, "name");
+                String text = XmlUtils.readText(parser);
+                parser.require(XmlPullParser.END_TAG, null, "item");
+                items.add(itemName);
+                items.add(ResourceStyleParser.getItemValue(text));
+            } else {
+                XmlUtils.skip(parser);
+            }
+        }
+        parser.require(XmlPullParser.END_TAG, null, "style");
+        return new Entry(STYLE, name, null, parent, items);
+    }
+
+    private static String getAttribute(XmlPullParser parser, String name) {
+        String value = null;
+        for (int i = 0; i < parser.getAttributeCount(); i++) {
+            if (name.equals(parser.getAttributeName(i))) {
+                value = parser.getAttributeValue(i);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Combines the values of several files, in order, into one.
+     */
+    public static ResourceValues merge(@NonNull List<ResourceValues> values) {
+        List<Entry> entries = new ArrayList<>();
+        for (ResourceValues value : values) {
+            entries.addAll(value.mEntries);
+        }
+        return new ResourceValues(entries);
+    }
+
+    /**
+     * Adds the values to the given parser, in the order they were declared.
+     *
+     * @param namePrefix the prefix of the names, such as {@code android:}
+     */
+    void addTo(ResourceValueParser parser, String namePrefix) {
+        for (Entry entry : mEntries) {
+            switch (entry.mKind) {
+                case STRING:
+                    parser.addString(namePrefix, entry.mName, entry.getValue());
+                    break;
+                case ITEM:
+                    parser.addItem(namePrefix, entry.mName, entry.getValue());
+                    break;
+                case STYLE:
+                    parser.addStyle(namePrefix, entry.mName, (Style) entry.getValue());
+                    break;
+                case COLOR:
+                    parser.addColor(namePrefix, entry.mName, entry.getValue());
+                    break;
+                case DIMEN:
+                    parser.addDimension(namePrefix, entry.mName, entry.getValue());
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the values written with {@link #write(DataOutputStream)}, or null if they were
+     * written by another version
+     */
+    public static ResourceValues read(@NonNull DataInputStream input) throws IOException {
+        if (input.readInt() != VERSION) {
+            return null;
+        }
+        int count = input.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = input.readByte();
+            String name = input.readUTF();
+            String text = readNullable(input);
+            String parent = readNullable(input);
+            int itemCount = input.readInt();
+            List<String> items = new ArrayList<>(itemCount);
+            for (int j = 0; j < itemCount; j++) {
+                items.add(readNullable(input));
+            }
+            entries.add(new Entry(kind, name, text, parent, items));
+        }
+        return new ResourceValues(entries);
+    }
+
+    public void write(@NonNull DataOutputStream output) throws IOException {
+        output.writeInt(VERSION);
+        output.writeInt(mEntries.size());
+        for (Entry entry : mEntries) {
+            output.writeByte(entry.mKind);
+            output.writeUTF(entry.mName);
+            writeNullable(output, entry.mText);
+            writeNullable(output, entry.mParent);
+            output.writeInt(entry.mItems.size());
+            for (String item : entry.mItems) {
+                writeNullable(output, item);
+            }
+        }
+    }
+
+    private static String readNullable(DataInputStream input) throws IOException {
+        return input.readBoolean() ? input.readUTF() : null;
+    }
+
+    private static void writeNullable(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    private static class Entry {
+        private final byte mKind;
+        private final String mName;
+        private final String mText;
+        private final String mParent;
+        /**
+         * The names and values of the items of a style, one after the other.
+         */
+        private final List<String> mItems;
+        private volatile Value mValue;
+
+        Entry(byte kind, String name, String text, String parent, List<String> items) {
+            mKind = kind;
+            mName = name;
+            mText = text;
+            mParent = parent;
+            mItems = items;
+        }
+
+        Value getValue() {
+            Value value = mValue;
+            if (value == null) {
+                value = createValue();
+                mValue = value;
+            }
+            return value;
+        }
+
+        private Value createValue() {
+            switch (mKind) {
+                case STYLE:
+                    Style style = new Style(mName, mParent);
+                    for (int i = 0; i + 1 < mItems.size(); i += 2) {
+                        style.addValue(mItems.get(i), mItems.get(i + 1));
+                    }
+                    return style;
+                case COLOR:
+                    return ResourceColorParser.valueOf(mText);
+                default:
+                    return new Primitive(mText);
+            }
+        }
+    }
+}
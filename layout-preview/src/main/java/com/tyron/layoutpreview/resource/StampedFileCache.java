@@ -0,0 +1,83 @@
+package com.tyron.layoutpreview.resource;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.builder.project.api.FileManager;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the value parsed from each file until the file changes. A file is considered changed
+ * when its modification time or length on disk is different, or for files opened in the
+ * editor, when the time of their last edit is different.
+ *
+ * @param <V> the type of the parsed values
+ */
+public class StampedFileCache<V> {
+
+    private static final String TAG = StampedFileCache.class.getSimpleName();
+
+    public interface Loader<V> {
+        @Nullable
+        V load(@NonNull File file) throws Exception;
+    }
+
+    private final Map<File, Entry<V>> mEntries = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the value of the file, loading it if the file has changed since it was last
+     * loaded. Files that fail to load are cached as null until they change.
+     *
+     * @param fileManager the file manager of the project, used for the files opened in the
+     *                    editor, or null to only check the files on disk
+     */
+    @Nullable
+    public V get(@NonNull File file, @Nullable FileManager fileManager, @NonNull Loader<V> loader) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        if (fileManager != null && fileManager.isOpened(file)) {
+            Instant edited = fileManager.getLastModified(file);
+            if (edited != null) {
+                lastModified = edited.toEpochMilli();
+                length = -1;
+            }
+        }
+
+        Entry<V> entry = mEntries.get(file);
+        if (entry != null && entry.mLastModified == lastModified && entry.mLength == length) {
+            return entry.mValue;
+        }
+
+        V value;
+        try {
+            value = loader.load(file);
+        } catch (Exception e) {
+            Log.w(TAG, "Unable to load " + file, e);
+            value = null;
+        }
+        mEntries.put(file, new Entry<>(lastModified, length, value));
+        return value;
+    }
+
+    public void clear() {
+        mEntries.clear();
+    }
+
+    private static class Entry<V> {
+        private final long mLastModified;
+        private final long mLength;
+        private final V mValue;
+
+        Entry(long lastModified, long length, V value) {
+            mLastModified = lastModified;
+            mLength = length;
+            mValue = value;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.tyron.layoutpreview;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.NonNull;
+
+import com.flipkart.android.proteus.value.DrawableValue;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.Primitive;
+import com.flipkart.android.proteus.value.Value;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+import com.tyron.layoutpreview.convert.XmlToLayoutConverter;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class ResourceManagerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger mConversions = new AtomicInteger();
+    private File mModuleResources;
+    private File mLibraryResources;
+    private ResourceManager mResourceManager;
+
+    @Before
+    public void setup() throws IOException {
+        mModuleResources = folder.newFolder("app", "src", "main", "res");
+        File library = folder.newFolder("library");
+        mLibraryResources = new File(library, "res");
+        assertThat(mLibraryResources.mkdirs()).isTrue();
+
+        MockFileManager fileManager = new MockFileManager(null);
+        MockAndroidModule module = new MockAndroidModule(folder.getRoot(), fileManager);
+        module.setAndroidResourcesDirectory(mModuleResources);
+        module.addLibrary(new File(library, "classes.jar"));
+
+        // the type of the layout is the contents of its file, unless it is not a layout
+        XmlToLayoutConverter converter = new XmlToLayoutConverter(null) {
+            @NonNull
+            @Override
+            public Value convert(@NonNull String contents) {
+                mConversions.incrementAndGet();
+                String type = contents.trim();
+                return type.equals("not a layout") ? new Primitive(type) : new Layout(type);
+            }
+        };
+        mResourceManager = new ResourceManager(null, module, fileManager, converter);
+    }
+
+    private static File write(File resources, String path, String contents) throws IOException {
+        File file = new File(resources, path);
+        //noinspection ResultOfMethodCallIgnored
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testLayoutOfModuleTakesPrecedence() throws IOException {
+        write(mModuleResources, "layout/activity_main.xml", "module");
+        write(mLibraryResources, "layout/activity_main.xml", "library");
+
+        assertThat(mResourceManager.getLayout("activity_main").type).isEqualTo("module");
+    }
+
+    @Test
+    public void testLayoutOfLibrary() throws IOException {
+        write(mModuleResources, "layout/activity_main.xml", "module");
+        write(mLibraryResources, "layout/library_item.xml", "library");
+
+        assertThat(mResourceManager.getLayout("library_item").type).isEqualTo("library");
+        assertThat(mResourceManager.getLayout("missing")).isNull();
+    }
+
+    @Test
+    public void testLayoutOfLibraryIsUsedWhenModuleLayoutIsInvalid() throws IOException {
+        write(mModuleResources, "layout/activity_main.xml", "not a layout");
+        write(mLibraryResources, "layout/activity_main.xml", "library");
+
+        assertThat(mResourceManager.getLayout("activity_main").type).isEqualTo("library");
+    }
+
+    @Test
+    public void testLayoutIsParsedAgainWhenModified() throws IOException {
+        File file = write(mModuleResources, "layout/activity_main.xml", "module");
+        Layout layout = mResourceManager.getLayout("activity_main");
+        assertThat(mResourceManager.getLayout("activity_main")).isSameInstanceAs(layout);
+        assertThat(mConversions.get()).isEqualTo(1);
+
+        write(mModuleResources, "layout/activity_main.xml", "edited");
+        assertThat(file.setLastModified(file.lastModified() + 2000)).isTrue();
+        assertThat(mResourceManager.getLayout("activity_main").type).isEqualTo("edited");
+        assertThat(mConversions.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testDrawableOfModuleTakesPrecedence() throws IOException {
+        File moduleIcon = write(mModuleResources, "drawable/icon.png", "module");
+        write(mLibraryResources, "drawable/icon.png", "library");
+
+        DrawableValue module = mResourceManager.getDrawable("icon");
+        assertThat(module).isNotNull();
+        assertThat(mResourceManager.getDrawable("icon")).isSameInstanceAs(module);
+
+        // without the drawable of the module the one of the library is found
+        assertThat(moduleIcon.delete()).isTrue();
+        DrawableValue library = mResourceManager.getDrawable("icon");
+        assertThat(library).isNotNull();
+        assertThat(library).isNotSameInstanceAs(module);
+    }
+
+    @Test
+    public void testDrawableOfLibrary() throws IOException {
+        write(mLibraryResources, "drawable/library_icon.jpg", "library");
+
+        assertThat(mResourceManager.getDrawable("library_icon")).isNotNull();
+        assertThat(mResourceManager.getDrawable("missing")).isNull();
+    }
+}
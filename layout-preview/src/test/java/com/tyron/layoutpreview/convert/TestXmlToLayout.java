@@ -0,0 +1,152 @@
+package com.tyron.layoutpreview.convert;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.fail;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.flipkart.android.proteus.Proteus;
+import com.flipkart.android.proteus.ProteusBuilder;
+import com.flipkart.android.proteus.ProteusContext;
+import com.flipkart.android.proteus.value.Layout;
+import com.flipkart.android.proteus.value.Value;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.tyron.layoutpreview.convert.adapter.ProteusTypeAdapterFactory;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.StringReader;
+
+/**
+ * Checks that {@link XmlToLayoutConverter} gives the same layouts as converting the XML to
+ * JSON with {@link XmlToJsonConverter} and reading it with {@link ProteusTypeAdapterFactory}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TestXmlToLayout {
+
+    private static final String TEST_LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    xmlns:app=\"http://schemas.android.com/apk/res-auto\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"wrap_content\"\n" +
+            "    android:orientation=\"vertical\"\n" +
+            "    android:padding=\"16dp\"\n" +
+            "    app:unknown_attribute=\"value\">\n" +
+            "\n" +
+            "    <TextView\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        android:layout_marginTop=\"8dp\"\n" +
+            "        android:text=\"Hello\"\n" +
+            "        android:textColor=\"#ff0000\"\n" +
+            "        android:textSize=\"14sp\" />\n" +
+            "\n" +
+            "    <FrameLayout\n" +
+            "        android:layout_width=\"match_parent\"\n" +
+            "        android:layout_height=\"48dp\">\n" +
+            "\n" +
+            "        <View\n" +
+            "            android:layout_width=\"match_parent\"\n" +
+            "            android:layout_height=\"1dp\"\n" +
+            "            android:visibility=\"gone\" />\n" +
+            "    </FrameLayout>\n" +
+            "</LinearLayout>";
+
+    private static final String DATA_LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"wrap_content\"\n" +
+            "    data='{\"title\": \"@{user.name}\", \"count\": 1, \"label\": \"Name\"}'>\n" +
+            "\n" +
+            "    <TextView\n" +
+            "        android:layout_width=\"wrap_content\"\n" +
+            "        android:layout_height=\"wrap_content\"\n" +
+            "        data='{\"subtitle\": \"@{title}\"}'\n" +
+            "        android:text=\"@{subtitle}\" />\n" +
+            "</LinearLayout>";
+
+    private static final String INVALID_DATA_LAYOUT = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<LinearLayout xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    android:layout_width=\"match_parent\"\n" +
+            "    android:layout_height=\"wrap_content\"\n" +
+            "    data=\"title\" />";
+
+    private ProteusContext mContext;
+    private ProteusTypeAdapterFactory mFactory;
+
+    @Before
+    public void setup() {
+        Proteus proteus = new ProteusBuilder().build();
+        mContext = proteus.createContextBuilder(ApplicationProvider.getApplicationContext())
+                .build();
+        ProteusTypeAdapterFactory.PROTEUS_INSTANCE_HOLDER.setProteus(proteus);
+        mFactory = new ProteusTypeAdapterFactory(mContext);
+    }
+
+    private Layout convertThroughJson(String xml) throws Exception {
+        JsonObject object = new XmlToJsonConverter().convert(xml);
+        Value value = mFactory.VALUE_TYPE_ADAPTER.read(new JsonReader(
+                new StringReader(object.toString())));
+        return value.getAsLayout();
+    }
+
+    private Layout convertDirectly(String xml) throws Exception {
+        return new XmlToLayoutConverter(mContext).convert(xml).getAsLayout();
+    }
+
+    /**
+     * Layouts have no equals, the compiled JSON contains the type, attribute ids and compiled
+     * values, data and extras of every layout.
+     */
+    private String toCompiledJson(Layout layout) {
+        return mFactory.COMPILED_VALUE_TYPE_ADAPTER.toJson(layout);
+    }
+
+    @Test
+    public void testSameLayoutAsJson() throws Exception {
+        Layout expected = convertThroughJson(TEST_LAYOUT);
+        Layout actual = convertDirectly(TEST_LAYOUT);
+
+        assertThat(actual.type).isEqualTo(expected.type);
+        assertThat(actual.attributes).hasSize(expected.attributes.size());
+        assertThat(actual.extras).isEqualTo(expected.extras);
+        assertThat(toCompiledJson(actual)).isEqualTo(toCompiledJson(expected));
+    }
+
+    @Test
+    public void testDataIsReadLikeJson() throws Exception {
+        Layout expected = convertThroughJson(DATA_LAYOUT);
+        Layout actual = convertDirectly(DATA_LAYOUT);
+
+        assertThat(actual.data).isNotNull();
+        assertThat(actual.data.keySet()).containsExactly("title", "count", "label").inOrder();
+        assertThat(actual.data.get("title").isBinding()).isTrue();
+        assertThat(actual.data.keySet()).isEqualTo(expected.data.keySet());
+        // the data is not an unknown attribute
+        assertThat(actual.extras == null || !actual.extras.has("data")).isTrue();
+        assertThat(toCompiledJson(actual)).isEqualTo(toCompiledJson(expected));
+    }
+
+    @Test
+    public void testDataMustBeAnObject() throws Exception {
+        try {
+            convertThroughJson(INVALID_DATA_LAYOUT);
+            fail("Expected the JSON path to reject the data");
+        } catch (JsonSyntaxException expected) {
+            // expected
+        }
+
+        try {
+            convertDirectly(INVALID_DATA_LAYOUT);
+            fail("Expected the converter to reject the data");
+        } catch (ConvertException expected) {
+            assertThat(expected).hasCauseThat().isInstanceOf(JsonSyntaxException.class);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tyron.layoutpreview.resource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+@RunWith(RobolectricTestRunner.class)
+public class ResourceValueParserTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mValuesDir;
+    private File mSnapshot;
+
+    @Before
+    public void setup() throws IOException {
+        mValuesDir = folder.newFolder("res", "values");
+        mSnapshot = new File(mValuesDir.getParentFile(), "values.snapshot");
+    }
+
+    private File write(String name, String contents, long lastModified) throws IOException {
+        File file = new File(mValuesDir, name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertThat(file.setLastModified(lastModified)).isTrue();
+        return file;
+    }
+
+    private static String strings(String name, String value) {
+        return "<resources><string name=\"" + name + "\">" + value + "</string></resources>";
+    }
+
+    private ResourceValueParser parseFramework() {
+        ResourceValueParser parser = new ResourceValueParser();
+        parser.parseFramework(mValuesDir);
+        return parser;
+    }
+
+    @Test
+    public void testFrameworkValuesAreSnapshotted() throws IOException {
+        write("strings.xml", strings("ok", "OK"), 1_000_000);
+
+        ResourceValueParser parser = parseFramework();
+
+        assertThat(parser.mStrings.get("android:ok").toString()).isEqualTo("OK");
+        assertThat(mSnapshot.exists()).isTrue();
+    }
+
+    @Test
+    public void testValuesExtractedAgainAreParsedAgain() throws IOException {
+        File strings = write("strings.xml", strings("ok", "OK"), 1_000_000);
+        parseFramework();
+
+        write("strings.xml", strings("ok", "Okay"), strings.lastModified() + 2000);
+        assertThat(parseFramework().mStrings.get("android:ok").toString()).isEqualTo("Okay");
+
+        // a file added by the new extraction is parsed as well
+        write("strings_extra.xml", strings("cancel", "Cancel"), 1_000_000);
+        ResourceValueParser parser = parseFramework();
+        assertThat(parser.mStrings.get("android:ok").toString()).isEqualTo("Okay");
+        assertThat(parser.mStrings.get("android:cancel").toString()).isEqualTo("Cancel");
+    }
+
+    @Test
+    public void testSnapshotOfOtherFilesIsNotRead() throws Exception {
+        write("strings.xml", strings("ok", "OK"), 1_000_000);
+        // a snapshot left by a previous extraction
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(mSnapshot))) {
+            output.writeLong(0);
+            ResourceValues.parse(new StringReader(strings("ok", "Stale"))).write(output);
+        }
+
+        assertThat(parseFramework().mStrings.get("android:ok").toString()).isEqualTo("OK");
+    }
+
+    @Test
+    public void testMissingValuesDirectory() throws IOException {
+        File missing = new File(folder.getRoot(), "missing/values");
+
+        ResourceValueParser parser = new ResourceValueParser();
+        parser.parseFramework(missing);
+
+        assertThat(parser.mStrings).isEmpty();
+    }
+}
@@ -0,0 +1,129 @@
+package com.tyron.layoutpreview.resource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.flipkart.android.proteus.value.Color;
+import com.flipkart.android.proteus.value.Style;
+import com.flipkart.android.proteus.value.Value;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+@RunWith(RobolectricTestRunner.class)
+public class ResourceValuesTest {
+
+    private static final String VALUES = "<resources>\n" +
+            "    <string name=\"app_name\">Preview</string>\n" +
+            "    <item name=\"title\" type=\"string\">Title</item>\n" +
+            "    <item name=\"untyped\">Ignored</item>\n" +
+            "    <style name=\"AppTheme\" parent=\"Theme.Material\">\n" +
+            "        <item name=\"android:textColor\">#FF0000</item>\n" +
+            "    </style>\n" +
+            "    <color name=\"accent\">#00FF00</color>\n" +
+            "    <dimen name=\"margin\">16dp</dimen>\n" +
+            "</resources>";
+
+    private static ResourceValues parse(String contents) throws Exception {
+        return ResourceValues.parse(new StringReader(contents));
+    }
+
+    private static ResourceValueParser addTo(ResourceValues values, String namePrefix) {
+        ResourceValueParser parser = new ResourceValueParser();
+        values.addTo(parser, namePrefix);
+        return parser;
+    }
+
+    private static byte[] write(ResourceValues values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            values.write(output);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ResourceValues read(byte[] bytes) throws IOException {
+        return ResourceValues.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    private static Map<String, String> render(Map<String, ? extends Value> values) {
+        Map<String, String> rendered = new TreeMap<>();
+        for (Map.Entry<String, ? extends Value> entry : values.entrySet()) {
+            rendered.put(entry.getKey(), entry.getValue().toString());
+        }
+        return rendered;
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        ResourceValueParser parser = addTo(parse(VALUES), "");
+
+        assertThat(render(parser.mStrings))
+                .containsExactly("app_name", "Preview", "title", "Title");
+        Style style = parser.mStyles.get("AppTheme");
+        assertThat(style).isNotNull();
+        assertThat(style.toString()).contains("parent='Theme.Material'");
+        assertThat(style.getValue("android:textColor", null).toString()).isEqualTo("#FF0000");
+        assertThat(((Color.Int) parser.mColors.get("accent")).value).isEqualTo(0xFF00FF00);
+        assertThat(parser.getDimensionManager().getDimension("margin").toString()).isEqualTo("16dp");
+    }
+
+    @Test
+    public void testNamePrefix() throws Exception {
+        ResourceValueParser parser = addTo(parse(VALUES), "android:");
+
+        assertThat(parser.mStrings).containsKey("android:app_name");
+        assertThat(parser.mStyles).containsKey("android:AppTheme");
+        assertThat(parser.mColors).containsKey("android:accent");
+        assertThat(parser.getDimensionManager().getDimension("android:margin")).isNotNull();
+    }
+
+    @Test
+    public void testWrittenValuesAreReadBack() throws Exception {
+        ResourceValueParser parsed = addTo(parse(VALUES), "");
+        ResourceValueParser read = addTo(read(write(parse(VALUES))), "");
+
+        assertThat(render(read.mStrings)).isEqualTo(render(parsed.mStrings));
+        assertThat(render(read.mStyles)).isEqualTo(render(parsed.mStyles));
+        assertThat(((Color.Int) read.mColors.get("accent")).value)
+                .isEqualTo(((Color.Int) parsed.mColors.get("accent")).value);
+        assertThat(read.getDimensionManager().getDimension("margin").toString()).isEqualTo("16dp");
+    }
+
+    @Test
+    public void testMergedValuesAreReadBack() throws Exception {
+        ResourceValues merged = ResourceValues.merge(Arrays.asList(parse(VALUES),
+                parse("<resources><string name=\"other\">Other</string></resources>")));
+
+        ResourceValueParser read = addTo(read(write(merged)), "");
+        assertThat(render(read.mStrings))
+                .containsExactly("app_name", "Preview", "title", "Title", "other", "Other");
+    }
+
+    @Test
+    public void testEmptyValuesAreReadBack() throws Exception {
+        ResourceValueParser read = addTo(read(write(parse("<resources/>"))), "");
+
+        assertThat(read.mStrings).isEmpty();
+        assertThat(read.mStyles).isEmpty();
+    }
+
+    @Test
+    public void testValuesOfOtherVersionAreNotRead() throws Exception {
+        byte[] bytes = write(parse(VALUES));
+        // the version is the first int
+        bytes[3]++;
+
+        assertThat(read(bytes)).isNull();
+    }
+}
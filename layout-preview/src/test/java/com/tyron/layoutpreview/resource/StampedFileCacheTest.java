@@ -0,0 +1,153 @@
+package com.tyron.layoutpreview.resource;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.builder.project.mock.MockFileManager;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class StampedFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final StampedFileCache<String> mCache = new StampedFileCache<>();
+    private final AtomicInteger mLoads = new AtomicInteger();
+    private File mFile;
+
+    @Before
+    public void setup() throws IOException {
+        mFile = write("values.xml", "first", 1_000_000);
+    }
+
+    private File write(String name, String contents, long lastModified) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        assertThat(file.setLastModified(lastModified)).isTrue();
+        return file;
+    }
+
+    private String load(File file) throws IOException {
+        mLoads.incrementAndGet();
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testUnchangedFileIsLoadedOnce() {
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("first");
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("first");
+
+        assertThat(mLoads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testModifiedFileIsLoadedAgain() throws IOException {
+        mCache.get(mFile, null, this::load);
+
+        // same length, new modification time
+        write("values.xml", "other", 2_000_000);
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("other");
+        assertThat(mLoads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testResizedFileIsLoadedAgain() throws IOException {
+        mCache.get(mFile, null, this::load);
+
+        // same modification time, new length
+        write("values.xml", "first and second", 1_000_000);
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("first and second");
+        assertThat(mLoads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testOpenedFileIsStampedWithItsLastEdit() throws IOException {
+        EditingFileManager fileManager = new EditingFileManager();
+        fileManager.openFileForSnapshot(mFile, "first");
+        fileManager.setLastModified(mFile, Instant.ofEpochMilli(5_000_000));
+        mCache.get(mFile, fileManager, this::load);
+
+        // the file on disk is not what the editor shows
+        write("values.xml", "saved elsewhere", 3_000_000);
+        assertThat(mCache.get(mFile, fileManager, this::load)).isEqualTo("first");
+        assertThat(mLoads.get()).isEqualTo(1);
+
+        fileManager.setLastModified(mFile, Instant.ofEpochMilli(6_000_000));
+        assertThat(mCache.get(mFile, fileManager, this::load)).isEqualTo("saved elsewhere");
+        assertThat(mLoads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFailedLoadIsCachedUntilFileChanges() throws IOException {
+        StampedFileCache.Loader<String> failing = file -> {
+            mLoads.incrementAndGet();
+            throw new IOException("Unable to parse " + file);
+        };
+        assertThat(mCache.get(mFile, null, failing)).isNull();
+        assertThat(mCache.get(mFile, null, failing)).isNull();
+        assertThat(mLoads.get()).isEqualTo(1);
+
+        write("values.xml", "fixed", 2_000_000);
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("fixed");
+    }
+
+    @Test
+    public void testFilesAreCachedSeparately() throws IOException {
+        File other = write("other.xml", "other", 1_000_000);
+
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("first");
+        assertThat(mCache.get(other, null, this::load)).isEqualTo("other");
+        assertThat(mCache.get(mFile, null, this::load)).isEqualTo("first");
+        assertThat(mLoads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testClear() {
+        mCache.get(mFile, null, this::load);
+
+        mCache.clear();
+        mCache.get(mFile, null, this::load);
+        assertThat(mLoads.get()).isEqualTo(2);
+    }
+
+    /**
+     * Remembers the time of the last edit of each opened file.
+     */
+    private static class EditingFileManager extends MockFileManager {
+
+        private final Map<File, Instant> mLastModified = new HashMap<>();
+
+        EditingFileManager() {
+            super(null);
+        }
+
+        @Nullable
+        @Override
+        public Instant getLastModified(@NonNull File file) {
+            return mLastModified.get(file);
+        }
+
+        @Override
+        public void setLastModified(@NonNull File file, Instant instant) {
+            mLastModified.put(file, instant);
+        }
+    }
+}
@@ -24,6 +24,15 @@ import com.tyron.ui.treeview.helper.TreeHelper;
  */
 
 public class TreeNode<D> {
+
+    /**
+     * Creates the children of nodes whose children have not been loaded yet, when they are
+     * expanded.
+     */
+    public interface ChildrenLoader<D> {
+        List<TreeNode<D>> loadChildren(TreeNode<D> node);
+    }
+
     private int level;
 
     private D value;
@@ -40,6 +49,8 @@ public class TreeNode<D> {
 
     private boolean itemClickEnable = true;
 
+    private boolean childrenLoaded = true;
+
     public TreeNode(D value, int level) {
         this.value = value;
         this.children = new ArrayList<>();
@@ -73,8 +84,12 @@ public class TreeNode<D> {
         getChildren().remove(treeNode);
     }
 
+    /**
+     * @return whether this node has no children. Nodes whose children have not been loaded
+     * yet are not leaves.
+     */
     public boolean isLeaf() {
-        return children.size() == 0;
+        return childrenLoaded && children.size() == 0;
     }
 
     public boolean isLastChild() {
@@ -82,7 +97,7 @@ public class TreeNode<D> {
             return false;
         }
         List<TreeNode<D>> children = parent.getChildren();
-        return children.size() > 0 && children.indexOf(this) == children.size() - 1;
+        return children.size() > 0 && children.get(children.size() - 1) == this;
     }
 
     public boolean isRoot() {
@@ -138,10 +153,24 @@ public class TreeNode<D> {
         if (children == null) {
             return;
         }        
-        this.children = new ArrayList<>();
+        this.children = new ArrayList<>(children.size());
         for (TreeNode<D> child : children) {
             addChild(child);
         }
+        this.childrenLoaded = true;
+    }
+
+    /**
+     * @return whether the children of this node have been set. Nodes created with
+     * {@code setChildrenLoaded(false)} get their children from a {@link ChildrenLoader} when
+     * they are first expanded.
+     */
+    public boolean isChildrenLoaded() {
+        return childrenLoaded;
+    }
+
+    public void setChildrenLoaded(boolean childrenLoaded) {
+        this.childrenLoaded = childrenLoaded;
     }
 
     /**
@@ -47,6 +47,7 @@ public class TreeView<D> implements SelectableTreeAction<D> {
     private RecyclerView rootView;
     private TreeViewAdapter<D> adapter;
     private BaseNodeViewFactory<D> baseNodeViewFactory;
+    private TreeNode.ChildrenLoader<D> childrenLoader;
 
     private boolean itemSelectable = true;
 
@@ -65,11 +66,11 @@ public class TreeView<D> implements SelectableTreeAction<D> {
 
     @Nullable
     public TreeNode<D> getRoot() {
-        List<TreeNode<D>> allNodes = getAllNodes();
-        if (allNodes.isEmpty()) {
+        List<TreeNode<D>> children = root.getChildren();
+        if (children.isEmpty()) {
             return null;
         }
-        return allNodes.get(0);
+        return children.get(0);
     }
 
     @NonNull
@@ -89,10 +90,22 @@ public class TreeView<D> implements SelectableTreeAction<D> {
 
         adapter = new TreeViewAdapter<>(context, root, baseNodeViewFactory);
         adapter.setTreeView(this);
+        adapter.setChildrenLoader(childrenLoader);
 
         rootView.setAdapter(adapter);
     }
 
+    /**
+     * Set the loader used to create the children of nodes that have not been loaded yet
+     * when they are expanded.
+     */
+    public void setChildrenLoader(@Nullable TreeNode.ChildrenLoader<D> childrenLoader) {
+        this.childrenLoader = childrenLoader;
+        if (adapter != null) {
+            adapter.setChildrenLoader(childrenLoader);
+        }
+    }
+
     @Override
     public void expandAll() {
         TreeHelper.expandAll(root);
@@ -25,7 +25,9 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.tyron.ui.treeview.base.BaseNodeViewBinder;
 import com.tyron.ui.treeview.base.BaseNodeViewFactory;
@@ -38,16 +40,28 @@ import com.tyron.ui.treeview.helper.TreeHelper;
 
 public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
+    private static final int UNKNOWN_POSITION = -2;
+
     private final Context context;
 
     private final TreeNode<D> root;
 
     private final List<TreeNode<D>> expandedNodeList;
 
+    /**
+     * The rows of the children of the root and of each expanded node in
+     * {@link #expandedNodeList}. The position of a node is found from the rows before it
+     * among its siblings and those of each of its ancestors, so expanding or collapsing a
+     * node only updates the rows of its ancestors.
+     */
+    private final Map<TreeNode<D>, ChildRows<D>> childRows = new IdentityHashMap<>();
+
     private final BaseNodeViewFactory<D> baseNodeViewFactory;
 
     private TreeView<D> treeView;
 
+    private TreeNode.ChildrenLoader<D> childrenLoader;
+
     TreeViewAdapter(Context context, TreeNode<D> root,
                     @NonNull BaseNodeViewFactory<D> baseNodeViewFactory) {
         this.context = context;
@@ -61,22 +75,68 @@ public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHo
 
     private void buildExpandedNodeList() {
         expandedNodeList.clear();
+        childRows.clear();
 
-        for (TreeNode<D> child : root.getChildren()) {
-            insertNode(expandedNodeList, child);
+        List<TreeNode<D>> children = root.getChildren();
+        ChildRows<D> rows = new ChildRows<>(children);
+        for (int i = 0; i < children.size(); i++) {
+            rows.set(i, insertNode(expandedNodeList, children.get(i)));
         }
+        rows.build();
+        childRows.put(root, rows);
     }
 
-    private void insertNode(List<TreeNode<D>> nodeList, TreeNode<D> treeNode) {
+    /**
+     * Adds the node and its visible descendants to the list.
+     *
+     * @return the number of rows added
+     */
+    private int insertNode(List<TreeNode<D>> nodeList, TreeNode<D> treeNode) {
         nodeList.add(treeNode);
 
-        if (!treeNode.hasChild()) {
-            return;
+        if (!treeNode.isExpanded()) {
+            return 1;
         }
-        if (treeNode.isExpanded()) {
-            for (TreeNode<D> child : treeNode.getChildren()) {
-                insertNode(nodeList, child);
+        List<TreeNode<D>> children = treeNode.getChildren();
+        ChildRows<D> rows = new ChildRows<>(children);
+        for (int i = 0; i < children.size(); i++) {
+            rows.set(i, insertNode(nodeList, children.get(i)));
+        }
+        rows.build();
+        childRows.put(treeNode, rows);
+        return rows.getTotal() + 1;
+    }
+
+    /**
+     * Records the row counts of the node and its expanded descendants, the same rows that
+     * {@link TreeHelper#expandNode(TreeNode, boolean)} returns.
+     *
+     * @return the number of rows below the node
+     */
+    private int countRows(TreeNode<D> treeNode) {
+        List<TreeNode<D>> children = treeNode.getChildren();
+        ChildRows<D> rows = new ChildRows<>(children);
+        for (int i = 0; i < children.size(); i++) {
+            TreeNode<D> child = children.get(i);
+            rows.set(i, child.isExpanded() ? countRows(child) + 1 : 1);
+        }
+        rows.build();
+        childRows.put(treeNode, rows);
+        return rows.getTotal();
+    }
+
+    private void addRowsToAncestors(TreeNode<D> treeNode, int rows) {
+        TreeNode<D> node = treeNode;
+        for (TreeNode<D> parent = node.getParent(); parent != null; parent = parent.getParent()) {
+            ChildRows<D> siblings = childRows.get(parent);
+            if (siblings == null) {
+                return;
+            }
+            siblings.add(node, rows);
+            if (parent == root) {
+                return;
             }
+            node = parent;
         }
     }
 
@@ -163,7 +223,7 @@ public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHo
 
     private void selectChildren(TreeNode<D> treeNode, boolean checked) {
         List<TreeNode<D>> impactedChildren = TreeHelper.selectNodeAndChild(treeNode, checked);
-        int index = expandedNodeList.indexOf(treeNode);
+        int index = indexOf(treeNode);
         if (index != -1 && impactedChildren.size() > 0) {
             notifyItemRangeChanged(index, impactedChildren.size() + 1);
         }
@@ -173,7 +233,7 @@ public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHo
         List<TreeNode<D>> impactedParents = TreeHelper.selectParentIfNeedWhenNodeSelected(treeNode, checked);
         if (impactedParents.size() > 0) {
             for (TreeNode<D> parent : impactedParents) {
-                int position = expandedNodeList.indexOf(parent);
+                int position = indexOf(parent);
                 if (position != -1) notifyItemChanged(position);
             }
         }
@@ -214,35 +274,117 @@ public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHo
         notifyDataSetChanged();
     }
 
+    /**
+     * Find the position of a visible node. The position is the number of rows before the
+     * node, summed from the rows of the preceding siblings of the node and of each of its
+     * ancestors. A lookup costs the logarithm of the number of siblings on each level, not
+     * the number of rows or siblings.
+     *
+     * @return the position of the node, or -1 if it is not visible
+     */
+    int indexOf(TreeNode<D> treeNode) {
+        int position = computePosition(treeNode);
+        if (position == -1) {
+            return -1;
+        }
+        if (position >= 0 && position < expandedNodeList.size()
+                && expandedNodeList.get(position) == treeNode) {
+            return position;
+        }
+        // the tree has been changed without refreshing the list
+        for (int i = 0; i < expandedNodeList.size(); i++) {
+            if (expandedNodeList.get(i) == treeNode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position of the node, -1 if it is not visible or {@link #UNKNOWN_POSITION}
+     * if it has been added to the tree without refreshing the list
+     */
+    private int computePosition(TreeNode<D> treeNode) {
+        int position = 0;
+        TreeNode<D> node = treeNode;
+        while (node != root) {
+            TreeNode<D> parent = node.getParent();
+            if (parent == null) {
+                return -1;
+            }
+            ChildRows<D> siblings = childRows.get(parent);
+            if (siblings == null) {
+                // a collapsed or hidden parent
+                return -1;
+            }
+            int index = siblings.indexOf(node);
+            if (index == -1) {
+                return UNKNOWN_POSITION;
+            }
+            position += siblings.getRowsBefore(index);
+            if (parent != root) {
+                position++;
+            }
+            node = parent;
+        }
+        return position;
+    }
+
     // Insert a node list after index.
-    private void insertNodesAtIndex(int index, List<TreeNode<D>> additionNodes) {
+    private boolean insertNodesAtIndex(int index, List<TreeNode<D>> additionNodes) {
         if (index < 0 || index > expandedNodeList.size() - 1 || additionNodes == null) {
-            return;
+            return false;
         }
         expandedNodeList.addAll(index + 1, additionNodes);
         notifyItemRangeInserted(index + 1, additionNodes.size());
+        return true;
     }
 
-    //Remove a node list after index.
-    private void removeNodesAtIndex(int index, List<TreeNode<D>> removedNodes) {
+    //Remove a node list after index. The removed nodes are the descendants of the node at
+    //index, the ones that are visible directly follow it in the list.
+    private int removeNodesAtIndex(int index, List<TreeNode<D>> removedNodes) {
         if (index < 0 || index > expandedNodeList.size() - 1 || removedNodes == null) {
+            return 0;
+        }
+        int count = 0;
+        while (count < removedNodes.size()
+                && index + 1 + count < expandedNodeList.size()
+                && expandedNodeList.get(index + 1 + count) == removedNodes.get(count)) {
+            childRows.remove(removedNodes.get(count));
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        expandedNodeList.subList(index + 1, index + 1 + count).clear();
+        notifyItemRangeRemoved(index + 1, count);
+        return count;
+    }
+
+    private void loadChildren(TreeNode<D> treeNode) {
+        if (treeNode.isChildrenLoaded() || childrenLoader == null) {
             return;
         }
-        expandedNodeList.removeAll(removedNodes);
-        notifyItemRangeRemoved(index + 1, removedNodes.size());
+        List<TreeNode<D>> children = childrenLoader.loadChildren(treeNode);
+        treeNode.setChildren(children != null ? children : new ArrayList<>());
     }
 
     /**
      * Expand node. This operation will keep the structure of children(not expand children)
      */
     void expandNode(TreeNode<D> treeNode) {
-        if (treeNode == null) {
+        if (treeNode == null || childRows.containsKey(treeNode)) {
+            // its rows are already shown
             return;
         }
+        loadChildren(treeNode);
         List<TreeNode<D>> additionNodes = TreeHelper.expandNode(treeNode, false);
-        int index = expandedNodeList.indexOf(treeNode);
+        int index = indexOf(treeNode);
 
-        insertNodesAtIndex(index, additionNodes);
+        if (insertNodesAtIndex(index, additionNodes)) {
+            countRows(treeNode);
+            addRowsToAncestors(treeNode, additionNodes.size());
+        }
     }
 
 
@@ -254,9 +396,12 @@ public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHo
             return;
         }
         List<TreeNode<D>> removedNodes = TreeHelper.collapseNode(treeNode, false);
-        int index = expandedNodeList.indexOf(treeNode);
+        int index = indexOf(treeNode);
 
-        removeNodesAtIndex(index, removedNodes);
+        int count = removeNodesAtIndex(index, removedNodes);
+        if (childRows.remove(treeNode) != null) {
+            addRowsToAncestors(treeNode, -count);
+        }
     }
 
     /**
@@ -266,22 +411,106 @@ public class TreeViewAdapter<D> extends RecyclerView.Adapter<RecyclerView.ViewHo
         if (node == null || node.getParent() == null) {
             return;
         }
-        List<TreeNode<D>> allNodes = TreeHelper.getAllNodes(root);
-        if (allNodes.contains(node)) {
-            node.getParent().removeChild(node);
-        }
-
         //remove children form list before delete
         collapseNode(node);
 
-        int index = expandedNodeList.indexOf(node);
+        // the position is found through the parent, so it is looked up before removing
+        int index = indexOf(node);
+        TreeNode<D> parent = node.getParent();
+        parent.removeChild(node);
         if (index != -1) {
-            expandedNodeList.remove(node);
+            expandedNodeList.remove(index);
+            addRowsToAncestors(node, -1);
+            notifyItemRemoved(index);
+        }
+        ChildRows<D> siblings = childRows.get(parent);
+        if (siblings != null) {
+            siblings.remove(node);
         }
-        notifyItemRemoved(index);
     }
 
     void setTreeView(TreeView<D> treeView) {
         this.treeView = treeView;
     }
+
+    void setChildrenLoader(TreeNode.ChildrenLoader<D> childrenLoader) {
+        this.childrenLoader = childrenLoader;
+    }
+
+    /**
+     * The rows of the children of a node, each child and the rows below it, kept in a Fenwick
+     * tree so the rows before a child are summed and updated in logarithmic time. A removed
+     * child keeps its slot with no rows, so the indices of its siblings stay valid until the
+     * list is rebuilt.
+     */
+    private static class ChildRows<D> {
+
+        private final Map<TreeNode<D>, Integer> indices = new IdentityHashMap<>();
+
+        private final int[] tree;
+
+        private int total;
+
+        ChildRows(List<TreeNode<D>> children) {
+            tree = new int[children.size() + 1];
+            for (int i = 0; i < children.size(); i++) {
+                indices.put(children.get(i), i);
+            }
+        }
+
+        /**
+         * Sets the rows of a child before {@link #build()} is called.
+         */
+        void set(int index, int rows) {
+            tree[index + 1] = rows;
+            total += rows;
+        }
+
+        /**
+         * Turns the rows set for each child into the Fenwick tree.
+         */
+        void build() {
+            for (int i = 1; i < tree.length; i++) {
+                int parent = i + (i & -i);
+                if (parent < tree.length) {
+                    tree[parent] += tree[i];
+                }
+            }
+        }
+
+        int getTotal() {
+            return total;
+        }
+
+        /**
+         * @return the index of the child, or -1 if it was not a child when the rows were built
+         */
+        int indexOf(TreeNode<D> child) {
+            Integer index = indices.get(child);
+            return index != null ? index : -1;
+        }
+
+        int getRowsBefore(int index) {
+            int rows = 0;
+            for (int i = index; i > 0; i -= i & -i) {
+                rows += tree[i];
+            }
+            return rows;
+        }
+
+        void add(TreeNode<D> child, int rows) {
+            int index = indexOf(child);
+            if (index == -1) {
+                return;
+            }
+            total += rows;
+            for (int i = index + 1; i < tree.length; i += i & -i) {
+                tree[i] += rows;
+            }
+        }
+
+        void remove(TreeNode<D> child) {
+            indices.remove(child);
+        }
+    }
 }
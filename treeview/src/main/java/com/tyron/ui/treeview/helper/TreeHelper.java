@@ -15,7 +15,9 @@
 package com.tyron.ui.treeview.helper;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.tyron.ui.treeview.TreeNode;
 
@@ -25,6 +27,13 @@ import com.tyron.ui.treeview.TreeNode;
 
 public class TreeHelper {
 
+    /**
+     * Identifies the value of a node across updates of the tree, such as the file it shows.
+     */
+    public interface NodeKey<D> {
+        Object getKey(TreeNode<D> node);
+    }
+
     public static <D> void expandAll(TreeNode<D> node) {
         if (node == null) {
             return;
@@ -271,6 +280,39 @@ public class TreeHelper {
         return selectedNodes;
     }
 
+    /**
+     * Replace the children of the node, keeping the existing child in place of each new child
+     * with the same key. The kept children keep their expanded state and their loaded
+     * children.
+     *
+     * @param node     the node to update
+     * @param children the new children of the node
+     * @param key      identifies the children that are the same
+     * @return the children that have been kept
+     */
+    public static <D> List<TreeNode<D>> updateChildren(TreeNode<D> node,
+                                                       List<TreeNode<D>> children,
+                                                       NodeKey<D> key) {
+        Map<Object, TreeNode<D>> oldChildren = new HashMap<>();
+        for (TreeNode<D> child : node.getChildren()) {
+            oldChildren.put(key.getKey(child), child);
+        }
+
+        List<TreeNode<D>> keptChildren = new ArrayList<>();
+        List<TreeNode<D>> newChildren = new ArrayList<>(children.size());
+        for (TreeNode<D> child : children) {
+            TreeNode<D> oldChild = oldChildren.get(key.getKey(child));
+            if (oldChild != null) {
+                keptChildren.add(oldChild);
+                newChildren.add(oldChild);
+            } else {
+                newChildren.add(child);
+            }
+        }
+        node.setChildren(newChildren);
+        return keptChildren;
+    }
+
     /**
      * Return true when the node has one selected child(recurse all children) at least,
      * otherwise return false
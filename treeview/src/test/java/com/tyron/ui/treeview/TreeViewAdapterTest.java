@@ -0,0 +1,245 @@
+package com.tyron.ui.treeview;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.view.View;
+
+import com.tyron.ui.treeview.base.BaseNodeViewBinder;
+import com.tyron.ui.treeview.base.BaseNodeViewFactory;
+import com.tyron.ui.treeview.helper.TreeHelper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class TreeViewAdapterTest {
+
+    private static final BaseNodeViewFactory<String> FACTORY = new BaseNodeViewFactory<String>() {
+        @Override
+        public BaseNodeViewBinder<String> getNodeViewBinder(View view, int viewType) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getNodeLayoutId(int level) {
+            return 0;
+        }
+    };
+
+    private TreeNode<String> mRoot;
+    private TreeNode<String> a;
+    private TreeNode<String> a1;
+    private TreeNode<String> a2;
+    private TreeNode<String> a2x;
+    private TreeNode<String> a2y;
+    private TreeNode<String> b;
+    private TreeNode<String> c;
+
+    private int mLoads;
+
+    /**
+     * Creates the tree a(a1, a2(a2x, a2y)), b, c where the children of b are loaded when it is
+     * expanded.
+     */
+    @Before
+    public void setup() {
+        a = node("a", 1, a1 = node("a1", 2), a2 = node("a2", 2,
+                a2x = node("a2x", 3), a2y = node("a2y", 3)));
+        b = node("b", 1);
+        b.setChildrenLoaded(false);
+        c = node("c", 1);
+        mRoot = TreeNode.root(Arrays.asList(a, b, c));
+    }
+
+    @SafeVarargs
+    private static TreeNode<String> node(String value, int level, TreeNode<String>... children) {
+        TreeNode<String> node = new TreeNode<>(value, level);
+        node.setChildren(Arrays.asList(children));
+        return node;
+    }
+
+    private TreeViewAdapter<String> createAdapter() {
+        TreeViewAdapter<String> adapter = new TreeViewAdapter<>(null, mRoot, FACTORY);
+        adapter.setChildrenLoader(node -> {
+            mLoads++;
+            return Arrays.asList(node(node.getValue() + "1", node.getLevel() + 1),
+                    node(node.getValue() + "2", node.getLevel() + 1));
+        });
+        return adapter;
+    }
+
+    /**
+     * Checks that exactly the given nodes are shown, in this order.
+     */
+    @SafeVarargs
+    private final void assertRows(TreeViewAdapter<String> adapter, TreeNode<String>... rows) {
+        assertEquals(rows.length, adapter.getItemCount());
+        List<TreeNode<String>> visible = Arrays.asList(rows);
+        for (int i = 0; i < rows.length; i++) {
+            assertEquals(rows[i].getValue(), i, adapter.indexOf(rows[i]));
+        }
+        for (TreeNode<String> node : TreeHelper.getAllNodes(mRoot)) {
+            if (!visible.contains(node)) {
+                assertEquals(node.getValue(), -1, adapter.indexOf(node));
+            }
+        }
+    }
+
+    @Test
+    public void testPositionsAfterExpandAndCollapse() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        assertRows(adapter, a, b, c);
+
+        adapter.expandNode(a);
+        assertRows(adapter, a, a1, a2, b, c);
+
+        adapter.expandNode(a2);
+        assertRows(adapter, a, a1, a2, a2x, a2y, b, c);
+
+        adapter.collapseNode(a);
+        assertRows(adapter, a, b, c);
+
+        // the children keep their expanded state
+        adapter.expandNode(a);
+        assertRows(adapter, a, a1, a2, a2x, a2y, b, c);
+
+        adapter.collapseNode(a2);
+        assertRows(adapter, a, a1, a2, b, c);
+    }
+
+    @Test
+    public void testExpandingTwiceAddsRowsOnce() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        adapter.expandNode(a);
+        adapter.expandNode(a);
+
+        assertRows(adapter, a, a1, a2, b, c);
+    }
+
+    @Test
+    public void testToggle() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        adapter.onNodeToggled(a);
+        assertTrue(a.isExpanded());
+        assertRows(adapter, a, a1, a2, b, c);
+
+        adapter.onNodeToggled(a);
+        assertFalse(a.isExpanded());
+        assertRows(adapter, a, b, c);
+    }
+
+    @Test
+    public void testExpandedNodesAreShownWhenBuilt() {
+        a.setExpanded(true);
+        a2.setExpanded(true);
+        TreeViewAdapter<String> adapter = createAdapter();
+
+        assertRows(adapter, a, a1, a2, a2x, a2y, b, c);
+    }
+
+    @Test
+    public void testChildrenAreLoadedOnFirstExpand() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        assertFalse(b.isLeaf());
+        assertEquals(0, mLoads);
+
+        adapter.expandNode(b);
+        assertEquals(1, mLoads);
+        assertTrue(b.isChildrenLoaded());
+        TreeNode<String> b1 = b.getChildren().get(0);
+        TreeNode<String> b2 = b.getChildren().get(1);
+        assertEquals("b1", b1.getValue());
+        assertRows(adapter, a, b, b1, b2, c);
+
+        adapter.collapseNode(b);
+        adapter.expandNode(b);
+        assertEquals(1, mLoads);
+        assertRows(adapter, a, b, b1, b2, c);
+    }
+
+    @Test
+    public void testDeleteNode() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        adapter.expandNode(a);
+        adapter.expandNode(a2);
+
+        adapter.deleteNode(a2);
+        assertEquals(Arrays.asList(a1), a.getChildren());
+        assertRows(adapter, a, a1, b, c);
+
+        adapter.collapseNode(a);
+        adapter.expandNode(a);
+        assertRows(adapter, a, a1, b, c);
+    }
+
+    @Test
+    public void testRefreshAfterChildrenAreUpdated() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        adapter.expandNode(a);
+        adapter.expandNode(a2);
+
+        TreeNode<String> a3 = node("a3", 2);
+        List<TreeNode<String>> children = new ArrayList<>(Arrays.asList(
+                node("a2", 2), a3));
+        TreeHelper.updateChildren(a, children, TreeNode::getValue);
+        adapter.refreshView();
+
+        assertRows(adapter, a, a2, a2x, a2y, a3, b, c);
+    }
+
+    @Test
+    public void testPositionsInWideDirectory() {
+        List<TreeNode<String>> files = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            files.add(node("f" + i, 2));
+        }
+        TreeNode<String> wide = node("wide", 1);
+        wide.setChildren(files);
+        mRoot = TreeNode.root(Arrays.asList(a, wide, c));
+        TreeViewAdapter<String> adapter = createAdapter();
+
+        adapter.expandNode(wide);
+        assertEquals(1001, adapter.indexOf(files.get(999)));
+        assertEquals(1002, adapter.indexOf(c));
+
+        // expanding a child moves only the rows after it
+        TreeNode<String> expanded = files.get(500);
+        expanded.setChildrenLoaded(false);
+        adapter.expandNode(expanded);
+        assertEquals(502, adapter.indexOf(expanded));
+        assertEquals(503, adapter.indexOf(expanded.getChildren().get(0)));
+        assertEquals(505, adapter.indexOf(files.get(501)));
+        assertEquals(501, adapter.indexOf(files.get(499)));
+        assertEquals(1004, adapter.indexOf(c));
+
+        adapter.deleteNode(files.get(10));
+        assertEquals(11, adapter.indexOf(files.get(9)));
+        assertEquals(12, adapter.indexOf(files.get(11)));
+        assertEquals(501, adapter.indexOf(expanded));
+        assertEquals(1003, adapter.indexOf(c));
+        assertEquals(1004, adapter.getItemCount());
+    }
+
+    @Test
+    public void testChildAddedWithoutRefreshIsShownAfterRefresh() {
+        TreeViewAdapter<String> adapter = createAdapter();
+        adapter.expandNode(a);
+
+        TreeNode<String> a3 = node("a3", 2);
+        a.addChild(a3);
+        // the rows are only added when the list is refreshed
+        assertEquals(-1, adapter.indexOf(a3));
+        assertEquals(3, adapter.indexOf(b));
+
+        adapter.refreshView();
+        assertRows(adapter, a, a1, a2, a3, b, c);
+    }
+}
@@ -0,0 +1,83 @@
+package com.tyron.ui.treeview.helper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.ui.treeview.TreeNode;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class TreeHelperTest {
+
+    private static final TreeHelper.NodeKey<String> VALUE_KEY = TreeNode::getValue;
+
+    @SafeVarargs
+    private static TreeNode<String> node(String value, TreeNode<String>... children) {
+        TreeNode<String> node = new TreeNode<>(value, 1);
+        node.setChildren(Arrays.asList(children));
+        return node;
+    }
+
+    private static TreeNode<String> unloaded(String value) {
+        TreeNode<String> node = new TreeNode<>(value, 1);
+        node.setChildrenLoaded(false);
+        return node;
+    }
+
+    @Test
+    public void testUpdateChildrenKeepsExpandedSubtrees() {
+        TreeNode<String> child = node("child");
+        TreeNode<String> expanded = node("expanded", child);
+        expanded.setExpanded(true);
+        TreeNode<String> removed = node("removed");
+        TreeNode<String> parent = node("parent", expanded, removed);
+
+        TreeNode<String> added = node("added");
+        List<TreeNode<String>> kept = TreeHelper.updateChildren(parent,
+                Arrays.asList(added, node("expanded")), VALUE_KEY);
+
+        assertEquals(Collections.singletonList(expanded), kept);
+        assertEquals(Arrays.asList(added, expanded), parent.getChildren());
+        assertTrue(expanded.isExpanded());
+        assertEquals(Collections.singletonList(child), expanded.getChildren());
+        assertSame(parent, expanded.getParent());
+        assertSame(parent, added.getParent());
+    }
+
+    @Test
+    public void testUpdateChildrenKeepsLoadedState() {
+        TreeNode<String> loaded = node("loaded", node("child"));
+        TreeNode<String> notLoaded = unloaded("notLoaded");
+        TreeNode<String> parent = node("parent", loaded, notLoaded);
+
+        TreeHelper.updateChildren(parent,
+                Arrays.asList(unloaded("loaded"), unloaded("notLoaded")), VALUE_KEY);
+
+        assertSame(loaded, parent.getChildren().get(0));
+        assertTrue(loaded.isChildrenLoaded());
+        assertEquals(1, loaded.getChildren().size());
+        assertSame(notLoaded, parent.getChildren().get(1));
+        assertFalse(notLoaded.isChildrenLoaded());
+    }
+
+    @Test
+    public void testUpdateChildrenUsesTheKey() {
+        TreeNode<String> old = node("a");
+        old.setExpanded(true);
+        TreeNode<String> parent = node("parent", old);
+
+        List<TreeNode<String>> kept = TreeHelper.updateChildren(parent,
+                Arrays.asList(node("A"), node("b")),
+                node -> node.getValue().toLowerCase());
+
+        assertEquals(Collections.singletonList(old), kept);
+        assertSame(old, parent.getChildren().get(0));
+        assertEquals("b", parent.getChildren().get(1).getValue());
+    }
+}
@@ -3,168 +3,134 @@ package com.tyron.completion.xml;
 import android.content.Context;
 import android.util.AttributeSet;
 import android.view.View;
-import android.view.ViewGroup;
 
-import com.google.common.collect.ImmutableSet;
-import com.tyron.builder.BuildModule;
+import com.tyron.completion.xml.model.ViewClassInfo;
 import com.tyron.completion.xml.util.PartialClassParser;
 
-import org.apache.bcel.Repository;
+import org.apache.bcel.classfile.ClassFormatException;
 import org.apache.bcel.classfile.JavaClass;
 import org.apache.bcel.classfile.Method;
 import org.apache.bcel.generic.Type;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
 /**
- * Scans jar files and saves all the class files that extends {@link View} and has the
- * appropriate constructors to be inflated in XML.
+ * Scans jar files for the classes that extends {@link View}, only the names of each class
+ * and its super class are read so the classes are never loaded.
  */
 public class BytecodeScanner {
 
     private static final Predicate<String> CLASS_NAME_FILTER = s -> s.endsWith(".class");
 
-    private static final Set<String> sIgnoredPaths;
-
-    static {
-        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-        builder.add("android");
-        builder.add("android/util");
-        builder.add("android/os");
-        builder.add("android/os/health");
-        builder.add("android/os/strictmode");
-        builder.add("android/os/storage");
-        builder.add("android/graphics");
-        builder.add("android/graphics/drawable");
-        builder.add("android/graphics/fonts");
-        builder.add("android/graphics/pdf");
-        builder.add("android/graphics/text");
-        builder.add("android/system");
-        builder.add("android/content");
-        builder.add("android/content/res");
-        builder.add("android/content/pm");
-        sIgnoredPaths = builder.build();
-    }
-
-    public static void loadJar(File jar) throws IOException {
+    /**
+     * Reads the name and the super class name of every class in the jar, only the
+     * header of each class file is parsed.
+     *
+     * @return a map of fully qualified class names to the name of their super class
+     */
+    public static Map<String, String> readSuperClassNames(File jar) throws IOException {
+        Map<String, String> superClasses = new HashMap<>();
         try (JarFile jarFile = new JarFile(jar)) {
             iterateClasses(jarFile, element -> {
-                PartialClassParser classParser =
-                        new PartialClassParser(jar.getAbsolutePath(), element.getName());
-                try {
-                    Repository.addClass(classParser.parse());
-                } catch (IOException e) {
+                try (InputStream inputStream = jarFile.getInputStream(element)) {
+                    JavaClass javaClass =
+                            new PartialClassParser(inputStream, element.getName()).parse();
+                    String superClass = javaClass.getSuperclassName();
+                    if (superClass != null && !superClass.equals(javaClass.getClassName())) {
+                        superClasses.put(javaClass.getClassName(), superClass);
+                    }
+                } catch (IOException | ClassFormatException e) {
                     // ignored, keep parsing other classes
                 }
             });
         }
+        return superClasses;
     }
 
-    public static List<JavaClass> scan(File file) throws IOException {
-        List<JavaClass> viewClasses = new ArrayList<>();
-        try (JarFile jarFile = new JarFile(file)) {
-            iterateClasses(jarFile, element -> {
-                String fqn = element.getName().replace('/', '.')
-                        .substring(0, element.getName().length() - ".class".length());
-                try {
-                    JavaClass javaClass = Repository.lookupClass(fqn);
-                    if (isViewClass(javaClass)) {
-                        viewClasses.add(javaClass);
-                    }
-                } catch (ClassNotFoundException e) {
-                    // should not happen, the class should already be loaded here.
-                }
-            });
+    /**
+     * Finds the classes that extend {@link View}.
+     *
+     * @param classes the classes to check, mapped to the name of their super class
+     * @param superClassLookup returns the super class of a class which is not in the map,
+     *                         or null if it is not known
+     * @param knownViews the views found before, mapped to their super classes.
+     *                   Views found here are added to it
+     * @return the views among the given classes
+     */
+    public static List<ViewClassInfo> findViewClasses(Map<String, String> classes,
+                                                      Function<String, String> superClassLookup,
+                                                      Map<String, List<String>> knownViews) {
+        Map<String, List<String>> resolved = new HashMap<>();
+        List<ViewClassInfo> views = new ArrayList<>();
+        for (String className : classes.keySet()) {
+            List<String> superClasses = resolveSuperClasses(className, classes,
+                    superClassLookup, knownViews, resolved);
+            if (View.class.getName().equals(className) ||
+                superClasses.contains(View.class.getName())) {
+                knownViews.put(className, superClasses);
+                views.add(new ViewClassInfo(className, superClasses));
+            }
         }
-        return viewClasses;
+        return views;
     }
 
-    public static boolean isViewGroup(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> ViewGroup.class.getName().equals(it.getClassName()));
-    }
-
-    public static void scanBootstrapIfNeeded() {
-        if (!needScanBootstrap()) {
-            return;
-        }
-
-        File androidJar = BuildModule.getAndroidJar();
-        if (androidJar != null && androidJar.exists()) {
-            try (JarFile jarFile = new JarFile(androidJar)) {
-                iterateClasses(jarFile, element -> {
-                    String name = element.getName();
-                    String packagePath = name.substring(0, name.lastIndexOf('/'));
-                    if (sIgnoredPaths.contains(packagePath)) {
-                        return;
-                    }
-                    if (packagePath.startsWith("java/")) {
-                        return;
-                    }
-                    PartialClassParser classParser =
-                            new PartialClassParser(androidJar.getAbsolutePath(), name);
-                    try {
-                        Repository.addClass(classParser.parse());
-                    } catch (IOException e) {
-                        // ignored, keep parsing other classes
-                    }
-
-                });
-            } catch (IOException e) {
-                // ignored
+    private static List<String> resolveSuperClasses(String className,
+                                                    Map<String, String> classes,
+                                                    Function<String, String> superClassLookup,
+                                                    Map<String, List<String>> knownViews,
+                                                    Map<String, List<String>> resolved) {
+        // walk up until a class whose super classes are already known
+        List<String> chain = new ArrayList<>();
+        List<String> superClasses = Collections.emptyList();
+        String current = className;
+        while (current != null && !Object.class.getName().equals(current)) {
+            List<String> known = resolved.get(current);
+            if (known == null) {
+                known = knownViews.get(current);
             }
+            if (known != null) {
+                if (chain.isEmpty()) {
+                    return known;
+                }
+                superClasses = prepend(current, known);
+                break;
+            }
+            if (chain.contains(current)) {
+                break;
+            }
+            chain.add(current);
+            current = classes.containsKey(current)
+                    ? classes.get(current)
+                    : superClassLookup.apply(current);
         }
-    }
 
-    private static boolean needScanBootstrap() {
-        try {
-            Repository.getRepository().loadClass(View.class);
-            return false;
-        } catch (ClassNotFoundException e) {
-            return true;
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            resolved.put(chain.get(i), superClasses);
+            if (i > 0) {
+                superClasses = prepend(chain.get(i), superClasses);
+            }
         }
+        return resolved.get(className);
     }
 
-    private static boolean isViewClass(JavaClass javaClass) {
-        JavaClass[] superClasses = getSuperClasses(javaClass);
-        return Arrays.stream(superClasses)
-                .anyMatch(it -> View.class.getName().equals(it.getClassName()));
-    }
-
-    /**
-     * Get the array of java classes even if the root class does not exist
-     *
-     * @param javaClass The java class
-     * @return array of super classes
-     */
-    public static JavaClass[] getSuperClasses(JavaClass javaClass) {
-        List<JavaClass> superClasses = new ArrayList<>();
-        JavaClass current = javaClass;
-        while (current != null && current.getSuperclassName() != null) {
-            JavaClass lookupClass;
-            try {
-                lookupClass = Repository.lookupClass(current.getSuperclassName());
-            } catch (ClassNotFoundException e) {
-                lookupClass = null;
-            }
-
-            if (lookupClass != null) {
-                superClasses.add(lookupClass);
-            }
-            current = lookupClass;
-        }
-        return superClasses.toArray(new JavaClass[0]);
+    private static List<String> prepend(String className, List<String> superClasses) {
+        List<String> list = new ArrayList<>(superClasses.size() + 1);
+        list.add(className);
+        list.addAll(superClasses);
+        return list;
     }
 
     private static boolean containsViewConstructors(Method[] methods) {
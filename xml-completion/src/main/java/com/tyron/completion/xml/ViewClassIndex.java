@@ -0,0 +1,307 @@
+package com.tyron.completion.xml;
+
+import android.content.Context;
+import android.util.Log;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.builder.BuildModule;
+import com.tyron.completion.xml.model.ViewClassInfo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Collectors;
+
+/**
+ * Persists the classes of each jar so that they are only scanned once.
+ *
+ * <p>Each class of a jar is stored with its direct super class in the cache directory of the
+ * app under the SHA-1 of the jar, so a library shared by several projects is scanned once.
+ * Whether a class is a view depends on the other jars its super classes come from, so the
+ * chains of super classes are resolved against all the given jars every time the views are
+ * requested instead of being stored. A table maps the path, modification time and length of
+ * each jar to its hash so that a jar that has not changed is not hashed again. A jar whose
+ * stamp changed is hashed first and its index is reused if the contents are the same, the
+ * jars which are not indexed yet are scanned in parallel.
+ */
+public class ViewClassIndex {
+
+    private static final String TAG = ViewClassIndex.class.getSimpleName();
+
+    private static final int VERSION = 2;
+    private static final String STAMPS_FILE = "stamps.properties";
+    private static final String INDEX_EXTENSION = ".classes";
+
+    private static ViewClassIndex sInstance;
+
+    public static synchronized ViewClassIndex getInstance() {
+        if (sInstance == null) {
+            Context context = BuildModule.getContext();
+            File cacheDir = context != null
+                    ? new File(context.getCacheDir(), "view_class_index")
+                    : null;
+            sInstance = new ViewClassIndex(cacheDir);
+        }
+        return sInstance;
+    }
+
+    @Nullable
+    private final File mCacheDir;
+    private final Properties mStamps = new Properties();
+
+    /**
+     * @param cacheDir the directory where the indexes are persisted, or null to
+     *                 scan the jars every time
+     */
+    public ViewClassIndex(@Nullable File cacheDir) {
+        mCacheDir = cacheDir;
+        if (cacheDir != null) {
+            File file = new File(cacheDir, STAMPS_FILE);
+            if (file.exists()) {
+                try (InputStream inputStream = new FileInputStream(file)) {
+                    mStamps.load(inputStream);
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to read " + file, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the view classes declared in each jar. A view in one jar may extend a view of
+     * another, so all the jars that a view can depend on should be passed together,
+     * including the android jar.
+     */
+    @NonNull
+    public synchronized Map<File, List<ViewClassInfo>> getViewClasses(@NonNull Collection<File> jars) {
+        Map<File, Map<String, String>> classes = new HashMap<>();
+        List<File> changed = new ArrayList<>();
+        for (File jar : jars) {
+            if (!jar.isFile()) {
+                continue;
+            }
+            Map<String, String> cached = readCached(jar);
+            if (cached != null) {
+                classes.put(jar, cached);
+            } else {
+                changed.add(jar);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            long start = System.currentTimeMillis();
+            scan(changed, classes);
+            Log.d(TAG, "Indexed " + changed.size() + " jars in " +
+                       (System.currentTimeMillis() - start) + " ms");
+        }
+
+        Map<String, String> allClasses = new HashMap<>();
+        for (Map<String, String> superClasses : classes.values()) {
+            allClasses.putAll(superClasses);
+        }
+
+        // keep the order of the given jars
+        Map<File, List<ViewClassInfo>> result = new LinkedHashMap<>();
+        Map<String, List<String>> knownViews = new HashMap<>();
+        for (File jar : jars) {
+            Map<String, String> superClasses = classes.get(jar);
+            if (superClasses != null && !result.containsKey(jar)) {
+                result.put(jar, BytecodeScanner.findViewClasses(superClasses,
+                        allClasses::get, knownViews));
+            }
+        }
+        return result;
+    }
+
+    private void scan(List<File> jars, Map<File, Map<String, String>> result) {
+        List<ScannedJar> scanned = jars.parallelStream()
+                .map(jar -> ScannedJar.scan(jar, mCacheDir))
+                .filter(it -> it != null)
+                .collect(Collectors.toList());
+        for (ScannedJar jar : scanned) {
+            result.put(jar.mJar, jar.mSuperClasses);
+            writeCache(jar);
+        }
+        writeStamps();
+    }
+
+    @Nullable
+    private Map<String, String> readCached(File jar) {
+        if (mCacheDir == null) {
+            return null;
+        }
+        String recorded = mStamps.getProperty(jar.getAbsolutePath());
+        if (recorded == null) {
+            return null;
+        }
+        int separator = recorded.indexOf(':');
+        if (separator == -1 || !recorded.substring(0, separator).equals(String.valueOf(getStamp(jar)))) {
+            return null;
+        }
+        return readIndex(new File(mCacheDir, recorded.substring(separator + 1) + INDEX_EXTENSION));
+    }
+
+    @Nullable
+    private static Map<String, String> readIndex(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != VERSION) {
+                return null;
+            }
+            int count = input.readInt();
+            Map<String, String> superClasses = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                superClasses.put(input.readUTF(), input.readUTF());
+            }
+            return superClasses;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read class index " + file, e);
+            return null;
+        }
+    }
+
+    private void writeCache(ScannedJar jar) {
+        if (mCacheDir == null || jar.mHash == null) {
+            return;
+        }
+        File file = new File(mCacheDir, jar.mHash + INDEX_EXTENSION);
+        File temp = new File(mCacheDir, jar.mHash + INDEX_EXTENSION + ".tmp");
+        // another path may point to a jar with the same contents
+        if (!file.exists()) {
+            //noinspection ResultOfMethodCallIgnored
+            mCacheDir.mkdirs();
+            try (DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                output.writeInt(VERSION);
+                output.writeInt(jar.mSuperClasses.size());
+                for (Map.Entry<String, String> entry : jar.mSuperClasses.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeUTF(entry.getValue());
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to write class index " + file, e);
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                return;
+            }
+            if (!temp.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                return;
+            }
+        }
+        mStamps.setProperty(jar.mJar.getAbsolutePath(), jar.mStamp + ":" + jar.mHash);
+    }
+
+    private void writeStamps() {
+        if (mCacheDir == null) {
+            return;
+        }
+        File file = new File(mCacheDir, STAMPS_FILE);
+        File temp = new File(mCacheDir, STAMPS_FILE + ".tmp");
+        //noinspection ResultOfMethodCallIgnored
+        mCacheDir.mkdirs();
+        try (OutputStream outputStream = new FileOutputStream(temp)) {
+            mStamps.store(outputStream, null);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + file, e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            temp.delete();
+        }
+    }
+
+    private static long getStamp(File file) {
+        return file.lastModified() * 31 + file.length();
+    }
+
+    /**
+     * The classes of a jar that is not indexed under its current stamp, read on a worker thread.
+     */
+    private static class ScannedJar {
+
+        private final File mJar;
+        private final long mStamp;
+        private final String mHash;
+        private final Map<String, String> mSuperClasses;
+
+        private ScannedJar(File jar, long stamp, String hash, Map<String, String> superClasses) {
+            mJar = jar;
+            mStamp = stamp;
+            mHash = hash;
+            mSuperClasses = superClasses;
+        }
+
+        @Nullable
+        private static ScannedJar scan(File jar, @Nullable File cacheDir) {
+            // stamp before reading so that a change while scanning is seen next time
+            long stamp = getStamp(jar);
+            try {
+                String hash = hash(jar);
+                if (cacheDir != null) {
+                    // the jar was only touched or copied, its contents are already indexed
+                    Map<String, String> cached = readIndex(new File(cacheDir, hash + INDEX_EXTENSION));
+                    if (cached != null) {
+                        return new ScannedJar(jar, stamp, hash, cached);
+                    }
+                }
+
+                Map<String, String> superClasses = BytecodeScanner.readSuperClassNames(jar);
+                // only the view class itself can be a view among the direct subclasses
+                // of Object, leaving out the rest keeps the indexes small
+                superClasses.entrySet().removeIf(entry ->
+                        Object.class.getName().equals(entry.getValue()) &&
+                        !View.class.getName().equals(entry.getKey()));
+                return new ScannedJar(jar, stamp, hash, superClasses);
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to scan " + jar, e);
+                return null;
+            }
+        }
+
+        private static String hash(File file) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IOException(e);
+            }
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream inputStream = new FileInputStream(file)) {
+                int read;
+                while ((read = inputStream.read(buffer)) != -1) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            StringBuilder builder = new StringBuilder();
+            for (byte b : digest.digest()) {
+                builder.append(String.format("%02x", b));
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -21,6 +21,11 @@ import android.widget.TextView;
 import android.widget.ViewFlipper;
 import android.widget.ViewSwitcher;
 
+import androidx.annotation.Nullable;
+
+import com.google.common.collect.Table;
+import com.tyron.builder.BuildModule;
+import com.tyron.builder.compiler.symbol.SymbolLoader;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.common.ApplicationProvider;
@@ -29,11 +34,10 @@ import com.tyron.completion.index.CompilerService;
 import com.tyron.completion.xml.model.AttributeInfo;
 import com.tyron.completion.xml.model.DeclareStyleable;
 import com.tyron.completion.xml.model.Format;
+import com.tyron.completion.xml.model.ViewClassInfo;
 import com.tyron.xml.completion.repository.ResourceRepository;
 import com.tyron.completion.xml.util.StyleUtils;
 
-import org.apache.bcel.Repository;
-import org.apache.bcel.classfile.JavaClass;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 import org.xmlpull.v1.XmlPullParserFactory;
@@ -43,6 +47,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,11 +58,16 @@ public class XmlRepository {
     private final Map<String, DeclareStyleable> mDeclareStyleables = new TreeMap<>();
     private final Map<String, DeclareStyleable> mManifestAttrs = new TreeMap<>();
     private final Map<String, AttributeInfo> mExtraAttributes = new TreeMap<>();
-    private final Map<String, JavaClass> mJavaViewClasses = new TreeMap<>();
+    private final Map<String, ViewClassInfo> mJavaViewClasses = new TreeMap<>();
 
     private boolean mInitialized = false;
     private ResourceRepository mRepository;
 
+    /**
+     * The symbols last written to the injected R class, null if it has not been injected yet
+     */
+    private Table<String, String, SymbolLoader.SymbolEntry> mInjectedSymbols;
+
     public XmlRepository() {
 
     }
@@ -72,10 +82,19 @@ public class XmlRepository {
         return mDeclareStyleables;
     }
 
-    public Map<String, JavaClass> getJavaViewClasses() {
+    public Map<String, ViewClassInfo> getJavaViewClasses() {
         return mJavaViewClasses;
     }
 
+    @Nullable
+    public Table<String, String, SymbolLoader.SymbolEntry> getInjectedSymbols() {
+        return mInjectedSymbols;
+    }
+
+    public void setInjectedSymbols(@Nullable Table<String, String, SymbolLoader.SymbolEntry> symbols) {
+        mInjectedSymbols = symbols;
+    }
+
     @Deprecated
     public AttributeInfo getExtraAttribute(String name) {
         return mExtraAttributes.get(name);
@@ -85,43 +104,38 @@ public class XmlRepository {
         if (mInitialized) {
             return;
         }
-        BytecodeScanner.scanBootstrapIfNeeded();
-
         mRepository = new ResourceRepository(module);
         mRepository.initialize();
 
+        // the views of a library may extend views declared in other jars
+        Set<File> jars = new LinkedHashSet<>();
+        File androidJar = BuildModule.getAndroidJar();
+        if (androidJar != null) {
+            jars.add(androidJar);
+        }
         for (File library : module.getLibraries()) {
             File parent = library.getParentFile();
-            if (parent == null) {
-                continue;
-            }
-            File classesFile = new File(parent, "classes.jar");
-            if (classesFile.exists()) {
-                try {
-                    BytecodeScanner.loadJar(classesFile);
-                } catch (IOException ignored) {
-
-                }
+            if (parent != null) {
+                jars.add(new File(parent, "classes.jar"));
             }
         }
+        jars.addAll(module.getLibraries());
 
+        Map<File, List<ViewClassInfo>> viewClasses =
+                ViewClassIndex.getInstance().getViewClasses(jars);
         for (File library : module.getLibraries()) {
-            try {
-                List<JavaClass> scan =
-                        BytecodeScanner.scan(library);
-                for (JavaClass javaClass : scan) {
-                    StyleUtils.putStyles(javaClass);
-                    mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
+            List<ViewClassInfo> views = viewClasses.get(library);
+            if (views == null) {
+                continue;
+            }
+            for (ViewClassInfo view : views) {
+                StyleUtils.putStyles(view);
+                mJavaViewClasses.put(view.getClassName(), view);
             }
         }
 
         addFrameworkViews();
 
-        Repository.clearCache();
-
         mInitialized = true;
     }
 
@@ -149,15 +163,7 @@ public class XmlRepository {
     }
 
     private void addFrameworkView(Class<? extends View> viewClass) {
-        org.apache.bcel.util.Repository repository = Repository.getRepository();
-        try {
-            JavaClass javaClass = repository.loadClass(viewClass);
-            if (javaClass != null) {
-                mJavaViewClasses.put(javaClass.getClassName(), javaClass);
-            }
-        } catch (ClassNotFoundException e) {
-            // ignored
-        }
+        mJavaViewClasses.put(viewClass.getName(), ViewClassInfo.of(viewClass));
     }
 
     private Map<String, DeclareStyleable> parse(Reader reader, String namespace) throws XmlPullParserException, IOException {
@@ -0,0 +1,67 @@
+package com.tyron.completion.xml.model;
+
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class that extends {@link View}, with the names of its super classes so that its
+ * styleables and layout params can be found without loading the class.
+ */
+public class ViewClassInfo {
+
+    private final String mClassName;
+    private final List<String> mSuperClasses;
+
+    /**
+     * @param className the fully qualified name of the view
+     * @param superClasses the fully qualified names of the super classes, starting from the
+     *                     direct super class and excluding {@code java.lang.Object}
+     */
+    public ViewClassInfo(@NonNull String className, @NonNull List<String> superClasses) {
+        mClassName = className;
+        mSuperClasses = Collections.unmodifiableList(superClasses);
+    }
+
+    @NonNull
+    public static ViewClassInfo of(@NonNull Class<? extends View> viewClass) {
+        List<String> superClasses = new ArrayList<>();
+        Class<?> current = viewClass.getSuperclass();
+        while (current != null && current != Object.class) {
+            superClasses.add(current.getName());
+            current = current.getSuperclass();
+        }
+        return new ViewClassInfo(viewClass.getName(), superClasses);
+    }
+
+    @NonNull
+    public String getClassName() {
+        return mClassName;
+    }
+
+    @NonNull
+    public String getPackageName() {
+        int index = mClassName.lastIndexOf('.');
+        return index == -1 ? "" : mClassName.substring(0, index);
+    }
+
+    @NonNull
+    public List<String> getSuperClasses() {
+        return mSuperClasses;
+    }
+
+    public boolean isViewGroup() {
+        return ViewGroup.class.getName().equals(mClassName) ||
+               mSuperClasses.contains(ViewGroup.class.getName());
+    }
+
+    @Override
+    public String toString() {
+        return mClassName;
+    }
+}
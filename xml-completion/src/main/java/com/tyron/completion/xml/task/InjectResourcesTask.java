@@ -1,22 +1,22 @@
 package com.tyron.completion.xml.task;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Table;
-import com.tyron.builder.compiler.incremental.resource.IncrementalAapt2Task;
 import com.tyron.builder.compiler.manifest.resources.ResourceType;
 import com.tyron.builder.compiler.symbol.SymbolLoader;
 import com.tyron.builder.compiler.symbol.SymbolWriter;
 import com.tyron.builder.model.SourceFileObject;
 import com.tyron.builder.project.Project;
 import com.tyron.builder.project.api.AndroidModule;
-import com.tyron.builder.project.api.FileManager;
-import com.tyron.builder.project.api.JavaModule;
 import com.tyron.completion.java.JavaCompilerProvider;
 import com.tyron.completion.java.compiler.JavaCompilerService;
 import com.tyron.completion.xml.XmlRepository;
+import com.tyron.xml.completion.repository.Repository;
 import com.tyron.xml.completion.repository.ResourceItem;
 import com.tyron.xml.completion.repository.ResourceRepository;
 import com.tyron.xml.completion.repository.api.AttrResourceValue;
@@ -29,13 +29,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
 
 /**
  * Used to create fake R.java files from the project resources for it to
@@ -75,74 +74,91 @@ public class InjectResourcesTask {
 
     public void inject(Consumer<File> consumer) throws IOException {
         XmlRepository xmlRepository = XmlRepository.getRepository(mProject, mModule);
+        File classFile;
+        synchronized (xmlRepository) {
+            classFile = injectLocked(xmlRepository);
+        }
+        if (classFile != null) {
+            consumer.accept(classFile);
+        }
+    }
 
-        updateSymbols(xmlRepository);
-
-        String classContents = createSymbols(xmlRepository);
+    /**
+     * @return the R class if it has been rewritten and needs to be compiled again
+     */
+    @Nullable
+    private File injectLocked(XmlRepository xmlRepository) throws IOException {
+        ResourceRepository repository = xmlRepository.getRepository();
+        repository.updateModifiedFiles();
+        Set<ResourceType> changedTypes = repository.pollChangedTypes();
 
         File classFile = getOrCreateResourceClass(mModule);
-
-        FileUtils.writeStringToFile(classFile, classContents, StandardCharsets.UTF_8);
         mModule.addInjectedClass(classFile);
 
-        consumer.accept(classFile);
-    }
+        Table<String, String, SymbolLoader.SymbolEntry> symbols =
+                xmlRepository.getInjectedSymbols();
+        boolean upToDate = symbols != null && classFile.length() > 0;
+        if (upToDate && changedTypes.isEmpty()) {
+            return null;
+        }
 
-    private void updateSymbols(XmlRepository xmlRepository) throws IOException {
-        Map<String, List<File>> files = IncrementalAapt2Task
-                .getFiles(mModule, IncrementalAapt2Task.getOutputDirectory(mModule));
-        List<File> allFiles = files.values().stream().flatMap(Collection::stream)
-                .collect(Collectors.toList());
-        allFiles.forEach(it -> {
-            ResourceRepository repository = xmlRepository.getRepository();
-            try {
-                FileManager fileManager = mModule.getFileManager();
-                CharSequence contents = null;
-                if (fileManager.isOpened(it)) {
-                    Optional<CharSequence> fileContent = fileManager.getFileContent(it);
-                    if (fileContent.isPresent()) {
-                        contents = fileContent.get();
-                    }
-                } else {
-                    contents = FileUtils.readFileToString(it, StandardCharsets.UTF_8);
-                }
-                repository.updateFile(it, contents.toString());
-            } catch (IOException e) {
-                // ignored
-            }
-        });
-    }
+        if (symbols == null) {
+            symbols = HashBasedTable.create();
+            changedTypes = EnumSet.allOf(ResourceType.class);
+            xmlRepository.setInjectedSymbols(symbols);
+        }
 
-    private String createSymbols(XmlRepository xmlRepository) throws IOException {
-        ResourceRepository repository = xmlRepository.getRepository();
-        List<ResourceType> resourceTypes = repository.getResourceTypes();
-        int id = 0;
+        boolean namesChanged = updateSymbols(repository, symbols, changedTypes);
+        if (upToDate && !namesChanged) {
+            // the fields of the R class stay the same, no need to write and recompile it
+            return null;
+        }
+
+        SymbolLoader loader = new SymbolLoader(symbols);
+        SymbolWriter symbolWriter = new SymbolWriter(null, mModule.getPackageName(), loader, null);
+        symbolWriter.addSymbolsToWrite(loader);
+        FileUtils.writeStringToFile(classFile, symbolWriter.getString(), StandardCharsets.UTF_8);
+        return classFile;
+    }
 
-        Table<String, String, SymbolLoader.SymbolEntry> symbols = HashBasedTable.create();
-        for (ResourceType resourceType : resourceTypes) {
+    /**
+     * Recreates the symbols of the given resource types from the repository, the symbols
+     * of the other types are left as is.
+     *
+     * @return whether the set of symbol names has changed
+     */
+    @VisibleForTesting
+    static boolean updateSymbols(Repository repository,
+                                 Table<String, String, SymbolLoader.SymbolEntry> symbols,
+                                 Set<ResourceType> changedTypes) {
+        boolean changed = false;
+        for (ResourceType resourceType : changedTypes) {
             if (!resourceType.getCanBeReferenced() && resourceType != ResourceType.STYLEABLE) {
                 continue;
             }
+
+            Map<String, SymbolLoader.SymbolEntry> row = symbols.row(resourceType.getName());
+            Set<String> oldNames = new HashSet<>(row.keySet());
+            row.clear();
+
             ListMultimap<String, ResourceItem> resources =
                     repository.getResources(repository.getNamespace(), resourceType);
-            if (resources.values()
-                    .isEmpty()) {
-                continue;
-            }
+            // ids follow the same layout as aapt2, 0xPPTTEEEE
+            int id = 0x7f000000 | ((resourceType.ordinal() + 1) << 16);
             for (Map.Entry<String, ResourceItem> resourceItemEntry : resources.entries()) {
                 addResource(id, repository.getNamespace(), symbols, resourceType,
                             resourceItemEntry);
                 id++;
             }
-        }
 
-        SymbolLoader loader = new SymbolLoader(symbols);
-        SymbolWriter symbolWriter = new SymbolWriter(null, mModule.getPackageName(), loader, null);
-        symbolWriter.addSymbolsToWrite(loader);
-        return symbolWriter.getString();
+            if (!oldNames.equals(row.keySet())) {
+                changed = true;
+            }
+        }
+        return changed;
     }
 
-    private void addResource(int id,
+    private static void addResource(int id,
                              ResourceNamespace namespace,
                              Table<String, String, SymbolLoader.SymbolEntry> symbols,
                              ResourceType resourceType,
@@ -159,7 +175,7 @@ public class InjectResourcesTask {
         symbols.put(resourceType.getName(), replacedName, entry);
     }
 
-    private void addStyleableResource(int id,
+    private static void addStyleableResource(int id,
                                       ResourceNamespace namespace,
                                       Table<String, String, SymbolLoader.SymbolEntry> symbols,
                                       Map.Entry<String, ResourceItem> resourceItemEntry) {
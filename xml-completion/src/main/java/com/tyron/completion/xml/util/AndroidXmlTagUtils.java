@@ -8,8 +8,8 @@ import com.tyron.completion.model.CompletionList;
 import com.tyron.completion.model.DrawableKind;
 import com.tyron.completion.xml.XmlRepository;
 import com.tyron.completion.xml.insert.LayoutTagInsertHandler;
+import com.tyron.completion.xml.model.ViewClassInfo;
 
-import org.apache.bcel.classfile.JavaClass;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -96,7 +96,7 @@ public class AndroidXmlTagUtils {
     public static void addTagItems(@NonNull XmlRepository repository,
                                    @NonNull String prefix,
                                    @NonNull CompletionList.Builder builder) {
-        for (Map.Entry<String, JavaClass> entry : repository.getJavaViewClasses()
+        for (Map.Entry<String, ViewClassInfo> entry : repository.getJavaViewClasses()
                 .entrySet()) {
             CompletionItem item = new CompletionItem();
             String commitPrefix = "<";
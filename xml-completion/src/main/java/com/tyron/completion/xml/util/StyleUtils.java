@@ -29,12 +29,9 @@ import androidx.annotation.NonNull;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Multimap;
-import com.tyron.completion.xml.BytecodeScanner;
 import com.tyron.completion.xml.model.DeclareStyleable;
+import com.tyron.completion.xml.model.ViewClassInfo;
 
-import org.apache.bcel.classfile.JavaClass;
-
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -100,33 +97,25 @@ public class StyleUtils {
         return classes;
     }
 
-    public static void putStyles(JavaClass javaClass) {
-        JavaClass[] superClasses = BytecodeScanner.getSuperClasses(javaClass);
-        String viewSimpleName = getSimpleName(javaClass.getClassName());
-        for (JavaClass superClass : superClasses) {
-            if (Object.class.getName().equals(superClass.getClassName())) {
-                continue;
-            }
-            String simpleName = getSimpleName(superClass.getClassName());
-            sViewStyleMap.put(viewSimpleName, simpleName);
+    public static void putStyles(ViewClassInfo view) {
+        String viewSimpleName = getSimpleName(view.getClassName());
+        for (String superClass : view.getSuperClasses()) {
+            sViewStyleMap.put(viewSimpleName, getSimpleName(superClass));
         }
 
         sViewStyleMap.put(viewSimpleName, viewSimpleName);
 
-        if (BytecodeScanner.isViewGroup(javaClass)) {
-            putLayoutParams(javaClass);
+        if (view.isViewGroup()) {
+            putLayoutParams(view);
         }
     }
 
-    public static void putLayoutParams(JavaClass javaClass) {
+    public static void putLayoutParams(ViewClassInfo view) {
         ImmutableSet.Builder<String> builder = ImmutableSet.builder();
-        JavaClass[] superClasses = BytecodeScanner.getSuperClasses(javaClass);
-        Arrays.stream(superClasses)
-                .map(JavaClass::getClassName)
-                .filter(it -> !Object.class.getName().equals(it))
+        view.getSuperClasses().stream()
                 .filter(it -> !View.class.getName().equals(it))
                 .forEach(it -> builder.add(getSimpleName(it) + "_Layout"));
-        sLayoutParamsMap.put(getSimpleName(javaClass.getClassName()) + "_Layout", builder.build());
+        sLayoutParamsMap.put(getSimpleName(view.getClassName()) + "_Layout", builder.build());
     }
 
     public static void putLayoutParams(@NonNull Class<? extends ViewGroup> viewGroup) {
@@ -6,6 +6,7 @@ import com.google.common.collect.Range;
 import com.tyron.editor.Caret;
 import com.tyron.editor.Editor;
 import com.tyron.editor.selection.ExpandSelectionProvider;
+import com.tyron.xml.completion.util.XmlDocumentCache;
 
 import org.eclipse.lemminx.dom.DOMAttr;
 import org.eclipse.lemminx.dom.DOMDocument;
@@ -14,6 +15,7 @@ import org.eclipse.lemminx.dom.DOMNode;
 import org.eclipse.lemminx.dom.DOMParser;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.File;
 import java.util.List;
 
 public class XmlExpandSelectionProvider extends ExpandSelectionProvider {
@@ -21,8 +23,13 @@ public class XmlExpandSelectionProvider extends ExpandSelectionProvider {
     public @Nullable Range<Integer> expandSelection(Editor editor) {
         String contents = editor.getContent()
                 .toString();
-        DOMDocument parsed = DOMParser.getInstance()
-                .parse(contents, "", null);
+        File file = editor.getCurrentFile();
+        DOMDocument parsed;
+        if (file != null) {
+            parsed = XmlDocumentCache.getInstance().getDocument(file, contents);
+        } else {
+            parsed = DOMParser.getInstance().parse(contents, "", null);
+        }
         if (parsed == null) {
             return null;
         }
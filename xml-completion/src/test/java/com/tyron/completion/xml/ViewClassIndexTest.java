@@ -0,0 +1,251 @@
+package com.tyron.completion.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.completion.xml.model.ViewClassInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+public class ViewClassIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mCacheDir;
+    private File mAndroidJar;
+
+    @Before
+    public void setup() throws IOException {
+        mCacheDir = folder.newFolder("cache");
+        mAndroidJar = createJar("android.jar",
+                "android.view.View", "java.lang.Object",
+                "android.view.ViewGroup", "android.view.View",
+                "android.widget.FrameLayout", "android.view.ViewGroup",
+                "android.content.Context", "java.lang.Object");
+    }
+
+    /**
+     * Creates a jar with a class file for each pair of class name and super class name.
+     */
+    private File createJar(String name, String... classes) throws IOException {
+        File jar = new File(folder.getRoot(), name);
+        try (JarOutputStream output = new JarOutputStream(new FileOutputStream(jar))) {
+            for (int i = 0; i < classes.length; i += 2) {
+                output.putNextEntry(new JarEntry(classes[i].replace('.', '/') + ".class"));
+                output.write(classFile(classes[i], classes[i + 1]));
+                output.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    /**
+     * @return a class file without members, only its names are read by the scanner
+     */
+    private static byte[] classFile(String className, String superClassName) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(0xCAFEBABE);
+        output.writeShort(0);
+        output.writeShort(52);
+        output.writeShort(5);
+        output.writeByte(1);
+        output.writeUTF(className.replace('.', '/'));
+        output.writeByte(7);
+        output.writeShort(1);
+        output.writeByte(1);
+        output.writeUTF(superClassName.replace('.', '/'));
+        output.writeByte(7);
+        output.writeShort(3);
+        // public super, this class, super class
+        output.writeShort(0x21);
+        output.writeShort(2);
+        output.writeShort(4);
+        // interfaces, fields, methods, attributes
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeShort(0);
+        output.writeShort(0);
+        return bytes.toByteArray();
+    }
+
+    private static List<String> names(List<ViewClassInfo> views) {
+        List<String> names = new ArrayList<>();
+        for (ViewClassInfo view : views) {
+            names.add(view.getClassName());
+        }
+        Collections.sort(names);
+        return names;
+    }
+
+    private static ViewClassInfo find(List<ViewClassInfo> views, String className) {
+        for (ViewClassInfo view : views) {
+            if (view.getClassName().equals(className)) {
+                return view;
+            }
+        }
+        throw new AssertionError(className + " not found in " + views);
+    }
+
+    @Test
+    public void testViewsOfJar() throws IOException {
+        Map<File, List<ViewClassInfo>> views = new ViewClassIndex(mCacheDir)
+                .getViewClasses(Collections.singletonList(mAndroidJar));
+
+        assertEquals(Arrays.asList("android.view.View", "android.view.ViewGroup",
+                "android.widget.FrameLayout"), names(views.get(mAndroidJar)));
+        assertEquals(Arrays.asList("android.view.ViewGroup", "android.view.View"),
+                find(views.get(mAndroidJar), "android.widget.FrameLayout").getSuperClasses());
+    }
+
+    @Test
+    public void testSuperClassInOtherJar() throws IOException {
+        File library = createJar("library.jar",
+                "com.library.CustomLayout", "com.base.BaseLayout",
+                "com.library.Helper", "java.lang.Object");
+        File base = createJar("base.jar",
+                "com.base.BaseLayout", "android.widget.FrameLayout");
+
+        Map<File, List<ViewClassInfo>> views = new ViewClassIndex(mCacheDir)
+                .getViewClasses(Arrays.asList(mAndroidJar, library, base));
+
+        assertEquals(Collections.singletonList("com.library.CustomLayout"),
+                names(views.get(library)));
+        assertEquals(Arrays.asList("com.base.BaseLayout", "android.widget.FrameLayout",
+                "android.view.ViewGroup", "android.view.View"),
+                find(views.get(library), "com.library.CustomLayout").getSuperClasses());
+    }
+
+    @Test
+    public void testCachedJarIsResolvedAgainstNewJars() throws IOException {
+        File library = createJar("library.jar",
+                "com.library.CustomLayout", "com.base.BaseLayout");
+        ViewClassIndex index = new ViewClassIndex(mCacheDir);
+
+        // without the jar of its super class the layout is not known to be a view
+        Map<File, List<ViewClassInfo>> views =
+                index.getViewClasses(Arrays.asList(mAndroidJar, library));
+        assertTrue(views.get(library).isEmpty());
+
+        File base = createJar("base.jar",
+                "com.base.BaseLayout", "android.widget.FrameLayout");
+        views = index.getViewClasses(Arrays.asList(mAndroidJar, library, base));
+        assertEquals(Collections.singletonList("com.library.CustomLayout"),
+                names(views.get(library)));
+
+        // the same holds for the indexes read back by a new instance
+        views = new ViewClassIndex(mCacheDir)
+                .getViewClasses(Arrays.asList(mAndroidJar, library, base));
+        assertEquals(Collections.singletonList("com.library.CustomLayout"),
+                names(views.get(library)));
+        assertEquals(Collections.singletonList("com.base.BaseLayout"), names(views.get(base)));
+    }
+
+    @Test
+    public void testIndexesArePersisted() throws IOException {
+        new ViewClassIndex(mCacheDir).getViewClasses(Collections.singletonList(mAndroidJar));
+
+        File[] indexes = mCacheDir.listFiles((dir, name) -> name.endsWith(".classes"));
+        assertEquals(1, indexes.length);
+        assertTrue(new File(mCacheDir, "stamps.properties").exists());
+
+        Map<File, List<ViewClassInfo>> views = new ViewClassIndex(mCacheDir)
+                .getViewClasses(Collections.singletonList(mAndroidJar));
+        assertEquals(Arrays.asList("android.view.View", "android.view.ViewGroup",
+                "android.widget.FrameLayout"), names(views.get(mAndroidJar)));
+    }
+
+    @Test
+    public void testChangedJarIsScannedAgain() throws IOException {
+        File library = createJar("library.jar",
+                "com.library.First", "android.view.View");
+        ViewClassIndex index = new ViewClassIndex(mCacheDir);
+        index.getViewClasses(Arrays.asList(mAndroidJar, library));
+
+        library = createJar("library.jar",
+                "com.library.First", "android.view.View",
+                "com.library.Second", "android.view.ViewGroup");
+        // the stamp of a jar is its modification time and length
+        assertTrue(library.setLastModified(library.lastModified() + 2000));
+
+        Map<File, List<ViewClassInfo>> views =
+                new ViewClassIndex(mCacheDir).getViewClasses(Arrays.asList(mAndroidJar, library));
+        assertEquals(Arrays.asList("com.library.First", "com.library.Second"),
+                names(views.get(library)));
+    }
+
+    @Test
+    public void testTouchedJarReusesTheIndexOfItsContents() throws IOException {
+        new ViewClassIndex(mCacheDir).getViewClasses(Collections.singletonList(mAndroidJar));
+        File[] indexes = mCacheDir.listFiles((dir, name) -> name.endsWith(".classes"));
+        assertEquals(1, indexes.length);
+        // an index the scanner would never produce, so that reading it is observable
+        writeIndex(indexes[0], "android.view.View", "java.lang.Object",
+                "android.widget.CachedLayout", "android.view.View");
+
+        assertTrue(mAndroidJar.setLastModified(mAndroidJar.lastModified() + 2000));
+        Map<File, List<ViewClassInfo>> views = new ViewClassIndex(mCacheDir)
+                .getViewClasses(Collections.singletonList(mAndroidJar));
+
+        assertEquals(Arrays.asList("android.view.View", "android.widget.CachedLayout"),
+                names(views.get(mAndroidJar)));
+        assertEquals(1, mCacheDir.listFiles((dir, name) -> name.endsWith(".classes")).length);
+
+        // the new stamp is recorded, the jar is not hashed again
+        views = new ViewClassIndex(mCacheDir).getViewClasses(Collections.singletonList(mAndroidJar));
+        assertEquals(Arrays.asList("android.view.View", "android.widget.CachedLayout"),
+                names(views.get(mAndroidJar)));
+    }
+
+    @Test
+    public void testCopiedJarReusesTheIndexOfItsContents() throws IOException {
+        new ViewClassIndex(mCacheDir).getViewClasses(Collections.singletonList(mAndroidJar));
+
+        File copy = new File(folder.newFolder("copy"), "android.jar");
+        Files.copy(mAndroidJar.toPath(), copy.toPath());
+        Map<File, List<ViewClassInfo>> views = new ViewClassIndex(mCacheDir)
+                .getViewClasses(Collections.singletonList(copy));
+
+        assertEquals(3, views.get(copy).size());
+        assertEquals(1, mCacheDir.listFiles((dir, name) -> name.endsWith(".classes")).length);
+    }
+
+    /**
+     * Replaces an index with the given pairs of class name and super class name.
+     */
+    private static void writeIndex(File file, String... classes) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new FileOutputStream(file))) {
+            output.writeInt(2);
+            output.writeInt(classes.length / 2);
+            for (String name : classes) {
+                output.writeUTF(name);
+            }
+        }
+    }
+
+    @Test
+    public void testWithoutCacheDir() throws IOException {
+        Map<File, List<ViewClassInfo>> views = new ViewClassIndex(null)
+                .getViewClasses(Collections.singletonList(mAndroidJar));
+
+        assertEquals(3, views.get(mAndroidJar).size());
+    }
+}
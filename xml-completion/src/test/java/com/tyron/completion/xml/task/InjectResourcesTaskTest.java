@@ -0,0 +1,95 @@
+package com.tyron.completion.xml.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Table;
+import com.tyron.builder.compiler.manifest.resources.ResourceType;
+import com.tyron.builder.compiler.symbol.SymbolLoader;
+import com.tyron.xml.completion.repository.SimpleResourceRepository;
+import com.tyron.xml.completion.repository.api.ResourceNamespace;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+public class InjectResourcesTaskTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File mStrings;
+    private SimpleResourceRepository mRepository;
+    private Table<String, String, SymbolLoader.SymbolEntry> mSymbols;
+
+    @Before
+    public void setup() throws IOException {
+        File resDir = folder.newFolder("res");
+        mStrings = new File(resDir, "values/strings.xml");
+        FileUtils.writeStringToFile(mStrings, "<resources>\n" +
+                "    <string name=\"app_name\">App</string>\n" +
+                "    <string name=\"title\">Title</string>\n" +
+                "</resources>", StandardCharsets.UTF_8);
+
+        mRepository = new SimpleResourceRepository(resDir, ResourceNamespace.RES_AUTO);
+        mRepository.initialize();
+        mSymbols = HashBasedTable.create();
+    }
+
+    private boolean updateStrings(String contents) throws IOException {
+        mRepository.updateFile(mStrings, "<resources>" + contents + "</resources>");
+        return InjectResourcesTask.updateSymbols(mRepository, mSymbols,
+                mRepository.pollChangedTypes());
+    }
+
+    @Test
+    public void testSymbolsAreCreated() {
+        assertTrue(InjectResourcesTask.updateSymbols(mRepository, mSymbols,
+                EnumSet.allOf(ResourceType.class)));
+        assertEquals(2, mSymbols.row("string").size());
+        assertTrue(mSymbols.contains("string", "app_name"));
+        assertTrue(mSymbols.contains("string", "title"));
+    }
+
+    @Test
+    public void testChangedValuesKeepNames() throws IOException {
+        InjectResourcesTask.updateSymbols(mRepository, mSymbols, EnumSet.allOf(ResourceType.class));
+
+        assertFalse(updateStrings("<string name=\"app_name\">Other</string>" +
+                "<string name=\"title\">Other title</string>"));
+        assertEquals(2, mSymbols.row("string").size());
+    }
+
+    @Test
+    public void testAddedAndRemovedNames() throws IOException {
+        InjectResourcesTask.updateSymbols(mRepository, mSymbols, EnumSet.allOf(ResourceType.class));
+
+        assertTrue(updateStrings("<string name=\"app_name\">App</string>" +
+                "<string name=\"title\">Title</string>" +
+                "<string name=\"subtitle\">Subtitle</string>"));
+        assertTrue(mSymbols.contains("string", "subtitle"));
+
+        assertTrue(updateStrings("<string name=\"app_name\">App</string>"));
+        assertEquals(1, mSymbols.row("string").size());
+        assertFalse(mSymbols.contains("string", "title"));
+    }
+
+    @Test
+    public void testUnchangedTypesAreKept() throws IOException {
+        SymbolLoader.SymbolEntry color = new SymbolLoader.SymbolEntry("primary", "int", "0");
+        mSymbols.put("color", "primary", color);
+
+        updateStrings("<string name=\"app_name\">App</string>");
+        assertTrue(mSymbols.contains("string", "app_name"));
+        assertEquals(color, mSymbols.get("color", "primary"));
+    }
+}